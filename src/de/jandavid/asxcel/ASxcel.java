@@ -16,8 +16,10 @@
  */
 package de.jandavid.asxcel;
 
+import java.io.File;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.Arrays;
 
 import javax.swing.UIManager;
 
@@ -39,7 +41,8 @@ import de.jandavid.asxcel.view.View;
 public class ASxcel {
 
 	/**
-	 * @param args
+	 * @param args The argument --write-behind makes the setters of airports
+	 * 		and routes write their changes in the background.
 	 */
 	public static void main(String[] args) {
 		try {
@@ -47,7 +50,7 @@ public class ASxcel {
 		} catch (Exception e) {}
 		
 		try {
-			Model model = new Model("asxcel.sqlite");
+			final Model model = new Model("asxcel.sqlite");
 			UpdateManager um = new UpdateManager(model.getDatabase());
 			
 			if(um.updateAvailable()) {
@@ -63,10 +66,26 @@ public class ASxcel {
 			}
 			
 			model.initializeModel();
+			model.enableSnapshots(new File("asxcel.snapshots"));
 			View view = new View(model);
 			Controller controller = new Controller(model, view);
 			view.setController(controller);
 			
+			if(Arrays.asList(args).contains("--write-behind")) {
+				model.enableWriteBehind(500, controller);
+			}
+			
+			Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						model.close();
+					} catch (SQLException e) {
+						e.printStackTrace();
+					}
+				}
+			}));
+			
 			view.showWindow();
 			controller.initializeEnterprise();
 		} catch (SQLException e) {
@@ -33,6 +33,25 @@ import java.util.ArrayList;
  */
 public class Airport implements Comparable<Airport> {
 	
+	/**
+	 * The query that adds an airport to an enterprise, by the airport's name
+	 */
+	public static final String ADD_TO_ENTERPRISE_QUERY = "INSERT OR IGNORE INTO `enterprise_has_airport` " +
+			"(`enterprise` , `airport`) SELECT ? AS `enterprise`, `id` FROM `airports` WHERE `name` = ?";
+	
+	/**
+	 * The query that creates an airport
+	 */
+	public static final String INSERT_QUERY = "INSERT OR IGNORE INTO `airports` (`name`) VALUES (?)";
+	
+	/**
+	 * The query that reads an airport of an enterprise by its name
+	 */
+	public static final String SELECT_QUERY = "SELECT `a`.`id`, `a`.`name`, `a`.`iata`, `a`.`passengers`, " +
+			"`a`.`cargo`, `a`.`size`, `a`.`transfer`, `a`.`country` FROM `airports` AS `a` " +
+			"INNER JOIN `enterprise_has_airport` AS `eha` ON `a`.`id` = `eha`.`airport` " +
+			"WHERE `a`.`name` = ? AND `eha`.`enterprise` = ? LIMIT 1";
+	
 	/**
 	 * This indicates how much cargo volume this airport has.
 	 * Values range from 0 (lowest) to 10 (highest).
@@ -146,6 +165,58 @@ public class Airport implements Comparable<Airport> {
 		}
 	}
 
+	/**
+	 * This method replaces the attributes of the airport with values that have
+	 * been read from the database. Nothing gets written.
+	 * @param name The name of the airport
+	 * @param country The country the airport is in
+	 * @param iata The IATA code of the airport
+	 * @param size The size of the airport
+	 * @param pax The airports passenger size
+	 * @param cargo The airports cargo size
+	 * @param transferPossible Is a transfer possible
+	 */
+	void refresh(String name, Country country, String iata, String size, int pax, int cargo, boolean transferPossible) {
+		this.name = name;
+		this.country = country;
+		this.iataCode = iata;
+		this.size = size;
+		this.passengers = pax;
+		this.cargo = cargo;
+		this.transferPossible = transferPossible;
+	}
+	
+	/**
+	 * This method checks if the attributes of the airport equal values that
+	 * have been read from the database, so that refresh() would not change
+	 * anything. Countries are compared by their IDs.
+	 * @param name The name of the airport
+	 * @param country The country the airport is in
+	 * @param iata The IATA code of the airport
+	 * @param size The size of the airport
+	 * @param pax The airports passenger size
+	 * @param cargo The airports cargo size
+	 * @param transferPossible Is a transfer possible
+	 * @return True if all attributes are equal, false otherwise
+	 */
+	boolean hasValues(String name, Country country, String iata, String size, int pax, int cargo, boolean transferPossible) {
+		boolean sameCountry = this.country == null ? country == null
+				: country != null && this.country.getId() == country.getId();
+		
+		return sameCountry && equal(this.name, name) && equal(this.iataCode, iata) && equal(this.size, size)
+				&& this.passengers == pax && this.cargo == cargo && this.transferPossible == transferPossible;
+	}
+	
+	/**
+	 * This auxiliary method compares two Strings that might be null.
+	 * @param a The first String
+	 * @param b The second String
+	 * @return True if both are null or equal, false otherwise
+	 */
+	private static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+	
 	/**
 	 * This method loads an airport from the database, assuming the airport
 	 * has been created already. If this is the case this instance if Airport
@@ -154,16 +225,11 @@ public class Airport implements Comparable<Airport> {
 	 * @throws SQLException If an SQL error occurs this gets thrown.
 	 */
 	private void syncWithDb() throws SQLException {
-		String query = "SELECT `a`.`id`, `a`.`name`, `a`.`iata`, `a`.`passengers`, " +
-				"`a`.`cargo`, `a`.`size`, `a`.`transfer`, `c`.`name` FROM `airports` AS `a` " +
-				"INNER JOIN `countries` AS `c` ON `a`.`country` = `c`.`id` " +
-				"INNER JOIN `enterprise_has_airport` AS `eha` ON `a`.`id` = `eha`.`airport` " +
-				"WHERE `a`.`name` = ? AND `eha`.`enterprise` = ? LIMIT 1";
-		ArrayList<Object> params = new ArrayList<Object>(1);
+		ArrayList<Object> params = new ArrayList<Object>(2);
 		params.add(name);
 		params.add(model.getEnterprise().getId());
 		
-		DatabaseResult dr = model.getDatabase().executeQuery(query, params);
+		DatabaseResult dr = model.getDatabase().executeQuery(SELECT_QUERY, params);
 		
 		if(dr.next()) {
 			id = dr.getInt(0);
@@ -173,15 +239,12 @@ public class Airport implements Comparable<Airport> {
 			cargo = dr.getInt(4);
 			size = dr.getString(5);
 			transferPossible = dr.getInt(6) == 1 ? true : false;
-			country = new Country(model, dr.getString(7));
+			country = model.resolveCountry(dr.getInt(7));
 		} else {
 			params.remove(1);
-			query = "INSERT OR IGNORE INTO `airports` (`name`) VALUES (?)";
-			model.getDatabase().executeUpdate(query, params);
-			query = "INSERT OR IGNORE INTO `enterprise_has_airport` (`enterprise` , `airport`) " +
-					"SELECT '" + model.getEnterprise().getId() + "' AS `enterprise`, " +
-							"`id` FROM `airports` WHERE `name` = ?";
-			model.getDatabase().executeUpdate(query, params);
+			model.getDatabase().executeUpdate(INSERT_QUERY, params);
+			params.add(0, model.getEnterprise().getId());
+			model.getDatabase().executeUpdate(ADD_TO_ENTERPRISE_QUERY, params);
 			syncWithDb();
 		}
 		
@@ -195,12 +258,16 @@ public class Airport implements Comparable<Airport> {
 	 * @throws SQLException If an SQL error occurs this gets thrown.
 	 */
 	private void updateField(String field, Object value) throws SQLException {
-		String query = "UPDATE `airports` SET `" + field + "` = ? WHERE `id` = ?";
-		ArrayList<Object> params = new ArrayList<Object>(2);
-		params.add(value);
-		params.add(id);
-		
-		model.getDatabase().executeUpdate(query, params);
+		model.updateField("airports", field, id, value);
+	}
+	
+	/**
+	 * This is an auxiliary method used by the setters to inform the listeners
+	 * of the model after a field has been set.
+	 * @param field The name of the column in the database.
+	 */
+	private void fieldChanged(String field) {
+		model.fireModelEvent(ModelEvent.fieldChanged(this, field));
 	}
 
 	/**
@@ -217,6 +284,7 @@ public class Airport implements Comparable<Airport> {
 	public void setCargo(int cargo) throws SQLException {
 		updateField("cargo", cargo);
 		this.cargo = cargo;
+		fieldChanged("cargo");
 	}
 
 	/**
@@ -246,7 +314,10 @@ public class Airport implements Comparable<Airport> {
 	 */
 	public void setIataCode(String iataCode) throws SQLException {
 		updateField("iata", iataCode);
+		String oldIataCode = this.iataCode;
 		this.iataCode = iataCode;
+		model.airportIataChanged(this, oldIataCode);
+		fieldChanged("iata");
 	}
 
 	/**
@@ -269,7 +340,10 @@ public class Airport implements Comparable<Airport> {
 	 */
 	public void setName(String name) throws SQLException {
 		updateField("name", name);
+		String oldName = this.name;
 		this.name = name;
+		model.airportRenamed(this, oldName);
+		fieldChanged("name");
 	}
 
 	/**
@@ -286,6 +360,7 @@ public class Airport implements Comparable<Airport> {
 	public void setPassengers(int passengers) throws SQLException {
 		updateField("passengers", passengers);
 		this.passengers = passengers;
+		fieldChanged("passengers");
 	}
 
 	/**
@@ -302,6 +377,7 @@ public class Airport implements Comparable<Airport> {
 	public void setSize(String size) throws SQLException {
 		updateField("size", size);
 		this.size = size;
+		fieldChanged("size");
 	}
 
 	/**
@@ -318,6 +394,7 @@ public class Airport implements Comparable<Airport> {
 	public void setTransferPossible(boolean transferPossible) throws SQLException {
 		updateField("transfer", transferPossible ? 1 : 0);
 		this.transferPossible = transferPossible;
+		fieldChanged("transfer");
 	}
 
 }
@@ -0,0 +1,619 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * The AirportSearchIndex finds airports by what the user types. Every word
+ * of an airport's name, its IATA code and the words of its country's name
+ * are kept in a prefix trie, so each word of the query only has to walk
+ * down the trie and collect the airports below the node it ends at. An
+ * airport matches if every word of the query is the beginning of one of
+ * its words. The matches are ranked: an exact IATA code first, then names
+ * that start with the query, IATA codes, other words of the name and at
+ * last the country.
+ * 
+ * If there are not enough matches, the trigrams (groups of three letters)
+ * of the query are compared to those of the names, which also finds names
+ * that have been misspelled. The similarity of two names is the share of
+ * trigrams they have in common.
+ * 
+ * Case and accents are ignored. The index gets updated airport by airport
+ * by the model, and is safe to be used from several threads.
+ * 
+ * @author jdno
+ */
+public class AirportSearchIndex {
+	
+	/**
+	 * The ranks of the matches, from the best to the worst.
+	 */
+	private static final int IATA_EXACT = 0, NAME_START = 1, IATA = 2, NAME_WORD = 3, COUNTRY = 4, FUZZY = 5;
+	
+	/**
+	 * The constant the trigrams get multiplied with, so their hash codes
+	 * do not collide.
+	 */
+	private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+	
+	/**
+	 * The similarity a name needs to have at least to match fuzzily.
+	 */
+	private static final float MIN_SIMILARITY = 0.35f;
+	
+	/**
+	 * The airports by slot. Slots of removed airports are null.
+	 */
+	private ArrayList<Airport> airports = new ArrayList<Airport>();
+	
+	/**
+	 * The slots that have been freed by removed airports.
+	 */
+	private IntList freeSlots = new IntList();
+	
+	/**
+	 * This is increased by every search, so the scratch arrays do not have
+	 * to be cleared.
+	 */
+	private int generation = 0;
+	
+	/**
+	 * The number of distinct trigrams of each slot's name.
+	 */
+	private int[] gramCounts = new int[0];
+	
+	/**
+	 * The trigrams of each slot's name, which are needed to remove it.
+	 */
+	private ArrayList<long[]> gramsBySlot = new ArrayList<long[]>();
+	
+	/**
+	 * The scratch arrays of a search: the generation a slot has been seen
+	 * in, the number of query words it matches, its best rank, and its
+	 * number of common trigrams.
+	 */
+	private int[] marks = new int[0], hits = new int[0], ranks = new int[0], commonGrams = new int[0];
+	
+	/**
+	 * The root of the prefix trie.
+	 */
+	private Node root = new Node();
+	
+	/**
+	 * This maps the IDs of the airports to their slots.
+	 */
+	private HashMap<Integer, Integer> slots = new HashMap<Integer, Integer>();
+	
+	/**
+	 * This maps the trigrams to the slots of the names containing them.
+	 */
+	private HashMap<Long, IntList> trigrams = new HashMap<Long, IntList>();
+	
+	/**
+	 * The words each slot has been added to the trie with, which are
+	 * needed to remove it.
+	 */
+	private ArrayList<String[]> wordsBySlot = new ArrayList<String[]>();
+	
+	/**
+	 * This method adds an airport to the index. If it has been added
+	 * before, its entries get replaced, so this is also used after the
+	 * name, IATA code or country of an airport have changed.
+	 * @param airport The airport to add.
+	 */
+	public synchronized void add(Airport airport) {
+		remove(airport);
+		
+		int slot;
+		if(freeSlots.size > 0) {
+			slot = freeSlots.values[--freeSlots.size];
+			airports.set(slot, airport);
+		} else {
+			slot = airports.size();
+			airports.add(airport);
+			wordsBySlot.add(null);
+			gramsBySlot.add(null);
+			ensureCapacity(airports.size());
+		}
+		slots.put(airport.getId(), slot);
+		
+		ArrayList<String> words = new ArrayList<String>();
+		ArrayList<Integer> wordRanks = new ArrayList<Integer>();
+		
+		String name = normalize(airport.getName());
+		String[] nameWords = split(name);
+		for(int i = 0; i < nameWords.length; i++) {
+			words.add(nameWords[i]);
+			wordRanks.add(i == 0 ? NAME_START : NAME_WORD);
+		}
+		
+		String iata = normalize(airport.getIataCode());
+		if(!iata.equals("")) {
+			words.add(iata.replace(" ", ""));
+			wordRanks.add(IATA);
+		}
+		
+		if(airport.getCountry() != null) {
+			for(String word: split(normalize(airport.getCountry().getName()))) {
+				words.add(word);
+				wordRanks.add(COUNTRY);
+			}
+		}
+		
+		for(int i = 0; i < words.size(); i++) {
+			root.insert(words.get(i), 0).postings.add(slot << 3 | wordRanks.get(i));
+		}
+		wordsBySlot.set(slot, words.toArray(new String[words.size()]));
+		
+		long[] grams = trigramsOf(name);
+		for(long gram: grams) {
+			IntList list = trigrams.get(gram);
+			
+			if(list == null) {
+				list = new IntList();
+				trigrams.put(gram, list);
+			}
+			
+			list.add(slot << 3);
+		}
+		gramsBySlot.set(slot, grams);
+		gramCounts[slot] = grams.length;
+	}
+	
+	/**
+	 * This method removes all airports from the index.
+	 */
+	public synchronized void clear() {
+		airports.clear();
+		freeSlots.size = 0;
+		gramsBySlot.clear();
+		root = new Node();
+		slots.clear();
+		trigrams.clear();
+		wordsBySlot.clear();
+	}
+	
+	/**
+	 * This method removes an airport from the index. Nothing happens if
+	 * the airport is not part of it.
+	 * @param airport The airport to remove.
+	 */
+	public synchronized void remove(Airport airport) {
+		Integer slot = slots.remove(airport.getId());
+		if(slot == null) return;
+		
+		for(String word: wordsBySlot.get(slot)) {
+			Node node = root.find(word, 0);
+			
+			if(node != null) {
+				node.postings.removeSlot(slot);
+			}
+		}
+		
+		for(long gram: gramsBySlot.get(slot)) {
+			IntList list = trigrams.get(gram);
+			list.removeSlot(slot);
+			
+			if(list.size == 0) {
+				trigrams.remove(gram);
+			}
+		}
+		
+		airports.set(slot, null);
+		wordsBySlot.set(slot, null);
+		gramsBySlot.set(slot, null);
+		freeSlots.add(slot);
+	}
+	
+	/**
+	 * This method searches the airports that match the query best.
+	 * @param query The text the user has typed.
+	 * @param limit The maximum number of airports to return.
+	 * @return The airports, the best match first.
+	 */
+	public ArrayList<Airport> search(String query, int limit) {
+		return search(query, limit, null);
+	}
+	
+	/**
+	 * This method searches the airports that match the query best, among
+	 * the given airports only.
+	 * @param query The text the user has typed.
+	 * @param limit The maximum number of airports to return.
+	 * @param allowed The airports that may be returned, or null for all.
+	 * @return The airports, the best match first.
+	 */
+	public synchronized ArrayList<Airport> search(String query, int limit, Set<Airport> allowed) {
+		String normalized = normalize(query);
+		String[] words = split(normalized);
+		
+		if(words.length == 0 || limit < 1) {
+			return new ArrayList<Airport>(0);
+		}
+		
+		if(++generation == Integer.MAX_VALUE) {
+			generation = 1;
+			Arrays.fill(marks, 0);
+		}
+		
+		PriorityQueue<Match> best = new PriorityQueue<Match>(limit + 1, Collections.reverseOrder(Match.ORDER));
+		IntList touched = new IntList();
+		searchPrefixes(words, touched);
+		
+		for(int i = 0; i < touched.size; i++) {
+			int slot = touched.values[i];
+			
+			if(hits[slot] == words.length) {
+				offer(best, limit, slot, ranks[slot], 0f, allowed);
+			}
+		}
+		
+		if(best.size() < limit && normalized.length() >= 3) {
+			searchTrigrams(normalized, words.length, best, limit, allowed);
+		}
+		
+		Match[] sorted = best.toArray(new Match[best.size()]);
+		Arrays.sort(sorted, Match.ORDER);
+		
+		ArrayList<Airport> result = new ArrayList<Airport>(sorted.length);
+		for(Match m: sorted) {
+			result.add(m.airport);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return The number of airports in the index.
+	 */
+	public synchronized int size() {
+		return slots.size();
+	}
+	
+	/**
+	 * This auxiliary method makes sure the arrays by slot can hold the
+	 * given number of slots.
+	 * @param capacity The number of slots.
+	 */
+	private void ensureCapacity(int capacity) {
+		if(capacity <= marks.length) return;
+		
+		int length = Math.max(capacity, marks.length * 2);
+		marks = Arrays.copyOf(marks, length);
+		hits = Arrays.copyOf(hits, length);
+		ranks = Arrays.copyOf(ranks, length);
+		commonGrams = Arrays.copyOf(commonGrams, length);
+		gramCounts = Arrays.copyOf(gramCounts, length);
+	}
+	
+	/**
+	 * This auxiliary method adds a match to the best matches, if it is
+	 * allowed and better than the worst of them.
+	 */
+	private void offer(PriorityQueue<Match> best, int limit, int slot, int rank, float similarity, Set<Airport> allowed) {
+		Airport airport = airports.get(slot);
+		
+		if(allowed != null && !allowed.contains(airport)) return;
+		
+		if(best.size() == limit) {
+			Match worst = best.peek();
+			
+			if(Match.compare(rank, similarity, airport, worst.rank, worst.similarity, worst.airport) >= 0) return;
+			
+			best.poll();
+		}
+		
+		best.add(new Match(airport, rank, similarity));
+	}
+	
+	/**
+	 * This auxiliary method walks the trie for every word of the query, and
+	 * counts for every slot how many of the words it matches.
+	 * @param words The words of the query.
+	 * @param touched The slots that match the first word get added here.
+	 */
+	private void searchPrefixes(String[] words, IntList touched) {
+		for(int w = 0; w < words.length; w++) {
+			Node node = root.find(words[w], 0);
+			if(node == null) return;
+			
+			ArrayList<Node> stack = new ArrayList<Node>();
+			stack.add(node);
+			
+			while(!stack.isEmpty()) {
+				Node current = stack.remove(stack.size() - 1);
+				IntList postings = current.postings;
+				
+				for(int i = 0; i < postings.size; i++) {
+					int slot = postings.values[i] >>> 3;
+					int rank = postings.values[i] & 7;
+					
+					if(rank == IATA && current == node) {
+						rank = IATA_EXACT;
+					}
+					
+					if(w == 0) {
+						if(marks[slot] != generation) {
+							marks[slot] = generation;
+							hits[slot] = 1;
+							ranks[slot] = rank;
+							touched.add(slot);
+							continue;
+						}
+					} else if(marks[slot] != generation || hits[slot] < w) {
+						continue;
+					} else if(hits[slot] == w) {
+						hits[slot] = w + 1;
+					}
+					
+					ranks[slot] = Math.min(ranks[slot], rank);
+				}
+				
+				for(int i = 0; i < current.childCount; i++) {
+					stack.add(current.children[i]);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * This auxiliary method compares the trigrams of the query to those of
+	 * the names, and offers the names that are similar enough but have not
+	 * matched by prefix already.
+	 */
+	private void searchTrigrams(String query, int wordCount, PriorityQueue<Match> best, int limit, Set<Airport> allowed) {
+		long[] grams = trigramsOf(query);
+		IntList touched = new IntList();
+		
+		for(long gram: grams) {
+			IntList list = trigrams.get(gram);
+			if(list == null) continue;
+			
+			for(int i = 0; i < list.size; i++) {
+				int slot = list.values[i] >>> 3;
+				
+				if(marks[slot] != generation) {
+					marks[slot] = generation;
+					hits[slot] = 0;
+					commonGrams[slot] = 0;
+				} else if(hits[slot] == wordCount) {
+					continue;
+				}
+				
+				if(commonGrams[slot] == 0) {
+					touched.add(slot);
+				}
+				commonGrams[slot]++;
+			}
+		}
+		
+		for(int i = 0; i < touched.size; i++) {
+			int slot = touched.values[i];
+			float similarity = 2f * commonGrams[slot] / (grams.length + gramCounts[slot]);
+			commonGrams[slot] = 0;
+			
+			if(similarity >= MIN_SIMILARITY) {
+				offer(best, limit, slot, FUZZY, similarity, allowed);
+			}
+		}
+	}
+	
+	/**
+	 * This method brings a text into the form it gets indexed in: lower
+	 * case, without accents, and with every character that is neither a
+	 * letter nor a digit replaced by a single space.
+	 * @param text The text to normalize.
+	 * @return The normalized text.
+	 */
+	static String normalize(String text) {
+		if(text == null) return "";
+		
+		String decomposed = isAscii(text) ? text : Normalizer.normalize(text, Normalizer.Form.NFD);
+		StringBuilder sb = new StringBuilder(decomposed.length());
+		boolean space = true;
+		
+		for(int i = 0; i < decomposed.length(); i++) {
+			char c = decomposed.charAt(i);
+			
+			if(Character.getType(c) == Character.NON_SPACING_MARK) continue;
+			
+			if(Character.isLetterOrDigit(c)) {
+				sb.append(Character.toLowerCase(c));
+				space = false;
+			} else if(!space) {
+				sb.append(' ');
+				space = true;
+			}
+		}
+		
+		int length = sb.length();
+		if(length > 0 && sb.charAt(length - 1) == ' ') {
+			sb.setLength(length - 1);
+		}
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * This auxiliary method checks if a text consists of ASCII characters
+	 * only, which do not have to be decomposed.
+	 */
+	private static boolean isAscii(String text) {
+		for(int i = 0; i < text.length(); i++) {
+			if(text.charAt(i) > 127) return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * This auxiliary method splits a normalized text into its words.
+	 */
+	private static String[] split(String normalized) {
+		return normalized.equals("") ? new String[0] : normalized.split(" ");
+	}
+	
+	/**
+	 * This auxiliary method returns the distinct trigrams of a normalized
+	 * text, which gets padded with a space at both ends. Every trigram is
+	 * packed into a long, which gets multiplied with an odd constant to
+	 * spread its bits, and they are returned sorted.
+	 */
+	private static long[] trigramsOf(String normalized) {
+		String padded = " " + normalized + " ";
+		long[] grams = new long[Math.max(0, padded.length() - 2)];
+		
+		for(int i = 0; i < grams.length; i++) {
+			grams[i] = ((long) padded.charAt(i) << 32 | (long) padded.charAt(i + 1) << 16 | padded.charAt(i + 2)) * GOLDEN_RATIO;
+		}
+		
+		Arrays.sort(grams);
+		
+		int distinct = 0;
+		for(int i = 0; i < grams.length; i++) {
+			if(i == 0 || grams[i] != grams[i - 1]) {
+				grams[distinct++] = grams[i];
+			}
+		}
+		
+		return Arrays.copyOf(grams, distinct);
+	}
+	
+	/**
+	 * A growable list of postings, which pack a slot and a rank into one
+	 * int. The postings of the trigrams have no rank.
+	 */
+	private static class IntList {
+		
+		private int[] values = new int[2];
+		private int size = 0;
+		
+		void add(int value) {
+			if(size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			
+			values[size++] = value;
+		}
+		
+		void removeSlot(int slot) {
+			int kept = 0;
+			
+			for(int i = 0; i < size; i++) {
+				if(values[i] >>> 3 != slot) {
+					values[kept++] = values[i];
+				}
+			}
+			
+			size = kept;
+		}
+	}
+	
+	/**
+	 * A node of the trie, with its children by character and the postings
+	 * of the words that end at it.
+	 */
+	private static class Node {
+		
+		private char[] chars = new char[0];
+		private Node[] children = new Node[0];
+		private int childCount = 0;
+		private IntList postings = new IntList();
+		
+		Node find(String word, int position) {
+			Node node = this;
+			
+			for(int i = position; i < word.length() && node != null; i++) {
+				node = node.child(word.charAt(i));
+			}
+			
+			return node;
+		}
+		
+		Node insert(String word, int position) {
+			Node node = this;
+			
+			for(int i = position; i < word.length(); i++) {
+				char c = word.charAt(i);
+				Node child = node.child(c);
+				
+				if(child == null) {
+					child = new Node();
+					
+					if(node.childCount == node.chars.length) {
+						node.chars = Arrays.copyOf(node.chars, Math.max(2, node.childCount * 2));
+						node.children = Arrays.copyOf(node.children, node.chars.length);
+					}
+					
+					node.chars[node.childCount] = c;
+					node.children[node.childCount++] = child;
+				}
+				
+				node = child;
+			}
+			
+			return node;
+		}
+		
+		private Node child(char c) {
+			for(int i = 0; i < childCount; i++) {
+				if(chars[i] == c) return children[i];
+			}
+			
+			return null;
+		}
+	}
+	
+	/**
+	 * An airport that matches a query, with its rank and similarity.
+	 */
+	private static class Match {
+		
+		static final Comparator<Match> ORDER = new Comparator<Match>() {
+			@Override
+			public int compare(Match a, Match b) {
+				return Match.compare(a.rank, a.similarity, a.airport, b.rank, b.similarity, b.airport);
+			}
+		};
+		
+		private final Airport airport;
+		private final int rank;
+		private final float similarity;
+		
+		Match(Airport airport, int rank, float similarity) {
+			this.airport = airport;
+			this.rank = rank;
+			this.similarity = similarity;
+		}
+		
+		static int compare(int rankA, float similarityA, Airport a, int rankB, float similarityB, Airport b) {
+			if(rankA != rankB) return rankA < rankB ? -1 : 1;
+			if(similarityA != similarityB) return similarityA > similarityB ? -1 : 1;
+			
+			return a.compareTo(b);
+		}
+	}
+	
+}
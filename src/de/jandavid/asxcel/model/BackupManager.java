@@ -0,0 +1,365 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The BackupManager creates compressed snapshots of the database while it is
+ * in use. The snapshot is taken with SQLite's online backup, so it is always
+ * consistent, even if another thread writes at the same time. It gets
+ * compressed with gzip, and a file with its SHA-256 checksum is written next
+ * to it. Only the newest backups are kept, older ones get deleted.
+ * 
+ * A backup of "asxcel.sqlite" is called "asxcel.sqlite.20130101-120000-000.gz".
+ * 
+ * @author jdno
+ */
+public class BackupManager {
+
+	/**
+	 * The extension of a compressed backup
+	 */
+	private static final String BACKUP_EXTENSION = ".gz";
+	
+	/**
+	 * The extension of the file with the checksum of a backup
+	 */
+	private static final String CHECKSUM_EXTENSION = ".sha256";
+	
+	/**
+	 * The database to back up
+	 */
+	private Database database;
+	
+	/**
+	 * The directory the backups are written to
+	 */
+	private File directory;
+	
+	/**
+	 * The executor of backups in the background, created on first use
+	 */
+	private ExecutorService executor;
+	
+	/**
+	 * The model whose pending changes get written before a backup, or null
+	 */
+	private Model model;
+	
+	/**
+	 * The number of backups that are kept
+	 */
+	private int maxBackups = 5;
+	
+	/**
+	 * The name of the database file, which all backups start with
+	 */
+	private String prefix;
+	
+	/**
+	 * The BackupManager writes the backups to the directory of the database.
+	 * @param database The database to back up
+	 */
+	public BackupManager(Database database) {
+		this(database, new File(database.getFileName()).getAbsoluteFile().getParentFile());
+	}
+	
+	/**
+	 * The BackupManager writes the backups of the model's database to the
+	 * directory of the database. The changes that wait in the write-behind
+	 * queue of the model get written before every backup.
+	 * @param model The model whose database gets backed up
+	 */
+	public BackupManager(Model model) {
+		this(model.getDatabase());
+		this.model = model;
+	}
+	
+	/**
+	 * The BackupManager writes the backups to the given directory.
+	 * @param database The database to back up
+	 * @param directory The directory to write the backups to
+	 */
+	public BackupManager(Database database, File directory) {
+		this.database = database;
+		this.directory = directory;
+		this.prefix = new File(database.getFileName()).getName() + ".";
+	}
+	
+	/**
+	 * This method creates a backup and waits until it has been written.
+	 * Changes of the model that have not been written yet get written first,
+	 * so the backup contains them. Afterwards backups that exceed the
+	 * retention limit get deleted.
+	 * @return The compressed backup
+	 * @throws IOException If the backup cannot be written this gets thrown.
+	 * @throws SQLException If the snapshot cannot be taken this gets thrown.
+	 */
+	public synchronized File backup() throws IOException, SQLException {
+		if(model != null) {
+			model.flush();
+		}
+		
+		String name = prefix + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+		File snapshot = new File(directory, name + ".tmp");
+		File backup = new File(directory, name + BACKUP_EXTENSION);
+		
+		try {
+			database.backupTo(snapshot.getPath());
+			
+			String checksum = compress(snapshot, backup);
+			writeChecksum(backup, checksum);
+		} catch (IOException e) {
+			delete(backup);
+			throw e;
+		} finally {
+			delete(snapshot);
+			delete(new File(snapshot.getPath() + "-wal"));
+			delete(new File(snapshot.getPath() + "-shm"));
+		}
+		
+		enforceRetention();
+		
+		return backup;
+	}
+	
+	/**
+	 * This method creates a backup on a background thread.
+	 * @return The future compressed backup
+	 */
+	public CompletableFuture<File> backupAsync() {
+		final CompletableFuture<File> future = new CompletableFuture<File>();
+		
+		getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					future.complete(backup());
+				} catch (Exception e) {
+					future.completeExceptionally(e);
+				}
+			}
+		});
+		
+		return future;
+	}
+	
+	/**
+	 * This method deletes the oldest backups until only the allowed number is left.
+	 */
+	public synchronized void enforceRetention() {
+		ArrayList<File> backups = getBackups();
+		
+		for(int i = maxBackups; i < backups.size(); i++) {
+			delete(backups.get(i));
+			delete(new File(backups.get(i).getPath() + CHECKSUM_EXTENSION));
+		}
+	}
+	
+	/**
+	 * @return the existing backups, the newest first
+	 */
+	public ArrayList<File> getBackups() {
+		ArrayList<File> backups = new ArrayList<File>();
+		File[] files = directory.listFiles();
+		
+		if(files != null) {
+			for(File f: files) {
+				if(f.isFile() && f.getName().startsWith(prefix) && f.getName().endsWith(BACKUP_EXTENSION)) {
+					backups.add(f);
+				}
+			}
+		}
+		
+		// The names end with the time of the backup, so they sort chronologically.
+		Collections.sort(backups, Collections.reverseOrder());
+		
+		return backups;
+	}
+	
+	/**
+	 * This method checks that a backup has not changed since it was written.
+	 * @param backup The compressed backup
+	 * @return True if the checksum matches, false otherwise
+	 * @throws IOException If the backup or its checksum cannot be read this gets thrown.
+	 */
+	public boolean verify(File backup) throws IOException {
+		BufferedReader reader = new BufferedReader(new FileReader(backup.getPath() + CHECKSUM_EXTENSION));
+		String expected;
+		
+		try {
+			String line = reader.readLine();
+			expected = line != null ? line.split(" ")[0] : "";
+		} finally {
+			reader.close();
+		}
+		
+		MessageDigest digest = createDigest();
+		InputStream in = new DigestInputStream(new FileInputStream(backup), digest);
+		
+		try {
+			byte[] buffer = new byte[65536];
+			while(in.read(buffer) != -1);
+		} finally {
+			in.close();
+		}
+		
+		return expected.equals(toHex(digest.digest()));
+	}
+	
+	/**
+	 * This auxiliary method compresses the snapshot and computes the checksum of
+	 * the compressed file while it gets written.
+	 * @param snapshot The uncompressed snapshot
+	 * @param backup The compressed file to write
+	 * @return The checksum as a hexadecimal string
+	 * @throws IOException If a file cannot be read or written this gets thrown.
+	 */
+	private String compress(File snapshot, File backup) throws IOException {
+		MessageDigest digest = createDigest();
+		InputStream in = new FileInputStream(snapshot);
+		
+		try {
+			OutputStream out = new GZIPOutputStream(new DigestOutputStream(new FileOutputStream(backup), digest), 65536);
+			
+			try {
+				byte[] buffer = new byte[65536];
+				int read;
+				
+				while((read = in.read(buffer)) != -1) {
+					out.write(buffer, 0, read);
+				}
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+		
+		return toHex(digest.digest());
+	}
+	
+	/**
+	 * This auxiliary method writes the checksum file of a backup, in the format
+	 * of the sha256sum tool.
+	 * @param backup The compressed backup
+	 * @param checksum The checksum as a hexadecimal string
+	 * @throws IOException If the file cannot be written this gets thrown.
+	 */
+	private void writeChecksum(File backup, String checksum) throws IOException {
+		FileWriter writer = new FileWriter(backup.getPath() + CHECKSUM_EXTENSION);
+		
+		try {
+			writer.write(checksum + "  " + backup.getName() + "\n");
+		} finally {
+			writer.close();
+		}
+	}
+	
+	/**
+	 * @return the executor of backups in the background
+	 */
+	private synchronized ExecutorService getExecutor() {
+		if(executor == null) {
+			executor = Executors.newSingleThreadExecutor(Database.createThreadFactory("ASxcel backup"));
+		}
+		
+		return executor;
+	}
+	
+	/**
+	 * This auxiliary method creates the digest for the checksums.
+	 * @return A SHA-256 digest
+	 * @throws IOException If SHA-256 is not available this gets thrown.
+	 */
+	private static MessageDigest createDigest() throws IOException {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+	}
+	
+	/**
+	 * This auxiliary method deletes a file if it exists.
+	 * @param file The file to delete
+	 */
+	private static void delete(File file) {
+		if(file.exists() && !file.delete()) {
+			file.deleteOnExit();
+		}
+	}
+	
+	/**
+	 * This auxiliary method formats bytes as a hexadecimal string.
+	 * @param bytes The bytes to format
+	 * @return The hexadecimal string
+	 */
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		
+		for(byte b: bytes) {
+			sb.append(String.format("%02x", b));
+		}
+		
+		return sb.toString();
+	}
+
+	/**
+	 * @return the directory
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return the maxBackups
+	 */
+	public int getMaxBackups() {
+		return maxBackups;
+	}
+
+	/**
+	 * @param maxBackups the maxBackups to set
+	 */
+	public void setMaxBackups(int maxBackups) {
+		this.maxBackups = maxBackups;
+	}
+
+}
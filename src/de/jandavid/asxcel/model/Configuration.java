@@ -67,6 +67,13 @@ public class Configuration {
 		model.getDatabase().executeUpdate(query, params);
 	}
 
+	/**
+	 * @return the PerformanceProfile the database currently uses
+	 */
+	public PerformanceProfile getPerformanceProfile() {
+		return model.getDatabase().getProfile();
+	}
+
 	/**
 	 * @return the highlightScheduledRoutes
 	 */
@@ -82,4 +89,14 @@ public class Configuration {
 		updateKey("highlightScheduledRoutes", highlightScheduledRoutes ? 1 : 0);
 		this.highlightScheduledRoutes = highlightScheduledRoutes;
 	}
+
+	/**
+	 * This method switches the database to another PerformanceProfile. The
+	 * setting is not saved, so the next start uses the default again.
+	 * @param profile the PerformanceProfile to use
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public void setPerformanceProfile(PerformanceProfile profile) throws SQLException {
+		model.getDatabase().applyProfile(profile);
+	}
 }
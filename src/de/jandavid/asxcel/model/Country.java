@@ -27,6 +27,16 @@ import java.util.ArrayList;
  */
 public class Country implements Comparable<Country> {
 
+	/**
+	 * The query that creates a country
+	 */
+	public static final String INSERT_QUERY = "INSERT INTO `countries` (`name`) VALUES (?)";
+
+	/**
+	 * The query that reads a country by its name
+	 */
+	public static final String SELECT_QUERY = "SELECT * FROM `countries` WHERE name = ? LIMIT 1";
+
 	/**
 	 * This is the ID of the country in the database.
 	 */
@@ -84,18 +94,16 @@ public class Country implements Comparable<Country> {
 	 * @throws SQLException If an SQL error occurs this gets thrown.
 	 */
 	private void syncWithDb() throws SQLException {
-		String query = "SELECT * FROM `countries` WHERE name = ? LIMIT 1";
 		ArrayList<Object> params = new ArrayList<Object>(1);
 		params.add(name);
 		
-		DatabaseResult dr = model.getDatabase().executeQuery(query, params);
+		DatabaseResult dr = model.getDatabase().executeQuery(SELECT_QUERY, params);
 		
 		if(dr.next()) {
 			id = dr.getInt(0);
 			name = dr.getString(1);
 		} else {
-			query = "INSERT INTO `countries` (`name`) VALUES (?)";
-			model.getDatabase().executeUpdate(query, params);
+			model.getDatabase().executeUpdate(INSERT_QUERY, params);
 			syncWithDb();
 		}
 	}
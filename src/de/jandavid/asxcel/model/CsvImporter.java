@@ -0,0 +1,743 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The CsvImporter adds airports and routes from CSV files to the current
+ * enterprise. The airports file has the columns name, IATA code, country,
+ * passengers, cargo, size and transfer possible, the routes file has the
+ * columns origin, destination, distance, loads from, loads to and
+ * scheduled. Only the name and country, or origin and destination, are
+ * required. A first line starting with "name" or "origin" is a header.
+ * 
+ * The files get parsed on a thread of their own, which hands the rows in
+ * batches to the thread that called importFiles(). This thread takes a
+ * backup and then writes all batches in one transaction with the
+ * BULK_IMPORT profile, so either the whole import succeeds or nothing gets
+ * written. The IDs of all airports and countries and the routes of the
+ * enterprise are read once at the beginning, and new airports and
+ * countries get their IDs assigned here, so no row needs a query of its
+ * own. Airports that exist already get updated with the fields that are
+ * not empty, routes that exist already are left as they are.
+ * 
+ * Rows that cannot be read are skipped and reported as problems. The model
+ * does not know about the imported rows until the enterprise gets loaded
+ * again.
+ *
+ * @author jdno
+ */
+public class CsvImporter {
+	
+	/**
+	 * The number of rows that get written together.
+	 */
+	private static final int BATCH_SIZE = 1000;
+	
+	/**
+	 * The maximum number of problems that get reported.
+	 */
+	private static final int MAX_PROBLEMS = 100;
+	
+	/**
+	 * The number of batches the parser may read ahead of the writer.
+	 */
+	private static final int QUEUE_SIZE = 4;
+	
+	/**
+	 * The number of airports that have been imported.
+	 */
+	private int airportCount = 0;
+	
+	/**
+	 * This maps the names of all airports to their IDs.
+	 */
+	private HashMap<String, Integer> airportIds = new HashMap<String, Integer>();
+	
+	/**
+	 * The number of bytes of the files that have been read.
+	 */
+	private AtomicLong bytesRead = new AtomicLong();
+	
+	/**
+	 * This is set if the import has been cancelled or has failed, which
+	 * stops both threads.
+	 */
+	private volatile boolean cancelled = false;
+	
+	/**
+	 * The ID of the enterprise the rows get imported into.
+	 */
+	private int enterpriseId;
+	
+	/**
+	 * This maps the names of all countries to their IDs.
+	 */
+	private HashMap<String, Integer> countryIds = new HashMap<String, Integer>();
+	
+	/**
+	 * The IDs of the airports that belong to the enterprise.
+	 */
+	private HashSet<Integer> linkedAirports = new HashSet<Integer>();
+	
+	/**
+	 * This listener gets informed about the progress.
+	 */
+	private ImportListener listener;
+	
+	/**
+	 * The highest IDs of the airports and countries.
+	 */
+	private int maxAirportId = 0, maxCountryId = 0;
+	
+	/**
+	 * The model that provides the database and the enterprise.
+	 */
+	private Model model;
+	
+	/**
+	 * The descriptions of the rows that have been skipped.
+	 */
+	private ArrayList<String> problems = new ArrayList<String>();
+	
+	/**
+	 * The batches the parser has read and the writer has not written yet.
+	 */
+	private ArrayBlockingQueue<Batch> queue = new ArrayBlockingQueue<Batch>(QUEUE_SIZE);
+	
+	/**
+	 * The number of routes that have been imported.
+	 */
+	private int routeCount = 0;
+	
+	/**
+	 * The origins and destinations of the routes of the enterprise, each
+	 * pair combined into one number by routeKey().
+	 */
+	private HashSet<Long> routeKeys = new HashSet<Long>();
+	
+	/**
+	 * The number of rows that have been skipped.
+	 */
+	private int skippedRows = 0;
+	
+	/**
+	 * The importer gets initialized with the model it imports into.
+	 * @param model The model whose enterprise gets the rows.
+	 */
+	public CsvImporter(Model model) {
+		this.model = model;
+	}
+	
+	/**
+	 * This method stops the import. The rows that have been written get
+	 * rolled back, and importFiles() throws a CancellationException.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+	
+	/**
+	 * This method imports the given files. It returns once all rows have
+	 * been written. A backup of the database is taken before, as the
+	 * BULK_IMPORT profile does not sync the changes.
+	 * @param airportFile The file with the airports, or null.
+	 * @param routeFile The file with the routes, or null.
+	 * @throws IOException If the backup cannot be written or a file cannot be read this gets thrown, and nothing gets written.
+	 * @throws SQLException If a SQL error occurs this gets thrown, and nothing gets written.
+	 * @throws CancellationException If the import has been cancelled this gets thrown.
+	 */
+	public void importFiles(final File airportFile, final File routeFile) throws IOException, SQLException {
+		final long total = (airportFile != null ? airportFile.length() : 0) + (routeFile != null ? routeFile.length() : 0);
+		
+		model.getBackupManager().backup();
+		enterpriseId = model.getEnterprise().getId();
+		
+		Thread parser = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				parse(airportFile, routeFile);
+			}
+		}, "ASxcel import parser");
+		parser.setDaemon(true);
+		parser.start();
+		
+		boolean finished = false;
+		
+		try {
+			model.getDatabase().runWithProfile(PerformanceProfile.BULK_IMPORT, new Transaction() {
+				@Override
+				public void execute(Database database) throws SQLException {
+					database.inTransaction(new Transaction() {
+						@Override
+						public void execute(Database database) throws SQLException {
+							write(database, total);
+						}
+					});
+				}
+			});
+			
+			finished = true;
+		} catch (ImportFailure e) {
+			throw e.cause;
+		} finally {
+			if(!finished) {
+				cancelled = true;
+				queue.clear();
+			}
+		}
+	}
+	
+	/**
+	 * @return the number of airports that have been created or updated
+	 */
+	public int getAirportCount() {
+		return airportCount;
+	}
+	
+	/**
+	 * @return the descriptions of the first rows that have been skipped
+	 */
+	public synchronized ArrayList<String> getProblems() {
+		return new ArrayList<String>(problems);
+	}
+	
+	/**
+	 * @return the number of routes that have been created
+	 */
+	public int getRouteCount() {
+		return routeCount;
+	}
+	
+	/**
+	 * @return the number of rows that have been skipped
+	 */
+	public synchronized int getSkippedRows() {
+		return skippedRows;
+	}
+	
+	/**
+	 * @param listener the listener to set
+	 */
+	public void setListener(ImportListener listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	 * This auxiliary method adds an airport to the enterprise, unless it
+	 * belongs to it already.
+	 * @param airport The ID of the airport.
+	 * @param links The parameters of the links to insert.
+	 */
+	private void link(int airport, ArrayList<ArrayList<Object>> links) {
+		if(linkedAirports.add(airport)) {
+			links.add(parameters(enterpriseId, airport));
+		}
+	}
+	
+	/**
+	 * This auxiliary method reads the IDs of all airports and countries,
+	 * and the airports and routes of the enterprise.
+	 * @param database The database to read from.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	private void loadIds(Database database) throws SQLException {
+		DatabaseCursor dc = database.openCursor("SELECT `id`, `name` FROM `airports`");
+		try {
+			while(dc.next()) {
+				airportIds.put(dc.getString(1), dc.getInt(0));
+				maxAirportId = Math.max(maxAirportId, dc.getInt(0));
+			}
+		} finally {
+			dc.close();
+		}
+		
+		dc = database.openCursor("SELECT `id`, `name` FROM `countries`");
+		try {
+			while(dc.next()) {
+				countryIds.put(dc.getString(1), dc.getInt(0));
+				maxCountryId = Math.max(maxCountryId, dc.getInt(0));
+			}
+		} finally {
+			dc.close();
+		}
+		
+		dc = database.openCursor("SELECT `airport` FROM `enterprise_has_airport` WHERE `enterprise` = ?",
+				parameters(enterpriseId));
+		try {
+			while(dc.next()) {
+				linkedAirports.add(dc.getInt(0));
+			}
+		} finally {
+			dc.close();
+		}
+		
+		dc = database.openCursor("SELECT `origin`, `destination` FROM `routes` WHERE `enterprise` = ?",
+				parameters(enterpriseId));
+		try {
+			while(dc.next()) {
+				routeKeys.add(routeKey(dc.getInt(0), dc.getInt(1)));
+			}
+		} finally {
+			dc.close();
+		}
+	}
+	
+	/**
+	 * This is the work of the parser thread. It reads both files and hands
+	 * their rows to the writer in batches. If a file cannot be read the
+	 * error gets handed to the writer instead.
+	 * @param airportFile The file with the airports, or null.
+	 * @param routeFile The file with the routes, or null.
+	 */
+	private void parse(File airportFile, File routeFile) {
+		try {
+			if(airportFile != null) {
+				parseFile(airportFile, Batch.AIRPORTS);
+			}
+			
+			if(routeFile != null) {
+				parseFile(routeFile, Batch.ROUTES);
+			}
+			
+			put(new Batch(Batch.END));
+		} catch (IOException e) {
+			Batch failure = new Batch(Batch.END);
+			failure.error = e;
+			put(failure);
+		}
+	}
+	
+	/**
+	 * This auxiliary method reads the rows of one file.
+	 * @param file The file to read.
+	 * @param kind The kind of rows the file contains.
+	 * @throws IOException If the file cannot be read this gets thrown.
+	 */
+	private void parseFile(File file, int kind) throws IOException {
+		InputStream in = new FilterInputStream(new FileInputStream(file)) {
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+				if(b != -1) bytesRead.incrementAndGet();
+				return b;
+			}
+			
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int read = super.read(b, off, len);
+				if(read > 0) bytesRead.addAndGet(read);
+				return read;
+			}
+		};
+		
+		CsvReader reader = new CsvReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		
+		try {
+			Batch batch = new Batch(kind);
+			String[] fields;
+			
+			while(!cancelled && (fields = reader.next()) != null) {
+				if(reader.getRecordLine() == 1 && isHeader(fields, kind)) continue;
+				
+				Object[] row = kind == Batch.AIRPORTS ? parseAirport(fields, reader.getRecordLine())
+						: parseRoute(fields, reader.getRecordLine());
+				if(row == null) continue;
+				
+				batch.rows.add(row);
+				
+				if(batch.rows.size() == BATCH_SIZE) {
+					if(!put(batch)) return;
+					batch = new Batch(kind);
+				}
+			}
+			
+			if(!batch.rows.isEmpty()) {
+				put(batch);
+			}
+		} finally {
+			reader.close();
+		}
+	}
+	
+	/**
+	 * This auxiliary method converts the fields of an airport.
+	 * @param fields The fields of the record.
+	 * @param line The line of the record.
+	 * @return The line, name, IATA code, country, passengers, cargo, size
+	 * 		and transfer, or null if the record is invalid. Empty fields
+	 * 		are null.
+	 */
+	private Object[] parseAirport(String[] fields, int line) {
+		String name = field(fields, 0);
+		String country = field(fields, 2);
+		
+		if(name.equals("") || country.equals("")) {
+			problem("Airports, line " + line + ": the name and country are required.");
+			return null;
+		}
+		
+		try {
+			return new Object[] {line, name, optional(field(fields, 1).toUpperCase()), country, number(fields, 3, null),
+					number(fields, 4, null), optional(field(fields, 5)), flag(fields, 6, null)};
+		} catch (IllegalArgumentException e) {
+			problem("Airports, line " + line + ": " + e.getMessage());
+			return null;
+		}
+	}
+	
+	/**
+	 * This auxiliary method converts the fields of a route.
+	 * @param fields The fields of the record.
+	 * @param line The line of the record.
+	 * @return The line, origin, destination, distance, loads from, loads to
+	 * 		and scheduled, or null if the record is invalid.
+	 */
+	private Object[] parseRoute(String[] fields, int line) {
+		String origin = field(fields, 0);
+		String destination = field(fields, 1);
+		
+		if(origin.equals("") || destination.equals("") || origin.equals(destination)) {
+			problem("Routes, line " + line + ": two different airports are required.");
+			return null;
+		}
+		
+		try {
+			return new Object[] {line, origin, destination, number(fields, 2, 0), number(fields, 3, 0),
+					number(fields, 4, 0), flag(fields, 5, 0)};
+		} catch (IllegalArgumentException e) {
+			problem("Routes, line " + line + ": " + e.getMessage());
+			return null;
+		}
+	}
+	
+	/**
+	 * This auxiliary method records a skipped row.
+	 * @param description The reason the row has been skipped.
+	 */
+	private synchronized void problem(String description) {
+		skippedRows++;
+		
+		if(problems.size() < MAX_PROBLEMS) {
+			problems.add(description);
+		}
+	}
+	
+	/**
+	 * This auxiliary method hands a batch to the writer. It gives up if the
+	 * import gets cancelled while the queue is full.
+	 * @param batch The batch to hand over.
+	 * @return False if the import has been cancelled.
+	 */
+	private boolean put(Batch batch) {
+		try {
+			while(!cancelled) {
+				if(queue.offer(batch, 100, TimeUnit.MILLISECONDS)) return true;
+			}
+		} catch (InterruptedException e) {
+			cancelled = true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * This auxiliary method takes the next batch from the parser.
+	 * @return The batch.
+	 * @throws CancellationException If the import has been cancelled this gets thrown.
+	 */
+	private Batch take() {
+		try {
+			while(!cancelled) {
+				Batch batch = queue.poll(100, TimeUnit.MILLISECONDS);
+				if(batch != null) return batch;
+			}
+		} catch (InterruptedException e) {
+			cancelled = true;
+		}
+		
+		throw new CancellationException("The import has been cancelled.");
+	}
+	
+	/**
+	 * This is the work of the writer. It writes the batches until the parser
+	 * has finished.
+	 * @param database The database to write to.
+	 * @param total The size of the files in bytes.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	private void write(Database database, long total) throws SQLException {
+		loadIds(database);
+		
+		int rows = 0;
+		
+		while(true) {
+			Batch batch = take();
+			
+			if(batch.error != null) throw new ImportFailure(batch.error);
+			if(batch.kind == Batch.END) return;
+			
+			if(batch.kind == Batch.AIRPORTS) {
+				writeAirports(database, batch.rows);
+			} else {
+				writeRoutes(database, batch.rows);
+			}
+			
+			rows += batch.rows.size();
+			
+			if(listener != null) {
+				listener.importProgressed(bytesRead.get(), total, rows);
+			}
+		}
+	}
+	
+	/**
+	 * This auxiliary method writes a batch of airports, together with their
+	 * new countries and their links to the enterprise.
+	 * @param database The database to write to.
+	 * @param rows The airports.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	private void writeAirports(Database database, ArrayList<Object[]> rows) throws SQLException {
+		ArrayList<ArrayList<Object>> countries = new ArrayList<ArrayList<Object>>();
+		ArrayList<ArrayList<Object>> inserts = new ArrayList<ArrayList<Object>>();
+		ArrayList<ArrayList<Object>> updates = new ArrayList<ArrayList<Object>>();
+		ArrayList<ArrayList<Object>> links = new ArrayList<ArrayList<Object>>();
+		
+		for(Object[] row: rows) {
+			String name = (String) row[1];
+			String countryName = (String) row[3];
+			
+			Integer country = countryIds.get(countryName);
+			if(country == null) {
+				country = ++maxCountryId;
+				countryIds.put(countryName, country);
+				countries.add(parameters(country, countryName));
+			}
+			
+			Integer id = airportIds.get(name);
+			if(id == null) {
+				id = ++maxAirportId;
+				airportIds.put(name, id);
+				inserts.add(parameters(id, name, valueOr(row[2], ""), valueOr(row[4], 0), valueOr(row[5], 0),
+						valueOr(row[6], ""), valueOr(row[7], 1), country));
+			} else {
+				updates.add(parameters(row[2], row[4], row[5], row[6], row[7], country, id));
+			}
+			
+			link(id, links);
+			airportCount++;
+		}
+		
+		if(!countries.isEmpty()) {
+			database.executeBatch("INSERT INTO `countries` (`id`, `name`) VALUES (?, ?)", countries);
+		}
+		
+		if(!inserts.isEmpty()) {
+			database.executeBatch("INSERT INTO `airports` (`id`, `name`, `iata`, `passengers`, `cargo`, `size`, " +
+					"`transfer`, `country`) VALUES (?, ?, ?, ?, ?, ?, ?, ?)", inserts);
+		}
+		
+		if(!updates.isEmpty()) {
+			database.executeBatch("UPDATE `airports` SET `iata` = IFNULL(?, `iata`), `passengers` = IFNULL(?, `passengers`), " +
+					"`cargo` = IFNULL(?, `cargo`), `size` = IFNULL(?, `size`), `transfer` = IFNULL(?, `transfer`), " +
+					"`country` = ? WHERE `id` = ?", updates);
+		}
+		
+		writeLinks(database, links);
+	}
+	
+	/**
+	 * This auxiliary method writes the links of airports to the enterprise.
+	 * @param database The database to write to.
+	 * @param links The parameters of the links.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	private void writeLinks(Database database, ArrayList<ArrayList<Object>> links) throws SQLException {
+		if(!links.isEmpty()) {
+			database.executeBatch("INSERT OR IGNORE INTO `enterprise_has_airport` (`enterprise`, `airport`) " +
+					"VALUES (?, ?)", links);
+		}
+	}
+	
+	/**
+	 * This auxiliary method writes a batch of routes. Routes the enterprise
+	 * has already are skipped, and their airports get added to the
+	 * enterprise if they do not belong to it yet.
+	 * @param database The database to write to.
+	 * @param rows The routes.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	private void writeRoutes(Database database, ArrayList<Object[]> rows) throws SQLException {
+		ArrayList<ArrayList<Object>> inserts = new ArrayList<ArrayList<Object>>();
+		ArrayList<ArrayList<Object>> links = new ArrayList<ArrayList<Object>>();
+		
+		for(Object[] row: rows) {
+			Integer origin = airportIds.get(row[1]);
+			Integer destination = airportIds.get(row[2]);
+			
+			if(origin == null || destination == null) {
+				problem("Routes, line " + row[0] + ": the airport " + (origin == null ? row[1] : row[2]) + " does not exist.");
+				continue;
+			}
+			
+			if(!routeKeys.add(routeKey(origin, destination))) {
+				problem("Routes, line " + row[0] + ": the route exists already.");
+				continue;
+			}
+			
+			link(origin, links);
+			link(destination, links);
+			inserts.add(parameters(enterpriseId, origin, destination, row[3], row[4], row[5], row[6]));
+		}
+		
+		writeLinks(database, links);
+		
+		if(inserts.isEmpty()) return;
+		
+		database.executeBatch("INSERT INTO `routes` (`enterprise`, `origin`, `destination`, `distance`, `loadFrom`, " +
+				"`loadTo`, `scheduled`) VALUES (?, ?, ?, ?, ?, ?, ?)", inserts);
+		routeCount += inserts.size();
+	}
+	
+	/**
+	 * This auxiliary method returns a trimmed field, or an empty String if
+	 * the record is too short.
+	 */
+	private static String field(String[] fields, int index) {
+		return index < fields.length ? fields[index].trim() : "";
+	}
+	
+	/**
+	 * This auxiliary method converts a field to 1 or 0. Empty fields take
+	 * the default value.
+	 * @throws IllegalArgumentException If the field is no flag this gets thrown.
+	 */
+	private static Integer flag(String[] fields, int index, Integer defaultValue) {
+		String value = field(fields, index).toLowerCase();
+		
+		if(value.equals("")) return defaultValue;
+		if(value.equals("1") || value.equals("true") || value.equals("yes") || value.equals("x")) return 1;
+		if(value.equals("0") || value.equals("false") || value.equals("no")) return 0;
+		
+		throw new IllegalArgumentException("'" + value + "' is neither yes nor no.");
+	}
+	
+	/**
+	 * This auxiliary method checks if the first record of a file is a header.
+	 */
+	private static boolean isHeader(String[] fields, int kind) {
+		return field(fields, 0).equalsIgnoreCase(kind == Batch.AIRPORTS ? "name" : "origin");
+	}
+	
+	/**
+	 * This auxiliary method converts a field to a number. Empty fields take
+	 * the default value.
+	 * @throws IllegalArgumentException If the field is no number this gets thrown.
+	 */
+	private static Integer number(String[] fields, int index, Integer defaultValue) {
+		String value = field(fields, index);
+		
+		if(value.equals("")) return defaultValue;
+		
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("'" + value + "' is no number.");
+		}
+	}
+	
+	/**
+	 * This auxiliary method returns null for an empty field.
+	 */
+	private static String optional(String value) {
+		return value.equals("") ? null : value;
+	}
+	
+	/**
+	 * This auxiliary method creates the parameters of a query.
+	 */
+	private static ArrayList<Object> parameters(Object... values) {
+		return new ArrayList<Object>(Arrays.asList(values));
+	}
+	
+	/**
+	 * This auxiliary method combines the origin and destination of a route
+	 * into one number.
+	 */
+	private static long routeKey(int origin, int destination) {
+		return ((long) origin << 32) | (destination & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * This auxiliary method returns the value, or the default value if it
+	 * is null.
+	 */
+	private static Object valueOr(Object value, Object defaultValue) {
+		return value != null ? value : defaultValue;
+	}
+	
+	/**
+	 * A batch of rows the parser hands to the writer. The last batch is of
+	 * the kind END, and carries the error if a file could not be read.
+	 */
+	private static class Batch {
+		
+		static final int AIRPORTS = 0, ROUTES = 1, END = 2;
+		
+		private IOException error;
+		private final int kind;
+		private final ArrayList<Object[]> rows = new ArrayList<Object[]>();
+		
+		Batch(int kind) {
+			this.kind = kind;
+		}
+	}
+	
+	/**
+	 * This carries an error of the parser through the transaction, which
+	 * gets rolled back by it.
+	 */
+	private static class ImportFailure extends RuntimeException {
+		
+		private static final long serialVersionUID = 3570291854471629133L;
+		
+		private final IOException cause;
+		
+		ImportFailure(IOException cause) {
+			super(cause);
+			this.cause = cause;
+		}
+	}
+
+}
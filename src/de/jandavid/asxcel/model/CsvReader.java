@@ -0,0 +1,223 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+
+/**
+ * The CsvReader reads the records of a CSV file one by one. Fields can be
+ * quoted with double quotes, which may then contain separators, line breaks
+ * and doubled quotes. The separator is a comma or a semicolon, whichever
+ * appears more often in the first line, because spreadsheets in some
+ * languages write semicolons.
+ *
+ * @author jdno
+ */
+class CsvReader implements AutoCloseable {
+	
+	/**
+	 * The characters that have been read ahead.
+	 */
+	private char[] buffer = new char[65536];
+	
+	/**
+	 * The number of valid characters in the buffer.
+	 */
+	private int length = 0;
+	
+	/**
+	 * The line the reader is at, counted from 1.
+	 */
+	private int line = 1;
+	
+	/**
+	 * The line the last record started at.
+	 */
+	private int recordLine = 0;
+	
+	/**
+	 * The position of the next character in the buffer.
+	 */
+	private int position = 0;
+	
+	/**
+	 * The reader the characters come from.
+	 */
+	private Reader reader;
+	
+	/**
+	 * The separator of the fields, or 0 until the first line has been read.
+	 */
+	private char separator = 0;
+	
+	/**
+	 * The reader gets initialized with the source of the characters.
+	 * @param reader The source of the characters.
+	 */
+	CsvReader(Reader reader) {
+		this.reader = reader;
+	}
+	
+	/**
+	 * @see java.lang.AutoCloseable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+	
+	/**
+	 * @return the line the last record started at, counted from 1
+	 */
+	int getRecordLine() {
+		return recordLine;
+	}
+	
+	/**
+	 * This method reads the next record. Empty lines are skipped.
+	 * @return The fields of the record, or null at the end of the file.
+	 * @throws IOException If the file cannot be read this gets thrown.
+	 */
+	String[] next() throws IOException {
+		if(separator == 0) {
+			detectSeparator();
+		}
+		
+		ArrayList<String> fields = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false, wasQuoted = false;
+		recordLine = line;
+		
+		while(true) {
+			int c = read();
+			
+			if(c == -1) {
+				if(fields.isEmpty() && field.length() == 0 && !wasQuoted) return null;
+				
+				fields.add(field.toString());
+				return fields.toArray(new String[fields.size()]);
+			}
+			
+			if(quoted) {
+				if(c == '"') {
+					if(peek() == '"') {
+						read();
+						field.append('"');
+					} else {
+						quoted = false;
+					}
+				} else {
+					if(c == '\n') line++;
+					field.append((char) c);
+				}
+			} else if(c == '"' && field.length() == 0) {
+				quoted = true;
+				wasQuoted = true;
+			} else if(c == separator) {
+				fields.add(field.toString());
+				field.setLength(0);
+				wasQuoted = false;
+			} else if(c == '\r' || c == '\n') {
+				if(c == '\r' && peek() == '\n') read();
+				line++;
+				
+				if(fields.isEmpty() && field.length() == 0 && !wasQuoted) {
+					recordLine = line;
+					continue;
+				}
+				
+				fields.add(field.toString());
+				return fields.toArray(new String[fields.size()]);
+			} else {
+				field.append((char) c);
+			}
+		}
+	}
+	
+	/**
+	 * This auxiliary method chooses the separator by counting commas and
+	 * semicolons in the first line. A byte order mark gets skipped.
+	 * @throws IOException If the file cannot be read this gets thrown.
+	 */
+	private void detectSeparator() throws IOException {
+		int commas = 0, semicolons = 0;
+		
+		if(peek() == '\uFEFF') read();
+		
+		for(int i = 0; ; i++) {
+			if(position + i >= length && !fill()) break;
+			
+			char c = buffer[position + i];
+			if(c == '\n' || c == '\r') break;
+			if(c == ',') commas++;
+			if(c == ';') semicolons++;
+		}
+		
+		separator = semicolons > commas ? ';' : ',';
+	}
+	
+	/**
+	 * This auxiliary method reads more characters into the buffer, keeping
+	 * those that have not been consumed yet.
+	 * @return False if the end of the file has been reached.
+	 * @throws IOException If the file cannot be read this gets thrown.
+	 */
+	private boolean fill() throws IOException {
+		if(position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, length - position);
+			length -= position;
+			position = 0;
+		}
+		
+		if(length == buffer.length) {
+			char[] larger = new char[buffer.length * 2];
+			System.arraycopy(buffer, 0, larger, 0, length);
+			buffer = larger;
+		}
+		
+		int read = reader.read(buffer, length, buffer.length - length);
+		if(read <= 0) return false;
+		
+		length += read;
+		return true;
+	}
+	
+	/**
+	 * This auxiliary method returns the next character without consuming it.
+	 * @return The character, or -1 at the end of the file.
+	 * @throws IOException If the file cannot be read this gets thrown.
+	 */
+	private int peek() throws IOException {
+		if(position >= length && !fill()) return -1;
+		
+		return buffer[position];
+	}
+	
+	/**
+	 * This auxiliary method consumes the next character.
+	 * @return The character, or -1 at the end of the file.
+	 * @throws IOException If the file cannot be read this gets thrown.
+	 */
+	private int read() throws IOException {
+		if(position >= length && !fill()) return -1;
+		
+		return buffer[position++];
+	}
+
+}
@@ -0,0 +1,123 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The CsvWriter writes rows to a CSV file in UTF-8, separated by commas.
+ * Fields that contain a comma, a quote or a line break get quoted. Booleans
+ * are written as yes and no, so the CsvImporter can read the file again.
+ *
+ * @author jdno
+ */
+public class CsvWriter implements SpreadsheetWriter {
+	
+	/**
+	 * The writer the characters go to.
+	 */
+	private Writer writer;
+	
+	/**
+	 * The CsvWriter creates the file, or overwrites it if it exists.
+	 * @param file The file to write to.
+	 * @throws IOException If the file cannot be created this gets thrown.
+	 */
+	public CsvWriter(File file) throws IOException {
+		this(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * The CsvWriter can also write to any writer, which it closes at the end.
+	 * @param writer The writer to write to.
+	 */
+	public CsvWriter(Writer writer) {
+		this.writer = new BufferedWriter(writer, 65536);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.jandavid.asxcel.model.SpreadsheetWriter#writeRow(java.lang.Object[])
+	 */
+	@Override
+	public void writeRow(Object[] cells) throws IOException {
+		for(int i = 0; i < cells.length; i++) {
+			if(i > 0) {
+				writer.write(',');
+			}
+			
+			Object cell = cells[i];
+			
+			if(cell instanceof Boolean) {
+				writer.write((Boolean) cell ? "yes" : "no");
+			} else if(cell instanceof String) {
+				writeText((String) cell);
+			} else if(cell != null) {
+				writer.write(cell.toString());
+			}
+		}
+		
+		writer.write("\r\n");
+	}
+
+	/* (non-Javadoc)
+	 * @see de.jandavid.asxcel.model.SpreadsheetWriter#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+	
+	/**
+	 * This auxiliary method writes a text, and quotes it if necessary.
+	 * @param text The text to write.
+	 * @throws IOException If the text cannot be written this gets thrown.
+	 */
+	private void writeText(String text) throws IOException {
+		boolean quote = false;
+		
+		for(int i = 0; i < text.length() && !quote; i++) {
+			char c = text.charAt(i);
+			quote = c == ',' || c == ';' || c == '"' || c == '\n' || c == '\r';
+		}
+		
+		if(!quote) {
+			writer.write(text);
+			return;
+		}
+		
+		writer.write('"');
+		
+		for(int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			
+			if(c == '"') {
+				writer.write('"');
+			}
+			
+			writer.write(c);
+		}
+		
+		writer.write('"');
+	}
+
+}
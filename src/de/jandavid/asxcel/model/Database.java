@@ -19,20 +19,42 @@ package de.jandavid.asxcel.model;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class opens the connection to the database, creates a statement that
  * will be used by the modules to interact with the database, and closes
  * everything when the applications terminates.
  * 
+ * All changes get written through a single writer connection. Queries are
+ * served by a small pool of read-only connections, so that they can run while
+ * the writer is busy. Every method that accesses the writer holds the lock of
+ * the Database, and a transaction holds it until it has been committed or
+ * rolled back. Queries of a thread that holds the lock use the writer as well,
+ * so they see the changes of the running transaction.
+ * 
+ * Every method that executes statements has an asynchronous companion, which
+ * returns a CompletableFuture. Asynchronous updates run one after another on
+ * a single thread, so they reach the writer in the order they were made.
+ * Asynchronous queries run on a bounded pool with one thread per reader. If
+ * the JDK supports virtual threads, they get used for both.
+ * 
  * @author jdno
  */
 public class Database {
 	
 	/**
-	 * The connection to the database
+	 * The connection all changes get written through
 	 */
 	private Connection connection;
 	
@@ -42,58 +64,257 @@ public class Database {
 	private String fileName;
 	
 	/**
-	 * The database gets openend and a statement is created which can be
-	 * used to interact with it.
+	 * The future of the asynchronous task the current thread is executing
+	 */
+	private final ThreadLocal<DatabaseFuture<?>> currentFuture = new ThreadLocal<DatabaseFuture<?>>();
+	
+	/**
+	 * The PerformanceProfile that is applied to the connection
+	 */
+	private PerformanceProfile profile;
+	
+	/**
+	 * The read-only connections queries are executed on
+	 */
+	private ReaderPool readers;
+	
+	/**
+	 * The number of read-only connections that get opened
+	 */
+	private int readerPoolSize = 2;
+	
+	/**
+	 * This lock guards the creation of the executors, so that an asynchronous
+	 * call does not have to wait for a running transaction.
+	 */
+	private final Object executorLock = new Object();
+	
+	/**
+	 * The executor of asynchronous queries, created on first use
+	 */
+	private ExecutorService readExecutor;
+	
+	/**
+	 * The executor of asynchronous updates, created on first use
+	 */
+	private ExecutorService writeExecutor;
+	
+	/**
+	 * The PreparedStatements that have been used on the connection
+	 */
+	private StatementCache statementCache;
+	
+	/**
+	 * The number of PreparedStatements that are kept in the cache
+	 */
+	private int statementCacheSize = 64;
+	
+	/**
+	 * The database gets openend with the profile FAST_INTERACTIVE and a statement
+	 * is created which can be used to interact with it.
 	 * @throws ClassNotFoundException If the driver cannot be found this
 	 * 		exception gets thrown.
 	 * @throws SQLException If the statement cannot be created this
 	 * 		exception gets thrown.
 	 */
 	public Database(String name) throws ClassNotFoundException, SQLException {
+		this(name, PerformanceProfile.FAST_INTERACTIVE);
+	}
+	
+	/**
+	 * The database gets openend with the given profile and a statement is created
+	 * which can be used to interact with it.
+	 * @param name The name of the database file
+	 * @param profile The PerformanceProfile to apply to the connection
+	 * @throws ClassNotFoundException If the driver cannot be found this
+	 * 		exception gets thrown.
+	 * @throws SQLException If the statement cannot be created this
+	 * 		exception gets thrown.
+	 */
+	public Database(String name, PerformanceProfile profile) throws ClassNotFoundException, SQLException {
 		Class.forName("org.sqlite.JDBC");
 		fileName = name;
 		connection = DriverManager.getConnection("jdbc:sqlite:" + name);
+		statementCache = new StatementCache(connection, statementCacheSize);
+		applyProfile(profile);
+		
+		try {
+			readers = new ReaderPool(name, readerPoolSize, statementCacheSize, profile);
+		} catch (SQLException e) {
+			closeConnection();
+			throw e;
+		}
+	}
+	
+	/**
+	 * This method applies a PerformanceProfile to the connection. Because the
+	 * journal mode and the synchronous setting cannot be changed inside a
+	 * transaction, this must not be called from a Transaction. SQLite does not
+	 * report an error if it cannot switch the journal mode, e.g. because other
+	 * connections are open, so the mode it returns gets checked.
+	 * @param profile The profile to apply
+	 * @throws SQLException If a SQL error occurs or the journal mode cannot be
+	 * 		changed this gets thrown.
+	 */
+	public synchronized void applyProfile(PerformanceProfile profile) throws SQLException {
+		if(!connection.getAutoCommit()) {
+			throw new SQLException("The performance profile cannot be changed inside a transaction.");
+		}
+		
+		Statement statement = connection.createStatement();
+		
+		try {
+			String[] pragmas = profile.getPragmas();
+			ResultSet rs = statement.executeQuery(pragmas[0]);
+			
+			try {
+				String mode = rs.next() ? rs.getString(1) : null;
+				
+				if(!profile.getJournalMode().equalsIgnoreCase(mode)) {
+					throw new SQLException("The journal mode cannot be changed to " +
+							profile.getJournalMode() + ", it is still " + mode + ".");
+				}
+			} finally {
+				rs.close();
+			}
+			
+			for(int i = 1; i < pragmas.length; i++) {
+				statement.execute(pragmas[i]);
+			}
+		} finally {
+			statement.close();
+		}
+		
+		this.profile = profile;
+		
+		if(readers != null) {
+			readers.applyProfile(profile);
+		}
+	}
+	
+	/**
+	 * This method copies the database to another file with SQLite's online backup.
+	 * The copy is taken on a reader, so writes can continue meanwhile, and contains
+	 * everything that has been committed when it starts.
+	 * @param fileName The name of the file to write the copy to
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public void backupTo(String fileName) throws SQLException {
+		StatementCache reader = acquireReader();
+		
+		if(reader == null) {
+			synchronized(this) {
+				backupTo(connection, fileName);
+			}
+			return;
+		}
+		
+		try {
+			backupTo(reader.getConnection(), fileName);
+		} finally {
+			readers.release(reader);
+		}
+	}
+	
+	/**
+	 * This method writes all changes that are in the write-ahead log to the database
+	 * file itself. After this the file can be copied safely. If the journal mode is
+	 * not WAL nothing happens.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public synchronized void checkpoint() throws SQLException {
+		Statement statement = connection.createStatement();
+		
+		try {
+			statement.execute("PRAGMA wal_checkpoint");
+		} finally {
+			statement.close();
+		}
 	}
 	
 	/**
-	 * This method creates a PreparedStatement, executes it and returns the
-	 * result in form of a DatabaseResult.
+	 * This method executes a query on an idle reader, or on the writer if no reader
+	 * is available, and returns the result in form of a DatabaseResult.
 	 * @param query The query to execute
 	 * @return The result as a DatabaseResult
 	 * @throws SQLException If an SQL error occurs this gets thrown.
 	 */
 	public DatabaseResult executeQuery(String query) throws SQLException {
-		PreparedStatement ps = this.connection.prepareStatement(query);
-		
-		DatabaseResult dr = new DatabaseResult(ps.executeQuery());
-		
-		ps.close();
-		
-		return dr;
+		return executeQuery(query, new ArrayList<Object>(0));
 	}
 	
 	/**
-	 * This method creates a PreparedStatement, fills it with the given parameters, executes
-	 * it and returns the result in form of a DatabaseResult.
+	 * This method takes a PreparedStatement from the cache of an idle reader, fills
+	 * it with the given parameters, executes it and returns the result in form of a
+	 * DatabaseResult. If no reader is available, or the current thread is inside a
+	 * transaction, the writer is used.
 	 * @param query The query to execute
 	 * @param parameters The parameters to use
 	 * @return The result as a DatabaseResult
 	 * @throws SQLException If an SQL error occurs this gets thrown.
 	 */
 	public DatabaseResult executeQuery(String query, ArrayList<Object> parameters) throws SQLException {
-		PreparedStatement ps = this.connection.prepareStatement(query);
+		StatementCache reader = acquireReader();
 		
-		for(int i = 1; i <= parameters.size(); i++) {
-			ps.setObject(i, parameters.get(i - 1));
+		if(reader == null) {
+			synchronized(this) {
+				return executeQuery(statementCache, query, parameters);
+			}
 		}
 		
-		DatabaseResult dr = new DatabaseResult(ps.executeQuery());
+		try {
+			return executeQuery(reader, query, parameters);
+		} finally {
+			readers.release(reader);
+		}
+	}
+	
+	/**
+	 * This method executes a query and returns a DatabaseCursor that streams the rows
+	 * from the database instead of copying them into memory.
+	 * @param query The query to execute
+	 * @return The result as a DatabaseCursor
+	 * @throws SQLException If an SQL error occurs this gets thrown.
+	 */
+	public DatabaseCursor openCursor(String query) throws SQLException {
+		return openCursor(query, new ArrayList<Object>(0));
+	}
+
+	/**
+	 * This method creates a PreparedStatement, fills it with the given parameters and
+	 * executes it. The rows get streamed through the returned DatabaseCursor, which
+	 * owns the statement and releases it once the last row has been read. Because of
+	 * this the statement does not come from the cache. The cursor keeps its reader
+	 * until it gets closed. If all readers are in use, the busy timeout of the
+	 * profile is waited for one to be given back. A cursor must never stay open on
+	 * the writer after its lock has been left, so if the thread holds the lock or no
+	 * reader becomes free, the rows get read into memory while the lock is held.
+	 * @param query The query to execute
+	 * @param parameters The parameters to use
+	 * @return The result as a DatabaseCursor
+	 * @throws SQLException If an SQL error occurs this gets thrown.
+	 */
+	public DatabaseCursor openCursor(String query, ArrayList<Object> parameters) throws SQLException {
+		StatementCache reader = acquireReader();
+		
+		if(reader == null && readers != null && !Thread.holdsLock(this)) {
+			reader = readers.acquire(profile.getBusyTimeout());
+		}
 		
-		ps.close();
+		if(reader == null) {
+			synchronized(this) {
+				return new DatabaseCursor(executeQuery(statementCache, query, parameters));
+			}
+		}
 		
-		return dr;
+		try {
+			return openCursor(reader.getConnection(), readers, reader, query, parameters);
+		} catch (SQLException e) {
+			readers.release(reader);
+			throw e;
+		}
 	}
-	
+
 	/**
 	 * This method executes a update query without parameters, and returns the result
 	 * of the PreparedStatement's executeUpdate method.
@@ -103,49 +324,451 @@ public class Database {
 	 * @throws SQLException If an SQL error occurs this gets thrown.
 	 */
 	public int executeUpdate(String query) throws SQLException {
-		PreparedStatement ps = this.connection.prepareStatement(query);
-		
-		int result = ps.executeUpdate();
-		
-		ps.close();
-		
-		return result;
+		return executeUpdate(query, new ArrayList<Object>(0));
 	}
 	
 	/**
-	 * This method creates a PreparedStatement, fills it with the given parameters, executes
-	 * it and returns the result of the executeUpdate method.
+	 * This method takes a PreparedStatement from the cache, fills it with the given
+	 * parameters, executes it and returns the result of the executeUpdate method.
 	 * @param query The query to execute
 	 * @param parameters The parameters to use
 	 * @return either (1) the row count for SQL Data Manipulation Language (DML) statements or 
 	 * 		(2) 0 for SQL statements that return nothing
 	 * @throws SQLException If an SQL error occurs this gets thrown.
 	 */
-	public int executeUpdate(String query, ArrayList<Object> parameters) throws SQLException {
-		PreparedStatement ps = this.connection.prepareStatement(query);
+	public synchronized int executeUpdate(String query, ArrayList<Object> parameters) throws SQLException {
+		PreparedStatement ps = prepare(statementCache, query, parameters);
+		beginStatement(ps);
 		
-		for(int i = 1; i <= parameters.size(); i++) {
-			ps.setObject(i, parameters.get(i - 1));
+		try {
+			return ps.executeUpdate();
+		} catch (SQLException e) {
+			statementCache.evict(query);
+			throw e;
+		} finally {
+			endStatement();
+		}
+	}
+
+	/**
+	 * This method executes a query in the background.
+	 * @param query The query to execute
+	 * @return The future result as a DatabaseResult
+	 */
+	public CompletableFuture<DatabaseResult> queryAsync(String query) {
+		return queryAsync(query, new ArrayList<Object>(0));
+	}
+	
+	/**
+	 * This method executes a query with the given parameters in the background.
+	 * Like executeQuery it runs on a reader if one is idle.
+	 * @param query The query to execute
+	 * @param parameters The parameters to use
+	 * @return The future result as a DatabaseResult
+	 */
+	public CompletableFuture<DatabaseResult> queryAsync(final String query, final ArrayList<Object> parameters) {
+		return submit(getReadExecutor(), new Callable<DatabaseResult>() {
+			@Override
+			public DatabaseResult call() throws SQLException {
+				return executeQuery(query, parameters);
+			}
+		});
+	}
+	
+	/**
+	 * This method runs a task that only reads from the database in the
+	 * background, on the same threads as the asynchronous queries.
+	 * @param task The task to run
+	 * @return The future result of the task
+	 */
+	<T> CompletableFuture<T> readAsync(Callable<T> task) {
+		return submit(getReadExecutor(), task);
+	}
+	
+	/**
+	 * This method executes an update query in the background.
+	 * @param query The query to execute
+	 * @return The future row count
+	 */
+	public CompletableFuture<Integer> updateAsync(String query) {
+		return updateAsync(query, new ArrayList<Object>(0));
+	}
+	
+	/**
+	 * This method executes an update query with the given parameters in the
+	 * background. Updates get executed in the order this method is called.
+	 * @param query The query to execute
+	 * @param parameters The parameters to use
+	 * @return The future row count
+	 */
+	public CompletableFuture<Integer> updateAsync(final String query, final ArrayList<Object> parameters) {
+		return submit(getWriteExecutor(), new Callable<Integer>() {
+			@Override
+			public Integer call() throws SQLException {
+				return executeUpdate(query, parameters);
+			}
+		});
+	}
+	
+	/**
+	 * This method executes a transaction in the background. It is ordered with
+	 * the asynchronous updates.
+	 * @param transaction The transaction to execute
+	 * @return A future that completes once the transaction has been committed
+	 */
+	public CompletableFuture<Void> transactionAsync(final Transaction transaction) {
+		return submit(getWriteExecutor(), new Callable<Void>() {
+			@Override
+			public Void call() throws SQLException {
+				inTransaction(transaction);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * This method executes the same update query once for every row of parameters.
+	 * All rows are sent as one batch and get written in one transaction, so either
+	 * all of them are written or none. A statement that has been used for a batch
+	 * cannot be executed normally anymore, which is why it does not come from the
+	 * cache.
+	 * @param query The query to execute
+	 * @param parameterRows The parameters to use, one list per execution
+	 * @return The row counts of the executions
+	 * @throws SQLException If an SQL error occurs this gets thrown.
+	 */
+	public synchronized int[] executeBatch(final String query, final ArrayList<ArrayList<Object>> parameterRows) throws SQLException {
+		final int[][] result = new int[1][];
+		
+		inTransaction(new Transaction() {
+			@Override
+			public void execute(Database database) throws SQLException {
+				PreparedStatement ps = connection.prepareStatement(query);
+				
+				try {
+					for(ArrayList<Object> parameters: parameterRows) {
+						for(int i = 1; i <= parameters.size(); i++) {
+							ps.setObject(i, parameters.get(i - 1));
+						}
+						ps.addBatch();
+					}
+					
+					beginStatement(ps);
+					result[0] = ps.executeBatch();
+				} finally {
+					endStatement();
+					ps.close();
+				}
+			}
+		});
+		
+		return result[0];
+	}
+	
+	/**
+	 * This method executes a transaction. All statements it executes get committed
+	 * together at its end, or rolled back if it fails. If a transaction is already
+	 * running the statements simply become part of it.
+	 * @param transaction The transaction to execute
+	 * @throws SQLException If an SQL error occurs this gets thrown.
+	 */
+	public synchronized void inTransaction(Transaction transaction) throws SQLException {
+		if(!connection.getAutoCommit()) {
+			transaction.execute(this);
+			return;
 		}
 		
-		int result = ps.executeUpdate();
+		connection.setAutoCommit(false);
 		
-		ps.close();
+		try {
+			transaction.execute(this);
+			connection.commit();
+		} catch (SQLException e) {
+			connection.rollback();
+			throw e;
+		} catch (RuntimeException e) {
+			connection.rollback();
+			throw e;
+		} finally {
+			connection.setAutoCommit(true);
+		}
+	}
+
+	/**
+	 * This method executes a task with another PerformanceProfile, and restores the
+	 * current profile afterwards, even if the task fails. Unlike inTransaction the
+	 * task is not wrapped into a transaction, so it can manage its own.
+	 * @param profile The profile to apply while the task runs
+	 * @param task The task to execute
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public synchronized void runWithProfile(PerformanceProfile profile, Transaction task) throws SQLException {
+		PerformanceProfile previous = this.profile;
+		
+		if(previous == profile) {
+			task.execute(this);
+			return;
+		}
+		
+		applyProfile(profile);
 		
-		return result;
+		try {
+			task.execute(this);
+		} finally {
+			applyProfile(previous);
+		}
 	}
 
 	/**
-	 * Close the connection to the database.
+	 * Close the connection to the database. All cached statements get
+	 * closed before.
 	 * @throws SQLException If the statement or connection cannot be closed
 	 * 		this gets thrown.
 	 */
-	public void closeConnection() throws SQLException {
+	public synchronized void closeConnection() throws SQLException {
+		synchronized(executorLock) {
+			if(readExecutor != null) {
+				readExecutor.shutdown();
+			}
+			
+			if(writeExecutor != null) {
+				writeExecutor.shutdown();
+			}
+		}
+		
+		if(readers != null) {
+			readers.close();
+		}
+		
+		statementCache.clear();
 		connection.close();
 	}
 	
 	/**
-	 * @return the connection
+	 * This auxiliary method copies the database with the given connection.
+	 * @param conn The connection to use
+	 * @param fileName The name of the file to write the copy to
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	private static void backupTo(Connection conn, String fileName) throws SQLException {
+		Statement statement = conn.createStatement();
+		
+		try {
+			statement.executeUpdate("backup to '" + fileName.replace("'", "''") + "'");
+		} finally {
+			statement.close();
+		}
+	}
+	
+	/**
+	 * This auxiliary method creates a factory for the threads of the executors.
+	 * Virtual threads are used if the JDK supports them, which is checked by
+	 * reflection so the application still runs on older JREs.
+	 * @param name The prefix of the threads' names
+	 * @return The factory
+	 */
+	static ThreadFactory createThreadFactory(final String name) {
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + " ", 1L);
+			
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		} catch (Exception e) {
+			final AtomicInteger counter = new AtomicInteger(1);
+			
+			return new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, name + " " + counter.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				}
+			};
+		}
+	}
+	
+	/**
+	 * This auxiliary method tells the future of the task the current thread
+	 * executes, if any, which statement is running.
+	 * @param statement The statement that is about to be executed
+	 * @throws SQLException If the task has been cancelled this gets thrown.
+	 */
+	private void beginStatement(Statement statement) throws SQLException {
+		DatabaseFuture<?> future = currentFuture.get();
+		
+		if(future != null) {
+			future.setStatement(statement);
+		}
+	}
+	
+	/**
+	 * This auxiliary method tells the future of the task the current thread
+	 * executes, if any, that its statement has finished.
+	 */
+	private void endStatement() {
+		DatabaseFuture<?> future = currentFuture.get();
+		
+		if(future != null) {
+			try {
+				future.setStatement(null);
+			} catch (SQLException e) {
+				// Only thrown when a statement gets set.
+			}
+		}
+	}
+	
+	/**
+	 * @return the executor of asynchronous queries
+	 */
+	private ExecutorService getReadExecutor() {
+		synchronized(executorLock) {
+			if(readExecutor == null) {
+				readExecutor = Executors.newFixedThreadPool(readerPoolSize, createThreadFactory("ASxcel query"));
+			}
+			
+			return readExecutor;
+		}
+	}
+	
+	/**
+	 * @return the executor of asynchronous updates
+	 */
+	private ExecutorService getWriteExecutor() {
+		synchronized(executorLock) {
+			if(writeExecutor == null) {
+				writeExecutor = Executors.newSingleThreadExecutor(createThreadFactory("ASxcel update"));
+			}
+			
+			return writeExecutor;
+		}
+	}
+	
+	/**
+	 * This auxiliary method runs a task on an executor. The task does not start
+	 * if its future has been cancelled before.
+	 * @param executor The executor to run the task on
+	 * @param task The task to run
+	 * @return The future of the task
+	 */
+	private <T> CompletableFuture<T> submit(ExecutorService executor, final Callable<T> task) {
+		final DatabaseFuture<T> future = new DatabaseFuture<T>();
+		
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					if(future.isDone()) {
+						return;
+					}
+					
+					currentFuture.set(future);
+					
+					try {
+						future.complete(task.call());
+					} catch (Exception e) {
+						future.completeExceptionally(e);
+					} finally {
+						currentFuture.remove();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+		}
+		
+		return future;
+	}
+	
+	/**
+	 * This auxiliary method takes an idle reader from the pool. A thread that
+	 * holds the lock of the Database gets no reader, because it has to see the
+	 * changes it has not committed yet.
+	 * @return The reader, or null if the writer has to be used
+	 * @throws SQLException If the reader cannot be prepared this gets thrown.
+	 */
+	private StatementCache acquireReader() throws SQLException {
+		if(readers == null || Thread.holdsLock(this)) {
+			return null;
+		}
+		
+		return readers.acquire();
+	}
+	
+	/**
+	 * This auxiliary method executes a query with a statement from the given
+	 * cache.
+	 * @param cache The cache of the connection to use
+	 * @param query The query to execute
+	 * @param parameters The parameters to use
+	 * @return The result as a DatabaseResult
+	 * @throws SQLException If an SQL error occurs this gets thrown.
+	 */
+	private DatabaseResult executeQuery(StatementCache cache, String query, ArrayList<Object> parameters) throws SQLException {
+		PreparedStatement ps = prepare(cache, query, parameters);
+		beginStatement(ps);
+		
+		try {
+			ResultSet rs = ps.executeQuery();
+			DatabaseResult dr = new DatabaseResult(rs);
+			rs.close();
+			
+			return dr;
+		} catch (SQLException e) {
+			cache.evict(query);
+			throw e;
+		} finally {
+			endStatement();
+		}
+	}
+	
+	/**
+	 * This auxiliary method opens a cursor on the given connection.
+	 * @param conn The connection to use
+	 * @param pool The pool the reader belongs to, or null for the writer
+	 * @param reader The reader that has been taken from the pool, or null
+	 * @param query The query to execute
+	 * @param parameters The parameters to use
+	 * @return The result as a DatabaseCursor
+	 * @throws SQLException If an SQL error occurs this gets thrown.
+	 */
+	private DatabaseCursor openCursor(Connection conn, ReaderPool pool, StatementCache reader,
+			String query, ArrayList<Object> parameters) throws SQLException {
+		PreparedStatement ps = conn.prepareStatement(query);
+
+		try {
+			for(int i = 1; i <= parameters.size(); i++) {
+				ps.setObject(i, parameters.get(i - 1));
+			}
+
+			return new DatabaseCursor(ps, ps.executeQuery(), pool, reader);
+		} catch (SQLException e) {
+			ps.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * This auxiliary method gets a PreparedStatement for the query from the
+	 * cache and fills it with the given parameters.
+	 * @param cache The cache to take the statement from
+	 * @param query The query to prepare
+	 * @param parameters The parameters to use
+	 * @return The statement, ready to be executed
+	 * @throws SQLException If an SQL error occurs this gets thrown.
+	 */
+	private PreparedStatement prepare(StatementCache cache, String query, ArrayList<Object> parameters) throws SQLException {
+		PreparedStatement ps = cache.get(query);
+		
+		for(int i = 1; i <= parameters.size(); i++) {
+			ps.setObject(i, parameters.get(i - 1));
+		}
+		
+		return ps;
+	}
+	
+	/**
+	 * @return the writer connection
 	 */
 	public Connection getConnection() {
 		return connection;
@@ -158,4 +781,39 @@ public class Database {
 		return fileName;
 	}
 
+	/**
+	 * @return the profile
+	 */
+	public PerformanceProfile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * @return the number of queries that could reuse a cached statement
+	 */
+	public long getStatementCacheHits() {
+		return statementCache.getHits() + (readers != null ? readers.getHits() : 0);
+	}
+
+	/**
+	 * @return the number of queries that needed a new statement
+	 */
+	public long getStatementCacheMisses() {
+		return statementCache.getMisses() + (readers != null ? readers.getMisses() : 0);
+	}
+
+	/**
+	 * @return the readerPoolSize
+	 */
+	public int getReaderPoolSize() {
+		return readerPoolSize;
+	}
+
+	/**
+	 * @return the statementCacheSize
+	 */
+	public int getStatementCacheSize() {
+		return statementCacheSize;
+	}
+
 }
@@ -0,0 +1,344 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * This class is the streaming counterpart to a DatabaseResult. Instead of
+ * copying all rows into memory it reads them one by one from the live
+ * ResultSet, and can therefore only move forward. As soon as the last row
+ * has been read the ResultSet and its statement get released. A cursor that
+ * does not get read to its end has to be closed by the caller. If the rows
+ * cannot be streamed, the cursor can also be built from a DatabaseResult
+ * that already holds all of them.
+ * 
+ * Integers and booleans are read directly from the ResultSet, so they never
+ * have to be parsed from a String.
+ *
+ * @author jdno
+ */
+public class DatabaseCursor implements AutoCloseable {
+
+	/**
+	 * This list contains the columns' names
+	 */
+	private ArrayList<String> columnNames = new ArrayList<String>();
+
+	/**
+	 * This maps the columns' names to their indexes
+	 */
+	private HashMap<String, Integer> columnIndexes = new HashMap<String, Integer>();
+
+	/**
+	 * This indicates if the cursor points to a valid row
+	 */
+	private boolean onRow = false;
+
+	/**
+	 * The pool the reader belongs to, or null if the writer is used
+	 */
+	private ReaderPool pool;
+	
+	/**
+	 * The reader the cursor has been opened on, or null if the writer is used
+	 */
+	private StatementCache reader;
+
+	/**
+	 * The rows that have been read into memory, or null if they are streamed
+	 */
+	private DatabaseResult result;
+
+	/**
+	 * The ResultSet the rows are read from, or null once it is released
+	 */
+	private ResultSet resultSet;
+
+	/**
+	 * The statement that created the ResultSet
+	 */
+	private PreparedStatement statement;
+
+	/**
+	 * A DatabaseCursor is built from an executed statement. The statement
+	 * belongs to the cursor from now on and gets closed together with it.
+	 * @param statement The statement that has been executed
+	 * @param rs The ResultSet the statement returned
+	 * @throws SQLException If the ResultSet cannot be processed correctly this
+	 * 		exception gets thrown.
+	 */
+	protected DatabaseCursor(PreparedStatement statement, ResultSet rs) throws SQLException {
+		this(statement, rs, null, null);
+	}
+
+	/**
+	 * A DatabaseCursor is built from an executed statement of a reader. The reader
+	 * gets given back to its pool when the cursor gets closed.
+	 * @param statement The statement that has been executed
+	 * @param rs The ResultSet the statement returned
+	 * @param pool The pool the reader belongs to, or null
+	 * @param reader The reader the statement belongs to, or null
+	 * @throws SQLException If the ResultSet cannot be processed correctly this
+	 * 		exception gets thrown.
+	 */
+	DatabaseCursor(PreparedStatement statement, ResultSet rs, ReaderPool pool, StatementCache reader) throws SQLException {
+		this.pool = pool;
+		this.reader = reader;
+		this.statement = statement;
+		this.resultSet = rs;
+
+		ResultSetMetaData rsmd = rs.getMetaData();
+
+		for(int i = 0; i < rsmd.getColumnCount(); i++) {
+			String name = rsmd.getColumnName(i + 1);
+
+			columnNames.add(name);
+			if(!columnIndexes.containsKey(name)) {
+				columnIndexes.put(name, i);
+			}
+		}
+	}
+
+	/**
+	 * A DatabaseCursor can also be built from the rows of a DatabaseResult.
+	 * This is used if the query has to run on the writer, which must not keep
+	 * a statement open.
+	 * @param result The rows to read
+	 */
+	DatabaseCursor(DatabaseResult result) {
+		this.result = result;
+
+		for(int i = 0; i < result.getColumnCount(); i++) {
+			String name = result.getColumnName(i);
+
+			columnNames.add(name);
+			if(!columnIndexes.containsKey(name)) {
+				columnIndexes.put(name, i);
+			}
+		}
+	}
+
+	/**
+	 * Release the ResultSet and the statement, and give the reader back to its
+	 * pool. Calling this method more than once has no effect.
+	 * @throws SQLException If the ResultSet or statement cannot be closed this
+	 * 		gets thrown.
+	 */
+	@Override
+	public void close() throws SQLException {
+		onRow = false;
+		result = null;
+
+		if(resultSet != null) {
+			resultSet = null;
+			
+			try {
+				statement.close();
+			} finally {
+				if(pool != null) {
+					pool.release(reader);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the column count.
+	 * @return The column count
+	 */
+	public int getColumnCount() {
+		return columnNames.size();
+	}
+
+	/**
+	 * Get the name of a specific column.
+	 * @param column The index of the column
+	 * @return The name of the column
+	 */
+	public String getColumnName(int column) {
+		return columnNames.get(column);
+	}
+
+	/**
+	 * Get the content of a cell as a boolean. Integers are true if they
+	 * are not 0, like SQLite treats them.
+	 * @param column The column in the current row
+	 * @return The content as a boolean
+	 * @throws SQLException If the cell cannot be read this gets thrown.
+	 */
+	public boolean getBoolean(int column) throws SQLException {
+		if(!isValid(column)) {
+			return false;
+		}
+
+		return result != null ? result.getBoolean(column) : resultSet.getBoolean(column + 1);
+	}
+
+	/**
+	 * Get the content of a cell as an Integer.
+	 * @param column The column in the current row
+	 * @return The content as an Integer, or 0 if the cell is NULL
+	 * @throws SQLException If the cell cannot be read this gets thrown.
+	 */
+	public int getInt(int column) throws SQLException {
+		if(!isValid(column)) {
+			return 0;
+		}
+
+		if(result != null) {
+			return result.isNull(column) ? 0 : result.getInt(column);
+		}
+
+		return resultSet.getInt(column + 1);
+	}
+
+	/**
+	 * Get the content of a cell by the column's name as an Integer.
+	 * @param columnName The name of the column
+	 * @return The content as an Integer, or 0 if the cell is NULL
+	 * @throws SQLException If the cell cannot be read this gets thrown.
+	 */
+	public int getInt(String columnName) throws SQLException {
+		return getInt(columnByName(columnName));
+	}
+
+	/**
+	 * Get the content of a cell as a Long.
+	 * @param column The column in the current row
+	 * @return The content as a Long, or 0 if the cell is NULL
+	 * @throws SQLException If the cell cannot be read this gets thrown.
+	 */
+	public long getLong(int column) throws SQLException {
+		if(!isValid(column)) {
+			return 0;
+		}
+
+		if(result != null) {
+			return result.isNull(column) ? 0 : result.getLong(column);
+		}
+
+		return resultSet.getLong(column + 1);
+	}
+
+	/**
+	 * Get the content of a cell as a String.
+	 * @param column The column in the current row
+	 * @return The content as a String
+	 * @throws SQLException If the cell cannot be read this gets thrown.
+	 */
+	public String getString(int column) throws SQLException {
+		if(!isValid(column)) {
+			return null;
+		}
+
+		return result != null ? result.getString(column) : resultSet.getString(column + 1);
+	}
+
+	/**
+	 * Get the content of a cell by the column's name.
+	 * @param columnName The name of the column
+	 * @return The content of the column with the given name, or null
+	 * 		if no such column name exists
+	 * @throws SQLException If the cell cannot be read this gets thrown.
+	 */
+	public String getString(String columnName) throws SQLException {
+		return getString(columnByName(columnName));
+	}
+
+	/**
+	 * Check if a cell is NULL.
+	 * @param column The column in the current row
+	 * @return True if the cell is NULL, false otherwise
+	 * @throws SQLException If the cell cannot be read this gets thrown.
+	 */
+	public boolean isNull(int column) throws SQLException {
+		if(!isValid(column)) {
+			return true;
+		}
+
+		if(result != null) {
+			return result.isNull(column);
+		}
+
+		resultSet.getObject(column + 1);
+		return resultSet.wasNull();
+	}
+
+	/**
+	 * @return True if the rows have not been released yet
+	 */
+	public boolean isOpen() {
+		return resultSet != null || result != null;
+	}
+
+	/**
+	 * This method moves the cursor one row ahead and returns true if this
+	 * is possible. If no next row exists the cursor gets closed and false
+	 * is returned.
+	 * @return True if a next element exists, false otherwise
+	 * @throws SQLException If the next row cannot be read this gets thrown.
+	 */
+	public boolean next() throws SQLException {
+		if(result != null) {
+			onRow = result.next();
+		} else if(resultSet != null) {
+			try {
+				onRow = resultSet.next();
+			} catch (SQLException e) {
+				close();
+				throw e;
+			}
+		} else {
+			return false;
+		}
+
+		if(!onRow) {
+			close();
+		}
+
+		return onRow;
+	}
+
+	/**
+	 * Get the index of a column by its name.
+	 * @param columnName The name of the column
+	 * @return The index of the column or -1 if no colum with the given name
+	 * 		exits.
+	 */
+	private int columnByName(String columnName) {
+		Integer column = columnIndexes.get(columnName);
+
+		return column != null ? column : -1;
+	}
+
+	/**
+	 * This auxiliary method checks if the cursor is on a row and the
+	 * column exists.
+	 * @param column The index of the column
+	 * @return True if the cell can be read, false otherwise
+	 */
+	private boolean isValid(int column) {
+		return onRow && column > -1 && column < getColumnCount();
+	}
+
+}
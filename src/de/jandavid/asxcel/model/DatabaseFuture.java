@@ -0,0 +1,76 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A DatabaseFuture is the result of an asynchronous call to the Database.
+ * Cancelling it before its task has started keeps the task from running.
+ * If the task is already running, the statement it executes right now gets
+ * interrupted by SQLite.
+ *
+ * @author jdno
+ */
+class DatabaseFuture<T> extends CompletableFuture<T> {
+
+	/**
+	 * The statement that is executed right now, or null
+	 */
+	private Statement statement;
+	
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.CompletableFuture#cancel(boolean)
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		boolean cancelled = super.cancel(mayInterruptIfRunning);
+		
+		if(cancelled) {
+			synchronized(this) {
+				if(statement != null) {
+					try {
+						statement.cancel();
+					} catch (SQLException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+		
+		return cancelled;
+	}
+	
+	/**
+	 * This method gets called by the Database before and after it executes a
+	 * statement for the task of this future.
+	 * @param statement The statement that is about to be executed, or null
+	 * 		once it has finished
+	 * @throws SQLException If the future has been cancelled this gets thrown,
+	 * 		so the statement does not get executed anymore.
+	 */
+	synchronized void setStatement(Statement statement) throws SQLException {
+		if(statement != null && isCancelled()) {
+			throw new SQLException("The statement has been cancelled.");
+		}
+		
+		this.statement = statement;
+	}
+
+}
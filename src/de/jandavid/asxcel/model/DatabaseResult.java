@@ -19,8 +19,11 @@ package de.jandavid.asxcel.model;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 
 /**
  * This class is the equivalent to a ResultSet. It exists to solve the issue 
@@ -28,6 +31,13 @@ import java.util.LinkedList;
  * gets closed. Because of this behavior it was impossible to process a ResultSet
  * in a module, which made this class necessary.
  * 
+ * The content is stored column by column. Columns that contain integers in
+ * the database are kept in a long[] together with a bitmap of the cells that
+ * are NULL, all other columns are kept in a String[]. This way an integer
+ * never has to be parsed from a String. Because SQLite only knows the types
+ * of values, a column that turns out to contain something else than
+ * integers in a later row gets converted to a String[].
+ * 
  * @author jdno
  */
 public class DatabaseResult {
@@ -40,35 +50,102 @@ public class DatabaseResult {
 	/**
 	 * This list contains the columns' names
 	 */
-	private LinkedList<String> columnNames = new LinkedList<String>();
+	private ArrayList<String> columnNames = new ArrayList<String>();
+	
+	/**
+	 * This maps the columns' names to their indexes
+	 */
+	private HashMap<String, Integer> columnIndexes = new HashMap<String, Integer>();
+	
+	/**
+	 * The content of the integer columns, or null for string columns
+	 */
+	private long[][] intColumns;
+	
+	/**
+	 * The cells of the integer columns that are NULL
+	 */
+	private BitSet[] nullCells;
+	
+	/**
+	 * The number of rows
+	 */
+	private int rowCount = 0;
 	
 	/**
-	 * This list contains the rows, which itself consist of a list
+	 * The content of the string columns, or null for integer columns
 	 */
-	private ArrayList<ArrayList<String>> content = new ArrayList<ArrayList<String>>();
+	private String[][] stringColumns;
 	
 	/**
 	 * A DatabaseResult is built from a ResultSet, and contains most but
 	 * not all of its information. Other than the ResultSet a DatabaseResult
 	 * does not get lost if a SQL statement gets closed, and should therefore
 	 * be used to hand data from a query over to a module.
+	 * 
+	 * Every column starts out as an integer column and gets converted to a
+	 * string column as soon as a value is read that is neither an integer
+	 * nor NULL, because SQLite only knows the types of the values.
 	 * @param rs The ResultSet to process
 	 * @throws SQLException If the ResultSet cannot be processed correctly this
 	 * 		exception gets thrown.
 	 */
 	public DatabaseResult(ResultSet rs) throws SQLException {
 		ResultSetMetaData rsmd = rs.getMetaData();
+		int columnCount = rsmd.getColumnCount();
 		
-		for(int i = 1; i <= rsmd.getColumnCount(); i++) {
-			columnNames.add(rsmd.getColumnName(i));
+		for(int i = 0; i < columnCount; i++) {
+			String name = rsmd.getColumnName(i + 1);
+			
+			columnNames.add(name);
+			if(!columnIndexes.containsKey(name)) {
+				columnIndexes.put(name, i);
+			}
+		}
+		
+		intColumns = new long[columnCount][];
+		stringColumns = new String[columnCount][];
+		nullCells = new BitSet[columnCount];
+		
+		int capacity = 16;
+		
+		for(int i = 0; i < columnCount; i++) {
+			intColumns[i] = new long[capacity];
+			nullCells[i] = new BitSet();
 		}
 		
 		while(rs.next()) {
-			ArrayList<String> column = new ArrayList<String>(rsmd.getColumnCount());		
-			for(int i = 1; i <= rsmd.getColumnCount(); i++) {
-				column.add(rs.getString(i));
+			if(rowCount == capacity) {
+				capacity *= 2;
+				
+				for(int i = 0; i < columnCount; i++) {
+					if(intColumns[i] != null) {
+						intColumns[i] = Arrays.copyOf(intColumns[i], capacity);
+					} else {
+						stringColumns[i] = Arrays.copyOf(stringColumns[i], capacity);
+					}
+				}
 			}
-			content.add(column);
+			
+			for(int i = 0; i < columnCount; i++) {
+				if(intColumns[i] != null) {
+					int type = rsmd.getColumnType(i + 1);
+					
+					if(type == Types.INTEGER || type == Types.NULL) {
+						intColumns[i][rowCount] = rs.getLong(i + 1);
+						if(rs.wasNull()) {
+							nullCells[i].set(rowCount);
+						}
+					} else {
+						convertToStrings(i, capacity);
+						stringColumns[i][rowCount] = rs.getString(i + 1);
+					}
+				} else {
+					stringColumns[i][rowCount] = rs.getString(i + 1);
+				}
+			}
+			
+			rowCount++;
 		}
 	}
 	
@@ -108,16 +185,58 @@ public class DatabaseResult {
 	 * @return The row count
 	 */
 	public int getRowCount() {
-		return content.size();
+		return rowCount;
 	}
 	
 	/**
-	 * Get the content of a cell as an Integer.
+	 * Get the content of a cell as a boolean. Integers are true if they
+	 * are not 0, like SQLite treats them.
 	 * @param column The column in the current row
-	 * @return The content as an Integer
+	 * @return The content as a boolean
+	 */
+	public boolean getBoolean(int column) {
+		if(isIntColumn(column)) {
+			return intColumns[column][iterator] != 0;
+		} else {
+			String value = getString(column);
+			return value != null && (value.equals("1") || value.equalsIgnoreCase("true"));
+		}
+	}
+	
+	/**
+	 * Get the content of a cell as an Integer. Integer columns are read
+	 * directly, all others get parsed.
+	 * @param column The column in the current row
+	 * @return The content as an Integer, or 0 if the cell is NULL
 	 */
 	public int getInt(int column) {
-		return Integer.valueOf(getString(column));
+		if(isIntColumn(column)) {
+			return (int) intColumns[column][iterator];
+		} else {
+			return Integer.valueOf(getString(column));
+		}
+	}
+	
+	/**
+	 * Get the content of a cell by the column's name as an Integer.
+	 * @param columnName The name of the column
+	 * @return The content as an Integer
+	 */
+	public int getInt(String columnName) {
+		return getInt(columnByName(columnName));
+	}
+	
+	/**
+	 * Get the content of a cell as a Long.
+	 * @param column The column in the current row
+	 * @return The content as a Long, or 0 if the cell is NULL
+	 */
+	public long getLong(int column) {
+		if(isIntColumn(column)) {
+			return intColumns[column][iterator];
+		} else {
+			return Long.valueOf(getString(column));
+		}
 	}
 	
 	/**
@@ -127,7 +246,11 @@ public class DatabaseResult {
 	 */
 	public String getString(int column) {
 		if(iterator > -1 && iterator < getRowCount() && column > -1 && column < getColumnCount()) {
-			return content.get(iterator).get(column);
+			if(intColumns[column] != null) {
+				return nullCells[column].get(iterator) ? null : String.valueOf(intColumns[column][iterator]);
+			} else {
+				return stringColumns[column][iterator];
+			}
 		} else {
 			return null;
 		}
@@ -149,6 +272,19 @@ public class DatabaseResult {
 		}
 	}
 	
+	/**
+	 * Check if a cell is NULL.
+	 * @param column The column in the current row
+	 * @return True if the cell is NULL, false otherwise
+	 */
+	public boolean isNull(int column) {
+		if(isIntColumn(column)) {
+			return nullCells[column].get(iterator);
+		} else {
+			return getString(column) == null;
+		}
+	}
+	
 	/**
 	 * This method moves the pointer one element ahead and returns true
 	 * if this is possible, or it returnes false if no next element exists.
@@ -170,13 +306,41 @@ public class DatabaseResult {
 	 * 		exits.
 	 */
 	private int columnByName(String columnName) {
-		for(int i = 0; i < columnNames.size(); i++) {
-			if(columnNames.get(i).equals(columnName)) {
-				return i;
+		Integer column = columnIndexes.get(columnName);
+		
+		return column != null ? column : -1;
+	}
+	
+	/**
+	 * This auxiliary method converts an integer column into a string column,
+	 * because a value has been read that is not an integer. The rows that
+	 * have already been read keep their content.
+	 * @param column The index of the column
+	 * @param capacity The current capacity of the columns
+	 */
+	private void convertToStrings(int column, int capacity) {
+		String[] strings = new String[capacity];
+		
+		for(int i = 0; i < rowCount; i++) {
+			if(!nullCells[column].get(i)) {
+				strings[i] = String.valueOf(intColumns[column][i]);
 			}
 		}
 		
-		return -1;
+		stringColumns[column] = strings;
+		intColumns[column] = null;
+		nullCells[column] = null;
+	}
+	
+	/**
+	 * This auxiliary method checks if the pointer is on a row and the
+	 * given column holds integers.
+	 * @param column The index of the column
+	 * @return True if the cell can be read from a long[], false otherwise
+	 */
+	private boolean isIntColumn(int column) {
+		return iterator > -1 && iterator < getRowCount() && column > -1 && column < getColumnCount()
+				&& intColumns[column] != null;
 	}
 	
 }
@@ -16,9 +16,13 @@
  */
 package de.jandavid.asxcel.model;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 
 /**
  * This application has the purpose to help the user manage
@@ -30,6 +34,51 @@ import java.util.Collections;
  */
 public class Enterprise {
 	
+	/**
+	 * The query that counts the routes between airports of an enterprise
+	 */
+	public static final String COUNT_ROUTES_QUERY = "SELECT COUNT(*) FROM `routes` AS `r` WHERE `r`.`enterprise` = ? " +
+			"AND EXISTS (SELECT 1 FROM `enterprise_has_airport` WHERE `enterprise` = ? AND `airport` = `r`.`origin`) " +
+			"AND EXISTS (SELECT 1 FROM `enterprise_has_airport` WHERE `enterprise` = ? AND `airport` = `r`.`destination`)";
+	
+	/**
+	 * The query that deletes a route
+	 */
+	public static final String DELETE_ROUTE_QUERY = "DELETE FROM `routes` WHERE `id` = ?";
+	
+	/**
+	 * Enterprises with more routes than this only load the keys of their routes.
+	 */
+	public static final int PAGING_THRESHOLD = 10000;
+	
+	/**
+	 * The query that reads the IDs, origins and destinations of all routes of an enterprise
+	 */
+	public static final String ROUTE_KEYS_QUERY = "SELECT `r`.`id`, `r`.`origin`, `r`.`destination` " +
+			"FROM `routes` AS `r` WHERE `r`.`enterprise` = ?";
+	
+	/**
+	 * The query that reads all routes of an enterprise, ordered by the names of their origins
+	 */
+	public static final String ROUTES_QUERY = "SELECT `r`.`id`, `r`.`origin`, `r`.`destination`, `r`.`distance`, " +
+			"`r`.`loadFrom`, `r`.`loadTo`, `r`.`scheduled` FROM `routes` AS `r` " +
+			"INNER JOIN `airports` AS `a1` ON `r`.`origin` = `a1`.`id` " +
+			"INNER JOIN `airports` AS `a2` ON `r`.`destination` = `a2`.`id` " +
+			"WHERE `r`.`enterprise` = ? ORDER BY `a1`.`name`, `r`.`id`";
+	
+	/**
+	 * The query that reads an enterprise by its name
+	 */
+	public static final String SELECT_QUERY = "SELECT `e`.`id`, `e`.`name`, `e`.`airport` FROM `enterprises` AS `e` " +
+			"WHERE `e`.`name` = ? LIMIT 1";
+	
+	/**
+	 * The airports the enterprise has been opened with. The routes get
+	 * their airports from them, so routes can be read on another thread
+	 * while the model is used.
+	 */
+	private LoadedAirports airports;
+	
 	/**
 	 * This is the enterprise's ID in the database.
 	 */
@@ -50,12 +99,47 @@ public class Enterprise {
 	 */
 	private String name;
 	
+	/**
+	 * The routes of a paged enterprise that have been read and are still in
+	 * use, mapped by their IDs. They are referenced weakly, so routes that
+	 * are not shown anymore get collected, but as long as a route is in use
+	 * reading it again returns the same object.
+	 */
+	private HashMap<Integer, RouteReference> readRoutes = new HashMap<Integer, RouteReference>();
+	
+	/**
+	 * The references of the read routes that have been collected.
+	 */
+	private ReferenceQueue<Route> collectedRoutes = new ReferenceQueue<Route>();
+	
+	/**
+	 * The keys of the routes if the enterprise is paged, otherwise null.
+	 */
+	private RouteKeys routeKeys;
+	
+	/**
+	 * The snapshot the enterprise has been opened from, until its routes
+	 * have been read, or null.
+	 */
+	private EnterpriseSnapshot snapshot;
+	
 	/**
 	 * This is a list of routes a user has established or
 	 * is planning to introduce.
 	 */
 	private ArrayList<Route> routes = new ArrayList<Route>();
 	
+	/**
+	 * This maps the ID of an airport to all routes that start or end there.
+	 */
+	private HashMap<Integer, ArrayList<Route>> routesByAirport = new HashMap<Integer, ArrayList<Route>>();
+	
+	/**
+	 * This maps the ID of an origin to the routes starting there, which
+	 * themselves are mapped by the ID of their destination.
+	 */
+	private HashMap<Integer, HashMap<Integer, Route>> routesByOrigin = new HashMap<Integer, HashMap<Integer, Route>>();
+	
 	/**
 	 * An enterprise is the logical collection of the user's
 	 * information. It is identified by its name.
@@ -63,34 +147,90 @@ public class Enterprise {
 	 * @throws SQLException If an SQL error occurs this gets thrown.
 	 */
 	protected Enterprise(Model model, String name) throws SQLException, Exception {
+		this(model, name, true);
+	}
+	
+	/**
+	 * An enterprise can be opened without its routes, so they can be
+	 * loaded in batches later on.
+	 * @param name The (unique) name of the enterprise.
+	 * @param loadRoutes True to load the routes immediately.
+	 * @throws SQLException If an SQL error occurs this gets thrown.
+	 */
+	Enterprise(Model model, String name, boolean loadRoutes) throws SQLException, Exception {
 		this.model = model;
 		this.name = name;
 		
 		syncWithDb();
 		
-		loadRoutes();
+		if(loadRoutes) {
+			model.installAirports(airports);
+			loadRoutes();
+		}
 	}
 	
 	/**
-	 * This method creates a new route and adds it to the list of routes.
+	 * This method appends a batch of routes that have been read with
+	 * readRoute() and informs the listeners of the model.
+	 * @param batch The routes to append.
+	 */
+	public void addLoadedRoutes(ArrayList<Route> batch) {
+		if(batch.isEmpty()) return;
+		
+		int index = routes.size();
+		
+		for(Route r: batch) {
+			routes.add(r);
+			indexRoute(r);
+		}
+		
+		model.fireModelEvent(ModelEvent.routesLoaded(this, index, batch.size()));
+	}
+	
+	/**
+	 * This method counts the routes that get loaded for this enterprise,
+	 * which are the routes between airports of the enterprise.
+	 * @return The number of routes.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public int countRoutes() throws SQLException {
+		ArrayList<Object> params = new ArrayList<Object>(3);
+		params.add(id);
+		params.add(id);
+		params.add(id);
+		
+		DatabaseResult dr = model.getDatabase().executeQuery(COUNT_ROUTES_QUERY, params);
+		
+		return dr.next() ? dr.getInt(0) : 0;
+	}
+	
+	/**
+	 * This method creates a new route and adds it to the list of routes, or
+	 * to the keys if the enterprise is paged.
 	 * @param origin The airport where the route starts.
 	 * @param destination The airport where the route ends.
 	 * @return The newly created route.
 	 * @throws SQLException If a SQL error occurs this gets thrown.
 	 */
 	public Route createRoute(Airport origin, Airport destination) throws SQLException {
-		for(Route r: routes) {
-			if(r.getOrigin().compareTo(origin) == 0) {
-				if(r.getDestination().compareTo(destination) == 0) {
-					return r;
-				}
+		Route r = getRoute(origin, destination);
+		
+		if(r == null) {
+			r = new Route(model, origin, destination);
+			
+			if(routeKeys != null) {
+				routeKeys.add(r.getId(), origin.getId(), destination.getId());
+				rememberRoute(r);
+				
+				model.fireModelEvent(ModelEvent.routeAdded(r, -1));
+			} else {
+				routes.add(r);
+				indexRoute(r);
+				
+				model.fireModelEvent(ModelEvent.routeAdded(r, routes.size() - 1));
 			}
 		}
 		
-		Route r = new Route(model, origin, destination);
-		
-		routes.add(r);
-		
 		return r;
 	}
 	
@@ -101,28 +241,49 @@ public class Enterprise {
 	 * @return True of routes exists to or from the given airport, false otherwise.
 	 */
 	public boolean doRoutesExistFor(Airport airport) {
-		for(Route r: routes) {
-			if(r.getOrigin().equals(airport) || r.getDestination().equals(airport)) {
-				return true;
-			}
+		if(routeKeys != null) {
+			return routeKeys.containsAirport(airport.getId());
 		}
 		
-		return false;
+		return routesByAirport.containsKey(airport.getId());
 	}
 	
 	/**
-	 * Delete a specific route, based on its position in the list.
+	 * Delete a specific route, based on its position in the list. Changes
+	 * of the route that have not been written yet get dropped.
 	 * @param route The position of the route to delete.
 	 * @throws SQLException If a SQL error occurs this gets thrown.
 	 */
 	public void deleteRoute(int route) throws SQLException {
 		Route r = routes.get(route);
+		deleteFromDb(r);
 		
-		String query = "DELETE FROM `routes` WHERE `id` = '" + r.getId() + "'";
+		routes.remove(route);
+		unindexRoute(r);
 		
-		model.getDatabase().executeUpdate(query, new ArrayList<Object>(0));
+		model.fireModelEvent(ModelEvent.routeRemoved(r, route));
+	}
+	
+	/**
+	 * Delete a specific route. A paged enterprise deletes it by its ID and
+	 * removes its key, so the route does not have to be found in a list.
+	 * Changes of the route that have not been written yet get dropped.
+	 * @param r The route to delete.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public void deleteRoute(Route r) throws SQLException {
+		if(routeKeys == null) {
+			int index = routes.indexOf(r);
+			if(index != -1) deleteRoute(index);
+			return;
+		}
 		
-		routes.remove(route);
+		if(routeKeys.remove(r.getOrigin().getId(), r.getDestination().getId()) == -1) return;
+		
+		deleteFromDb(r);
+		readRoutes.remove(r.getId());
+		
+		model.fireModelEvent(ModelEvent.routeRemoved(r, -1));
 	}
 	
 	/**
@@ -133,42 +294,433 @@ public class Enterprise {
 	public ArrayList<Airport> getDestinations(Airport origin) {
 		ArrayList<Airport> airports = new ArrayList<Airport>();
 		
-		for(Route r: routes) {
-			if(r.getOrigin().compareTo(origin) == 0) {
-				airports.add(r.getDestination());
+		if(routeKeys != null) {
+			for(int id: routeKeys.getDestinations(origin.getId())) {
+				Airport destination = getOpenedAirport(id);
+				if(destination != null) airports.add(destination);
 			}
+			
+			Collections.sort(airports);
+			return airports;
 		}
 		
-		Collections.sort(airports);
+		HashMap<Integer, Route> destinations = routesByOrigin.get(origin.getId());
+		
+		if(destinations != null) {
+			for(Route r: destinations.values()) {
+				airports.add(r.getDestination());
+			}
+			
+			Collections.sort(airports);
+		}
 		
 		return airports;
 	}
 	
+	/**
+	 * Get the route between two airports. A paged enterprise reads the
+	 * route from the database unless it is in use already.
+	 * @param origin The airport where the route starts.
+	 * @param destination The airport where the route ends.
+	 * @return The route, or null if no such route exists.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public Route getRoute(Airport origin, Airport destination) throws SQLException {
+		if(routeKeys != null) {
+			int id = routeKeys.get(origin.getId(), destination.getId());
+			if(id == -1) return null;
+			
+			Route r = getReadRoute(id);
+			
+			if(r == null) {
+				model.flush();
+				r = new Route(model, origin, destination);
+				rememberRoute(r);
+			}
+			
+			return r;
+		}
+		
+		HashMap<Integer, Route> destinations = routesByOrigin.get(origin.getId());
+		
+		return destinations != null ? destinations.get(destination.getId()) : null;
+	}
+	
+	/**
+	 * Get all routes that start or end at the given airport. A paged
+	 * enterprise only returns the routes that have been read and are
+	 * still in use.
+	 * @param airport The airport to get the routes for.
+	 * @return A list of the routes, which is empty if no route exists.
+	 */
+	public ArrayList<Route> getRoutesFor(Airport airport) {
+		if(routeKeys != null) {
+			ArrayList<Route> incident = new ArrayList<Route>();
+			purgeReadRoutes();
+			
+			for(RouteReference reference: readRoutes.values()) {
+				Route r = reference.get();
+				
+				if(r != null && (r.getOrigin() == airport || r.getDestination() == airport)) {
+					incident.add(r);
+				}
+			}
+			
+			return incident;
+		}
+		
+		ArrayList<Route> incident = routesByAirport.get(airport.getId());
+		
+		return incident != null ? new ArrayList<Route>(incident) : new ArrayList<Route>(0);
+	}
+	
+	/**
+	 * This method checks if a route from the origin to the destination exists.
+	 * @param origin The airport where the route starts.
+	 * @param destination The airport where the route ends.
+	 * @return True if the route exists, false otherwise.
+	 */
+	public boolean hasRoute(Airport origin, Airport destination) {
+		if(routeKeys != null) {
+			return routeKeys.get(origin.getId(), destination.getId()) != -1;
+		}
+		
+		HashMap<Integer, Route> destinations = routesByOrigin.get(origin.getId());
+		
+		return destinations != null && destinations.containsKey(destination.getId());
+	}
+	
+	/**
+	 * @return true if the enterprise only holds the keys of its routes
+	 */
+	public boolean isPaged() {
+		return routeKeys != null;
+	}
+	
 	/**
 	 * This method loads all routes belonging to the current enterprise
-	 * from the database.
+	 * from the database. All routes are read with one query that already
+	 * contains their attributes, and their airports get resolved by ID
+	 * from the airports the enterprise has been opened with. If the enterprise has been
+	 * opened from a snapshot, the routes are read from the snapshot instead.
 	 * @throws SQLException If a SQL error occurs this gets thrown.
 	 */
 	public void loadRoutes() throws SQLException {
 		routes.clear();
+		routesByAirport.clear();
+		routesByOrigin.clear();
+		readRoutes.clear();
+		routeKeys = null;
+		
+		if(snapshot != null) {
+			for(int i = 0; i < snapshot.getRouteCount(); i++) {
+				Route r = readRoute(snapshot, i);
+				if(r == null) continue;
+				
+				routes.add(r);
+				indexRoute(r);
+			}
+			
+			releaseSnapshot();
+		} else {
+			DatabaseCursor dr = openRouteCursor();
+			
+			try {
+				while(dr.next()) {
+					Route r = readRoute(dr);
+					if(r == null) continue;
+					
+					routes.add(r);
+					indexRoute(r);
+				}
+			} finally {
+				dr.close();
+			}
+		}
+		
+		Collections.sort(routes);
+	}
+	
+	/**
+	 * This method loads only the keys of the routes: their IDs, origins and
+	 * destinations. Afterwards the enterprise is paged. It holds no routes,
+	 * but reads them when they are needed, e.g. with resolveRoute() for the
+	 * rows of a page. If the enterprise has been opened from a snapshot,
+	 * the keys are read from the snapshot instead.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public void loadRouteKeys() throws SQLException {
+		RouteKeys keys = new RouteKeys();
+		
+		if(snapshot != null) {
+			for(int i = 0; i < snapshot.getRouteCount(); i++) {
+				addKey(keys, snapshot.getRouteId(i), snapshot.getRouteOrigin(i), snapshot.getRouteDestination(i));
+			}
+			
+			releaseSnapshot();
+		} else {
+			ArrayList<Object> params = new ArrayList<Object>(1);
+			params.add(id);
+			
+			DatabaseCursor dc = model.getDatabase().openCursor(ROUTE_KEYS_QUERY, params);
+			
+			try {
+				while(dc.next()) {
+					addKey(keys, dc.getInt(0), dc.getInt(1), dc.getInt(2));
+				}
+			} finally {
+				dc.close();
+			}
+		}
+		
+		routes.clear();
+		routesByAirport.clear();
+		routesByOrigin.clear();
+		readRoutes.clear();
+		routeKeys = keys;
+	}
+	
+	/**
+	 * This method opens a cursor over all routes of the enterprise, ordered
+	 * by the names of their origins. The rows can be turned into routes with
+	 * readRoute(). The caller has to close the cursor if it does not read
+	 * it to its end.
+	 * @return The cursor.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public DatabaseCursor openRouteCursor() throws SQLException {
+		ArrayList<Object> params = new ArrayList<Object>(1);
+		params.add(id);
+		
+		return model.getDatabase().openCursor(ROUTES_QUERY, params);
+	}
+	
+	/**
+	 * This method creates the route the cursor currently points at. The
+	 * route does not get added to the enterprise.
+	 * @param dr A cursor opened by openRouteCursor().
+	 * @return The route, or null if it connects airports that are not part
+	 * 		of the enterprise.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public Route readRoute(DatabaseCursor dr) throws SQLException {
+		Airport origin = getOpenedAirport(dr.getInt(1));
+		Airport destination = getOpenedAirport(dr.getInt(2));
+		
+		// Routes to airports that are not part of the enterprise cannot be displayed.
+		if(origin == null || destination == null) return null;
+		
+		return new Route(model, dr.getInt(0), origin, destination, dr.getInt(3),
+				dr.getInt(4), dr.getInt(5), dr.getBoolean(6));
+	}
+	
+	/**
+	 * This method creates a route from a record of the snapshot the
+	 * enterprise has been opened from. The route does not get added to
+	 * the enterprise.
+	 * @param snapshot The snapshot returned by getSnapshot().
+	 * @param index The index of the route in the snapshot.
+	 * @return The route, or null if it connects airports that are not part
+	 * 		of the enterprise.
+	 */
+	public Route readRoute(EnterpriseSnapshot snapshot, int index) {
+		Airport origin = getOpenedAirport(snapshot.getRouteOrigin(index));
+		Airport destination = getOpenedAirport(snapshot.getRouteDestination(index));
 		
-		String query = "SELECT `a1`.`name` AS `origin`, `a2`.`name` AS `destination` FROM `routes` AS `r` " +
-				"INNER JOIN `airports` AS `a1` ON `r`.`origin` = `a1`.`id` " +
-				"INNER JOIN `airports` AS `a2` ON `r`.`destination` = `a2`.`id` " +
-				"WHERE `r`.`enterprise` = '" + id + "'";
+		if(origin == null || destination == null) return null;
 		
-		DatabaseResult dr = model.getDatabase().executeQuery(query);
+		return new Route(model, snapshot.getRouteId(index), origin, destination, snapshot.getRouteDistance(index),
+				snapshot.getRouteLoadFrom(index), snapshot.getRouteLoadTo(index), snapshot.isRouteScheduled(index));
+	}
+	
+	/**
+	 * This method returns the route with the given values, as they have been
+	 * read from the database. There is only one object for each route: if
+	 * the enterprise holds the route, or a paged enterprise has read it
+	 * before and it is still in use, that object is returned. Otherwise a
+	 * paged enterprise creates it, while an enterprise holding its routes
+	 * has not loaded it yet and returns null.
+	 * @param id The ID of the route.
+	 * @param origin The ID of the airport where the route starts.
+	 * @param destination The ID of the airport where the route ends.
+	 * @param distance The distance of the route.
+	 * @param loadFrom The load coming from the destination.
+	 * @param loadTo The load going to the destination.
+	 * @param scheduled True if the route is scheduled.
+	 * @return The route, or null.
+	 */
+	public Route resolveRoute(int id, int origin, int destination, int distance,
+			int loadFrom, int loadTo, boolean scheduled) {
+		Airport o = getOpenedAirport(origin);
+		Airport d = getOpenedAirport(destination);
 		
-		while(dr.next()) {
-			Airport origin = model.getAirport(dr.getString(0));
-			Airport destination = model.getAirport(dr.getString(1));
+		if(o == null || d == null) return null;
+		
+		if(routeKeys == null) {
+			HashMap<Integer, Route> destinations = routesByOrigin.get(origin);
 			
-			Route r = new Route(model, origin, destination);
+			return destinations != null ? destinations.get(destination) : null;
+		}
+		
+		Route r = getReadRoute(id);
+		
+		if(r == null) {
+			r = new Route(model, id, o, d, distance, loadFrom, loadTo, scheduled);
+			rememberRoute(r);
+		}
+		
+		return r;
+	}
+	
+	/**
+	 * This method forgets the snapshot the enterprise has been opened from,
+	 * once its routes have been read.
+	 */
+	public void releaseSnapshot() {
+		snapshot = null;
+	}
+	
+	/**
+	 * This auxiliary method finds an airport by its ID among the airports
+	 * the enterprise has been opened with, or among the airports of the
+	 * model if it has been added since.
+	 * @param id The ID of the airport.
+	 * @return The airport, or null if it is not part of the enterprise.
+	 */
+	private Airport getOpenedAirport(int id) {
+		Airport a = airports.airportsById.get(id);
+		
+		return a != null ? a : model.getAirportById(id);
+	}
+	
+	/**
+	 * This auxiliary method adds the key of a route, unless it connects
+	 * airports that are not part of the enterprise.
+	 * @param keys The keys to add to.
+	 * @param route The ID of the route.
+	 * @param origin The ID of the airport where the route starts.
+	 * @param destination The ID of the airport where the route ends.
+	 */
+	private void addKey(RouteKeys keys, int route, int origin, int destination) {
+		if(getOpenedAirport(origin) != null && getOpenedAirport(destination) != null) {
+			keys.add(route, origin, destination);
+		}
+	}
+	
+	/**
+	 * This auxiliary method deletes a route from the database. Changes of
+	 * the route that have not been written yet get dropped.
+	 * @param r The route to delete.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	private void deleteFromDb(Route r) throws SQLException {
+		model.discardPendingWrites("routes", r.getId());
+		
+		ArrayList<Object> params = new ArrayList<Object>(1);
+		params.add(r.getId());
+		
+		model.getDatabase().executeUpdate(DELETE_ROUTE_QUERY, params);
+	}
+	
+	/**
+	 * This auxiliary method returns a route a paged enterprise has read, if
+	 * it is still in use.
+	 * @param id The ID of the route.
+	 * @return The route, or null.
+	 */
+	private Route getReadRoute(int id) {
+		purgeReadRoutes();
+		RouteReference reference = readRoutes.get(id);
+		
+		return reference != null ? reference.get() : null;
+	}
+	
+	/**
+	 * This auxiliary method adds a route to the indexes.
+	 * @param r The route to add.
+	 */
+	private void indexRoute(Route r) {
+		HashMap<Integer, Route> destinations = routesByOrigin.get(r.getOrigin().getId());
+		
+		if(destinations == null) {
+			destinations = new HashMap<Integer, Route>();
+			routesByOrigin.put(r.getOrigin().getId(), destinations);
+		}
+		
+		destinations.put(r.getDestination().getId(), r);
+		
+		indexIncidentRoute(r.getOrigin(), r);
+		if(r.getDestination() != r.getOrigin()) {
+			indexIncidentRoute(r.getDestination(), r);
+		}
+	}
+	
+	/**
+	 * This auxiliary method adds a route to the routes of an airport.
+	 * @param airport The airport the route starts or ends at.
+	 * @param r The route to add.
+	 */
+	private void indexIncidentRoute(Airport airport, Route r) {
+		ArrayList<Route> incident = routesByAirport.get(airport.getId());
+		
+		if(incident == null) {
+			incident = new ArrayList<Route>(4);
+			routesByAirport.put(airport.getId(), incident);
+		}
+		
+		incident.add(r);
+	}
+	
+	/**
+	 * This auxiliary method forgets the read routes that have been collected.
+	 */
+	private void purgeReadRoutes() {
+		for(Reference<? extends Route> collected = collectedRoutes.poll(); collected != null;
+				collected = collectedRoutes.poll()) {
+			RouteReference reference = (RouteReference) collected;
 			
-			routes.add(r);
+			if(readRoutes.get(reference.id) == reference) {
+				readRoutes.remove(reference.id);
+			}
 		}
+	}
+	
+	/**
+	 * This auxiliary method remembers a route a paged enterprise has read.
+	 * @param r The route.
+	 */
+	private void rememberRoute(Route r) {
+		readRoutes.put(r.getId(), new RouteReference(r, collectedRoutes));
+	}
+	
+	/**
+	 * This auxiliary method removes a route from the indexes.
+	 * @param r The route to remove.
+	 */
+	private void unindexRoute(Route r) {
+		HashMap<Integer, Route> destinations = routesByOrigin.get(r.getOrigin().getId());
 		
-		Collections.sort(routes);
+		if(destinations != null) {
+			destinations.remove(r.getDestination().getId());
+			if(destinations.isEmpty()) routesByOrigin.remove(r.getOrigin().getId());
+		}
+		
+		unindexIncidentRoute(r.getOrigin(), r);
+		unindexIncidentRoute(r.getDestination(), r);
+	}
+	
+	/**
+	 * This auxiliary method removes a route from the routes of an airport.
+	 * @param airport The airport the route starts or ends at.
+	 * @param r The route to remove.
+	 */
+	private void unindexIncidentRoute(Airport airport, Route r) {
+		ArrayList<Route> incident = routesByAirport.get(airport.getId());
+		
+		if(incident != null) {
+			incident.remove(r);
+			if(incident.isEmpty()) routesByAirport.remove(airport.getId());
+		}
 	}
 	
 	/**
@@ -179,26 +731,50 @@ public class Enterprise {
 	 * @throws SQLException If an SQL error occurs this gets thrown.
 	 */
 	private void syncWithDb() throws SQLException, Exception {
-		String query = "SELECT `e`.`id`, `e`.`name`, `a`.`name` FROM `enterprises` AS `e` " +
-				"INNER JOIN `airports` AS `a` ON `e`.`airport` = `a`.`id` " +
-				"WHERE `e`.`name` = ? LIMIT 1";
 		ArrayList<Object> params = new ArrayList<Object>(1);
 		params.add(name);
 		
-		DatabaseResult dr = model.getDatabase().executeQuery(query, params);
+		DatabaseResult dr = model.getDatabase().executeQuery(SELECT_QUERY, params);
 		
 		if(dr.next()) {
 			id = dr.getInt(0);
 			name = dr.getString(1);
 			
-			model.loadAirports(id);
+			snapshot = model.openSnapshot(id);
+			
+			if(snapshot != null) {
+				airports = model.readAirports(snapshot);
+			} else {
+				airports = model.readAirports(id);
+			}
 			
-			mainHub = model.getAirport(dr.getString(2));
+			mainHub = getOpenedAirport(dr.getInt(2));
 		} else {
 			throw new Exception("Enterprise was not found");
 		}
 	}
 
+	/**
+	 * A weak reference to a read route, which remembers the ID of the route
+	 * so it can be forgotten once the route has been collected.
+	 */
+	private static class RouteReference extends WeakReference<Route> {
+		
+		private final int id;
+		
+		RouteReference(Route route, ReferenceQueue<Route> queue) {
+			super(route, queue);
+			this.id = route.getId();
+		}
+	}
+
+	/**
+	 * @return the airports the enterprise has been opened with
+	 */
+	LoadedAirports getLoadedAirports() {
+		return airports;
+	}
+
 	/**
 	 * @return the id
 	 */
@@ -228,7 +804,15 @@ public class Enterprise {
 	}
 
 	/**
-	 * @return the routes
+	 * @return the snapshot the enterprise has been opened from, or null if
+	 * 		it has been read from the database or its routes have been read
+	 */
+	public EnterpriseSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * @return the routes, which are empty if the enterprise is paged
 	 */
 	public ArrayList<Route> getRoutes() {
 		return routes;
@@ -0,0 +1,610 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * An EnterpriseSnapshot is a binary copy of the countries, and of the
+ * airports and routes of an enterprise, which can be read much faster than
+ * the database. The file gets memory-mapped, and its records are read
+ * directly from the mapped buffer when they are needed.
+ * 
+ * The file starts with a header, followed by the countries, the airports
+ * and the routes in records of a fixed width, and ends with a table of all
+ * texts. Records refer to a text by its offset in that table, or -1 for
+ * null. Each text is stored as its length in bytes followed by its UTF-8
+ * bytes. Countries are ordered by their IDs, routes like openRouteCursor()
+ * of the enterprise orders them.
+ * 
+ * The header contains the change counter of the database the snapshot has
+ * been written at. If the counter of the database differs, the snapshot is
+ * outdated and must not be used.
+ *
+ * @author jdno
+ */
+public class EnterpriseSnapshot {
+	
+	/**
+	 * The first bytes of every snapshot, "ASXS".
+	 */
+	static final int MAGIC = 0x41535853;
+	
+	/**
+	 * The version of the format. Files with another version get rebuilt.
+	 */
+	static final int FORMAT_VERSION = 1;
+	
+	/**
+	 * The size of the header in bytes: magic, version, change counter,
+	 * enterprise, the three record counts, and offset and size of the texts.
+	 */
+	static final int HEADER_SIZE = 40;
+	
+	/**
+	 * The size of a country record: ID and name.
+	 */
+	static final int COUNTRY_SIZE = 8;
+	
+	/**
+	 * The size of an airport record: ID, name, IATA code, size, country,
+	 * passengers, cargo and transfer.
+	 */
+	static final int AIRPORT_SIZE = 32;
+	
+	/**
+	 * The size of a route record: ID, origin, destination, distance,
+	 * loads from, loads to and scheduled.
+	 */
+	static final int ROUTE_SIZE = 28;
+	
+	/**
+	 * The query that reads the airports of the enterprise into a snapshot.
+	 */
+	public static final String AIRPORTS_QUERY = "SELECT `a`.`id`, `a`.`name`, `a`.`iata`, `a`.`size`, " +
+			"`a`.`country`, `a`.`passengers`, `a`.`cargo`, `a`.`transfer` FROM `airports` AS `a` " +
+			"INNER JOIN `enterprise_has_airport` AS `e` ON `a`.`id` = `e`.`airport` " +
+			"WHERE `e`.`enterprise` = ?";
+	
+	/**
+	 * The query that reads the countries into a snapshot.
+	 */
+	public static final String COUNTRIES_QUERY = "SELECT `id`, `name` FROM `countries` ORDER BY `id`";
+	
+	/**
+	 * The query that reads the routes of the enterprise into a snapshot.
+	 */
+	public static final String ROUTES_QUERY = "SELECT `r`.`id`, `r`.`origin`, `r`.`destination`, `r`.`distance`, " +
+			"`r`.`loadFrom`, `r`.`loadTo`, `r`.`scheduled` FROM `routes` AS `r` " +
+			"INNER JOIN `airports` AS `a1` ON `r`.`origin` = `a1`.`id` " +
+			"WHERE `r`.`enterprise` = ? " +
+			"AND EXISTS (SELECT 1 FROM `enterprise_has_airport` WHERE `enterprise` = ? AND `airport` = `r`.`origin`) " +
+			"AND EXISTS (SELECT 1 FROM `enterprise_has_airport` WHERE `enterprise` = ? AND `airport` = `r`.`destination`) " +
+			"ORDER BY `a1`.`name`, `r`.`id`";
+	
+	/**
+	 * The number of airports in the snapshot.
+	 */
+	private int airportCount;
+	
+	/**
+	 * The mapped file.
+	 */
+	private ByteBuffer buffer;
+	
+	/**
+	 * The change counter the snapshot has been written at.
+	 */
+	private long changeCounter;
+	
+	/**
+	 * The number of countries in the snapshot.
+	 */
+	private int countryCount;
+	
+	/**
+	 * The ID of the enterprise.
+	 */
+	private int enterpriseId;
+	
+	/**
+	 * The number of routes in the snapshot.
+	 */
+	private int routeCount;
+	
+	/**
+	 * The position of the table of texts in the file.
+	 */
+	private int stringsOffset;
+	
+	/**
+	 * A snapshot gets read from a mapped file, whose header has been checked.
+	 * @param buffer The mapped file.
+	 */
+	private EnterpriseSnapshot(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.changeCounter = buffer.getLong(8);
+		this.enterpriseId = buffer.getInt(16);
+		this.countryCount = buffer.getInt(20);
+		this.airportCount = buffer.getInt(24);
+		this.routeCount = buffer.getInt(28);
+		this.stringsOffset = buffer.getInt(32);
+	}
+	
+	/**
+	 * This method maps a snapshot file into memory and checks its header.
+	 * @param file The file to open.
+	 * @return The snapshot.
+	 * @throws IOException If the file cannot be read or is no valid snapshot
+	 * 		this gets thrown.
+	 */
+	public static EnterpriseSnapshot open(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		MappedByteBuffer buffer;
+		
+		try {
+			if(channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(file.getName() + " is no snapshot.");
+			}
+			
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			channel.close();
+		}
+		
+		if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+			throw new IOException(file.getName() + " is no snapshot of this version.");
+		}
+		
+		long records = (long) buffer.getInt(20) * COUNTRY_SIZE + (long) buffer.getInt(24) * AIRPORT_SIZE
+				+ (long) buffer.getInt(28) * ROUTE_SIZE;
+		
+		if(buffer.getInt(32) != HEADER_SIZE + records
+				|| (long) buffer.getInt(32) + buffer.getInt(36) != buffer.capacity()) {
+			throw new IOException(file.getName() + " is incomplete.");
+		}
+		
+		return new EnterpriseSnapshot(buffer);
+	}
+	
+	/**
+	 * This method writes a snapshot of an enterprise. The rows get streamed
+	 * from the database into the file, only the texts are collected in
+	 * memory until they get appended at the end.
+	 * @param database The database to read from.
+	 * @param enterprise The ID of the enterprise.
+	 * @param changeCounter The change counter the data has been read at.
+	 * @param file The file to write, which gets replaced if it exists.
+	 * @throws IOException If the file cannot be written this gets thrown.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public static void write(Database database, int enterprise, long changeCounter, File file)
+			throws IOException, SQLException {
+		ArrayList<Object> params = new ArrayList<Object>(3);
+		params.add(enterprise);
+		
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		
+		try {
+			RecordWriter out = new RecordWriter(channel, HEADER_SIZE);
+			
+			int countries = 0;
+			DatabaseCursor dc = database.openCursor(COUNTRIES_QUERY);
+			
+			try {
+				while(dc.next()) {
+					out.putInt(dc.getInt(0));
+					out.putString(dc.getString(1));
+					countries++;
+				}
+			} finally {
+				dc.close();
+			}
+			
+			int airports = 0;
+			dc = database.openCursor(AIRPORTS_QUERY, params);
+			
+			try {
+				while(dc.next()) {
+					out.putInt(dc.getInt(0));
+					out.putString(dc.getString(1));
+					out.putString(dc.getString(2));
+					out.putString(dc.getString(3));
+					out.putInt(dc.getInt(4));
+					out.putInt(dc.getInt(5));
+					out.putInt(dc.getInt(6));
+					out.putInt(dc.getBoolean(7) ? 1 : 0);
+					airports++;
+				}
+			} finally {
+				dc.close();
+			}
+			
+			params.add(enterprise);
+			params.add(enterprise);
+			
+			int routes = 0;
+			dc = database.openCursor(ROUTES_QUERY, params);
+			
+			try {
+				while(dc.next()) {
+					out.putInt(dc.getInt(0));
+					out.putInt(dc.getInt(1));
+					out.putInt(dc.getInt(2));
+					out.putInt(dc.getInt(3));
+					out.putInt(dc.getInt(4));
+					out.putInt(dc.getInt(5));
+					out.putInt(dc.getBoolean(6) ? 1 : 0);
+					routes++;
+				}
+			} finally {
+				dc.close();
+			}
+			
+			int stringsOffset = out.finishRecords();
+			int stringsSize = out.writeStrings();
+			
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(changeCounter).putInt(enterprise);
+			header.putInt(countries).putInt(airports).putInt(routes).putInt(stringsOffset).putInt(stringsSize);
+			header.flip();
+			
+			while(header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+		} finally {
+			channel.close();
+		}
+	}
+	
+	/**
+	 * This method finds a country by its ID.
+	 * @param id The ID of the country.
+	 * @return The index of the country, or -1 if it is not in the snapshot.
+	 */
+	public int findCountry(int id) {
+		int low = 0;
+		int high = countryCount - 1;
+		
+		while(low <= high) {
+			int middle = (low + high) >>> 1;
+			int current = getCountryId(middle);
+			
+			if(current < id) {
+				low = middle + 1;
+			} else if(current > id) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * @param index The index of the country
+	 * @return the ID of the country
+	 */
+	public int getCountryId(int index) {
+		return buffer.getInt(countryOffset(index));
+	}
+	
+	/**
+	 * @param index The index of the country
+	 * @return the name of the country
+	 */
+	public String getCountryName(int index) {
+		return getString(buffer.getInt(countryOffset(index) + 4));
+	}
+	
+	/**
+	 * @param index The index of the airport
+	 * @return the ID of the airport
+	 */
+	public int getAirportId(int index) {
+		return buffer.getInt(airportOffset(index));
+	}
+	
+	/**
+	 * @param index The index of the airport
+	 * @return the name of the airport
+	 */
+	public String getAirportName(int index) {
+		return getString(buffer.getInt(airportOffset(index) + 4));
+	}
+	
+	/**
+	 * @param index The index of the airport
+	 * @return the IATA code of the airport, or null
+	 */
+	public String getAirportIataCode(int index) {
+		return getString(buffer.getInt(airportOffset(index) + 8));
+	}
+	
+	/**
+	 * @param index The index of the airport
+	 * @return the size of the airport, or null
+	 */
+	public String getAirportSize(int index) {
+		return getString(buffer.getInt(airportOffset(index) + 12));
+	}
+	
+	/**
+	 * @param index The index of the airport
+	 * @return the ID of the airport's country
+	 */
+	public int getAirportCountry(int index) {
+		return buffer.getInt(airportOffset(index) + 16);
+	}
+	
+	/**
+	 * @param index The index of the airport
+	 * @return the passengers of the airport
+	 */
+	public int getAirportPassengers(int index) {
+		return buffer.getInt(airportOffset(index) + 20);
+	}
+	
+	/**
+	 * @param index The index of the airport
+	 * @return the cargo of the airport
+	 */
+	public int getAirportCargo(int index) {
+		return buffer.getInt(airportOffset(index) + 24);
+	}
+	
+	/**
+	 * @param index The index of the airport
+	 * @return true if transfers are possible at the airport
+	 */
+	public boolean isAirportTransferPossible(int index) {
+		return buffer.getInt(airportOffset(index) + 28) != 0;
+	}
+	
+	/**
+	 * @param index The index of the route
+	 * @return the ID of the route
+	 */
+	public int getRouteId(int index) {
+		return buffer.getInt(routeOffset(index));
+	}
+	
+	/**
+	 * @param index The index of the route
+	 * @return the ID of the route's origin
+	 */
+	public int getRouteOrigin(int index) {
+		return buffer.getInt(routeOffset(index) + 4);
+	}
+	
+	/**
+	 * @param index The index of the route
+	 * @return the ID of the route's destination
+	 */
+	public int getRouteDestination(int index) {
+		return buffer.getInt(routeOffset(index) + 8);
+	}
+	
+	/**
+	 * @param index The index of the route
+	 * @return the distance of the route
+	 */
+	public int getRouteDistance(int index) {
+		return buffer.getInt(routeOffset(index) + 12);
+	}
+	
+	/**
+	 * @param index The index of the route
+	 * @return the loads from the destination
+	 */
+	public int getRouteLoadFrom(int index) {
+		return buffer.getInt(routeOffset(index) + 16);
+	}
+	
+	/**
+	 * @param index The index of the route
+	 * @return the loads to the destination
+	 */
+	public int getRouteLoadTo(int index) {
+		return buffer.getInt(routeOffset(index) + 20);
+	}
+	
+	/**
+	 * @param index The index of the route
+	 * @return true if the route is scheduled
+	 */
+	public boolean isRouteScheduled(int index) {
+		return buffer.getInt(routeOffset(index) + 24) != 0;
+	}
+	
+	/**
+	 * This auxiliary method returns the position of a country record.
+	 * @param index The index of the country.
+	 * @return The position in the file.
+	 */
+	private int countryOffset(int index) {
+		return HEADER_SIZE + index * COUNTRY_SIZE;
+	}
+	
+	/**
+	 * This auxiliary method returns the position of an airport record.
+	 * @param index The index of the airport.
+	 * @return The position in the file.
+	 */
+	private int airportOffset(int index) {
+		return HEADER_SIZE + countryCount * COUNTRY_SIZE + index * AIRPORT_SIZE;
+	}
+	
+	/**
+	 * This auxiliary method returns the position of a route record.
+	 * @param index The index of the route.
+	 * @return The position in the file.
+	 */
+	private int routeOffset(int index) {
+		return HEADER_SIZE + countryCount * COUNTRY_SIZE + airportCount * AIRPORT_SIZE + index * ROUTE_SIZE;
+	}
+	
+	/**
+	 * This auxiliary method reads a text from the table of texts.
+	 * @param reference The offset of the text in the table, or -1.
+	 * @return The text, or null if the reference is -1.
+	 */
+	private String getString(int reference) {
+		if(reference < 0) {
+			return null;
+		}
+		
+		int position = stringsOffset + reference;
+		byte[] bytes = new byte[buffer.getInt(position)];
+		
+		ByteBuffer view = buffer.duplicate();
+		view.position(position + 4);
+		view.get(bytes);
+		
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return the number of airports
+	 */
+	public int getAirportCount() {
+		return airportCount;
+	}
+
+	/**
+	 * @return the change counter the snapshot has been written at
+	 */
+	public long getChangeCounter() {
+		return changeCounter;
+	}
+
+	/**
+	 * @return the number of countries
+	 */
+	public int getCountryCount() {
+		return countryCount;
+	}
+
+	/**
+	 * @return the ID of the enterprise
+	 */
+	public int getEnterpriseId() {
+		return enterpriseId;
+	}
+
+	/**
+	 * @return the number of routes
+	 */
+	public int getRouteCount() {
+		return routeCount;
+	}
+	
+	/**
+	 * The RecordWriter buffers the records on their way to the file, and
+	 * collects the texts, each of which gets stored only once.
+	 */
+	private static class RecordWriter {
+		
+		private ByteBuffer buffer = ByteBuffer.allocate(65536);
+		private FileChannel channel;
+		private long position;
+		private HashMap<String, Integer> references = new HashMap<String, Integer>();
+		private byte[] strings = new byte[4096];
+		private int stringsSize = 0;
+		
+		RecordWriter(FileChannel channel, long position) {
+			this.channel = channel;
+			this.position = position;
+		}
+		
+		void putInt(int value) throws IOException {
+			if(buffer.remaining() < 4) {
+				flush();
+			}
+			
+			buffer.putInt(value);
+		}
+		
+		void putString(String value) throws IOException {
+			if(value == null) {
+				putInt(-1);
+				return;
+			}
+			
+			Integer reference = references.get(value);
+			
+			if(reference == null) {
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				
+				if(stringsSize + 4 + bytes.length > strings.length) {
+					strings = Arrays.copyOf(strings, Math.max(strings.length * 2, stringsSize + 4 + bytes.length));
+				}
+				
+				reference = stringsSize;
+				ByteBuffer.wrap(strings, stringsSize, 4).putInt(bytes.length);
+				System.arraycopy(bytes, 0, strings, stringsSize + 4, bytes.length);
+				stringsSize += 4 + bytes.length;
+				references.put(value, reference);
+			}
+			
+			putInt(reference);
+		}
+		
+		int finishRecords() throws IOException {
+			flush();
+			
+			if(position > Integer.MAX_VALUE) {
+				throw new IOException("The snapshot is too large.");
+			}
+			
+			return (int) position;
+		}
+		
+		int writeStrings() throws IOException {
+			ByteBuffer table = ByteBuffer.wrap(strings, 0, stringsSize);
+			
+			while(table.hasRemaining()) {
+				position += channel.write(table, position);
+			}
+			
+			return stringsSize;
+		}
+		
+		private void flush() throws IOException {
+			buffer.flip();
+			
+			while(buffer.hasRemaining()) {
+				position += channel.write(buffer, position);
+			}
+			
+			buffer.clear();
+		}
+	}
+
+}
@@ -0,0 +1,33 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+/**
+ * An ExportListener gets informed about the progress of a RouteExporter.
+ * It gets called from the thread that writes the rows.
+ *
+ * @author jdno
+ */
+public interface ExportListener {
+
+	/**
+	 * This method gets called after a batch of rows has been written.
+	 * @param rowsWritten The number of routes that have been written
+	 */
+	public void exportProgressed(int rowsWritten);
+
+}
@@ -0,0 +1,108 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * The LoadedAirports are the airports of an enterprise and their indexes,
+ * read while the enterprise gets opened. They are built on the thread that
+ * opens the enterprise without touching the lists of the model, and replace
+ * them at once when the enterprise becomes the current one, see
+ * Model.installAirports().
+ * 
+ * Airports that have been read before keep their objects. Their new values
+ * are not set until the airports get installed, because the objects might
+ * be displayed meanwhile. Countries that the model does not know yet get
+ * registered when the airports get installed, too.
+ * 
+ * @author jdno
+ */
+class LoadedAirports {
+	
+	/**
+	 * The airports, sorted by their names.
+	 */
+	final ArrayList<Airport> airports = new ArrayList<Airport>();
+	
+	/**
+	 * This maps the IDs of the airports to the airports.
+	 */
+	final HashMap<Integer, Airport> airportsById = new HashMap<Integer, Airport>();
+	
+	/**
+	 * This maps the IATA codes (in upper case) of the airports to the airports.
+	 */
+	final HashMap<String, Airport> airportsByIata = new HashMap<String, Airport>();
+	
+	/**
+	 * This maps the names of the airports to the airports.
+	 */
+	final HashMap<String, Airport> airportsByName = new HashMap<String, Airport>();
+	
+	/**
+	 * This index finds the airports by their names, IATA codes and countries.
+	 */
+	final AirportSearchIndex airportIndex = new AirportSearchIndex();
+	
+	/**
+	 * The countries of the airports that are not known by the model yet,
+	 * mapped by their IDs.
+	 */
+	final HashMap<Integer, Country> countries = new HashMap<Integer, Country>();
+	
+	/**
+	 * The airports that have been read before, mapped to airports that carry
+	 * the values they have to be refreshed with.
+	 */
+	final IdentityHashMap<Airport, Airport> refreshes = new IdentityHashMap<Airport, Airport>();
+	
+	/**
+	 * This method adds an airport and indexes it.
+	 * @param airport The airport to add.
+	 */
+	void add(Airport airport) {
+		airports.add(airport);
+		index(airport);
+	}
+	
+	/**
+	 * This method adds an airport to the indexes, or updates them if it has
+	 * been indexed before.
+	 * @param airport The airport to index.
+	 */
+	void index(Airport airport) {
+		airportsById.put(airport.getId(), airport);
+		airportsByName.put(airport.getName(), airport);
+		airportIndex.add(airport);
+		
+		if(airport.getIataCode() != null && !airport.getIataCode().equals("")) {
+			airportsByIata.put(airport.getIataCode().toUpperCase(), airport);
+		}
+	}
+	
+	/**
+	 * This method sorts the airports by their names, once all have been added.
+	 */
+	void sort() {
+		Collections.sort(airports);
+	}
+
+}
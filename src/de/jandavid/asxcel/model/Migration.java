@@ -0,0 +1,82 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.sql.SQLException;
+
+/**
+ * A Migration updates the database from the version before it to its own
+ * version. Migrations get registered with the UpdateManager, which runs each
+ * of them in a transaction of its own and records the new version in the
+ * same transaction. A migration should change the data with set-based SQL,
+ * e.g. INSERT ... SELECT, instead of one statement per row.
+ * 
+ * @author jdno
+ */
+public abstract class Migration implements Comparable<Migration> {
+
+	/**
+	 * A short description of what the migration changes
+	 */
+	private String description;
+	
+	/**
+	 * The version the database has after the migration
+	 */
+	private int version;
+	
+	/**
+	 * A migration gets initialized with the version it updates to.
+	 * @param version The version the database has after the migration
+	 * @param description A short description of the changes
+	 */
+	protected Migration(int version, String description) {
+		this.version = version;
+		this.description = description;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Comparable#compareTo(java.lang.Object)
+	 */
+	@Override
+	public int compareTo(Migration o) {
+		return Integer.valueOf(version).compareTo(o.getVersion());
+	}
+	
+	/**
+	 * This method executes the statements of the migration. It runs inside a
+	 * transaction, so either all of them are written or none.
+	 * @param database The database to update
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public abstract void migrate(Database database) throws SQLException;
+
+	/**
+	 * @return the description
+	 */
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * @return the version
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+}
@@ -0,0 +1,42 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+/**
+ * A MigrationListener gets informed about the progress of the UpdateManager
+ * while it installs updates.
+ * 
+ * @author jdno
+ */
+public interface MigrationListener {
+
+	/**
+	 * This method gets called before a migration starts.
+	 * @param migration The migration that starts
+	 * @param index The position of the migration among the pending ones, starting at 1
+	 * @param count The number of pending migrations
+	 */
+	public void migrationStarted(Migration migration, int index, int count);
+	
+	/**
+	 * This method gets called after a migration has been committed.
+	 * @param migration The migration that has finished
+	 * @param duration The time the migration took in milliseconds
+	 */
+	public void migrationFinished(Migration migration, long duration);
+
+}
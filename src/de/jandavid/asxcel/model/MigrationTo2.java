@@ -0,0 +1,56 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.sql.SQLException;
+
+/**
+ * Update to version 2
+ * 
+ * The main features of version 2 are:
+ * - table meta_data with information about the application, most importantly the database
+ * version
+ * - table enterprise_has_airport with an n:m mapping, used by the view to reduce the number
+ * of airports displayed to the user
+ * 
+ * Every enterprise gets mapped to every airport, which is done with a single cross join.
+ * 
+ * @author jdno
+ */
+public class MigrationTo2 extends Migration {
+
+	public MigrationTo2() {
+		super(2, "Add meta data and the airports of each enterprise");
+	}
+
+	/* (non-Javadoc)
+	 * @see de.jandavid.asxcel.model.Migration#migrate(de.jandavid.asxcel.model.Database)
+	 */
+	@Override
+	public void migrate(Database database) throws SQLException {
+		database.executeUpdate("CREATE TABLE IF NOT EXISTS `meta_data` (`id` INTEGER PRIMARY KEY ,"
+				+ "`key` VARCHAR NOT NULL UNIQUE , `value` VARCHAR NOT NULL )");
+		database.executeUpdate("CREATE TABLE IF NOT EXISTS `enterprise_has_airport` (`id` INTEGER PRIMARY KEY , "
+				+ "`enterprise` INTEGER NOT NULL , `airport` INTEGER NOT NULL , "
+				+ "FOREIGN KEY (`enterprise`) REFERENCES `enterprises`(`id`) , "
+				+ "FOREIGN KEY (`airport`) REFERENCES `airports`(`id`))");
+
+		database.executeUpdate("INSERT INTO `enterprise_has_airport` (`enterprise`, `airport`) "
+				+ "SELECT `e`.`id`, `a`.`id` FROM `enterprises` AS `e` CROSS JOIN `airports` AS `a`");
+	}
+
+}
@@ -0,0 +1,57 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.sql.SQLException;
+
+/**
+ * Update to version 3
+ * 
+ * Version 3 adds the indexes the queries of the application need:
+ * - a unique index on routes (enterprise, origin, destination), which serves the
+ * routes of an enterprise and the lookup of a single route
+ * - a unique index on enterprise_has_airport (enterprise, airport), which covers
+ * the airports of an enterprise and the check if an airport belongs to it
+ * Airports, countries and enterprises are already indexed by their unique names.
+ * Duplicate rows that would violate the new indexes get removed first, keeping
+ * the oldest one.
+ * 
+ * @author jdno
+ */
+public class MigrationTo3 extends Migration {
+
+	public MigrationTo3() {
+		super(3, "Add indexes to routes and the airports of each enterprise");
+	}
+
+	/* (non-Javadoc)
+	 * @see de.jandavid.asxcel.model.Migration#migrate(de.jandavid.asxcel.model.Database)
+	 */
+	@Override
+	public void migrate(Database database) throws SQLException {
+		database.executeUpdate("DELETE FROM `routes` WHERE `id` NOT IN "
+				+ "(SELECT MIN(`id`) FROM `routes` GROUP BY `enterprise`, `origin`, `destination`)");
+		database.executeUpdate("DELETE FROM `enterprise_has_airport` WHERE `id` NOT IN "
+				+ "(SELECT MIN(`id`) FROM `enterprise_has_airport` GROUP BY `enterprise`, `airport`)");
+
+		database.executeUpdate("CREATE UNIQUE INDEX IF NOT EXISTS `routes_enterprise_origin_destination` "
+				+ "ON `routes` (`enterprise`, `origin`, `destination`)");
+		database.executeUpdate("CREATE UNIQUE INDEX IF NOT EXISTS `enterprise_has_airport_enterprise_airport` "
+				+ "ON `enterprise_has_airport` (`enterprise`, `airport`)");
+	}
+
+}
@@ -0,0 +1,61 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.sql.SQLException;
+
+/**
+ * Update to version 4
+ * 
+ * Version 4 adds an index on routes (enterprise, column) for each column of
+ * the routes table the RoutePager can order by, so a page of routes can be
+ * read from the index in order instead of sorting all routes of the
+ * enterprise. The ID of the route is the last part of every index, which
+ * also covers the ID the pages are ordered by second.
+ * The version of SQLite the application ships with has to sort the rows
+ * whose key IS NULL, so NULL in these columns gets replaced by 0, which is
+ * their default and the value the application has always shown for them.
+ * Ordering by a column of the airports cannot use an index, because the
+ * version of SQLite the application ships with only uses an index for the
+ * ORDER BY clause if it belongs to the outermost table of the join.
+ * 
+ * @author jdno
+ */
+public class MigrationTo4 extends Migration {
+	
+	/**
+	 * The columns of the routes table that get indexed.
+	 */
+	private static final String[] COLUMNS = {"distance", "loadFrom", "loadTo", "scheduled"};
+
+	public MigrationTo4() {
+		super(4, "Add indexes to order the routes by");
+	}
+
+	/* (non-Javadoc)
+	 * @see de.jandavid.asxcel.model.Migration#migrate(de.jandavid.asxcel.model.Database)
+	 */
+	@Override
+	public void migrate(Database database) throws SQLException {
+		for(String column: COLUMNS) {
+			database.executeUpdate("UPDATE `routes` SET `" + column + "` = 0 WHERE `" + column + "` IS NULL");
+			database.executeUpdate("CREATE INDEX IF NOT EXISTS `routes_enterprise_" + column + "` "
+					+ "ON `routes` (`enterprise`, `" + column + "`)");
+		}
+	}
+
+}
@@ -0,0 +1,74 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.sql.SQLException;
+
+/**
+ * Update to version 5
+ * 
+ * Version 5 adds the table changes with a single change counter, so copies
+ * of the data, e.g. an EnterpriseSnapshot, can tell if they are outdated.
+ * The version of SQLite the application ships with does not offer
+ * PRAGMA data_version yet, which would serve the same purpose.
+ * 
+ * An even counter means that nothing has changed since the last copy has
+ * been sealed at it. Triggers on the tables of the enterprises make the
+ * counter odd with the first row that gets inserted, updated or deleted.
+ * Further changes only check the counter, so a bulk import does not update
+ * it once per row. A copy seals the counter by making it even again before
+ * it reads the data, and is outdated as soon as the counter differs.
+ * 
+ * @author jdno
+ */
+public class MigrationTo5 extends Migration {
+	
+	/**
+	 * The tables whose changes get counted.
+	 */
+	private static final String[] TABLES = {"countries", "airports", "enterprises",
+		"enterprise_has_airport", "routes"};
+	
+	/**
+	 * The statements that change rows.
+	 */
+	private static final String[] EVENTS = {"INSERT", "UPDATE", "DELETE"};
+
+	public MigrationTo5() {
+		super(5, "Count the changes of the data");
+	}
+
+	/* (non-Javadoc)
+	 * @see de.jandavid.asxcel.model.Migration#migrate(de.jandavid.asxcel.model.Database)
+	 */
+	@Override
+	public void migrate(Database database) throws SQLException {
+		database.executeUpdate("CREATE TABLE IF NOT EXISTS `changes` (`id` INTEGER PRIMARY KEY, `counter` INTEGER NOT NULL)");
+		database.executeUpdate("INSERT OR IGNORE INTO `changes` (`id`, `counter`) VALUES (1, 0)");
+		
+		for(String table: TABLES) {
+			for(String event: EVENTS) {
+				database.executeUpdate("CREATE TRIGGER IF NOT EXISTS `count_" + event.toLowerCase() + "_" + table + "` "
+						+ "AFTER " + event + " ON `" + table + "` "
+						+ "WHEN (SELECT `counter` FROM `changes` WHERE `id` = 1) % 2 = 0 BEGIN "
+						+ "UPDATE `changes` SET `counter` = `counter` + 1 WHERE `id` = 1; "
+						+ "END");
+			}
+		}
+	}
+
+}
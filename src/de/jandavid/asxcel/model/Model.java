@@ -16,9 +16,14 @@
  */
 package de.jandavid.asxcel.model;
 
+import java.io.File;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * The Model coordinates everything that is related to data and how it
@@ -30,14 +35,115 @@ import java.util.Collections;
 public class Model {
 	
 	/**
-	 * This list contains all airports.
+	 * The query that reads all airports of an enterprise
+	 */
+	public static final String AIRPORTS_QUERY = "SELECT `a`.`id`, `a`.`name`, `a`.`iata`, `a`.`passengers`, " +
+			"`a`.`cargo`, `a`.`size`, `a`.`transfer`, `a`.`country` FROM `airports` AS `a` " +
+			"INNER JOIN `enterprise_has_airport` AS `e` ON `a`.`id` = `e`.`airport` " +
+			"WHERE `e`.`enterprise` = ?";
+	
+	/**
+	 * The query that reads all countries
+	 */
+	public static final String COUNTRIES_QUERY = "SELECT `id`, `name` FROM `countries`";
+	
+	/**
+	 * The query that reads the name of a country by its ID
+	 */
+	public static final String COUNTRY_QUERY = "SELECT `name` FROM `countries` WHERE `id` = ?";
+	
+	/**
+	 * The query that creates an enterprise at the airport with the given name
+	 */
+	public static final String CREATE_ENTERPRISE_QUERY = "INSERT INTO `enterprises` (`name`, `airport`) " +
+			"SELECT ? AS `enterprise`, `id` FROM `airports` WHERE `name` = ?";
+	
+	/**
+	 * The query that adds the main hub of an enterprise to its airports
+	 */
+	public static final String ADD_MAIN_HUB_QUERY = "INSERT INTO `enterprise_has_airport` (`enterprise`, `airport`) " +
+			"SELECT `e`.`id`, `a`.`id` FROM `enterprises` AS `e` " +
+			"INNER JOIN `airports` AS `a` ON `e`.`airport` = `a`.`id` " +
+			"WHERE `e`.`name` = ?";
+	
+	/**
+	 * The query that deletes an airport
+	 */
+	public static final String DELETE_AIRPORT_QUERY = "DELETE FROM `airports` WHERE `id` = ?";
+	
+	/**
+	 * The query that reads the ID of an enterprise by its name
+	 */
+	public static final String ENTERPRISE_ID_QUERY = "SELECT `id` FROM `enterprises` WHERE `name` = ?";
+	
+	/**
+	 * The queries that delete an enterprise, in the order they have to be executed
+	 */
+	public static final String[] DELETE_ENTERPRISE_QUERIES = {
+		"DELETE FROM `enterprise_has_airport` WHERE `enterprise` = ?",
+		"DELETE FROM `routes` WHERE `enterprise` = ?",
+		"DELETE FROM `enterprises` WHERE `id` = ?"
+	};
+	
+	/**
+	 * This list contains all airports, sorted by their names.
 	 */
 	private ArrayList<Airport> airports = new ArrayList<Airport>();
 	
 	/**
-	 * This list contains all countries.
+	 * This maps the IDs of the airports to the airports. It can be read by
+	 * other threads, e.g. by a thread that reads routes in the background.
+	 */
+	private volatile ConcurrentHashMap<Integer, Airport> airportsById = new ConcurrentHashMap<Integer, Airport>();
+	
+	/**
+	 * This maps the IDs of all airports that have been read from the database
+	 * to their objects, including airports of enterprises loaded before. It
+	 * makes sure every row is represented by exactly one object.
+	 */
+	private HashMap<Integer, Airport> airportIdentities = new HashMap<Integer, Airport>();
+	
+	/**
+	 * This index finds airports by their names, IATA codes and countries. It
+	 * gets replaced when another enterprise becomes the current one.
+	 */
+	private volatile AirportSearchIndex airportIndex = new AirportSearchIndex();
+	
+	/**
+	 * This maps the IATA codes (in upper case) of the airports to the airports.
+	 */
+	private HashMap<String, Airport> airportsByIata = new HashMap<String, Airport>();
+	
+	/**
+	 * This maps the names of the airports to the airports.
+	 */
+	private HashMap<String, Airport> airportsByName = new HashMap<String, Airport>();
+	
+	/**
+	 * This list contains all countries, sorted by their names.
 	 */
 	private ArrayList<Country> countries = new ArrayList<Country>();
+	
+	/**
+	 * This maps the IDs of the countries to the countries.
+	 */
+	private HashMap<Integer, Country> countriesById = new HashMap<Integer, Country>();
+	
+	/**
+	 * This maps the names of the countries to the countries.
+	 */
+	private HashMap<String, Country> countriesByName = new HashMap<String, Country>();
+	
+	/**
+	 * This lock guards the identities of the airports and the countries by
+	 * their IDs, which get read by the thread an enterprise is opened on.
+	 */
+	private final Object identityLock = new Object();
+
+	/**
+	 * This creates backups of the database on demand.
+	 */
+	private BackupManager backupManager;
 
 	/**
 	 * The SQLite DB gets accessed through this instance of Database.
@@ -50,6 +156,22 @@ public class Model {
 	 */
 	private Enterprise enterprise;
 	
+	/**
+	 * These listeners get informed about changes of airports and routes.
+	 */
+	private CopyOnWriteArrayList<ModelListener> listeners = new CopyOnWriteArrayList<ModelListener>();
+	
+	/**
+	 * If this is set, enterprises get read from snapshots when possible.
+	 */
+	private SnapshotManager snapshotManager;
+	
+	/**
+	 * If this is set, changes of single fields get written by this queue
+	 * instead of being written immediately.
+	 */
+	private WriteBehindQueue writeBehindQueue;
+	
 	/**
 	 * The model connects to the database while initialization, and throws
 	 * and exception if that fails. After opening the database no further
@@ -61,6 +183,51 @@ public class Model {
 	 */
 	public Model(String databaseName) throws ClassNotFoundException, SQLException {
 		database = new Database(databaseName);
+		backupManager = new BackupManager(this);
+	}
+	
+	/**
+	 * This method adds a listener that gets informed about all changes of
+	 * airports and routes.
+	 * @param listener The listener to add.
+	 */
+	public void addModelListener(ModelListener listener) {
+		listeners.add(listener);
+	}
+	
+	/**
+	 * This method removes a listener, so it does not get informed anymore.
+	 * @param listener The listener to remove.
+	 */
+	public void removeModelListener(ModelListener listener) {
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * This method informs all listeners about a change.
+	 * @param e The event describing the change.
+	 */
+	void fireModelEvent(ModelEvent e) {
+		for(ModelListener listener: listeners) {
+			listener.modelChanged(e);
+		}
+	}
+	
+	/**
+	 * This method writes all pending changes and closes the database. The
+	 * model cannot be used anymore afterwards.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public void close() throws SQLException {
+		if(snapshotManager != null) {
+			snapshotManager.shutdown();
+		}
+		
+		try {
+			disableWriteBehind();
+		} finally {
+			database.closeConnection();
+		}
 	}
 	
 	/**
@@ -70,17 +237,18 @@ public class Model {
 	 * @throws SQLException If a SQL error occurs this gets thrown.
 	 */
 	public Airport createAirport(String name) throws SQLException {
-		if(getAirport(name) == null) {
-			Airport a = new Airport(this, name);
-			
-			airports.add(a);
-			Collections.sort(airports);
-			
-			return a;
+		Airport a = getAirport(name);
+		
+		if(a == null) {
+			// The new airport gets looked up by its name, which may have a pending change.
+			flush();
+			a = registerAirport(new Airport(this, name));
 			
-		} else {
-			return getAirport(name);
+			insertSorted(airports, a);
+			indexAirport(a);
 		}
+		
+		return a;
 	}
 	
 	/**
@@ -90,16 +258,14 @@ public class Model {
 	 * @throws SQLException If a SQL error occurs this gets thrown.
 	 */
 	public Country createCountry(String name) throws SQLException {
-		if(getCountry(name) == null) {
-			Country c = new Country(this, name);
-			
-			countries.add(c);
-			Collections.sort(countries);
-			
-			return c;
-		} else {
-			return getCountry(name);
+		Country c = getCountry(name);
+		
+		if(c == null) {
+			c = new Country(this, name);
+			registerCountry(c);
 		}
+		
+		return c;
 	}
 	
 	/**
@@ -109,26 +275,24 @@ public class Model {
 	 * @param countryName The name of the enterprise's country.
 	 * @throws Exception If the enterprise cannot be created this gets thrown.
 	 */
-	public void createEnterprise(String name, String airportName) throws Exception {
-		String query = "INSERT OR IGNORE INTO `airports` (`name`) VALUES (?)";
-		ArrayList<Object> params = new ArrayList<Object>(1);
-		params.add(airportName);
-		database.executeUpdate(query, params);
-		
-		params.clear();
-		query = "INSERT INTO `enterprises` (`name`, `airport`) SELECT ? AS `enterprise`, `id` FROM " +
-				"`airports` WHERE `name` = ?";
-		params.add(name);
-		params.add(airportName);
-		database.executeUpdate(query, params);
-		
-		params.clear();
-		query = "INSERT INTO `enterprise_has_airport` (`enterprise`, `airport`) " +
-				"SELECT `e`.`id`, `a`.`id` FROM `enterprises` AS `e` " +
-				"INNER JOIN `airports` AS `a` ON `e`.`airport` = `a`.`id` " +
-				"WHERE `e`.`name` = ?";
-		params.add(name);
-		database.executeUpdate(query, params);
+	public void createEnterprise(final String name, final String airportName) throws Exception {
+		database.inTransaction(new Transaction() {
+			@Override
+			public void execute(Database database) throws SQLException {
+				ArrayList<Object> params = new ArrayList<Object>(2);
+				params.add(airportName);
+				database.executeUpdate(Airport.INSERT_QUERY, params);
+				
+				params.clear();
+				params.add(name);
+				params.add(airportName);
+				database.executeUpdate(CREATE_ENTERPRISE_QUERY, params);
+				
+				params.clear();
+				params.add(name);
+				database.executeUpdate(ADD_MAIN_HUB_QUERY, params);
+			}
+		});
 		
 		loadEnterprise(name);
 	}
@@ -147,20 +311,28 @@ public class Model {
 	/**
 	 * This method removes an airport by first triggering the removal of
 	 * all connected routes and then deleting the airport itself from the
-	 * database.
+	 * database. Changes of the airport that have not been written yet get
+	 * dropped, so that they cannot hit a new row that reuses its ID.
 	 * @param airportName The name of the airport to be removed.
 	 * @throws SQLException If a SQL error occurs this gets thrown.
 	 */
 	public void deleteAirport(String airportName) throws SQLException {
 		Airport airport = getAirport(airportName);
+		discardPendingWrites("airports", airport.getId());
 
-		String query = "DELETE FROM `airports` WHERE `id` = ?";
-		ArrayList<Object> params = new ArrayList<Object>(2);
+		ArrayList<Object> params = new ArrayList<Object>(1);
 		params.add(airport.getId());
 		
-		database.executeUpdate(query, params);
+		database.executeUpdate(DELETE_AIRPORT_QUERY, params);
 		
-		airports.remove(airport);
+		removeSorted(airports, airport);
+		synchronized(identityLock) {
+			airportIdentities.remove(airport.getId());
+		}
+		airportsById.remove(airport.getId());
+		airportsByName.remove(airport.getName());
+		unindexIata(airport, airport.getIataCode());
+		airportIndex.remove(airport);
 	}
 	
 	/**
@@ -171,20 +343,74 @@ public class Model {
 	 * @throws SQLException If a SQL error occurs this gets thrown.
 	 */
 	public void deleteEnterprise(String enterpriseName) throws SQLException {
-		String query = "SELECT `id` FROM `enterprises` WHERE `name` = '" + enterpriseName + "'";
-		DatabaseResult dr = database.executeQuery(query);
+		ArrayList<Object> params = new ArrayList<Object>(1);
+		params.add(enterpriseName);
+		DatabaseResult dr = database.executeQuery(ENTERPRISE_ID_QUERY, params);
 		
 		if(dr.next()) {
-			int enterprise = dr.getInt(0);
-			
-			query = "DELETE FROM `enterprise_has_airport` WHERE `enterprise` = '" + enterprise + "'";
-			database.executeUpdate(query);
+			final ArrayList<Object> enterprise = new ArrayList<Object>(1);
+			enterprise.add(dr.getInt(0));
 			
-			query = "DELETE FROM `routes` WHERE `enterprise` = '" + enterprise + "'";
-			database.executeUpdate(query);
-			
-			query = "DELETE FROM `enterprises` WHERE `id` = '" + enterprise + "'";
-			database.executeUpdate(query);
+			database.inTransaction(new Transaction() {
+				@Override
+				public void execute(Database database) throws SQLException {
+					for(String query: DELETE_ENTERPRISE_QUERIES) {
+						database.executeUpdate(query, enterprise);
+					}
+				}
+			});
+		}
+	}
+	
+	/**
+	 * This method stops writing changes of single fields in the background. All
+	 * pending changes get written before.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public void disableWriteBehind() throws SQLException {
+		if(writeBehindQueue != null) {
+			WriteBehindQueue queue = writeBehindQueue;
+			writeBehindQueue = null;
+			queue.shutdown();
+		}
+	}
+	
+	/**
+	 * This method makes the setters of airports and routes return immediately.
+	 * Their changes get collected and written to the database in the background
+	 * after the given interval.
+	 * @param flushInterval The time in milliseconds between two writes.
+	 * @param listener The listener to inform if changes cannot be written.
+	 * @throws SQLException If the previous queue cannot be flushed this gets thrown.
+	 */
+	public void enableWriteBehind(long flushInterval, WriteBehindListener listener) throws SQLException {
+		disableWriteBehind();
+		
+		writeBehindQueue = new WriteBehindQueue(database, flushInterval);
+		writeBehindQueue.setListener(listener);
+	}
+	
+	/**
+	 * This method makes the model keep snapshots of the enterprises in the
+	 * given directory, from which they get read the next time they are
+	 * opened, as long as the data has not changed since.
+	 * @param directory The directory to store the snapshots in.
+	 */
+	public void enableSnapshots(File directory) {
+		if(snapshotManager != null) return;
+		
+		snapshotManager = new SnapshotManager(this, directory);
+		addModelListener(snapshotManager);
+	}
+	
+	/**
+	 * This method writes all changes that are waiting in the background. If
+	 * changes get written immediately nothing happens.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public void flush() throws SQLException {
+		if(writeBehindQueue != null) {
+			writeBehindQueue.flush();
 		}
 	}
 	
@@ -197,60 +423,175 @@ public class Model {
 	}
 	
 	/**
-	 * This method loads an airport from the database, and adds it to the list
-	 * of available airports.
+	 * This method loads the airports of an enterprise from the database, and makes
+	 * them the list of available airports. Airports that have been loaded before
+	 * keep their objects, which only get updated.
+	 * @param enterprise The ID of the enterprise.
 	 * @throws SQLException If a SQL error occurs this gets thrown.
 	 */
 	public void loadAirports(int enterprise) throws SQLException {
-		airports.clear();
+		installAirports(readAirports(enterprise));
+	}
+	
+	/**
+	 * This method reads the airports of an enterprise from the database without
+	 * changing the airports of the model, so it can be called on another thread.
+	 * They can be made the list of available airports with installAirports().
+	 * @param enterprise The ID of the enterprise.
+	 * @return The airports and their indexes.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	LoadedAirports readAirports(int enterprise) throws SQLException {
+		LoadedAirports loaded = new LoadedAirports();
 		
-		String query = "SELECT `a`.`id`, `a`.`name`, `a`.`iata`, `a`.`passengers`, " +
-				"`a`.`cargo`, `a`.`size`, `a`.`transfer`, `c`.`name` FROM `airports` AS `a` " +
-				"INNER JOIN `countries` AS `c` ON `a`.`country` = `c`.`id`" +
-				"INNER JOIN `enterprise_has_airport` AS `e` ON `a`.`id` = `e`.`airport`" +
-				"WHERE `e`.`enterprise` = '" + enterprise + "'";
+		ArrayList<Object> params = new ArrayList<Object>(1);
+		params.add(enterprise);
 		
-		DatabaseResult dr = database.executeQuery(query);
+		DatabaseCursor dr = database.openCursor(AIRPORTS_QUERY, params);
 		
 		int id, pax, cargo;
 		String name, iata, size;
 		Country country;
 		boolean transferPossible;
 		
-		while(dr.next()) {
-			id = dr.getInt(0);
-			name = dr.getString(1);
-			iata = dr.getString(2);
-			pax = dr.getInt(3);
-			cargo = dr.getInt(4);
-			size = dr.getString(5);
-			transferPossible = dr.getInt(6) == 1 ? true : false;
-			country = getCountry(dr.getString(7));
-			
-			airports.add(new Airport(this, id, name, country, iata, size, pax, cargo, transferPossible));
+		try {
+			while(dr.next()) {
+				id = dr.getInt(0);
+				name = dr.getString(1);
+				iata = dr.getString(2);
+				pax = dr.getInt(3);
+				cargo = dr.getInt(4);
+				size = dr.getString(5);
+				transferPossible = dr.getBoolean(6);
+				country = readCountry(loaded, dr.getInt(7));
+				
+				// Airports whose country does not exist were left out by the former join.
+				if(country == null) continue;
+				
+				addLoadedAirport(loaded, id, name, country, iata, size, pax, cargo, transferPossible);
+			}
+		} finally {
+			dr.close();
 		}
 		
-		Collections.sort(airports);
+		loaded.sort();
+		return loaded;
 	}
 	
 	/**
-	 * This methods loads all existing countries from the database.
-	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 * This method reads the airports of an enterprise from its snapshot, like
+	 * readAirports(int) does. Countries that have been added since the model
+	 * has been initialized are taken from the snapshot, too.
+	 * @param snapshot The snapshot of the enterprise.
+	 * @return The airports and their indexes.
 	 */
-	public void loadCountries() throws SQLException {
-		countries.clear();
+	LoadedAirports readAirports(EnterpriseSnapshot snapshot) {
+		LoadedAirports loaded = new LoadedAirports();
+		
+		for(int i = 0; i < snapshot.getAirportCount(); i++) {
+			int countryId = snapshot.getAirportCountry(i);
+			Country country;
+			
+			synchronized(identityLock) {
+				country = countriesById.get(countryId);
+			}
+			
+			if(country == null) {
+				country = loaded.countries.get(countryId);
+			}
+			
+			if(country == null) {
+				int index = snapshot.findCountry(countryId);
+				
+				// Airports whose country does not exist are left out, like in readAirports(int).
+				if(index < 0) continue;
+				
+				country = new Country(this, countryId, snapshot.getCountryName(index));
+				loaded.countries.put(countryId, country);
+			}
+			
+			addLoadedAirport(loaded, snapshot.getAirportId(i), snapshot.getAirportName(i), country,
+					snapshot.getAirportIataCode(i), snapshot.getAirportSize(i), snapshot.getAirportPassengers(i),
+					snapshot.getAirportCargo(i), snapshot.isAirportTransferPossible(i));
+		}
 		
-		String query = "SELECT * FROM `countries`";
+		loaded.sort();
+		return loaded;
+	}
+	
+	/**
+	 * This method makes airports that have been read by readAirports() the
+	 * list of available airports. Airports that have been read before get
+	 * their new values now, and new countries get registered. It has to be
+	 * called on the thread that owns the model.
+	 * @param loaded The airports to install.
+	 */
+	void installAirports(LoadedAirports loaded) {
+		for(Country c: loaded.countries.values()) {
+			if(countriesById.get(c.getId()) == null) {
+				registerCountry(c);
+			}
+		}
 		
-		DatabaseResult dr = database.executeQuery(query);
+		airports = loaded.airports;
+		airportsById = new ConcurrentHashMap<Integer, Airport>(loaded.airportsById);
+		airportsByIata = loaded.airportsByIata;
+		airportsByName = loaded.airportsByName;
+		airportIndex = loaded.airportIndex;
 		
-		Country c;
-		while(dr.next()) {
-			c = new Country(this, dr.getInt(0), dr.getString(1));
-			countries.add(c);
+		for(Map.Entry<Airport, Airport> refresh: loaded.refreshes.entrySet()) {
+			Airport a = refresh.getKey();
+			Airport values = refresh.getValue();
+			
+			if(airportsByName.get(a.getName()) == a) {
+				airportsByName.remove(a.getName());
+			}
+			unindexIata(a, a.getIataCode());
+			
+			a.refresh(values.getName(), values.getCountry(), values.getIataCode(), values.getSize(),
+					values.getPassengers(), values.getCargo(), values.isTransferPossible());
+			indexAirport(a);
 		}
 		
-		Collections.sort(countries);
+		if(!loaded.refreshes.isEmpty()) {
+			Collections.sort(airports);
+		}
+	}
+	
+	/**
+	 * This methods loads all existing countries from the database. Countries
+	 * that have been loaded before keep their objects.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public void loadCountries() throws SQLException {
+		synchronized(identityLock) {
+			HashMap<Integer, Country> known = new HashMap<Integer, Country>(countriesById);
+			
+			countries.clear();
+			countriesById.clear();
+			countriesByName.clear();
+			
+			DatabaseCursor dr = database.openCursor(COUNTRIES_QUERY);
+			
+			Country c;
+			try {
+				while(dr.next()) {
+					c = known.get(dr.getInt(0));
+					
+					if(c == null || !c.getName().equals(dr.getString(1))) {
+						c = new Country(this, dr.getInt(0), dr.getString(1));
+					}
+					
+					countries.add(c);
+					countriesById.put(c.getId(), c);
+					countriesByName.put(c.getName(), c);
+				}
+			} finally {
+				dr.close();
+			}
+			
+			Collections.sort(countries);
+		}
 	}
 	
 	/**
@@ -261,20 +602,55 @@ public class Model {
 	 * @throws Exception If the enterprise does not exists this gets thrown.
 	 */
 	public void loadEnterprise(String name) throws SQLException, Exception {
+		flush();
 		enterprise = new Enterprise(this, name);
 	}
 	
+	/**
+	 * This method opens an enterprise without loading its routes and without
+	 * making it the current enterprise. Its airports get read, though, and
+	 * replace the airports of the current enterprise once it is made the
+	 * current one with setEnterprise(). Nothing of the model gets changed,
+	 * so this can be called on another thread, and the routes can be loaded
+	 * in batches afterwards.
+	 * @param name The name of the enterprise.
+	 * @return The enterprise without routes.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 * @throws Exception If the enterprise cannot be found this gets thrown.
+	 */
+	public Enterprise openEnterprise(String name) throws SQLException, Exception {
+		flush();
+		return new Enterprise(this, name, false);
+	}
+	
 	/**
 	 * Get an airport by its name. Returns null if airport does not exist.
 	 * @param name The name of the airport to look for.
 	 * @return The airport with the given name or null.
 	 */
 	public Airport getAirport(String name) {
-		for(Airport a: airports) {
-			if(a.getName().equals(name)) return a;
-		}
+		return airportsByName.get(name);
+	}
+	
+	/**
+	 * Get an airport by its ID. Returns null if the airport is not loaded.
+	 * @param id The ID of the airport to look for.
+	 * @return The airport with the given ID or null.
+	 */
+	public Airport getAirportById(int id) {
+		return airportsById.get(id);
+	}
+	
+	/**
+	 * Get an airport by its IATA code, regardless of the case. Returns null
+	 * if no airport with this IATA code is loaded.
+	 * @param iataCode The IATA code of the airport to look for.
+	 * @return The airport with the given IATA code or null.
+	 */
+	public Airport getAirportByIata(String iataCode) {
+		if(iataCode == null) return null;
 		
-		return null;
+		return airportsByIata.get(iataCode.toUpperCase());
 	}
 	
 	/**
@@ -283,11 +659,272 @@ public class Model {
 	 * @return The country with the given name or null.
 	 */
 	public Country getCountry(String name) {
-		for(Country c: countries) {
-			if(c.getName().equals(name)) return c;
+		return countriesByName.get(name);
+	}
+	
+	/**
+	 * Get a country by its ID. Returns null if the country does not exist.
+	 * @param id The ID of the country to look for.
+	 * @return The country with the given ID or null.
+	 */
+	public Country getCountryById(int id) {
+		return countriesById.get(id);
+	}
+	
+	/**
+	 * This method drops the changes of a row that wait in the write-behind
+	 * queue. It has to be called before the row gets deleted.
+	 * @param table The table of the row.
+	 * @param id The ID of the row.
+	 */
+	void discardPendingWrites(String table, int id) {
+		if(writeBehindQueue != null) {
+			writeBehindQueue.discard(table, id);
+		}
+	}
+	
+	/**
+	 * This method changes the value of a single field of a row. It gets used by
+	 * the setters of airports and routes, and writes the change either immediately
+	 * or through the write-behind queue.
+	 * @param table The table of the row.
+	 * @param field The name of the column.
+	 * @param id The ID of the row.
+	 * @param value The value to set.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	void updateField(String table, String field, int id, Object value) throws SQLException {
+		if(writeBehindQueue != null) {
+			writeBehindQueue.enqueue(table, field, id, value);
+		} else {
+			String query = "UPDATE `" + table + "` SET `" + field + "` = ? WHERE `id` = ?";
+			ArrayList<Object> params = new ArrayList<Object>(2);
+			params.add(value);
+			params.add(id);
+			
+			database.executeUpdate(query, params);
+		}
+	}
+	
+	/**
+	 * This method resolves the ID of a country to its object. Countries are
+	 * loaded when the model gets initialized, so only a country that has been
+	 * added since then costs a query.
+	 * @param id The ID of the country.
+	 * @return The country, or null if no country with this ID exists.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	Country resolveCountry(int id) throws SQLException {
+		Country c = countriesById.get(id);
+		
+		if(c == null) {
+			ArrayList<Object> params = new ArrayList<Object>(1);
+			params.add(id);
+			
+			DatabaseResult dr = database.executeQuery(COUNTRY_QUERY, params);
+			
+			if(dr.next()) {
+				c = new Country(this, id, dr.getString(0));
+				registerCountry(c);
+			}
+		}
+		
+		return c;
+	}
+	
+	/**
+	 * This auxiliary method resolves the ID of a country to its object while airports
+	 * get read, like resolveCountry() does. A country that has been added
+	 * since the model has been initialized is not registered, but kept with
+	 * the airports until they get installed.
+	 * @param loaded The airports that are being read.
+	 * @param id The ID of the country.
+	 * @return The country, or null if no country with this ID exists.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	private Country readCountry(LoadedAirports loaded, int id) throws SQLException {
+		Country c;
+		
+		synchronized(identityLock) {
+			c = countriesById.get(id);
+		}
+		
+		if(c == null) {
+			c = loaded.countries.get(id);
+		}
+		
+		if(c == null) {
+			ArrayList<Object> params = new ArrayList<Object>(1);
+			params.add(id);
+			
+			DatabaseResult dr = database.executeQuery(COUNTRY_QUERY, params);
+			
+			if(dr.next()) {
+				c = new Country(this, id, dr.getString(0));
+				loaded.countries.put(id, c);
+			}
+		}
+		
+		return c;
+	}
+	
+	/**
+	 * This method opens the snapshot of an enterprise, if snapshots are
+	 * enabled and the snapshot is up to date.
+	 * @param enterprise The ID of the enterprise.
+	 * @return The snapshot, or null if the enterprise has to be read from
+	 * 		the database.
+	 */
+	EnterpriseSnapshot openSnapshot(int enterprise) {
+		return snapshotManager != null ? snapshotManager.open(enterprise) : null;
+	}
+	
+	/**
+	 * This method updates the indexes after the IATA code of an airport
+	 * has been changed.
+	 * @param airport The airport that has been changed.
+	 * @param oldIataCode The IATA code the airport had before.
+	 */
+	void airportIataChanged(Airport airport, String oldIataCode) {
+		if(airportsById.get(airport.getId()) != airport) return;
+		
+		unindexIata(airport, oldIataCode);
+		indexAirport(airport);
+	}
+	
+	/**
+	 * This method updates the indexes and the order of the airports after
+	 * an airport has been renamed.
+	 * @param airport The airport that has been renamed.
+	 * @param oldName The name the airport had before.
+	 */
+	void airportRenamed(Airport airport, String oldName) {
+		if(airportsById.get(airport.getId()) != airport) return;
+		
+		airportsByName.remove(oldName);
+		airports.remove(airport);
+		insertSorted(airports, airport);
+		indexAirport(airport);
+	}
+	
+	/**
+	 * This auxiliary method adds an airport that has been read to the loaded
+	 * airports. If the airport has been loaded before its object is used
+	 * again, and gets the new values when the airports are installed.
+	 */
+	private void addLoadedAirport(LoadedAirports loaded, int id, String name, Country country, String iata,
+			String size, int pax, int cargo, boolean transferPossible) {
+		Airport a;
+		
+		synchronized(identityLock) {
+			a = airportIdentities.get(id);
+			
+			if(a == null) {
+				a = new Airport(this, id, name, country, iata, size, pax, cargo, transferPossible);
+				airportIdentities.put(id, a);
+			} else if(!a.hasValues(name, country, iata, size, pax, cargo, transferPossible)) {
+				loaded.refreshes.put(a, new Airport(this, id, name, country, iata, size, pax, cargo, transferPossible));
+			}
 		}
 		
-		return null;
+		loaded.add(a);
+	}
+	
+	/**
+	 * This auxiliary method adds a country that has not been loaded with
+	 * the others to the list of countries and its indexes.
+	 * @param country The country to add.
+	 */
+	private void registerCountry(Country country) {
+		synchronized(identityLock) {
+			insertSorted(countries, country);
+			countriesById.put(country.getId(), country);
+			countriesByName.put(country.getName(), country);
+		}
+	}
+	
+	/**
+	 * This auxiliary method adds an airport to the indexes.
+	 * @param airport The airport to add.
+	 */
+	private void indexAirport(Airport airport) {
+		airportsById.put(airport.getId(), airport);
+		airportsByName.put(airport.getName(), airport);
+		airportIndex.add(airport);
+		
+		if(airport.getIataCode() != null && !airport.getIataCode().equals("")) {
+			airportsByIata.put(airport.getIataCode().toUpperCase(), airport);
+		}
+	}
+	
+	/**
+	 * This auxiliary method makes sure a newly synchronized airport does not
+	 * duplicate an object that already represents its row. In that case the
+	 * existing object gets the new values and is returned instead.
+	 * @param airport The airport that has been synchronized with the database.
+	 * @return The canonical object of the airport.
+	 */
+	private Airport registerAirport(Airport airport) {
+		Airport existing;
+		
+		synchronized(identityLock) {
+			existing = airportIdentities.get(airport.getId());
+			
+			if(existing == null) {
+				airportIdentities.put(airport.getId(), airport);
+				return airport;
+			}
+		}
+		
+		existing.refresh(airport.getName(), airport.getCountry(), airport.getIataCode(), airport.getSize(),
+				airport.getPassengers(), airport.getCargo(), airport.isTransferPossible());
+		
+		return existing;
+	}
+	
+	/**
+	 * This auxiliary method removes an airport from the IATA index, if
+	 * the given IATA code still points to it.
+	 * @param airport The airport to remove.
+	 * @param iataCode The IATA code it is indexed with.
+	 */
+	private void unindexIata(Airport airport, String iataCode) {
+		if(iataCode != null && airportsByIata.get(iataCode.toUpperCase()) == airport) {
+			airportsByIata.remove(iataCode.toUpperCase());
+		}
+	}
+	
+	/**
+	 * This auxiliary method inserts an element into a sorted list, at the
+	 * position a binary search finds for it.
+	 * @param list The sorted list.
+	 * @param element The element to insert.
+	 */
+	private static <T extends Comparable<? super T>> void insertSorted(ArrayList<T> list, T element) {
+		int index = Collections.binarySearch(list, element);
+		
+		list.add(index < 0 ? -(index + 1) : index, element);
+	}
+	
+	/**
+	 * This auxiliary method removes an element from a sorted list, using a
+	 * binary search to find it.
+	 * @param list The sorted list.
+	 * @param element The element to remove.
+	 */
+	private static <T extends Comparable<? super T>> void removeSorted(ArrayList<T> list, T element) {
+		int index = Collections.binarySearch(list, element);
+		
+		if(index >= 0) {
+			list.remove(index);
+		}
+	}
+	
+	/**
+	 * @return the airportIndex
+	 */
+	public AirportSearchIndex getAirportIndex() {
+		return airportIndex;
 	}
 	
 	/**
@@ -297,6 +934,13 @@ public class Model {
 		return airports;
 	}
 
+	/**
+	 * @return the backupManager
+	 */
+	public BackupManager getBackupManager() {
+		return backupManager;
+	}
+
 	/**
 	 * @return the countries
 	 */
@@ -311,10 +955,35 @@ public class Model {
 		return database;
 	}
 
+	/**
+	 * @return the snapshot manager, or null if snapshots are not enabled
+	 */
+	public SnapshotManager getSnapshotManager() {
+		return snapshotManager;
+	}
+	
 	/**
 	 * @return the enterprise
 	 */
 	public Enterprise getEnterprise() {
 		return enterprise;
 	}
+
+	/**
+	 * This method makes an enterprise the current one, e.g. after it has
+	 * been opened with openEnterprise(). Its airports replace the available
+	 * airports.
+	 * @param enterprise the enterprise to set
+	 */
+	public void setEnterprise(Enterprise enterprise) {
+		installAirports(enterprise.getLoadedAirports());
+		this.enterprise = enterprise;
+	}
+
+	/**
+	 * @return the writeBehindQueue, or null if changes get written immediately
+	 */
+	public WriteBehindQueue getWriteBehindQueue() {
+		return writeBehindQueue;
+	}
 }
@@ -0,0 +1,177 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+/**
+ * A ModelEvent describes a single change of the data of the model. It
+ * tells what kind of change happened, which object is affected, and
+ * depending on the type which field changed or at which position of the
+ * enterprise's routes a route has been added or removed.
+ * 
+ * @author jdno
+ */
+public class ModelEvent {
+	
+	/**
+	 * The kinds of changes a ModelEvent can describe.
+	 */
+	public enum Type {
+		/**
+		 * A field of an airport or a route has been set.
+		 */
+		FIELD_CHANGED,
+		
+		/**
+		 * A route has been added to the enterprise.
+		 */
+		ROUTE_ADDED,
+		
+		/**
+		 * A route has been removed from the enterprise.
+		 */
+		ROUTE_REMOVED,
+		
+		/**
+		 * A batch of routes has been appended while the enterprise is loaded.
+		 */
+		ROUTES_LOADED
+	}
+	
+	/**
+	 * The number of routes that have been loaded, 1 for all other types.
+	 */
+	private int count = 1;
+	
+	/**
+	 * The name of the field in the database that changed, or null.
+	 */
+	private String field;
+	
+	/**
+	 * The position of the route in the enterprise's list of routes, or -1.
+	 */
+	private int index;
+	
+	/**
+	 * The airport or route that changed.
+	 */
+	private Object source;
+	
+	/**
+	 * The kind of change.
+	 */
+	private Type type;
+	
+	/**
+	 * A ModelEvent gets initialized with all its attributes. Usually one of
+	 * the static factory methods should be used instead.
+	 * @param type The kind of change
+	 * @param source The airport or route that changed
+	 * @param field The name of the field that changed, or null
+	 * @param index The position of the route, or -1
+	 */
+	public ModelEvent(Type type, Object source, String field, int index) {
+		this.type = type;
+		this.source = source;
+		this.field = field;
+		this.index = index;
+	}
+	
+	/**
+	 * This method creates the event for a field of an airport or route that
+	 * has been set.
+	 * @param source The airport or route
+	 * @param field The name of the field in the database
+	 * @return The event
+	 */
+	public static ModelEvent fieldChanged(Object source, String field) {
+		return new ModelEvent(Type.FIELD_CHANGED, source, field, -1);
+	}
+	
+	/**
+	 * This method creates the event for a route that has been added.
+	 * @param route The route
+	 * @param index The position of the route in the enterprise's list of routes, or -1
+	 * 		if the enterprise is paged
+	 * @return The event
+	 */
+	public static ModelEvent routeAdded(Route route, int index) {
+		return new ModelEvent(Type.ROUTE_ADDED, route, null, index);
+	}
+	
+	/**
+	 * This method creates the event for a batch of routes that has been
+	 * appended to the routes of an enterprise.
+	 * @param enterprise The enterprise
+	 * @param index The position of the first route of the batch
+	 * @param count The number of routes in the batch
+	 * @return The event
+	 */
+	public static ModelEvent routesLoaded(Enterprise enterprise, int index, int count) {
+		ModelEvent e = new ModelEvent(Type.ROUTES_LOADED, enterprise, null, index);
+		e.count = count;
+		
+		return e;
+	}
+	
+	/**
+	 * This method creates the event for a route that has been removed.
+	 * @param route The route
+	 * @param index The position the route had in the enterprise's list of routes, or -1
+	 * 		if the enterprise is paged
+	 * @return The event
+	 */
+	public static ModelEvent routeRemoved(Route route, int index) {
+		return new ModelEvent(Type.ROUTE_REMOVED, route, null, index);
+	}
+
+	/**
+	 * @return the count
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the field
+	 */
+	public String getField() {
+		return field;
+	}
+
+	/**
+	 * @return the index
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the source
+	 */
+	public Object getSource() {
+		return source;
+	}
+
+	/**
+	 * @return the type
+	 */
+	public Type getType() {
+		return type;
+	}
+
+}
@@ -0,0 +1,35 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+/**
+ * A ModelListener gets informed about every change of the airports and
+ * routes of the model, so that views do not have to reload everything
+ * after a single change. It gets called on the thread that made the
+ * change, after the new value has been set.
+ * 
+ * @author jdno
+ */
+public interface ModelListener {
+
+	/**
+	 * This method gets called after the model has changed.
+	 * @param e The event describing the change
+	 */
+	public void modelChanged(ModelEvent e);
+
+}
@@ -0,0 +1,161 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+/**
+ * A PerformanceProfile is a set of SQLite pragmas that trade safety against
+ * speed. The Database applies one of them whenever it opens its connection,
+ * and can switch to another one at runtime.
+ * 
+ * @author jdno
+ */
+public enum PerformanceProfile {
+
+	/**
+	 * Every commit gets synced to disk. The write-ahead log is kept, because
+	 * the journal mode cannot be changed away from it while the readers of
+	 * the Database are open.
+	 */
+	SAFE("WAL", "FULL", 2000, 0, "DEFAULT", 3000),
+	
+	/**
+	 * The default for the GUI. The write-ahead log lets readers continue
+	 * while a change is written, and commits only get synced at checkpoints.
+	 */
+	FAST_INTERACTIVE("WAL", "NORMAL", 8000, 67108864, "MEMORY", 3000),
+	
+	/**
+	 * For imports and migrations. Nothing gets synced and a large cache is
+	 * used, so a crash while it is applied can corrupt the database. Callers
+	 * have to take a backup with the BackupManager before they use it.
+	 */
+	BULK_IMPORT("WAL", "OFF", 32000, 268435456, "MEMORY", 10000);
+	
+	/**
+	 * The timeout in milliseconds to wait for a lock of another connection
+	 */
+	private int busyTimeout;
+	
+	/**
+	 * The number of pages SQLite keeps in memory
+	 */
+	private int cacheSize;
+	
+	/**
+	 * The journal mode, e.g. DELETE or WAL
+	 */
+	private String journalMode;
+	
+	/**
+	 * The number of bytes of the file that may be memory-mapped
+	 */
+	private long mmapSize;
+	
+	/**
+	 * The synchronous setting, e.g. FULL, NORMAL or OFF
+	 */
+	private String synchronous;
+	
+	/**
+	 * The place to store temporary tables and indexes
+	 */
+	private String tempStore;
+	
+	private PerformanceProfile(String journalMode, String synchronous, int cacheSize,
+			long mmapSize, String tempStore, int busyTimeout) {
+		this.journalMode = journalMode;
+		this.synchronous = synchronous;
+		this.cacheSize = cacheSize;
+		this.mmapSize = mmapSize;
+		this.tempStore = tempStore;
+		this.busyTimeout = busyTimeout;
+	}
+	
+	/**
+	 * This method returns the pragmas that only affect a single connection. They
+	 * are applied to read-only connections as well.
+	 * @return The pragmas in the order they have to be executed.
+	 */
+	public String[] getConnectionPragmas() {
+		return new String[] {
+				"PRAGMA synchronous = " + synchronous,
+				"PRAGMA cache_size = " + cacheSize,
+				"PRAGMA mmap_size = " + mmapSize,
+				"PRAGMA temp_store = " + tempStore,
+				"PRAGMA busy_timeout = " + busyTimeout
+		};
+	}
+	
+	/**
+	 * This method returns the pragmas that have to be executed to apply this
+	 * profile. The journal mode comes first, because it cannot be changed
+	 * while a transaction is running.
+	 * @return The pragmas in the order they have to be executed.
+	 */
+	public String[] getPragmas() {
+		String[] connectionPragmas = getConnectionPragmas();
+		String[] pragmas = new String[connectionPragmas.length + 1];
+		
+		pragmas[0] = "PRAGMA journal_mode = " + journalMode;
+		System.arraycopy(connectionPragmas, 0, pragmas, 1, connectionPragmas.length);
+		
+		return pragmas;
+	}
+
+	/**
+	 * @return the busyTimeout
+	 */
+	public int getBusyTimeout() {
+		return busyTimeout;
+	}
+
+	/**
+	 * @return the cacheSize
+	 */
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	/**
+	 * @return the journalMode
+	 */
+	public String getJournalMode() {
+		return journalMode;
+	}
+
+	/**
+	 * @return the mmapSize
+	 */
+	public long getMmapSize() {
+		return mmapSize;
+	}
+
+	/**
+	 * @return the synchronous
+	 */
+	public String getSynchronous() {
+		return synchronous;
+	}
+
+	/**
+	 * @return the tempStore
+	 */
+	public String getTempStore() {
+		return tempStore;
+	}
+
+}
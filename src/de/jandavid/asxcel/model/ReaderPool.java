@@ -0,0 +1,243 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+import org.sqlite.SQLiteConfig;
+
+/**
+ * This class keeps a small number of read-only connections to the database.
+ * With the write-ahead log SQLite lets them read while the writer connection
+ * of the Database writes, so a long query does not stall an update. Every
+ * connection comes with its own StatementCache.
+ * 
+ * Readers get handed out by acquire() and have to be given back by release().
+ * The reader that has been used last gets handed out first, so its cache stays
+ * warm. If all readers are busy acquire() returns null instead of waiting, and
+ * the caller has to use the writer connection. A new PerformanceProfile gets
+ * applied to a reader the next time it is handed out.
+ *
+ * @author jdno
+ */
+class ReaderPool {
+
+	/**
+	 * The profile each reader has been configured with
+	 */
+	private IdentityHashMap<StatementCache, PerformanceProfile> appliedProfiles;
+	
+	/**
+	 * The profile the readers should use
+	 */
+	private volatile PerformanceProfile profile;
+	
+	/**
+	 * All readers, including the ones that are in use
+	 */
+	private ArrayList<StatementCache> readers;
+	
+	/**
+	 * The readers that are not in use, the most recently used first
+	 */
+	private LinkedBlockingDeque<StatementCache> idle;
+	
+	/**
+	 * The pool opens the given number of read-only connections to a file.
+	 * @param fileName The name of the database file
+	 * @param size The number of connections to open
+	 * @param statementCacheSize The number of statements each connection keeps
+	 * @param profile The PerformanceProfile to apply to the connections
+	 * @throws SQLException If a connection cannot be opened this gets thrown.
+	 */
+	ReaderPool(String fileName, int size, int statementCacheSize, PerformanceProfile profile) throws SQLException {
+		this.profile = profile;
+		appliedProfiles = new IdentityHashMap<StatementCache, PerformanceProfile>(size);
+		readers = new ArrayList<StatementCache>(size);
+		idle = new LinkedBlockingDeque<StatementCache>(size);
+		
+		SQLiteConfig config = new SQLiteConfig();
+		config.setReadOnly(true);
+		
+		try {
+			for(int i = 0; i < size; i++) {
+				Connection connection = config.createConnection("jdbc:sqlite:" + fileName);
+				StatementCache reader = new StatementCache(connection, statementCacheSize);
+				
+				readers.add(reader);
+				idle.offerLast(reader);
+			}
+		} catch (SQLException e) {
+			close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Take a reader that is not in use. If the profile has changed since the
+	 * reader has been used the last time, the new one gets applied first.
+	 * @return The reader, or null if all readers are in use
+	 * @throws SQLException If the profile cannot be applied this gets thrown.
+	 */
+	StatementCache acquire() throws SQLException {
+		return prepare(idle.pollFirst());
+	}
+	
+	/**
+	 * Take a reader that is not in use, and wait for one to be given back if
+	 * all readers are in use. If the profile has changed since the reader has
+	 * been used the last time, the new one gets applied first.
+	 * @param timeout The number of milliseconds to wait at most
+	 * @return The reader, or null if no reader has been given back in time
+	 * @throws SQLException If the profile cannot be applied this gets thrown.
+	 */
+	StatementCache acquire(long timeout) throws SQLException {
+		try {
+			return prepare(idle.pollFirst(timeout, TimeUnit.MILLISECONDS));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+	
+	/**
+	 * This method sets the PerformanceProfile of the readers. It gets applied
+	 * to every reader the next time it is handed out.
+	 * @param profile The profile to apply
+	 */
+	void applyProfile(PerformanceProfile profile) {
+		this.profile = profile;
+	}
+	
+	/**
+	 * Close all connections of the pool.
+	 */
+	void close() {
+		for(StatementCache reader: readers) {
+			reader.clear();
+			
+			try {
+				reader.getConnection().close();
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+		}
+		
+		readers.clear();
+		idle.clear();
+	}
+	
+	/**
+	 * Give a reader back to the pool.
+	 * @param reader The reader that has been taken by acquire()
+	 */
+	void release(StatementCache reader) {
+		idle.offerFirst(reader);
+	}
+	
+	/**
+	 * @return the sum of the hits of all readers' caches
+	 */
+	long getHits() {
+		long hits = 0;
+		
+		for(StatementCache reader: readers) {
+			hits += reader.getHits();
+		}
+		
+		return hits;
+	}
+	
+	/**
+	 * @return the sum of the misses of all readers' caches
+	 */
+	long getMisses() {
+		long misses = 0;
+		
+		for(StatementCache reader: readers) {
+			misses += reader.getMisses();
+		}
+		
+		return misses;
+	}
+	
+	/**
+	 * @return the number of readers
+	 */
+	int size() {
+		return readers.size();
+	}
+	
+	/**
+	 * This auxiliary method applies the current profile to a reader that has
+	 * just been taken from the idle ones, if it has not been applied yet.
+	 * @param reader The reader, or null
+	 * @return The reader, or null if null has been given
+	 * @throws SQLException If the profile cannot be applied this gets thrown.
+	 */
+	private StatementCache prepare(StatementCache reader) throws SQLException {
+		if(reader != null) {
+			PerformanceProfile current = profile;
+			PerformanceProfile applied;
+			
+			synchronized(appliedProfiles) {
+				applied = appliedProfiles.get(reader);
+			}
+			
+			if(applied != current) {
+				try {
+					applyProfile(reader, current);
+				} catch (SQLException e) {
+					release(reader);
+					throw e;
+				}
+				
+				synchronized(appliedProfiles) {
+					appliedProfiles.put(reader, current);
+				}
+			}
+		}
+		
+		return reader;
+	}
+	
+	/**
+	 * This auxiliary method applies the pragmas of a profile to a reader. The
+	 * journal mode belongs to the file and is set by the writer.
+	 * @param reader The reader to configure
+	 * @param profile The profile to apply
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	private void applyProfile(StatementCache reader, PerformanceProfile profile) throws SQLException {
+		Statement statement = reader.getConnection().createStatement();
+		
+		try {
+			for(String pragma: profile.getConnectionPragmas()) {
+				statement.execute(pragma);
+			}
+		} finally {
+			statement.close();
+		}
+	}
+
+}
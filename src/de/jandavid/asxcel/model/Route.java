@@ -30,6 +30,19 @@ import java.util.ArrayList;
  */
 public class Route implements Comparable<Route> {
 
+	/**
+	 * The query that creates a route
+	 */
+	public static final String INSERT_QUERY = "INSERT INTO `routes` (`enterprise`, `origin`, `destination`) " +
+			"VALUES (?,?,?)";
+
+	/**
+	 * The query that reads a route of an enterprise by its airports
+	 */
+	public static final String SELECT_QUERY = "SELECT `r`.`id`, `r`.`distance`, `r`.`loadFrom`, `r`.`loadTo`, " +
+			"`r`.`scheduled` FROM `routes` AS `r` WHERE `r`.`enterprise` = ? " +
+			"AND `r`.`origin` = ? AND `r`.`destination` = ? LIMIT 1";
+
 	/**
 	 * This is the airport where the route ends.
 	 */
@@ -89,6 +102,32 @@ public class Route implements Comparable<Route> {
 		syncWithDb();
 	}
 	
+	/**
+	 * This constructor initializes a route with all its attributes. No
+	 * synchronization with the database happens! This is meant as a help
+	 * for the enterprise to load all its routes with one query from the
+	 * database and initialize them without further queries.
+	 * @param model This is needed for access to the database.
+	 * @param id The ID of the route (from the database)
+	 * @param origin The airport this route starts.
+	 * @param destination The airport this route ends.
+	 * @param distance The distance of the route
+	 * @param loadFrom The load coming from the destination
+	 * @param loadTo The load going to the destination
+	 * @param scheduled Is the route scheduled
+	 */
+	protected Route(Model model, int id, Airport origin, Airport destination, int distance,
+			int loadFrom, int loadTo, boolean scheduled) {
+		this.model = model;
+		this.id = id;
+		this.origin = origin;
+		this.destination = destination;
+		this.distance = distance;
+		this.loadFrom = loadFrom;
+		this.loadTo = loadTo;
+		this.scheduled = scheduled;
+	}
+	
 
 	/* (non-Javadoc)
 	 * @see java.lang.Comparable#compareTo(java.lang.Object)
@@ -106,14 +145,12 @@ public class Route implements Comparable<Route> {
 	 * @throws SQLException If an SQL error occurs this gets thrown.
 	 */
 	private void syncWithDb() throws SQLException {
-		String query = "SELECT `r`.`id`, `r`.`distance`, `r`.`loadFrom`, `r`.`loadTo`, " +
-				"`r`.`scheduled` FROM `routes` AS `r` WHERE `r`.`origin` = ? " +
-				"AND `r`.`destination` = ? LIMIT 1";
 		ArrayList<Object> params = new ArrayList<Object>(3);
+		params.add(model.getEnterprise().getId());
 		params.add(origin.getId());
 		params.add(destination.getId());
 		
-		DatabaseResult dr = model.getDatabase().executeQuery(query, params);
+		DatabaseResult dr = model.getDatabase().executeQuery(SELECT_QUERY, params);
 		
 		if(dr.next()) {
 			id = dr.getInt(0);
@@ -122,9 +159,7 @@ public class Route implements Comparable<Route> {
 			loadTo = dr.getInt(3);
 			scheduled = dr.getInt(4) == 1 ? true : false;
 		} else {
-			query = "INSERT INTO `routes` (`origin`, `destination`, `enterprise`) VALUES (?,?,?)";
-			params.add(model.getEnterprise().getId());
-			model.getDatabase().executeUpdate(query, params);
+			model.getDatabase().executeUpdate(INSERT_QUERY, params);
 			syncWithDb();
 		}
 	}
@@ -137,11 +172,16 @@ public class Route implements Comparable<Route> {
 	 * @throws SQLException If an SQL error occurs this gets thrown.
 	 */
 	private void updateField(String field, Object value) throws SQLException {
-		String query = "UPDATE `routes` SET '" + field + "' = ? WHERE `id` = '" + id + "'";
-		ArrayList<Object> params = new ArrayList<Object>(1);
-		params.add(value);
-		
-		model.getDatabase().executeUpdate(query, params);
+		model.updateField("routes", field, id, value);
+	}
+	
+	/**
+	 * This is an auxiliary method used by the setters to inform the listeners
+	 * of the model after a field has been set.
+	 * @param field The name of the column in the database.
+	 */
+	private void fieldChanged(String field) {
+		model.fireModelEvent(ModelEvent.fieldChanged(this, field));
 	}
 	
 	/**
@@ -158,6 +198,7 @@ public class Route implements Comparable<Route> {
 	public void setDistance(int distance) throws SQLException {
 		updateField("distance", distance);
 		this.distance = distance;
+		fieldChanged("distance");
 	}
 
 	/**
@@ -182,6 +223,7 @@ public class Route implements Comparable<Route> {
 	public void setLoadFrom(int loadFrom) throws SQLException {
 		updateField("loadFrom", loadFrom);
 		this.loadFrom = loadFrom;
+		fieldChanged("loadFrom");
 	}
 
 	/**
@@ -198,6 +240,7 @@ public class Route implements Comparable<Route> {
 	public void setLoadTo(int loadTo) throws SQLException {
 		updateField("loadTo", loadTo);
 		this.loadTo = loadTo;
+		fieldChanged("loadTo");
 	}
 
 	/**
@@ -214,6 +257,7 @@ public class Route implements Comparable<Route> {
 	public void setScheduled(boolean scheduled) throws SQLException {
 		updateField("scheduled", scheduled ? 1 : 0);
 		this.scheduled = scheduled;
+		fieldChanged("scheduled");
 	}
 
 	/**
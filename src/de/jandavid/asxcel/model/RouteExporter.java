@@ -0,0 +1,268 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * The RouteExporter writes the routes of the enterprise to a spreadsheet,
+ * with the same columns as the routes table. The routes can either be
+ * streamed from a forward-only cursor in one of the orders of the
+ * RoutePager, which neither creates Route objects nor keeps more than one
+ * row in memory, or be taken from a list, e.g. the rows a filtered and
+ * sorted table shows.
+ *
+ * @author jdno
+ */
+public class RouteExporter {
+	
+	/**
+	 * The names of the columns, as the routes table shows them.
+	 */
+	public static final String[] COLUMN_NAMES = {"Origin", "IATA", "PAX", "Cargo",
+			"Destination", "IATA", "PAX", "Cargo", "Transfer", "Distance", "Loads to", "Loads from", "Scheduled"};
+	
+	/**
+	 * The number of routes that get read by their IDs at once.
+	 */
+	private static final int ID_CHUNK_SIZE = 500;
+	
+	/**
+	 * The number of rows after which the listener gets informed.
+	 */
+	private static final int PROGRESS_INTERVAL = 1000;
+	
+	/**
+	 * This indicates if the export should stop.
+	 */
+	private volatile boolean cancelled = false;
+	
+	/**
+	 * The listener that gets informed about the progress, or null.
+	 */
+	private ExportListener listener;
+	
+	/**
+	 * The model whose enterprise's routes get exported.
+	 */
+	private Model model;
+	
+	/**
+	 * The exporter gets initialized with the model whose enterprise's
+	 * routes it writes.
+	 * @param model The model to export the routes of.
+	 */
+	public RouteExporter(Model model) {
+		this.model = model;
+	}
+	
+	/**
+	 * This method creates the writer for a file. Files ending with .xlsx
+	 * become workbooks, all other files CSV files.
+	 * @param file The file to write to.
+	 * @return The writer, which has to be closed by the caller.
+	 * @throws IOException If the file cannot be created this gets thrown.
+	 */
+	public static SpreadsheetWriter createWriter(File file) throws IOException {
+		if(file.getName().toLowerCase().endsWith(".xlsx")) {
+			return new XlsxWriter(file, "Routes");
+		} else {
+			return new CsvWriter(file);
+		}
+	}
+	
+	/**
+	 * This method stops the export. The method exporting the routes then
+	 * throws a CancellationException.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+	
+	/**
+	 * This method streams all routes of the enterprise from the database to
+	 * the writer, ordered like the RoutePager would order them. The writer
+	 * does not get closed.
+	 * @param writer The writer to write the rows to.
+	 * @param sortKey The key to order the routes by.
+	 * @param ascending True to order ascending, false to order descending.
+	 * @return The number of routes that have been written.
+	 * @throws IOException If a row cannot be written this gets thrown.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public int exportRoutes(SpreadsheetWriter writer, RoutePager.SortKey sortKey, boolean ascending)
+			throws IOException, SQLException {
+		writer.writeRow(COLUMN_NAMES);
+		
+		Object[] row = new Object[COLUMN_NAMES.length];
+		int count = 0;
+		DatabaseCursor dc = RoutePager.openRowCursor(model, sortKey, ascending);
+		
+		try {
+			while(dc.next()) {
+				checkCancelled();
+				
+				writer.writeRow(readRow(dc, row));
+				progressed(++count);
+			}
+		} finally {
+			dc.close();
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * This method reads the routes with the given IDs from the database and
+	 * writes them in the order of the IDs, e.g. the routes a filter has
+	 * picked. They get read in chunks, so only one chunk is kept in memory.
+	 * Routes that do not exist anymore are left out. The writer does not
+	 * get closed.
+	 * @param writer The writer to write the rows to.
+	 * @param ids The IDs of the routes.
+	 * @return The number of routes that have been written.
+	 * @throws IOException If a row cannot be written this gets thrown.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public int exportRoutes(SpreadsheetWriter writer, int[] ids) throws IOException, SQLException {
+		writer.writeRow(COLUMN_NAMES);
+		
+		int count = 0;
+		
+		for(int from = 0; from < ids.length; from += ID_CHUNK_SIZE) {
+			int to = Math.min(ids.length, from + ID_CHUNK_SIZE);
+			HashMap<Integer, Object[]> rows = new HashMap<Integer, Object[]>();
+			DatabaseCursor dc = RoutePager.openRowCursor(model, ids, from, to);
+			
+			try {
+				while(dc.next()) {
+					rows.put(dc.getInt(COLUMN_NAMES.length), readRow(dc, new Object[COLUMN_NAMES.length]));
+				}
+			} finally {
+				dc.close();
+			}
+			
+			for(int i = from; i < to; i++) {
+				checkCancelled();
+				
+				Object[] row = rows.get(ids[i]);
+				if(row == null) continue;
+				
+				writer.writeRow(row);
+				progressed(++count);
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * This method writes the given routes in the order of the list. The
+	 * writer does not get closed.
+	 * @param writer The writer to write the rows to.
+	 * @param routes The routes to write.
+	 * @return The number of routes that have been written.
+	 * @throws IOException If a row cannot be written this gets thrown.
+	 */
+	public int exportRoutes(SpreadsheetWriter writer, List<Route> routes) throws IOException {
+		writer.writeRow(COLUMN_NAMES);
+		
+		Object[] row = new Object[COLUMN_NAMES.length];
+		int count = 0;
+		
+		for(Route r: routes) {
+			checkCancelled();
+			
+			Airport origin = r.getOrigin();
+			Airport destination = r.getDestination();
+			
+			row[0] = origin.getName();
+			row[1] = origin.getIataCode();
+			row[2] = origin.getPassengers();
+			row[3] = origin.getCargo();
+			row[4] = destination.getName();
+			row[5] = destination.getIataCode();
+			row[6] = destination.getPassengers();
+			row[7] = destination.getCargo();
+			row[8] = destination.isTransferPossible();
+			row[9] = r.getDistance();
+			row[10] = r.getLoadTo();
+			row[11] = r.getLoadFrom();
+			row[12] = r.isScheduled();
+			
+			writer.writeRow(row);
+			progressed(++count);
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * This auxiliary method reads the values of the columns from the row the
+	 * cursor points at.
+	 * @param dc The cursor, opened with one of the row queries of RoutePager.
+	 * @param row The array to fill.
+	 * @return The row.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	private static Object[] readRow(DatabaseCursor dc, Object[] row) throws SQLException {
+		for(int i = 0; i < row.length; i++) {
+			if(i == 0 || i == 1 || i == 4 || i == 5) {
+				row[i] = dc.getString(i);
+			} else if(i == 8 || i == 12) {
+				row[i] = dc.getBoolean(i);
+			} else {
+				row[i] = dc.getInt(i);
+			}
+		}
+		
+		return row;
+	}
+	
+	/**
+	 * This auxiliary method throws a CancellationException if the export
+	 * has been cancelled.
+	 */
+	private void checkCancelled() {
+		if(cancelled) {
+			throw new CancellationException("The export has been cancelled.");
+		}
+	}
+	
+	/**
+	 * This auxiliary method informs the listener after every interval.
+	 * @param count The number of rows written so far.
+	 */
+	private void progressed(int count) {
+		if(listener != null && count % PROGRESS_INTERVAL == 0) {
+			listener.exportProgressed(count);
+		}
+	}
+	
+	/**
+	 * @param listener the listener to set
+	 */
+	public void setListener(ExportListener listener) {
+		this.listener = listener;
+	}
+
+}
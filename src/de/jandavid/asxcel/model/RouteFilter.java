@@ -0,0 +1,917 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * The RouteFilter decides which routes of an enterprise are shown. It
+ * combines any number of criteria: equality of the origin, destination,
+ * country, scheduled or transfer, and ranges of passengers, cargo, distance
+ * and loads.
+ * 
+ * Every route gets a slot. For every attribute a BitSet of the slots with
+ * each value is kept, and for every range a sorted array of the values
+ * packed together with their slots. A criterion therefore only has to look
+ * up a BitSet or search an array, and combining the criteria is an AND of
+ * BitSets. The indexes get updated route by route from the events of the
+ * model, so a change of a route does not rebuild them.
+ * 
+ * If the enterprise holds its routes, the slot of a route is its position
+ * in the list of routes, which is its row in the table model. The table
+ * can then filter its rows by looking up a bit, and removing a route moves
+ * the slots behind it down. A paged enterprise gets indexed from the
+ * database, its slots are reused, and its routes get picked by their IDs.
+ * 
+ * @author jdno
+ */
+public class RouteFilter implements ModelListener {
+	
+	/**
+	 * The attributes a route can be filtered by with equality. Origin,
+	 * destination and country are compared by ID, scheduled and transfer
+	 * by 1 or 0. A country matches if the origin or the destination lies
+	 * in it.
+	 */
+	public enum Attribute {
+		ORIGIN, DESTINATION, COUNTRY, SCHEDULED, TRANSFER
+	}
+	
+	/**
+	 * The values a route can be filtered by with a range.
+	 */
+	public enum Range {
+		ORIGIN_PASSENGERS, ORIGIN_CARGO, DESTINATION_PASSENGERS, DESTINATION_CARGO,
+		DISTANCE, LOAD_TO, LOAD_FROM
+	}
+	
+	/**
+	 * This maps the IDs of the countries to the slots of their routes.
+	 */
+	private HashMap<Integer, BitSet> byCountry = new HashMap<Integer, BitSet>();
+	
+	/**
+	 * This maps the IDs of the destinations to the slots of their routes.
+	 */
+	private HashMap<Integer, BitSet> byDestination = new HashMap<Integer, BitSet>();
+	
+	/**
+	 * This maps the IDs of the origins to the slots of their routes.
+	 */
+	private HashMap<Integer, BitSet> byOrigin = new HashMap<Integer, BitSet>();
+	
+	/**
+	 * The countries of the origin and destination, by slot.
+	 */
+	private int[][] countries = new int[2][0];
+	
+	/**
+	 * The criteria that are combined.
+	 */
+	private ArrayList<Criterion> criteria = new ArrayList<Criterion>();
+	
+	/**
+	 * The enterprise whose routes get filtered.
+	 */
+	private Enterprise enterprise;
+	
+	/**
+	 * The slots that have been freed by removed routes.
+	 */
+	private ArrayDeque<Integer> freeSlots = new ArrayDeque<Integer>();
+	
+	/**
+	 * The slots that are used by a route.
+	 */
+	private BitSet live = new BitSet();
+	
+	/**
+	 * True if the slots are the positions of the routes in the list of the
+	 * enterprise, false if the enterprise is paged.
+	 */
+	private boolean positional;
+	
+	/**
+	 * The slots of the routes that match all criteria, or null if they have
+	 * to be computed again.
+	 */
+	private BitSet matches;
+	
+	/**
+	 * The sorted index of every range.
+	 */
+	private SortedIndex[] ranges = new SortedIndex[Range.values().length];
+	
+	/**
+	 * The slots of the scheduled routes.
+	 */
+	private BitSet scheduled = new BitSet();
+	
+	/**
+	 * This maps the IDs of the routes to their slots.
+	 */
+	private SlotMap slots = new SlotMap();
+	
+	/**
+	 * The slots of the routes whose destination allows transfers.
+	 */
+	private BitSet transfer = new BitSet();
+	
+	/**
+	 * The values of every range, by slot.
+	 */
+	private int[][] values = new int[Range.values().length][0];
+	
+	/**
+	 * The filter gets initialized with the enterprise and indexes all its
+	 * routes. Without criteria all routes match.
+	 * @param enterprise The enterprise whose routes get filtered.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public RouteFilter(Enterprise enterprise) throws SQLException {
+		this.enterprise = enterprise;
+		
+		rebuild();
+	}
+	
+	/**
+	 * This method adds a criterion that a route has a certain attribute.
+	 * @param attribute The attribute to compare.
+	 * @param value The ID, or 1 or 0 for scheduled and transfer.
+	 * @param description The text describing the criterion to the user.
+	 */
+	public void addEquals(Attribute attribute, int value, String description) {
+		criteria.add(new Criterion(attribute, null, value, value, description));
+		matches = null;
+	}
+	
+	/**
+	 * This method adds a criterion that a value of a route lies in a range.
+	 * @param range The value to compare.
+	 * @param min The lowest value that matches.
+	 * @param max The highest value that matches.
+	 * @param description The text describing the criterion to the user.
+	 */
+	public void addRange(Range range, int min, int max, String description) {
+		criteria.add(new Criterion(null, range, min, max, description));
+		matches = null;
+	}
+	
+	/**
+	 * This method removes all criteria, so all routes match.
+	 */
+	public void clear() {
+		criteria.clear();
+		matches = null;
+	}
+	
+	/**
+	 * @return the number of routes that match all criteria
+	 */
+	public int count() {
+		return getMatches().cardinality();
+	}
+	
+	/**
+	 * @return the descriptions of the criteria, in the order they were added
+	 */
+	public ArrayList<String> getDescriptions() {
+		ArrayList<String> descriptions = new ArrayList<String>(criteria.size());
+		
+		for(Criterion c: criteria) {
+			descriptions.add(c.description);
+		}
+		
+		return descriptions;
+	}
+	
+	/**
+	 * @return true if at least one criterion has been added
+	 */
+	public boolean isActive() {
+		return !criteria.isEmpty();
+	}
+	
+	/**
+	 * This method checks if a route matches all criteria.
+	 * @param route The route to check.
+	 * @return True if the route matches, false otherwise.
+	 */
+	public boolean matches(Route route) {
+		int slot = slots.get(route.getId());
+		
+		return slot != -1 && getMatches().get(slot);
+	}
+	
+	/**
+	 * This method checks if the route at a position of the enterprise's
+	 * routes matches all criteria. The position is its slot, so this is
+	 * only a lookup of a bit. It does not work for a paged enterprise.
+	 * @param index The position of the route.
+	 * @return True if the route matches, false otherwise.
+	 */
+	public boolean matchesRow(int index) {
+		return getMatches().get(index);
+	}
+	
+	/**
+	 * This method keeps the indexes up to date. Only the routes that are
+	 * affected by the change get indexed again.
+	 * @param e The event describing the change.
+	 */
+	@Override
+	public void modelChanged(ModelEvent e) {
+		switch(e.getType()) {
+		case ROUTE_ADDED:
+			add((Route) e.getSource(), false);
+			break;
+		case ROUTE_REMOVED:
+			remove((Route) e.getSource());
+			break;
+		case ROUTES_LOADED:
+			for(int i = e.getIndex(); i < e.getIndex() + e.getCount(); i++) {
+				add(enterprise.getRoutes().get(i), true);
+			}
+			
+			for(SortedIndex index: ranges) {
+				index.sort();
+			}
+			break;
+		case FIELD_CHANGED:
+			if(e.getSource() instanceof Route) {
+				update((Route) e.getSource());
+			} else if(e.getSource() instanceof Airport) {
+				update((Airport) e.getSource());
+			}
+			break;
+		default:
+			break;
+		}
+	}
+	
+	/**
+	 * This method indexes all routes of the enterprise again, e.g. after
+	 * changes have been missed. The criteria are kept. The routes of a
+	 * paged enterprise get read from the database.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public void rebuild() throws SQLException {
+		positional = !enterprise.isPaged();
+		byCountry.clear();
+		byDestination.clear();
+		byOrigin.clear();
+		freeSlots.clear();
+		live.clear();
+		scheduled.clear();
+		slots = new SlotMap();
+		transfer.clear();
+		
+		for(int i = 0; i < ranges.length; i++) {
+			ranges[i] = new SortedIndex();
+		}
+		
+		if(positional) {
+			for(Route r: enterprise.getRoutes()) {
+				add(r, true);
+			}
+		} else {
+			Model model = enterprise.getModel();
+			model.flush();
+			
+			DatabaseCursor dc = enterprise.openRouteCursor();
+			
+			try {
+				while(dc.next()) {
+					Airport origin = model.getAirportById(dc.getInt(1));
+					Airport destination = model.getAirportById(dc.getInt(2));
+					
+					if(origin != null && destination != null) {
+						add(dc.getInt(0), origin, destination, dc.getInt(3), dc.getInt(5), dc.getInt(4),
+								dc.getBoolean(6), true);
+					}
+				}
+			} finally {
+				dc.close();
+			}
+		}
+		
+		for(SortedIndex index: ranges) {
+			index.sort();
+		}
+		
+		matches = null;
+	}
+	
+	/**
+	 * This method removes a criterion.
+	 * @param criterion The position of the criterion, like in getDescriptions().
+	 */
+	public void remove(int criterion) {
+		criteria.remove(criterion);
+		matches = null;
+	}
+	
+	/**
+	 * This method picks the routes that match all criteria from a list of
+	 * routes, e.g. the IDs of all routes of a paged enterprise in the order
+	 * of the table.
+	 * @param ids The IDs of the routes.
+	 * @return The IDs of the matching routes, in the same order.
+	 */
+	public int[] select(int[] ids) {
+		BitSet matching = getMatches();
+		int[] selected = new int[ids.length];
+		int count = 0;
+		
+		for(int id: ids) {
+			int slot = slots.get(id);
+			
+			if(slot != -1 && matching.get(slot)) {
+				selected[count++] = id;
+			}
+		}
+		
+		return Arrays.copyOf(selected, count);
+	}
+	
+	/**
+	 * This auxiliary method gives a route a slot and adds it to all indexes.
+	 * @param r The route to add.
+	 * @param bulk True if the indexes get built.
+	 */
+	private void add(Route r, boolean bulk) {
+		add(r.getId(), r.getOrigin(), r.getDestination(), r.getDistance(), r.getLoadTo(), r.getLoadFrom(),
+				r.isScheduled(), bulk);
+	}
+	
+	/**
+	 * This auxiliary method gives a route a slot and adds its values to all
+	 * indexes. While the indexes get built, the values only get appended to
+	 * the sorted indexes, which get sorted once at the end.
+	 * @param id The ID of the route.
+	 * @param origin The airport where the route starts.
+	 * @param destination The airport where the route ends.
+	 * @param distance The distance of the route.
+	 * @param loadTo The load going to the destination.
+	 * @param loadFrom The load coming from the destination.
+	 * @param isScheduled True if the route is scheduled.
+	 * @param bulk True if the indexes get built.
+	 */
+	private void add(int id, Airport origin, Airport destination, int distance, int loadTo, int loadFrom,
+			boolean isScheduled, boolean bulk) {
+		if(slots.get(id) != -1) return;
+		
+		int slot = freeSlots.isEmpty() ? slots.size() : freeSlots.pop();
+		
+		if(slot >= values[0].length) {
+			int capacity = Math.max(16, slot * 2);
+			
+			for(int i = 0; i < values.length; i++) {
+				values[i] = Arrays.copyOf(values[i], capacity);
+			}
+			countries[0] = Arrays.copyOf(countries[0], capacity);
+			countries[1] = Arrays.copyOf(countries[1], capacity);
+		}
+		
+		slots.put(id, slot);
+		live.set(slot);
+		bitSet(byOrigin, origin.getId()).set(slot);
+		bitSet(byDestination, destination.getId()).set(slot);
+		
+		for(Range range: Range.values()) {
+			int value = valueOf(origin, destination, distance, loadTo, loadFrom, range);
+			values[range.ordinal()][slot] = value;
+			
+			if(bulk) {
+				ranges[range.ordinal()].append(value, slot);
+			} else {
+				ranges[range.ordinal()].add(value, slot);
+			}
+		}
+		
+		scheduled.set(slot, isScheduled);
+		transfer.set(slot, destination.isTransferPossible());
+		countries[0][slot] = countryOf(origin);
+		countries[1][slot] = countryOf(destination);
+		bitSet(byCountry, countries[0][slot]).set(slot);
+		bitSet(byCountry, countries[1][slot]).set(slot);
+		matches = null;
+	}
+	
+	/**
+	 * This auxiliary method returns the BitSet of a value, and creates it if
+	 * it does not exist yet.
+	 * @param index The index the BitSet belongs to.
+	 * @param id The value.
+	 * @return The BitSet.
+	 */
+	private BitSet bitSet(HashMap<Integer, BitSet> index, int id) {
+		BitSet bits = index.get(id);
+		
+		if(bits == null) {
+			bits = new BitSet();
+			index.put(id, bits);
+		}
+		
+		return bits;
+	}
+	
+	/**
+	 * This auxiliary method returns the ID of the country of an airport.
+	 * @param airport The airport.
+	 * @return The ID of the country, or 0 if the country is unknown.
+	 */
+	private int countryOf(Airport airport) {
+		return airport.getCountry() != null ? airport.getCountry().getId() : 0;
+	}
+	
+	/**
+	 * This auxiliary method returns the slots matching all criteria. They are
+	 * only computed again after the criteria or the routes have changed.
+	 * @return The matching slots.
+	 */
+	private BitSet getMatches() {
+		if(matches == null) {
+			BitSet result = (BitSet) live.clone();
+			
+			for(Criterion c: criteria) {
+				if(result.isEmpty()) break;
+				
+				result.and(c.select());
+			}
+			
+			matches = result;
+		}
+		
+		return matches;
+	}
+	
+	/**
+	 * This auxiliary method removes a route from all indexes. If the slots
+	 * are positions, the slots behind it move down like the routes of the
+	 * enterprise. Otherwise its slot gets freed.
+	 * @param r The route to remove.
+	 */
+	private void remove(Route r) {
+		int slot = slots.remove(r.getId());
+		if(slot == -1) return;
+		
+		live.clear(slot);
+		byOrigin.get(r.getOrigin().getId()).clear(slot);
+		byDestination.get(r.getDestination().getId()).clear(slot);
+		scheduled.clear(slot);
+		transfer.clear(slot);
+		unindexCountries(slot);
+		
+		for(Range range: Range.values()) {
+			ranges[range.ordinal()].remove(values[range.ordinal()][slot], slot);
+		}
+		
+		if(positional) {
+			shiftSlots(slot);
+		} else {
+			freeSlots.push(slot);
+		}
+		
+		matches = null;
+	}
+	
+	/**
+	 * This auxiliary method sets the country of the origin or destination
+	 * of a route.
+	 * @param side 0 for the origin, 1 for the destination.
+	 * @param slot The slot of the route.
+	 * @param country The ID of the country.
+	 */
+	private void setCountry(int side, int slot, int country) {
+		int old = countries[side][slot];
+		if(old == country) return;
+		
+		countries[side][slot] = country;
+		
+		if(countries[1 - side][slot] != old) {
+			byCountry.get(old).clear(slot);
+		}
+		
+		bitSet(byCountry, country).set(slot);
+	}
+	
+	/**
+	 * This auxiliary method changes a value of a route in its sorted index.
+	 * @param range The value.
+	 * @param slot The slot of the route.
+	 * @param value The new value.
+	 */
+	private void setValue(Range range, int slot, int value) {
+		int old = values[range.ordinal()][slot];
+		
+		if(value != old) {
+			ranges[range.ordinal()].remove(old, slot);
+			ranges[range.ordinal()].add(value, slot);
+			values[range.ordinal()][slot] = value;
+		}
+	}
+	
+	/**
+	 * This auxiliary method moves all slots behind a removed slot down by
+	 * one, so they stay the positions of the routes.
+	 * @param slot The slot that has been removed.
+	 */
+	private void shiftSlots(int slot) {
+		int size = slots.size();
+		
+		for(BitSet bits: new BitSet[] {live, scheduled, transfer}) {
+			removeBit(bits, slot);
+		}
+		
+		for(BitSet bits: byOrigin.values()) {
+			removeBit(bits, slot);
+		}
+		
+		for(BitSet bits: byDestination.values()) {
+			removeBit(bits, slot);
+		}
+		
+		for(BitSet bits: byCountry.values()) {
+			removeBit(bits, slot);
+		}
+		
+		for(int[] slotValues: values) {
+			System.arraycopy(slotValues, slot + 1, slotValues, slot, size - slot);
+		}
+		
+		for(int[] slotCountries: countries) {
+			System.arraycopy(slotCountries, slot + 1, slotCountries, slot, size - slot);
+		}
+		
+		for(SortedIndex index: ranges) {
+			index.shift(slot);
+		}
+		
+		slots.shift(slot);
+	}
+	
+	/**
+	 * This auxiliary method removes a slot from the countries it is indexed for.
+	 * @param slot The slot.
+	 */
+	private void unindexCountries(int slot) {
+		for(int i = 0; i < 2; i++) {
+			BitSet bits = byCountry.get(countries[i][slot]);
+			if(bits != null) bits.clear(slot);
+		}
+	}
+	
+	/**
+	 * This auxiliary method indexes the values of a route again that have
+	 * changed since it was indexed.
+	 * @param r The route.
+	 */
+	private void update(Route r) {
+		int slot = slots.get(r.getId());
+		if(slot == -1) return;
+		
+		for(Range range: Range.values()) {
+			setValue(range, slot, valueOf(r.getOrigin(), r.getDestination(), r.getDistance(),
+					r.getLoadTo(), r.getLoadFrom(), range));
+		}
+		
+		scheduled.set(slot, r.isScheduled());
+		transfer.set(slot, r.getDestination().isTransferPossible());
+		setCountry(0, slot, countryOf(r.getOrigin()));
+		setCountry(1, slot, countryOf(r.getDestination()));
+		matches = null;
+	}
+	
+	/**
+	 * This auxiliary method indexes the values of an airport again for all
+	 * routes that start or end there. The routes are found by the indexes
+	 * of the origins and destinations, so they do not have to be loaded.
+	 * @param a The airport.
+	 */
+	private void update(Airport a) {
+		BitSet starting = byOrigin.get(a.getId());
+		BitSet ending = byDestination.get(a.getId());
+		
+		if(starting != null) {
+			for(int slot = starting.nextSetBit(0); slot >= 0; slot = starting.nextSetBit(slot + 1)) {
+				setValue(Range.ORIGIN_PASSENGERS, slot, a.getPassengers());
+				setValue(Range.ORIGIN_CARGO, slot, a.getCargo());
+				setCountry(0, slot, countryOf(a));
+			}
+		}
+		
+		if(ending != null) {
+			for(int slot = ending.nextSetBit(0); slot >= 0; slot = ending.nextSetBit(slot + 1)) {
+				setValue(Range.DESTINATION_PASSENGERS, slot, a.getPassengers());
+				setValue(Range.DESTINATION_CARGO, slot, a.getCargo());
+				transfer.set(slot, a.isTransferPossible());
+				setCountry(1, slot, countryOf(a));
+			}
+		}
+		
+		matches = null;
+	}
+	
+	/**
+	 * This auxiliary method removes a bit from a BitSet and moves all bits
+	 * behind it down by one.
+	 * @param bits The BitSet.
+	 * @param index The bit to remove.
+	 */
+	private static void removeBit(BitSet bits, int index) {
+		int length = bits.length();
+		if(length <= index) return;
+		
+		BitSet tail = bits.get(index + 1, length);
+		bits.clear(index, length);
+		
+		for(int i = tail.nextSetBit(0); i >= 0; i = tail.nextSetBit(i + 1)) {
+			bits.set(index + i);
+		}
+	}
+	
+	/**
+	 * This auxiliary method computes a value of a route.
+	 * @param origin The airport where the route starts.
+	 * @param destination The airport where the route ends.
+	 * @param distance The distance of the route.
+	 * @param loadTo The load going to the destination.
+	 * @param loadFrom The load coming from the destination.
+	 * @param range The value to compute.
+	 * @return The value.
+	 */
+	private static int valueOf(Airport origin, Airport destination, int distance, int loadTo, int loadFrom,
+			Range range) {
+		switch(range) {
+		case ORIGIN_PASSENGERS:
+			return origin.getPassengers();
+		case ORIGIN_CARGO:
+			return origin.getCargo();
+		case DESTINATION_PASSENGERS:
+			return destination.getPassengers();
+		case DESTINATION_CARGO:
+			return destination.getCargo();
+		case DISTANCE:
+			return distance;
+		case LOAD_TO:
+			return loadTo;
+		case LOAD_FROM:
+			return loadFrom;
+		default:
+			return 0;
+		}
+	}
+	
+	/**
+	 * A single criterion, either of an attribute or of a range.
+	 */
+	private class Criterion {
+		
+		private final Attribute attribute;
+		private final String description;
+		private final int max;
+		private final int min;
+		private final Range range;
+		
+		Criterion(Attribute attribute, Range range, int min, int max, String description) {
+			this.attribute = attribute;
+			this.range = range;
+			this.min = min;
+			this.max = max;
+			this.description = description;
+		}
+		
+		/**
+		 * @return the slots matching this criterion, which must not be changed
+		 */
+		BitSet select() {
+			if(range != null) {
+				return ranges[range.ordinal()].select(min, max);
+			}
+			
+			BitSet bits;
+			
+			switch(attribute) {
+			case ORIGIN:
+				bits = byOrigin.get(min);
+				break;
+			case DESTINATION:
+				bits = byDestination.get(min);
+				break;
+			case COUNTRY:
+				bits = byCountry.get(min);
+				break;
+			case SCHEDULED:
+				bits = scheduled;
+				break;
+			case TRANSFER:
+				bits = transfer;
+				break;
+			default:
+				bits = null;
+				break;
+			}
+			
+			if(bits != null && (attribute == Attribute.SCHEDULED || attribute == Attribute.TRANSFER) && min == 0) {
+				BitSet inverse = (BitSet) live.clone();
+				inverse.andNot(bits);
+				return inverse;
+			}
+			
+			return bits != null ? bits : new BitSet();
+		}
+	}
+	
+	/**
+	 * A map from the IDs of routes to their slots, which stores both as
+	 * primitives in one array with open addressing. Looking up a route this
+	 * way is a lot faster than hashing the route object, which matters
+	 * because the table checks every row.
+	 */
+	private static class SlotMap {
+		
+		private int[] entries = new int[32];
+		private int size = 0;
+		
+		SlotMap() {
+			Arrays.fill(entries, -1);
+		}
+		
+		int get(int id) {
+			for(int i = position(id); ; i = next(i)) {
+				if(entries[i] == -1) return -1;
+				if(entries[i] == id) return entries[i + 1];
+			}
+		}
+		
+		void put(int id, int slot) {
+			if((size + 1) * 4 > entries.length) {
+				grow();
+			}
+			
+			int i = position(id);
+			while(entries[i] != -1 && entries[i] != id) {
+				i = next(i);
+			}
+			
+			if(entries[i] == -1) size++;
+			entries[i] = id;
+			entries[i + 1] = slot;
+		}
+		
+		int remove(int id) {
+			int i = position(id);
+			while(entries[i] != -1 && entries[i] != id) {
+				i = next(i);
+			}
+			
+			if(entries[i] == -1) return -1;
+			
+			int slot = entries[i + 1];
+			entries[i] = -1;
+			entries[i + 1] = -1;
+			size--;
+			
+			// Entries behind the removed one might have been placed there
+			// because its position was taken, so they get placed again.
+			for(int j = next(i); entries[j] != -1; j = next(j)) {
+				int movedId = entries[j];
+				int movedSlot = entries[j + 1];
+				entries[j] = -1;
+				entries[j + 1] = -1;
+				size--;
+				put(movedId, movedSlot);
+			}
+			
+			return slot;
+		}
+		
+		void shift(int removed) {
+			for(int i = 1; i < entries.length; i += 2) {
+				if(entries[i] > removed) entries[i]--;
+			}
+		}
+		
+		int size() {
+			return size;
+		}
+		
+		private void grow() {
+			int[] old = entries;
+			entries = new int[old.length * 2];
+			Arrays.fill(entries, -1);
+			size = 0;
+			
+			for(int i = 0; i < old.length; i += 2) {
+				if(old[i] != -1) put(old[i], old[i + 1]);
+			}
+		}
+		
+		private int next(int i) {
+			return (i + 2) & (entries.length - 1);
+		}
+		
+		private int position(int id) {
+			int hash = id * 0x9E3779B9;
+			hash ^= hash >>> 16;
+			
+			return (hash & (entries.length / 2 - 1)) * 2;
+		}
+	}
+	
+	/**
+	 * A sorted array of values, each packed together with its slot into a
+	 * long. The value takes the upper half, so sorting the longs sorts by
+	 * value and then by slot, and a range of values is a range of the array.
+	 */
+	private static class SortedIndex {
+		
+		private long[] keys = new long[16];
+		private int size = 0;
+		
+		void add(int value, int slot) {
+			long key = pack(value, slot);
+			int position = -Arrays.binarySearch(keys, 0, size, key) - 1;
+			
+			if(position < 0) return;
+			
+			if(size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+			}
+			
+			System.arraycopy(keys, position, keys, position + 1, size - position);
+			keys[position] = key;
+			size++;
+		}
+		
+		void append(int value, int slot) {
+			if(size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+			}
+			
+			keys[size++] = pack(value, slot);
+		}
+		
+		void shift(int removed) {
+			for(int i = 0; i < size; i++) {
+				if((int) keys[i] > removed) keys[i]--;
+			}
+		}
+		
+		void sort() {
+			Arrays.sort(keys, 0, size);
+		}
+		
+		void remove(int value, int slot) {
+			int position = Arrays.binarySearch(keys, 0, size, pack(value, slot));
+			
+			if(position < 0) return;
+			
+			System.arraycopy(keys, position + 1, keys, position, size - position - 1);
+			size--;
+		}
+		
+		BitSet select(int min, int max) {
+			BitSet bits = new BitSet();
+			int from = lowerBound(pack(min, 0));
+			int to = max == Integer.MAX_VALUE ? size : lowerBound(pack(max + 1, 0));
+			
+			for(int i = from; i < to; i++) {
+				bits.set((int) keys[i]);
+			}
+			
+			return bits;
+		}
+		
+		private int lowerBound(long key) {
+			int position = Arrays.binarySearch(keys, 0, size, key);
+			
+			return position < 0 ? -position - 1 : position;
+		}
+		
+		private static long pack(int value, int slot) {
+			return ((long) value << 32) | slot;
+		}
+	}
+
+}
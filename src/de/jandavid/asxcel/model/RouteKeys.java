@@ -0,0 +1,199 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.util.ArrayList;
+
+/**
+ * The RouteKeys are what an enterprise keeps of its routes if it has too
+ * many of them to hold them as objects: the ID of every route, mapped by
+ * its origin and destination. The pairs and IDs are stored as primitives
+ * with open addressing, so even a million routes only take a few megabytes
+ * and checking if a route exists does not need the database.
+ *
+ * @author jdno
+ */
+class RouteKeys {
+	
+	/**
+	 * The IDs of the routes, at the positions of their pairs.
+	 */
+	private int[] ids = new int[32];
+	
+	/**
+	 * The origin in the upper and the destination in the lower half, or 0
+	 * for a free position.
+	 */
+	private long[] pairs = new long[32];
+	
+	/**
+	 * The number of routes.
+	 */
+	private int size = 0;
+	
+	/**
+	 * This method adds a route, or changes its ID if the pair is known.
+	 * @param id The ID of the route.
+	 * @param origin The ID of the airport where the route starts.
+	 * @param destination The ID of the airport where the route ends.
+	 */
+	void add(int id, int origin, int destination) {
+		if((size + 1) * 4 > pairs.length * 3) {
+			grow();
+		}
+		
+		long pair = pack(origin, destination);
+		int i = position(pair);
+		while(pairs[i] != 0 && pairs[i] != pair) {
+			i = next(i);
+		}
+		
+		if(pairs[i] == 0) size++;
+		pairs[i] = pair;
+		ids[i] = id;
+	}
+	
+	/**
+	 * This method checks if a route starts or ends at an airport. All
+	 * routes have to be looked at, so it is only meant for rare checks.
+	 * @param airport The ID of the airport.
+	 * @return True if such a route exists, false otherwise.
+	 */
+	boolean containsAirport(int airport) {
+		for(long pair: pairs) {
+			if(pair != 0 && ((int) (pair >>> 32) == airport || (int) pair == airport)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * This method returns the ID of a route.
+	 * @param origin The ID of the airport where the route starts.
+	 * @param destination The ID of the airport where the route ends.
+	 * @return The ID, or -1 if no such route exists.
+	 */
+	int get(int origin, int destination) {
+		long pair = pack(origin, destination);
+		
+		for(int i = position(pair); ; i = next(i)) {
+			if(pairs[i] == 0) return -1;
+			if(pairs[i] == pair) return ids[i];
+		}
+	}
+	
+	/**
+	 * This method returns the destinations of the routes starting at an
+	 * airport. All routes have to be looked at.
+	 * @param origin The ID of the airport where the routes start.
+	 * @return The IDs of the destinations.
+	 */
+	ArrayList<Integer> getDestinations(int origin) {
+		ArrayList<Integer> destinations = new ArrayList<Integer>();
+		
+		for(long pair: pairs) {
+			if(pair != 0 && (int) (pair >>> 32) == origin) {
+				destinations.add((int) pair);
+			}
+		}
+		
+		return destinations;
+	}
+	
+	/**
+	 * This method removes a route.
+	 * @param origin The ID of the airport where the route starts.
+	 * @param destination The ID of the airport where the route ends.
+	 * @return The ID of the route, or -1 if no such route exists.
+	 */
+	int remove(int origin, int destination) {
+		long pair = pack(origin, destination);
+		int i = position(pair);
+		while(pairs[i] != 0 && pairs[i] != pair) {
+			i = next(i);
+		}
+		
+		if(pairs[i] == 0) return -1;
+		
+		int id = ids[i];
+		pairs[i] = 0;
+		size--;
+		
+		// Pairs behind the removed one might have been placed there
+		// because its position was taken, so they get placed again.
+		for(int j = next(i); pairs[j] != 0; j = next(j)) {
+			long moved = pairs[j];
+			pairs[j] = 0;
+			size--;
+			add(ids[j], (int) (moved >>> 32), (int) moved);
+		}
+		
+		return id;
+	}
+	
+	/**
+	 * @return the number of routes
+	 */
+	int size() {
+		return size;
+	}
+	
+	/**
+	 * This auxiliary method doubles the capacity and places all pairs again.
+	 */
+	private void grow() {
+		long[] oldPairs = pairs;
+		int[] oldIds = ids;
+		pairs = new long[oldPairs.length * 2];
+		ids = new int[oldIds.length * 2];
+		size = 0;
+		
+		for(int i = 0; i < oldPairs.length; i++) {
+			if(oldPairs[i] != 0) add(oldIds[i], (int) (oldPairs[i] >>> 32), (int) oldPairs[i]);
+		}
+	}
+	
+	/**
+	 * @return the position after i, wrapping around at the end
+	 */
+	private int next(int i) {
+		return (i + 1) & (pairs.length - 1);
+	}
+	
+	/**
+	 * This auxiliary method packs an origin and a destination into a long.
+	 * IDs start at 1, so no pair is 0.
+	 * @param origin The ID of the origin.
+	 * @param destination The ID of the destination.
+	 * @return The pair.
+	 */
+	private static long pack(int origin, int destination) {
+		return ((long) origin << 32) | (destination & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * @return the position a pair gets placed at if it is free
+	 */
+	private int position(long pair) {
+		long hash = pair * 0x9E3779B97F4A7C15L;
+		
+		return (int) (hash >>> 32) & (pairs.length - 1);
+	}
+
+}
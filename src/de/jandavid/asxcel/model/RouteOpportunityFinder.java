@@ -0,0 +1,595 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The RouteOpportunityFinder looks for the routes an enterprise should open
+ * next. It goes through every pair of airports the enterprise does not have
+ * a route for yet, and scores it by the passengers and cargo of both
+ * airports, whether they allow a transfer, and the distance between them.
+ * Like the route dialog, the main hub is never a destination.
+ * 
+ * Airports have no coordinates, so the distance of a pair is only known if
+ * the enterprise flies the opposite direction already. A known distance
+ * raises the score up to twice, because longer routes earn more per seat.
+ * 
+ * The routes and airports get copied into arrays when the finder is
+ * created, so the search does not depend on the enterprise anymore. The
+ * routes of a paged enterprise get read from the database for this. The
+ * pairs get scored on a ForkJoinPool, and only the best pairs of every
+ * origin are kept in a heap of a fixed size.
+ * 
+ * @author jdno
+ */
+public class RouteOpportunityFinder {
+	
+	/**
+	 * The weight of the cargo compared to the passengers.
+	 */
+	private static final double CARGO_WEIGHT = 0.5;
+	
+	/**
+	 * The distance at which the score does not increase anymore.
+	 */
+	private static final double MAX_DISTANCE = 10000;
+	
+	/**
+	 * The number of origins or destinations a task scores without
+	 * splitting itself.
+	 */
+	private static final int SLOTS_PER_TASK = 256;
+	
+	/**
+	 * The share the score increases by for each airport that allows a transfer.
+	 */
+	private static final double TRANSFER_BONUS = 0.1;
+	
+	/**
+	 * The airports by slot.
+	 */
+	private Airport[] airports;
+	
+	/**
+	 * The square roots of the cargo of the airports, by slot.
+	 */
+	private double[] cargoRoots;
+	
+	/**
+	 * The slot of the main hub, or -1.
+	 */
+	private int excluded = -1;
+	
+	/**
+	 * The origins of the routes ending at each slot, sorted, and the
+	 * distances of these routes.
+	 */
+	private int[][] incoming, incomingDistances;
+	
+	/**
+	 * The maximum number of pairs kept per origin.
+	 */
+	private int limit;
+	
+	/**
+	 * The square roots of the passengers of the airports, by slot.
+	 */
+	private double[] passengerRoots;
+	
+	/**
+	 * The pool the pairs get scored on.
+	 */
+	private ForkJoinPool pool;
+	
+	/**
+	 * The destinations of the routes starting at each slot, sorted.
+	 */
+	private int[][] served;
+	
+	/**
+	 * This maps the IDs of the airports to their slots.
+	 */
+	private HashMap<Integer, Integer> slots = new HashMap<Integer, Integer>();
+	
+	/**
+	 * The factor of the transfer bonus of each slot.
+	 */
+	private double[] transferFactors;
+	
+	/**
+	 * The finder gets initialized with the routes of an enterprise and
+	 * the airports it may choose from, and scores on the common pool.
+	 * @param enterprise The enterprise to find new routes for.
+	 * @param airports The airports, sorted by their names.
+	 * @param limit The maximum number of pairs to return per origin.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public RouteOpportunityFinder(Enterprise enterprise, List<Airport> airports, int limit)
+			throws SQLException {
+		this(enterprise, airports, limit, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * The finder gets initialized with the routes of an enterprise and
+	 * the airports it may choose from.
+	 * @param enterprise The enterprise to find new routes for.
+	 * @param airports The airports, sorted by their names.
+	 * @param limit The maximum number of pairs to return per origin.
+	 * @param pool The pool to score the pairs on.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public RouteOpportunityFinder(Enterprise enterprise, List<Airport> airports, int limit, ForkJoinPool pool)
+			throws SQLException {
+		this.limit = limit;
+		this.pool = pool;
+		
+		int n = airports.size();
+		this.airports = airports.toArray(new Airport[n]);
+		passengerRoots = new double[n];
+		cargoRoots = new double[n];
+		transferFactors = new double[n];
+		
+		for(int i = 0; i < n; i++) {
+			Airport a = this.airports[i];
+			
+			slots.put(a.getId(), i);
+			passengerRoots[i] = Math.sqrt(Math.max(0, a.getPassengers()));
+			cargoRoots[i] = Math.sqrt(Math.max(0, a.getCargo()));
+			transferFactors[i] = a.isTransferPossible() ? TRANSFER_BONUS : 0;
+		}
+		
+		if(enterprise.getMainHub() != null) {
+			excluded = slotOf(enterprise.getMainHub());
+		}
+		
+		copyRoutes(enterprise, n);
+	}
+	
+	/**
+	 * This method scores the pairs of all origins.
+	 * @return The best pairs of every origin that has any, the best first.
+	 */
+	public HashMap<Airport, ArrayList<Opportunity>> findAll() {
+		final Heap[] heaps = new Heap[airports.length];
+		
+		pool.invoke(new OriginTask(heaps, 0, airports.length));
+		
+		HashMap<Airport, ArrayList<Opportunity>> result = new HashMap<Airport, ArrayList<Opportunity>>();
+		for(int i = 0; i < heaps.length; i++) {
+			if(heaps[i].size > 0) {
+				result.put(airports[i], heaps[i].toList(i));
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * This method scores the pairs of one origin.
+	 * @param origin The airport the routes start at.
+	 * @return The best pairs, the best first. The list is empty if the
+	 * 		origin is not one of the airports.
+	 */
+	public ArrayList<Opportunity> find(Airport origin) {
+		int slot = slotOf(origin);
+		
+		if(slot < 0) {
+			return new ArrayList<Opportunity>(0);
+		}
+		
+		return pool.invoke(new DestinationTask(slot, 0, airports.length)).toList(slot);
+	}
+	
+	/**
+	 * This auxiliary method copies the routes into sorted arrays by slot. The
+	 * routes of a paged enterprise get streamed from the database.
+	 * @param enterprise The enterprise.
+	 * @param n The number of slots.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	private void copyRoutes(Enterprise enterprise, int n) throws SQLException {
+		int[] outCounts = new int[n];
+		int[] inCounts = new int[n];
+		int capacity = Math.max(16, enterprise.getRoutes().size());
+		long[] pairs = new long[capacity];
+		int[] distances = new int[capacity];
+		int count = 0;
+		
+		if(enterprise.isPaged()) {
+			enterprise.getModel().flush();
+			DatabaseCursor dc = enterprise.openRouteCursor();
+			
+			try {
+				while(dc.next()) {
+					int origin = slotOf(dc.getInt(1));
+					int destination = slotOf(dc.getInt(2));
+					
+					if(origin < 0 || destination < 0) continue;
+					
+					if(count == pairs.length) {
+						pairs = Arrays.copyOf(pairs, count * 2);
+						distances = Arrays.copyOf(distances, count * 2);
+					}
+					
+					outCounts[origin]++;
+					inCounts[destination]++;
+					pairs[count] = (long) destination << 32 | origin;
+					distances[count++] = dc.getInt(3);
+				}
+			} finally {
+				dc.close();
+			}
+		} else {
+			for(Route r: enterprise.getRoutes()) {
+				int origin = slotOf(r.getOrigin());
+				int destination = slotOf(r.getDestination());
+				
+				if(origin < 0 || destination < 0) continue;
+				
+				outCounts[origin]++;
+				inCounts[destination]++;
+				pairs[count] = (long) destination << 32 | origin;
+				distances[count++] = r.getDistance();
+			}
+		}
+		
+		served = new int[n][];
+		incoming = new int[n][];
+		incomingDistances = new int[n][];
+		for(int i = 0; i < n; i++) {
+			served[i] = new int[outCounts[i]];
+			incoming[i] = new int[inCounts[i]];
+			incomingDistances[i] = new int[inCounts[i]];
+			outCounts[i] = 0;
+			inCounts[i] = 0;
+		}
+		
+		for(int i = 0; i < count; i++) {
+			int destination = (int) (pairs[i] >>> 32);
+			int origin = (int) pairs[i];
+			
+			served[origin][outCounts[origin]++] = destination;
+			incoming[destination][inCounts[destination]] = origin;
+			incomingDistances[destination][inCounts[destination]++] = distances[i];
+		}
+		
+		for(int i = 0; i < n; i++) {
+			Arrays.sort(served[i]);
+			sortIncoming(i);
+		}
+	}
+	
+	/**
+	 * This auxiliary method scores the destinations of an origin in the
+	 * given range, and adds them to the heap. The served destinations and
+	 * the routes ending at the origin are walked alongside, as both are
+	 * sorted by slot.
+	 * @param origin The slot of the origin.
+	 * @param from The first destination slot.
+	 * @param to The destination slot after the last.
+	 * @param heap The heap the pairs get added to.
+	 */
+	private void scan(int origin, int from, int to, Heap heap) {
+		int[] out = served[origin];
+		int[] in = incoming[origin];
+		int[] inDistances = incomingDistances[origin];
+		int o = lowerBound(out, from);
+		int i = lowerBound(in, from);
+		
+		double passengers = passengerRoots[origin];
+		double cargo = cargoRoots[origin] * CARGO_WEIGHT;
+		double transfer = 1 + transferFactors[origin];
+		
+		for(int d = from; d < to; d++) {
+			while(o < out.length && out[o] < d) o++;
+			if(o < out.length && out[o] == d) continue;
+			if(d == origin || d == excluded) continue;
+			
+			while(i < in.length && in[i] < d) i++;
+			double distance = i < in.length && in[i] == d ? Math.max(0, Math.min(inDistances[i], MAX_DISTANCE)) : 0;
+			
+			double score = (passengers * passengerRoots[d] + cargo * cargoRoots[d])
+					* (transfer + transferFactors[d]) * (1 + distance / MAX_DISTANCE);
+			
+			heap.offer(score, d, distance > 0 ? inDistances[i] : -1);
+		}
+	}
+	
+	/**
+	 * This auxiliary method returns the slot of an airport.
+	 * @param airport The airport.
+	 * @return The slot, or -1 if the airport is not one of the airports.
+	 */
+	private int slotOf(Airport airport) {
+		Integer slot = slots.get(airport.getId());
+		
+		return slot != null && airports[slot] == airport ? slot : -1;
+	}
+	
+	/**
+	 * This auxiliary method returns the slot of an airport by its ID.
+	 * @param id The ID of the airport.
+	 * @return The slot, or -1 if the airport is not one of the airports.
+	 */
+	private int slotOf(int id) {
+		Integer slot = slots.get(id);
+		
+		return slot != null ? slot : -1;
+	}
+	
+	/**
+	 * This auxiliary method sorts the routes ending at a slot by their
+	 * origins, together with their distances.
+	 * @param slot The slot.
+	 */
+	private void sortIncoming(int slot) {
+		int[] origins = incoming[slot];
+		long[] packed = new long[origins.length];
+		
+		for(int i = 0; i < origins.length; i++) {
+			packed[i] = (long) origins[i] << 32 | (incomingDistances[slot][i] & 0xFFFFFFFFL);
+		}
+		
+		Arrays.sort(packed);
+		
+		for(int i = 0; i < packed.length; i++) {
+			origins[i] = (int) (packed[i] >>> 32);
+			incomingDistances[slot][i] = (int) packed[i];
+		}
+	}
+	
+	/**
+	 * This auxiliary method finds the first position of a sorted array
+	 * whose value is not less than the given value.
+	 */
+	private static int lowerBound(int[] values, int value) {
+		int low = 0, high = values.length;
+		
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			
+			if(values[middle] < value) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		
+		return low;
+	}
+	
+	/**
+	 * A pair of airports the enterprise does not serve yet, with its score.
+	 */
+	public static class Opportunity {
+		
+		private final Airport destination;
+		private final int distance;
+		private final Airport origin;
+		private final double score;
+		
+		Opportunity(Airport origin, Airport destination, double score, int distance) {
+			this.origin = origin;
+			this.destination = destination;
+			this.score = score;
+			this.distance = distance;
+		}
+		
+		/**
+		 * @return the destination
+		 */
+		public Airport getDestination() {
+			return destination;
+		}
+		
+		/**
+		 * @return the distance, or -1 if it is not known
+		 */
+		public int getDistance() {
+			return distance;
+		}
+		
+		/**
+		 * @return the origin
+		 */
+		public Airport getOrigin() {
+			return origin;
+		}
+		
+		/**
+		 * @return the score
+		 */
+		public double getScore() {
+			return score;
+		}
+	}
+	
+	/**
+	 * A heap of a fixed size that keeps the pairs with the highest scores.
+	 * Its root is the worst pair it keeps. Of two pairs with the same score
+	 * the one with the lower slot, which comes first by name, is better.
+	 */
+	private class Heap {
+		
+		private int[] destinations = new int[limit];
+		private int[] distances = new int[limit];
+		private double[] scores = new double[limit];
+		private int size = 0;
+		
+		void offer(double score, int destination, int distance) {
+			if(size < limit) {
+				scores[size] = score;
+				destinations[size] = destination;
+				distances[size] = distance;
+				up(size++);
+			} else if(limit > 0 && isWorse(scores[0], destinations[0], score, destination)) {
+				scores[0] = score;
+				destinations[0] = destination;
+				distances[0] = distance;
+				down(0);
+			}
+		}
+		
+		void addAll(Heap other) {
+			for(int i = 0; i < other.size; i++) {
+				offer(other.scores[i], other.destinations[i], other.distances[i]);
+			}
+		}
+		
+		ArrayList<Opportunity> toList(int origin) {
+			Heap copy = new Heap();
+			copy.addAll(this);
+			
+			Opportunity[] result = new Opportunity[size];
+			for(int i = size - 1; i >= 0; i--) {
+				result[i] = new Opportunity(airports[origin], airports[copy.destinations[0]], copy.scores[0], copy.distances[0]);
+				copy.removeRoot();
+			}
+			
+			return new ArrayList<Opportunity>(Arrays.asList(result));
+		}
+		
+		private boolean isWorse(double scoreA, int destinationA, double scoreB, int destinationB) {
+			return scoreA < scoreB || (scoreA == scoreB && destinationA > destinationB);
+		}
+		
+		private void removeRoot() {
+			size--;
+			move(size, 0);
+			down(0);
+		}
+		
+		private void up(int i) {
+			while(i > 0) {
+				int parent = (i - 1) / 2;
+				
+				if(!isWorse(scores[i], destinations[i], scores[parent], destinations[parent])) break;
+				
+				swap(i, parent);
+				i = parent;
+			}
+		}
+		
+		private void down(int i) {
+			while(true) {
+				int worst = i;
+				int left = 2 * i + 1;
+				int right = left + 1;
+				
+				if(left < size && isWorse(scores[left], destinations[left], scores[worst], destinations[worst])) worst = left;
+				if(right < size && isWorse(scores[right], destinations[right], scores[worst], destinations[worst])) worst = right;
+				if(worst == i) return;
+				
+				swap(i, worst);
+				i = worst;
+			}
+		}
+		
+		private void move(int from, int to) {
+			scores[to] = scores[from];
+			destinations[to] = destinations[from];
+			distances[to] = distances[from];
+		}
+		
+		private void swap(int a, int b) {
+			double score = scores[a];
+			int destination = destinations[a];
+			int distance = distances[a];
+			
+			move(b, a);
+			scores[b] = score;
+			destinations[b] = destination;
+			distances[b] = distance;
+		}
+	}
+	
+	/**
+	 * This task scores the destinations of one origin, and splits the
+	 * destinations in halves until they are few enough.
+	 */
+	private class DestinationTask extends RecursiveTask<Heap> {
+		
+		private static final long serialVersionUID = 6218745129450872315L;
+		
+		private final int from, origin, to;
+		
+		DestinationTask(int origin, int from, int to) {
+			this.origin = origin;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected Heap compute() {
+			if(to - from <= SLOTS_PER_TASK) {
+				Heap heap = new Heap();
+				scan(origin, from, to, heap);
+				return heap;
+			}
+			
+			int middle = (from + to) >>> 1;
+			DestinationTask right = new DestinationTask(origin, middle, to);
+			right.fork();
+			
+			Heap heap = new DestinationTask(origin, from, middle).compute();
+			heap.addAll(right.join());
+			
+			return heap;
+		}
+	}
+	
+	/**
+	 * This task scores all destinations of a range of origins, and splits
+	 * the origins in halves until they are few enough.
+	 */
+	private class OriginTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = -1858021773958163374L;
+		
+		private final int from, to;
+		private final Heap[] heaps;
+		
+		OriginTask(Heap[] heaps, int from, int to) {
+			this.heaps = heaps;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if(to - from <= Math.max(1, SLOTS_PER_TASK / 16)) {
+				for(int origin = from; origin < to; origin++) {
+					heaps[origin] = new Heap();
+					scan(origin, 0, airports.length, heaps[origin]);
+				}
+				return;
+			}
+			
+			int middle = (from + to) >>> 1;
+			invokeAll(new OriginTask(heaps, from, middle), new OriginTask(heaps, middle, to));
+		}
+	}
+	
+}
@@ -0,0 +1,667 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * The RoutePager reads the routes of the enterprise page by page, ordered by
+ * one of the columns of the routes table. Pages get read with keyset
+ * pagination: if the last row of the previous page is known, the next page
+ * starts right after its sort key, so SQLite can seek to it instead of
+ * skipping all rows before. Only pages whose predecessor is unknown, e.g.
+ * after jumping with the scroll bar, fall back to an OFFSET.
+ * 
+ * The pager can also be restricted to a list of route IDs, e.g. the routes
+ * a RouteFilter has picked from the IDs in the order of readOrderAsync().
+ * The pages then are slices of the list, read by their IDs.
+ * 
+ * @author jdno
+ */
+public class RoutePager {
+	
+	/**
+	 * The keys the routes can be ordered by. They are in the same order as
+	 * the columns of the routes table.
+	 */
+	public enum SortKey {
+		ORIGIN_NAME("`a1`.`name`", false),
+		ORIGIN_IATA("`a1`.`iata`", false),
+		ORIGIN_PASSENGERS("`a1`.`passengers`", true),
+		ORIGIN_CARGO("`a1`.`cargo`", true),
+		DESTINATION_NAME("`a2`.`name`", false),
+		DESTINATION_IATA("`a2`.`iata`", false),
+		DESTINATION_PASSENGERS("`a2`.`passengers`", true),
+		DESTINATION_CARGO("`a2`.`cargo`", true),
+		DESTINATION_TRANSFER("`a2`.`transfer`", true),
+		DISTANCE("`r`.`distance`", true),
+		LOAD_TO("`r`.`loadTo`", true),
+		LOAD_FROM("`r`.`loadFrom`", true),
+		SCHEDULED("`r`.`scheduled`", true);
+		
+		/**
+		 * The column the rows get ordered by. It is used as it is, so that
+		 * the indexes on the routes table can deliver the rows in order.
+		 */
+		private final String column;
+		
+		/**
+		 * True if the key is a number, false if it is a text.
+		 */
+		private final boolean numeric;
+		
+		SortKey(String column, boolean numeric) {
+			this.column = column;
+			this.numeric = numeric;
+		}
+	}
+	
+	/**
+	 * The rows a page query reads. SQLite orders NULL before any value, so a
+	 * page that starts after a row has to tell rows with a NULL key apart.
+	 * Each range is a single range of the indexes, so SQLite can seek to its
+	 * start.
+	 */
+	public enum Range {
+		/**
+		 * All rows, starting with the first one.
+		 */
+		ALL,
+		
+		/**
+		 * All rows, skipping a number of them.
+		 */
+		OFFSET,
+		
+		/**
+		 * The rows after a sort key that is not NULL and an ID.
+		 */
+		AFTER_KEY,
+		
+		/**
+		 * The rows with a NULL key after an ID.
+		 */
+		AFTER_NULL_KEY,
+		
+		/**
+		 * The rows with a NULL key.
+		 */
+		NULL_KEYS,
+		
+		/**
+		 * The rows whose key is not NULL.
+		 */
+		NON_NULL_KEYS
+	}
+	
+	/**
+	 * True if the routes get ordered ascending.
+	 */
+	private boolean ascending = true;
+	
+	/**
+	 * The IDs of the routes to page through, in order, or null to page
+	 * through all routes.
+	 */
+	private int[] ids;
+	
+	/**
+	 * This maps the pages to the sort key and ID of their last row. The sort
+	 * key is null if the last row has none.
+	 */
+	private HashMap<Integer, Object[]> lastKeys = new HashMap<Integer, Object[]>();
+	
+	/**
+	 * The model the routes belong to.
+	 */
+	private Model model;
+	
+	/**
+	 * The number of routes on each page.
+	 */
+	private int pageSize;
+	
+	/**
+	 * The key the routes get ordered by.
+	 */
+	private SortKey sortKey = SortKey.ORIGIN_NAME;
+	
+	/**
+	 * The pager gets initialized with the model whose enterprise's routes
+	 * get read, and the size of the pages.
+	 * @param model The model to read the routes of.
+	 * @param pageSize The number of routes on each page.
+	 */
+	public RoutePager(Model model, int pageSize) {
+		this.model = model;
+		this.pageSize = pageSize;
+	}
+	
+	/**
+	 * This method counts the routes of the enterprise that can be displayed,
+	 * which are the routes between airports of the enterprise, or the
+	 * routes in the list of IDs.
+	 * @return The number of routes.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public int count() throws SQLException {
+		synchronized(this) {
+			if(ids != null) return ids.length;
+		}
+		
+		model.flush();
+		
+		return model.getEnterprise().countRoutes();
+	}
+	
+	/**
+	 * This method reads a page of routes. Routes that are in use already
+	 * are returned as the same objects.
+	 * @param page The number of the page, starting at 0.
+	 * @return The routes on the page, which might be less than the page size
+	 * 		on the last page.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public ArrayList<Route> fetchPage(int page) throws SQLException {
+		return resolve(readPage(page, model.getEnterprise().getId()));
+	}
+	
+	/**
+	 * This method opens a cursor over all routes of the enterprise of a
+	 * model in the given order. Each row contains the values of the columns
+	 * of the routes table, in the same order, so the routes can be streamed
+	 * without creating objects for them.
+	 * @param model The model to read the routes of.
+	 * @param sortKey The key to order the routes by.
+	 * @param ascending True to order ascending, false to order descending.
+	 * @return The cursor, which has to be closed if it is not read to its end.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public static DatabaseCursor openRowCursor(Model model, SortKey sortKey, boolean ascending)
+			throws SQLException {
+		model.flush();
+		
+		ArrayList<Object> params = new ArrayList<Object>(3);
+		addEnterprise(params, model.getEnterprise().getId());
+		
+		return model.getDatabase().openCursor(getRowQuery(sortKey, ascending), params);
+	}
+	
+	/**
+	 * This method opens a cursor over the routes with the given IDs. Each
+	 * row contains the values of the columns of the routes table, like the
+	 * rows of openRowCursor(), followed by the ID of the route. The rows
+	 * come in no particular order.
+	 * @param model The model to read the routes of.
+	 * @param ids The IDs of the routes.
+	 * @param from The position of the first ID to read.
+	 * @param to The position after the last ID to read.
+	 * @return The cursor, which has to be closed if it is not read to its end.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public static DatabaseCursor openRowCursor(Model model, int[] ids, int from, int to) throws SQLException {
+		model.flush();
+		
+		ArrayList<Object> params = new ArrayList<Object>(to - from);
+		for(int i = from; i < to; i++) {
+			params.add(ids[i]);
+		}
+		
+		return model.getDatabase().openCursor(getRowQuery(to - from), params);
+	}
+	
+	/**
+	 * This method returns the query that reads the IDs of all routes in an
+	 * order. Its parameters are the ID of the enterprise three times.
+	 * @param sortKey The key to order the routes by.
+	 * @param ascending True to order ascending, false to order descending.
+	 * @return The query.
+	 */
+	public static String getOrderQuery(SortKey sortKey, boolean ascending) {
+		String direction = ascending ? "ASC" : "DESC";
+		
+		return "SELECT `r`.`id` " + from() +
+				"ORDER BY " + sortKey.column + " " + direction + ", `r`.`id` " + direction;
+	}
+	
+	/**
+	 * This method returns the query that reads a page of routes. Its parameters
+	 * are the ID of the enterprise three times, the sort key and ID of the last
+	 * row of the previous page for AFTER_KEY, or only its ID for AFTER_NULL_KEY,
+	 * the size of the page, and the number of rows to skip for OFFSET.
+	 * @param sortKey The key to order the routes by.
+	 * @param ascending True to order ascending, false to order descending.
+	 * @param range The rows to read.
+	 * @return The query.
+	 */
+	public static String getPageQuery(SortKey sortKey, boolean ascending, Range range) {
+		String direction = ascending ? "ASC" : "DESC";
+		String comparison = ascending ? ">" : "<";
+		
+		String query = "SELECT `r`.`id`, `r`.`origin`, `r`.`destination`, `r`.`distance`, " +
+				"`r`.`loadFrom`, `r`.`loadTo`, `r`.`scheduled`, " + sortKey.column + " " +
+				from();
+		
+		switch(range) {
+		case AFTER_KEY:
+			query += "AND " + sortKey.column + " " + comparison + "= ? AND (" + sortKey.column + " " +
+					comparison + " ? OR `r`.`id` " + comparison + " ?) ";
+			break;
+		case AFTER_NULL_KEY:
+			query += "AND " + sortKey.column + " IS NULL AND `r`.`id` " + comparison + " ? ";
+			break;
+		case NULL_KEYS:
+			query += "AND " + sortKey.column + " IS NULL ";
+			break;
+		case NON_NULL_KEYS:
+			query += "AND " + sortKey.column + " IS NOT NULL ";
+			break;
+		default:
+			break;
+		}
+		
+		query += "ORDER BY " + sortKey.column + " " + direction + ", `r`.`id` " + direction + " LIMIT ?";
+		
+		if(range == Range.OFFSET) {
+			query += " OFFSET ?";
+		}
+		
+		return query;
+	}
+	
+	/**
+	 * This method returns the query that reads the values of the columns of
+	 * the routes table. Its parameters are the ID of the enterprise three times.
+	 * @param sortKey The key to order the routes by.
+	 * @param ascending True to order ascending, false to order descending.
+	 * @return The query.
+	 */
+	public static String getRowQuery(SortKey sortKey, boolean ascending) {
+		String direction = ascending ? "ASC" : "DESC";
+		
+		return "SELECT `a1`.`name`, `a1`.`iata`, `a1`.`passengers`, `a1`.`cargo`, " +
+				"`a2`.`name`, `a2`.`iata`, `a2`.`passengers`, `a2`.`cargo`, `a2`.`transfer`, " +
+				"`r`.`distance`, `r`.`loadTo`, `r`.`loadFrom`, `r`.`scheduled` " + from() +
+				"ORDER BY " + sortKey.column + " " + direction + ", `r`.`id` " + direction;
+	}
+	
+	/**
+	 * This method returns the query that reads the values of the columns of
+	 * the routes table and the ID of a number of routes. Its parameters are
+	 * the IDs of the routes.
+	 * @param count The number of routes.
+	 * @return The query.
+	 */
+	public static String getRowQuery(int count) {
+		return "SELECT `a1`.`name`, `a1`.`iata`, `a1`.`passengers`, `a1`.`cargo`, " +
+				"`a2`.`name`, `a2`.`iata`, `a2`.`passengers`, `a2`.`cargo`, `a2`.`transfer`, " +
+				"`r`.`distance`, `r`.`loadTo`, `r`.`loadFrom`, `r`.`scheduled`, `r`.`id` " +
+				"FROM `routes` AS `r` " +
+				"INNER JOIN `airports` AS `a1` ON `r`.`origin` = `a1`.`id` " +
+				"INNER JOIN `airports` AS `a2` ON `r`.`destination` = `a2`.`id` " +
+				"WHERE `r`.`id` IN (" + placeholders(count) + ")";
+	}
+	
+	/**
+	 * This method returns the query that reads the routes of a page by their
+	 * IDs. Its parameters are the IDs of the routes.
+	 * @param count The number of routes.
+	 * @return The query.
+	 */
+	public static String getIdPageQuery(int count) {
+		return "SELECT `r`.`id`, `r`.`origin`, `r`.`destination`, `r`.`distance`, " +
+				"`r`.`loadFrom`, `r`.`loadTo`, `r`.`scheduled` FROM `routes` AS `r` " +
+				"WHERE `r`.`id` IN (" + placeholders(count) + ")";
+	}
+	
+	/**
+	 * This method reads a page of routes in the background. Only the rows
+	 * get read by the database thread. The routes get looked up or created
+	 * by the given executor, which has to be the thread that owns the model,
+	 * because the model and its enterprise are not thread-safe.
+	 * @param page The number of the page, starting at 0.
+	 * @param executor The executor that runs on the thread owning the model.
+	 * @return The future routes on the page.
+	 */
+	public CompletableFuture<ArrayList<Route>> fetchPageAsync(final int page, Executor executor) {
+		final int enterprise = model.getEnterprise().getId();
+		
+		return model.getDatabase().readAsync(new Callable<ArrayList<int[]>>() {
+			@Override
+			public ArrayList<int[]> call() throws SQLException {
+				return readPage(page, enterprise);
+			}
+		}).thenApplyAsync(new Function<ArrayList<int[]>, ArrayList<Route>>() {
+			@Override
+			public ArrayList<Route> apply(ArrayList<int[]> rows) {
+				return resolve(rows);
+			}
+		}, executor);
+	}
+	
+	/**
+	 * This method reads the IDs of all routes of the enterprise in the current
+	 * order in the background, so a filter can pick the routes to page
+	 * through from them.
+	 * @return The future IDs.
+	 */
+	public CompletableFuture<int[]> readOrderAsync() {
+		final int enterprise = model.getEnterprise().getId();
+		final String query;
+		
+		synchronized(this) {
+			query = getOrderQuery(sortKey, ascending);
+		}
+		
+		return model.getDatabase().readAsync(new Callable<int[]>() {
+			@Override
+			public int[] call() throws SQLException {
+				model.flush();
+				
+				ArrayList<Object> params = new ArrayList<Object>(3);
+				addEnterprise(params, enterprise);
+				
+				int[] order = new int[1024];
+				int count = 0;
+				DatabaseCursor dc = model.getDatabase().openCursor(query, params);
+				
+				try {
+					while(dc.next()) {
+						if(count == order.length) order = Arrays.copyOf(order, count * 2);
+						order[count++] = dc.getInt(0);
+					}
+				} finally {
+					dc.close();
+				}
+				
+				return Arrays.copyOf(order, count);
+			}
+		});
+	}
+	
+	/**
+	 * This method forgets the last rows of all pages. It has to be called if
+	 * routes have been added or removed, or their sort keys have changed.
+	 */
+	public synchronized void invalidate() {
+		lastKeys.clear();
+	}
+	
+	/**
+	 * This auxiliary method adds the ID of the enterprise as often as the
+	 * filter needs it.
+	 * @param params The parameters to add the ID to.
+	 * @param enterprise The ID of the enterprise.
+	 */
+	private static void addEnterprise(ArrayList<Object> params, int enterprise) {
+		params.add(enterprise);
+		params.add(enterprise);
+		params.add(enterprise);
+	}
+	
+	/**
+	 * This auxiliary method reads the rows of the routes on a page from
+	 * the database. It does not touch the model apart from flushing it, so
+	 * it can run on a database thread. A page that starts after a known row
+	 * might consist of two ranges: ascending the rows with a NULL key come
+	 * before all others, descending they come after them.
+	 * @param page The number of the page, starting at 0.
+	 * @param enterprise The ID of the enterprise.
+	 * @return The ID, origin, destination, distance, load from, load to and
+	 * 		scheduled flag of each route.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	private synchronized ArrayList<int[]> readPage(int page, int enterprise) throws SQLException {
+		model.flush();
+		
+		if(ids != null) {
+			return readIds(page);
+		}
+		
+		ArrayList<int[]> rows = new ArrayList<int[]>(pageSize);
+		Object[] after = page > 0 ? lastKeys.get(page - 1) : null;
+		Object[] lastKey = null;
+		
+		if(after == null) {
+			lastKey = readRange(rows, enterprise, page > 0 ? Range.OFFSET : Range.ALL, null, page * pageSize, lastKey);
+		} else if(after[0] == null) {
+			lastKey = readRange(rows, enterprise, Range.AFTER_NULL_KEY, after, 0, lastKey);
+			if(ascending) lastKey = readRange(rows, enterprise, Range.NON_NULL_KEYS, null, 0, lastKey);
+		} else {
+			lastKey = readRange(rows, enterprise, Range.AFTER_KEY, after, 0, lastKey);
+			if(!ascending) lastKey = readRange(rows, enterprise, Range.NULL_KEYS, null, 0, lastKey);
+		}
+		
+		if(lastKey != null) {
+			lastKeys.put(page, lastKey);
+		}
+		
+		return rows;
+	}
+	
+	/**
+	 * This auxiliary method reads the rows of a page of the list of IDs, and
+	 * puts them into the order of the list. Routes that have been deleted
+	 * meanwhile are left out.
+	 * @param page The number of the page, starting at 0.
+	 * @return The rows of the page.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	private ArrayList<int[]> readIds(int page) throws SQLException {
+		int from = Math.min(ids.length, page * pageSize);
+		int to = Math.min(ids.length, from + pageSize);
+		
+		ArrayList<Object> params = new ArrayList<Object>(to - from);
+		for(int i = from; i < to; i++) {
+			params.add(ids[i]);
+		}
+		
+		HashMap<Integer, int[]> byId = new HashMap<Integer, int[]>();
+		DatabaseCursor dc = model.getDatabase().openCursor(getIdPageQuery(to - from), params);
+		
+		try {
+			while(dc.next()) {
+				int[] row = new int[7];
+				
+				for(int i = 0; i < row.length; i++) {
+					row[i] = dc.getInt(i);
+				}
+				
+				byId.put(row[0], row);
+			}
+		} finally {
+			dc.close();
+		}
+		
+		ArrayList<int[]> rows = new ArrayList<int[]>(to - from);
+		for(int i = from; i < to; i++) {
+			int[] row = byId.get(ids[i]);
+			if(row != null) rows.add(row);
+		}
+		
+		return rows;
+	}
+	
+	/**
+	 * This auxiliary method reads the rows of a range until the page is full.
+	 * @param rows The rows of the page to add to.
+	 * @param enterprise The ID of the enterprise.
+	 * @param range The range to read.
+	 * @param after The sort key and ID of the last row of the previous page,
+	 * 		if the range starts after it.
+	 * @param offset The number of rows to skip for OFFSET.
+	 * @param lastKey The sort key and ID of the last row read so far, or null.
+	 * @return The sort key and ID of the last row read, or lastKey if the
+	 * 		range has not added any row.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	private Object[] readRange(ArrayList<int[]> rows, int enterprise, Range range, Object[] after,
+			int offset, Object[] lastKey) throws SQLException {
+		int limit = pageSize - rows.size();
+		if(limit <= 0) return lastKey;
+		
+		ArrayList<Object> params = new ArrayList<Object>(8);
+		addEnterprise(params, enterprise);
+		
+		if(range == Range.AFTER_KEY) {
+			params.add(after[0]);
+			params.add(after[0]);
+		}
+		
+		if(range == Range.AFTER_KEY || range == Range.AFTER_NULL_KEY) {
+			params.add(after[1]);
+		}
+		
+		params.add(limit);
+		
+		if(range == Range.OFFSET) {
+			params.add(offset);
+		}
+		
+		DatabaseCursor dc = model.getDatabase().openCursor(getPageQuery(sortKey, ascending, range), params);
+		
+		try {
+			while(dc.next()) {
+				int[] row = new int[7];
+				
+				for(int i = 0; i < row.length; i++) {
+					row[i] = dc.getInt(i);
+				}
+				
+				rows.add(row);
+				
+				if(dc.isNull(7)) {
+					lastKey = new Object[] {null, row[0]};
+				} else {
+					lastKey = new Object[] {sortKey.numeric ? (Object) dc.getLong(7) : dc.getString(7), row[0]};
+				}
+			}
+		} finally {
+			dc.close();
+		}
+		
+		return lastKey;
+	}
+	
+	/**
+	 * This auxiliary method turns the rows of a page into routes. The routes
+	 * get resolved by the enterprise, so a route that is in use already is
+	 * returned as the same object. It has to run on the thread that owns the
+	 * model.
+	 * @param rows The rows as read by readPage().
+	 * @return The routes.
+	 */
+	private ArrayList<Route> resolve(ArrayList<int[]> rows) {
+		ArrayList<Route> routes = new ArrayList<Route>(rows.size());
+		Enterprise enterprise = model.getEnterprise();
+		
+		for(int[] row: rows) {
+			routes.add(enterprise.resolveRoute(row[0], row[1], row[2], row[3], row[4], row[5], row[6] != 0));
+		}
+		
+		return routes;
+	}
+	
+	/**
+	 * This auxiliary method returns the placeholders of an IN list.
+	 * @param count The number of values.
+	 * @return The placeholders, separated by commas.
+	 */
+	private static String placeholders(int count) {
+		StringBuilder sb = new StringBuilder(count * 2);
+		
+		for(int i = 0; i < count; i++) {
+			sb.append(i == 0 ? "?" : ",?");
+		}
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * This auxiliary method returns the tables and the filter that restrict
+	 * the routes to those between airports of the enterprise, like the
+	 * enterprise loads them.
+	 * @return The FROM and WHERE clauses.
+	 */
+	private static String from() {
+		return "FROM `routes` AS `r` " +
+				"INNER JOIN `airports` AS `a1` ON `r`.`origin` = `a1`.`id` " +
+				"INNER JOIN `airports` AS `a2` ON `r`.`destination` = `a2`.`id` " +
+				"WHERE `r`.`enterprise` = ? " +
+				"AND EXISTS (SELECT 1 FROM `enterprise_has_airport` WHERE `enterprise` = ? AND `airport` = `r`.`origin`) " +
+				"AND EXISTS (SELECT 1 FROM `enterprise_has_airport` WHERE `enterprise` = ? AND `airport` = `r`.`destination`) ";
+	}
+	
+	/**
+	 * @return the IDs of the routes the pages are restricted to, or null
+	 */
+	public synchronized int[] getIds() {
+		return ids;
+	}
+	
+	/**
+	 * @return the number of routes on each page
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+	
+	/**
+	 * This method restricts the pages to a list of routes. The pages read
+	 * before are not valid anymore.
+	 * @param ids The IDs of the routes in the order of the pages, or null
+	 * 		to page through all routes.
+	 */
+	public synchronized void setIds(int[] ids) {
+		this.ids = ids;
+		invalidate();
+	}
+	
+	/**
+	 * @return the key the routes get ordered by
+	 */
+	public synchronized SortKey getSortKey() {
+		return sortKey;
+	}
+	
+	/**
+	 * @return true if the routes get ordered ascending
+	 */
+	public synchronized boolean isAscending() {
+		return ascending;
+	}
+	
+	/**
+	 * This method changes the order of the routes. The pages read before
+	 * are not valid anymore.
+	 * @param sortKey The key to order the routes by.
+	 * @param ascending True to order ascending, false to order descending.
+	 */
+	public synchronized void setOrder(SortKey sortKey, boolean ascending) {
+		this.sortKey = sortKey;
+		this.ascending = ascending;
+		invalidate();
+	}
+
+}
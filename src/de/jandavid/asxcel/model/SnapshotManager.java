@@ -0,0 +1,295 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SnapshotManager keeps an EnterpriseSnapshot of every enterprise that
+ * has been opened in a directory, so the enterprise can be read from the
+ * snapshot the next time it gets opened. A snapshot is only used if it has
+ * been written at the current change counter of the database, which gets
+ * sealed before the snapshot is written (see MigrationTo5). Outdated or
+ * missing snapshots get rebuilt in the background: when the enterprise gets
+ * opened, and a few seconds after its airports or routes have been changed.
+ * 
+ * Databases without a change counter, i.e. before version 5, do not get
+ * snapshots.
+ *
+ * @author jdno
+ */
+public class SnapshotManager implements ModelListener {
+	
+	/**
+	 * The time in milliseconds the snapshot gets rebuilt after the last change.
+	 */
+	private static final long REBUILD_DELAY = 5000;
+	
+	/**
+	 * The directory the snapshots are stored in.
+	 */
+	private File directory;
+	
+	/**
+	 * The snapshots get written one after another by this executor.
+	 */
+	private ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+			Database.createThreadFactory("ASxcel snapshot"));
+	
+	/**
+	 * This lock makes sure only one snapshot gets written at a time. The
+	 * manager itself is not locked meanwhile, so changes can still schedule
+	 * a rebuild without waiting.
+	 */
+	private final Object rebuildLock = new Object();
+	
+	/**
+	 * The model the enterprises belong to.
+	 */
+	private Model model;
+	
+	/**
+	 * The rebuilds that have been scheduled, mapped by the ID of their enterprise.
+	 */
+	private HashMap<Integer, ScheduledFuture<?>> scheduled = new HashMap<Integer, ScheduledFuture<?>>();
+	
+	/**
+	 * The manager gets initialized with the model whose enterprises it keeps
+	 * snapshots of, and the directory it stores them in.
+	 * @param model The model the enterprises belong to.
+	 * @param directory The directory to store the snapshots in.
+	 */
+	public SnapshotManager(Model model, File directory) {
+		this.model = model;
+		this.directory = directory;
+	}
+	
+	/**
+	 * This method reads the change counter of the database.
+	 * @return The change counter, or -1 if the database does not have one.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public long getChangeCounter() throws SQLException {
+		DatabaseCursor dc;
+		
+		try {
+			dc = model.getDatabase().openCursor("SELECT `counter` FROM `changes` WHERE `id` = 1");
+		} catch (SQLException e) {
+			// The table does not exist before version 5.
+			return -1;
+		}
+		
+		try {
+			return dc.next() ? dc.getLong(0) : -1;
+		} finally {
+			dc.close();
+		}
+	}
+	
+	/**
+	 * @param enterprise The ID of the enterprise.
+	 * @return the file of the enterprise's snapshot
+	 */
+	public File getFile(int enterprise) {
+		return new File(directory, "enterprise-" + enterprise + ".snapshot");
+	}
+	
+	/**
+	 * Every change of an airport or route makes the snapshot of the current
+	 * enterprise outdated, so it gets rebuilt once no further changes follow.
+	 * @param e The event describing the change.
+	 */
+	@Override
+	public void modelChanged(ModelEvent e) {
+		if(e.getType() == ModelEvent.Type.ROUTES_LOADED) return;
+		
+		Enterprise enterprise = model.getEnterprise();
+		
+		if(enterprise != null) {
+			scheduleRebuild(enterprise.getId(), REBUILD_DELAY);
+		}
+	}
+	
+	/**
+	 * This method opens the snapshot of an enterprise if it is up to date.
+	 * If it is not, it gets rebuilt in the background and null is returned.
+	 * @param enterprise The ID of the enterprise.
+	 * @return The snapshot, or null if the enterprise has to be read from
+	 * 		the database.
+	 */
+	public EnterpriseSnapshot open(int enterprise) {
+		long counter;
+		
+		try {
+			counter = getChangeCounter();
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return null;
+		}
+		
+		if(counter < 0) {
+			return null;
+		}
+		
+		File file = getFile(enterprise);
+		
+		if(file.isFile()) {
+			try {
+				EnterpriseSnapshot snapshot = EnterpriseSnapshot.open(file);
+				
+				if(snapshot.getChangeCounter() == counter && snapshot.getEnterpriseId() == enterprise) {
+					return snapshot;
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		
+		scheduleRebuild(enterprise, 0);
+		return null;
+	}
+	
+	/**
+	 * This method writes the snapshot of an enterprise. It gets written to a
+	 * temporary file first, which only replaces the snapshot if no change has
+	 * been counted while it was written.
+	 * @param enterprise The ID of the enterprise.
+	 * @return True if the snapshot has been written, false if the data has
+	 * 		changed in the meantime or the database has no change counter.
+	 * @throws IOException If the file cannot be written this gets thrown.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public boolean rebuild(int enterprise) throws IOException, SQLException {
+		synchronized(rebuildLock) {
+			model.flush();
+			
+			long counter = seal();
+			if(counter < 0) return false;
+			
+			if(!directory.isDirectory() && !directory.mkdirs()) {
+				throw new IOException("The directory " + directory.getPath() + " cannot be created.");
+			}
+			
+			File file = getFile(enterprise);
+			File temp = new File(directory, file.getName() + ".tmp");
+			
+			try {
+				EnterpriseSnapshot.write(model.getDatabase(), enterprise, counter, temp);
+				
+				if(getChangeCounter() != counter) {
+					return false;
+				}
+				
+				try {
+					Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+							StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+				
+				return true;
+			} finally {
+				temp.delete();
+			}
+		}
+	}
+	
+	/**
+	 * This method seals the change counter, which makes it even if it has
+	 * been made odd by changes. Every change after that makes it differ from
+	 * the returned value.
+	 * @return The sealed change counter, or -1 if the database has none.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public long seal() throws SQLException {
+		if(getChangeCounter() < 0) return -1;
+		
+		final long[] counter = new long[1];
+		
+		model.getDatabase().inTransaction(new Transaction() {
+			@Override
+			public void execute(Database database) throws SQLException {
+				database.executeUpdate("UPDATE `changes` SET `counter` = `counter` + 1 WHERE `id` = 1 AND `counter` % 2 = 1");
+				
+				DatabaseResult dr = database.executeQuery("SELECT `counter` FROM `changes` WHERE `id` = 1");
+				counter[0] = dr.next() ? dr.getLong(0) : -1;
+			}
+		});
+		
+		return counter[0];
+	}
+	
+	/**
+	 * This method rebuilds the snapshot of an enterprise in the background.
+	 * A rebuild of the same enterprise that has not started yet gets
+	 * replaced, so a series of changes only causes one rebuild.
+	 * @param enterprise The ID of the enterprise.
+	 * @param delay The time in milliseconds to wait before the rebuild.
+	 */
+	public synchronized void scheduleRebuild(final int enterprise, long delay) {
+		if(executor.isShutdown()) return;
+		
+		ScheduledFuture<?> previous = scheduled.get(enterprise);
+		
+		if(previous != null) {
+			previous.cancel(false);
+		}
+		
+		scheduled.put(enterprise, executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					rebuild(enterprise);
+				} catch (ClosedByInterruptException e) {
+					// The manager has been shut down while the snapshot was written.
+				} catch (IOException e) {
+					e.printStackTrace();
+				} catch (SQLException e) {
+					e.printStackTrace();
+				}
+			}
+		}, delay, TimeUnit.MILLISECONDS));
+	}
+	
+	/**
+	 * This method cancels all rebuilds that have not started yet, interrupts
+	 * the one that is running and waits until it has stopped.
+	 */
+	public void shutdown() {
+		synchronized(this) {
+			executor.shutdownNow();
+		}
+		
+		try {
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,45 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.io.IOException;
+
+/**
+ * A SpreadsheetWriter writes rows of cells to a file, one row after the
+ * other. Rows are written as soon as they are handed over, so a writer
+ * never holds more than the current row in memory. Cells can be Strings,
+ * Integers, Longs or Booleans; null writes an empty cell.
+ *
+ * @author jdno
+ */
+public interface SpreadsheetWriter extends AutoCloseable {
+
+	/**
+	 * This method writes a row of cells.
+	 * @param cells The cells of the row.
+	 * @throws IOException If the row cannot be written this gets thrown.
+	 */
+	public void writeRow(Object[] cells) throws IOException;
+	
+	/**
+	 * This method finishes the file and closes it.
+	 * @throws IOException If the file cannot be finished this gets thrown.
+	 */
+	@Override
+	public void close() throws IOException;
+
+}
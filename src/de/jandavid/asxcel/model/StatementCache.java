@@ -0,0 +1,167 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps the PreparedStatements of a connection, so that the
+ * same SQL text does not get parsed and planned by SQLite every time it
+ * is executed. The cache is bounded, and once it is full the statement
+ * that has not been used for the longest time gets closed and removed.
+ *
+ * @author jdno
+ */
+class StatementCache {
+
+	/**
+	 * The connection the statements belong to
+	 */
+	private Connection connection;
+
+	/**
+	 * The number of times a statement could be taken from the cache
+	 */
+	private long hits = 0;
+
+	/**
+	 * The number of times a statement had to be prepared
+	 */
+	private long misses = 0;
+
+	/**
+	 * The cached statements, ordered from least to most recently used
+	 */
+	private LinkedHashMap<String, PreparedStatement> statements;
+
+	/**
+	 * The cache gets initialized for a connection and with the number of
+	 * statements it may hold at most.
+	 * @param connection The connection to prepare the statements on
+	 * @param size The maximum number of statements to keep
+	 */
+	StatementCache(Connection connection, final int size) {
+		this.connection = connection;
+		this.statements = new LinkedHashMap<String, PreparedStatement>(size, 0.75f, true) {
+
+			private static final long serialVersionUID = -4418036958451742913L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+				if(size() > size) {
+					close(eldest.getValue());
+					return true;
+				} else {
+					return false;
+				}
+			}
+		};
+	}
+
+	/**
+	 * Get the statement for the given query. If it is in the cache, its
+	 * parameters get cleared before it is returned, else it gets prepared
+	 * and added to the cache.
+	 * @param query The query to get the statement for
+	 * @return The statement, ready to be filled with parameters
+	 * @throws SQLException If the statement cannot be prepared this gets thrown.
+	 */
+	PreparedStatement get(String query) throws SQLException {
+		PreparedStatement ps = statements.get(query);
+
+		if(ps != null) {
+			hits++;
+			ps.clearParameters();
+		} else {
+			misses++;
+			ps = connection.prepareStatement(query);
+			statements.put(query, ps);
+		}
+
+		return ps;
+	}
+
+	/**
+	 * Remove a statement from the cache and close it. This is used if a
+	 * statement failed and might be left in an unusable state.
+	 * @param query The query of the statement to remove
+	 */
+	void evict(String query) {
+		PreparedStatement ps = statements.remove(query);
+
+		if(ps != null) {
+			close(ps);
+		}
+	}
+
+	/**
+	 * Close all statements and empty the cache.
+	 */
+	void clear() {
+		for(PreparedStatement ps: statements.values()) {
+			close(ps);
+		}
+
+		statements.clear();
+	}
+
+	/**
+	 * @return the connection
+	 */
+	Connection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * @return the number of statements currently in the cache
+	 */
+	int size() {
+		return statements.size();
+	}
+
+	/**
+	 * @return the hits
+	 */
+	long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the misses
+	 */
+	long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * This auxiliary method closes a statement. An error at this point can
+	 * be ignored, because the statement is not used anymore anyway.
+	 * @param ps The statement to close
+	 */
+	private void close(PreparedStatement ps) {
+		try {
+			ps.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+}
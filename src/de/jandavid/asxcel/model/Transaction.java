@@ -0,0 +1,38 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.sql.SQLException;
+
+/**
+ * A Transaction bundles several statements that have to be written to
+ * the database together. It gets passed to Database.inTransaction, which
+ * commits all its statements at once or none of them.
+ * 
+ * @author jdno
+ */
+public interface Transaction {
+
+	/**
+	 * This method executes the statements of the transaction.
+	 * @param database The database to execute the statements on.
+	 * @throws SQLException If a SQL error occurs this gets thrown, and
+	 * 		the transaction gets rolled back.
+	 */
+	public void execute(Database database) throws SQLException;
+
+}
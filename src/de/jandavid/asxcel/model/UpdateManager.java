@@ -16,45 +16,114 @@
  */
 package de.jandavid.asxcel.model;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 
 /**
+ * The UpdateManager brings the database to the most current version. It
+ * keeps a registry of migrations ordered by the version they update to,
+ * and installs the ones the database has not seen yet.
+ * 
  * @author jdno
  */
 public class UpdateManager {
 
 	/**
-	 * The database to update
+	 * This creates the backup before the updates
 	 */
-	private Database database;
-
+	private BackupManager backupManager;
+	
 	/**
-	 * The most current version of the database (hard coded!)
+	 * The database to update
 	 */
-	private int currentVersion = 2;
+	private Database database;
 
 	/**
 	 * The version of the current database
 	 */
 	private int detectedVersion = 1;
+	
+	/**
+	 * The time each installed migration took in milliseconds, mapped by its version
+	 */
+	private LinkedHashMap<Integer, Long> durations = new LinkedHashMap<Integer, Long>();
+	
+	/**
+	 * The listener to inform about the progress, or null
+	 */
+	private MigrationListener listener;
+	
+	/**
+	 * All known migrations, ordered by their versions
+	 */
+	private ArrayList<Migration> migrations = new ArrayList<Migration>();
 
+	/**
+	 * The UpdateManager gets initialized with the database to update, and
+	 * registers the migrations of the application.
+	 * @param database The database to update
+	 */
 	public UpdateManager(Database database) {
 		this.database = database;
+		this.backupManager = new BackupManager(database);
+		
+		register(new MigrationTo2());
+		register(new MigrationTo3());
+		register(new MigrationTo4());
+		register(new MigrationTo5());
 	}
 
 	/**
 	 * This method installs all updates that are available and not
-	 * installed. In case of an SQLException no changes are made to
-	 * the database.
+	 * installed. A compressed backup of the database gets created once
+	 * before the first update. Every migration runs in a transaction of its own, which
+	 * also records its version, so in case of an SQLException the
+	 * migration that failed makes no changes to the database. The
+	 * updates run with the profile BULK_IMPORT, and the previous
+	 * profile gets restored afterwards.
 	 * @throws IOException If no backup file can be created this gets thrown.
 	 * @throws SQLException If a SQL error occurs this gets thrown.
 	 */
 	public void installUpdates() throws IOException, SQLException {
-		if (detectedVersion == 1) {
-			updateTo2();
+		final ArrayList<Migration> pending = new ArrayList<Migration>();
+		
+		for (Migration m : migrations) {
+			if (m.getVersion() > detectedVersion) {
+				pending.add(m);
+			}
+		}
+		
+		if (pending.isEmpty()) {
+			return;
+		}
+		
+		backupManager.backup();
+		
+		database.runWithProfile(PerformanceProfile.BULK_IMPORT, new Transaction() {
+			@Override
+			public void execute(Database database) throws SQLException {
+				for (int i = 0; i < pending.size(); i++) {
+					install(pending.get(i), i + 1, pending.size());
+				}
+			}
+		});
+	}
+
+	/**
+	 * This method adds a migration to the registry. A migration that updates to
+	 * the same version as a registered one replaces it.
+	 * @param migration The migration to add
+	 */
+	public void register(Migration migration) {
+		int index = Collections.binarySearch(migrations, migration);
+		
+		if (index >= 0) {
+			migrations.set(index, migration);
+		} else {
+			migrations.add(-(index + 1), migration);
 		}
 	}
 
@@ -74,7 +143,7 @@ public class UpdateManager {
 			if (dr.next()) {
 				detectedVersion = dr.getInt(0);
 
-				if (detectedVersion < currentVersion) {
+				if (detectedVersion < getCurrentVersion()) {
 					return true;
 				} else {
 					return false;
@@ -88,62 +157,82 @@ public class UpdateManager {
 	}
 
 	/**
-	 * This auxiliary method backups the database. This is done before every update.
-	 * @param from The current version of the database.
-	 * @throws IOException If the file cannot be copied this gets thrown.
+	 * This auxiliary method runs a single migration in its own transaction, and
+	 * records the new version and the time it took.
+	 * @param migration The migration to run
+	 * @param index The position of the migration among the pending ones
+	 * @param count The number of pending migrations
+	 * @throws SQLException If a SQL error occurs this gets thrown.
 	 */
-	private void backup(int from) throws IOException {
-		File originalDb = new File(database.getFileName());
-		File backupDb = new File(database.getFileName() + ".bak." + String.valueOf(from));
-		Files.copy(originalDb.toPath(), backupDb.toPath());
+	private void install(final Migration migration, int index, int count) throws SQLException {
+		if (listener != null) {
+			listener.migrationStarted(migration, index, count);
+		}
+		
+		long start = System.nanoTime();
+		
+		database.inTransaction(new Transaction() {
+			@Override
+			public void execute(Database database) throws SQLException {
+				migration.migrate(database);
+				
+				ArrayList<Object> params = new ArrayList<Object>(1);
+				params.add(String.valueOf(migration.getVersion()));
+				database.executeUpdate("INSERT OR REPLACE INTO `meta_data` (`key`, `value`) VALUES ('version', ?)", params);
+			}
+		});
+		
+		long duration = (System.nanoTime() - start) / 1000000;
+		
+		detectedVersion = migration.getVersion();
+		durations.put(migration.getVersion(), duration);
+		
+		if (listener != null) {
+			listener.migrationFinished(migration, duration);
+		}
 	}
 
 	/**
-	 * Update to version 2
-	 * 
-	 * The main features of version 2 are:
-	 * - table meta_data with information about the application, most importantly the database
-	 * version
-	 * - table enterprise_has_airport with an n:m mapping, used by the view to reduce the number
-	 * of airports displayed to the user
-	 * @throws IOException If no backup of the database can be made this gets thrown.
-	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 * @return the backupManager
 	 */
-	private void updateTo2() throws IOException, SQLException {
-		backup(1);
+	public BackupManager getBackupManager() {
+		return backupManager;
+	}
 
-		try {
-			database.getConnection().setAutoCommit(false);
-
-			database.executeUpdate("CREATE TABLE IF NOT EXISTS `meta_data` (`id` INTEGER PRIMARY KEY ,"
-					+ "`key` VARCHAR NOT NULL UNIQUE , `value` VARCHAR NOT NULL )");
-			database.executeUpdate("INSERT INTO `meta_data` (`key`, `value`) VALUES ('version', '2')");
-			database.executeUpdate("CREATE TABLE IF NOT EXISTS `enterprise_has_airport` (`id` INTEGER PRIMARY KEY , "
-					+ "`enterprise` INTEGER NOT NULL , `airport` INTEGER NOT NULL , "
-					+ "FOREIGN KEY (`enterprise`) REFERENCES `enterprises`(`id`) , "
-					+ "FOREIGN KEY (`airport`) REFERENCES `airports`(`id`))");
-
-			DatabaseResult enterprises = database.executeQuery("SELECT `id` FROM `enterprises`");
-			DatabaseResult airports = database.executeQuery("SELECT `id` FROM `airports`");
-
-			while (enterprises.next()) {
-				int e = enterprises.getInt(0);
-
-				while (airports.next()) {
-					int a = airports.getInt(0);
-					database.executeUpdate("INSERT INTO `enterprise_has_airport` (`enterprise`,`airport`) VALUES ('"
-							+ e + "', '" + a + "')");
-				}
+	/**
+	 * @param backupManager the backupManager to set
+	 */
+	public void setBackupManager(BackupManager backupManager) {
+		this.backupManager = backupManager;
+	}
 
-				airports.beforeFirst();
-			}
-		} catch (SQLException e1) {
-			database.getConnection().rollback();
-			throw new SQLException(e1);
-		} finally {
-			database.getConnection().commit();
-			database.getConnection().setAutoCommit(true);
-		}
+	/**
+	 * @return the most current version of the database, which is the version of the
+	 * 		last registered migration
+	 */
+	public int getCurrentVersion() {
+		return migrations.isEmpty() ? 1 : migrations.get(migrations.size() - 1).getVersion();
+	}
+
+	/**
+	 * @return the version of the database as it has been detected or updated
+	 */
+	public int getDetectedVersion() {
+		return detectedVersion;
+	}
+
+	/**
+	 * @return the time each installed migration took in milliseconds, mapped by its version
+	 */
+	public LinkedHashMap<Integer, Long> getDurations() {
+		return durations;
+	}
+
+	/**
+	 * @param listener the listener to set
+	 */
+	public void setListener(MigrationListener listener) {
+		this.listener = listener;
 	}
 
 }
@@ -0,0 +1,36 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.sql.SQLException;
+
+/**
+ * A WriteBehindListener gets informed if the changes collected by a
+ * WriteBehindQueue cannot be written to the database. Please note that
+ * it usually gets called from the writer thread of the queue.
+ * 
+ * @author jdno
+ */
+public interface WriteBehindListener {
+
+	/**
+	 * This method gets called if a flush of the queue failed.
+	 * @param e The exception that caused the failure.
+	 */
+	public void writeFailed(SQLException e);
+
+}
@@ -0,0 +1,240 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * The WriteBehindQueue collects changes of single fields and writes them
+ * to the database on its own thread. This way a setter of an airport or
+ * route does not have to wait for the database. Several changes of the
+ * same field of the same row get merged, so only the last value gets
+ * written. All changes that are pending get written in one transaction,
+ * either periodically or when flush() gets called.
+ *
+ * @author jdno
+ */
+public class WriteBehindQueue {
+
+	/**
+	 * The database the changes get written to.
+	 */
+	private Database database;
+
+	/**
+	 * This lock makes sure only one flush writes at a time, so that an
+	 * older value can never overwrite a newer one.
+	 */
+	private final Object flushLock = new Object();
+
+	/**
+	 * The time in milliseconds between two automatic flushes.
+	 */
+	private long flushInterval;
+
+	/**
+	 * This listener gets informed if the changes cannot be written.
+	 */
+	private WriteBehindListener listener;
+
+	/**
+	 * The changes that have not been written yet, mapped by table, row and column.
+	 */
+	private LinkedHashMap<String, PendingWrite> pending = new LinkedHashMap<String, PendingWrite>();
+
+	/**
+	 * This indicates if the writer thread should keep running.
+	 */
+	private boolean running = true;
+
+	/**
+	 * The thread that writes the changes periodically.
+	 */
+	private Thread writer;
+
+	/**
+	 * The queue gets initialized with the database to write to, and
+	 * starts its writer thread immediately.
+	 * @param database The database to write to.
+	 * @param flushInterval The time in milliseconds between two flushes.
+	 */
+	public WriteBehindQueue(Database database, long flushInterval) {
+		this.database = database;
+		this.flushInterval = flushInterval;
+
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				runWriter();
+			}
+		}, "ASxcel write-behind");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * This method adds the change of a field to the queue. If the same field
+	 * of the same row has been changed before and not been written yet, the
+	 * old value gets replaced.
+	 * @param table The table of the row.
+	 * @param field The name of the column.
+	 * @param id The ID of the row.
+	 * @param value The value to set.
+	 */
+	public synchronized void enqueue(String table, String field, int id, Object value) {
+		pending.put(table + "." + id + "." + field, new PendingWrite(table, field, id, value));
+	}
+
+	/**
+	 * This method drops all pending changes of a row, e.g. because it gets
+	 * deleted. If a flush is writing at the moment, this waits until it is
+	 * done, so that no change of the row can be written after it has been
+	 * deleted and its ID has been given to a new row.
+	 * @param table The table of the row.
+	 * @param id The ID of the row.
+	 */
+	public void discard(String table, int id) {
+		synchronized(flushLock) {
+			synchronized(this) {
+				Iterator<PendingWrite> it = pending.values().iterator();
+
+				while(it.hasNext()) {
+					PendingWrite w = it.next();
+
+					if(w.id == id && w.table.equals(table)) {
+						it.remove();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * This method writes all pending changes in one transaction. If the changes
+	 * cannot be written they get dropped, the listener gets informed, and the
+	 * exception gets thrown.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public void flush() throws SQLException {
+		synchronized(flushLock) {
+			final ArrayList<PendingWrite> writes;
+
+			synchronized(this) {
+				if(pending.isEmpty()) return;
+
+				writes = new ArrayList<PendingWrite>(pending.values());
+				pending.clear();
+			}
+
+			try {
+				database.inTransaction(new Transaction() {
+					@Override
+					public void execute(Database database) throws SQLException {
+						for(PendingWrite w: writes) {
+							ArrayList<Object> params = new ArrayList<Object>(2);
+							params.add(w.value);
+							params.add(w.id);
+
+							database.executeUpdate("UPDATE `" + w.table + "` SET `" + w.field + "` = ? WHERE `id` = ?", params);
+						}
+					}
+				});
+			} catch (SQLException e) {
+				if(listener != null) {
+					listener.writeFailed(e);
+				}
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * @return The number of changes that have not been written yet.
+	 */
+	public synchronized int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * This method stops the writer thread and writes all pending changes.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public void shutdown() throws SQLException {
+		synchronized(this) {
+			running = false;
+			notifyAll();
+		}
+
+		flush();
+	}
+
+	/**
+	 * This is the loop of the writer thread. It flushes the queue after every
+	 * interval, until the queue gets shut down. Errors have been reported to
+	 * the listener already and do not stop the thread.
+	 */
+	private void runWriter() {
+		while(true) {
+			synchronized(this) {
+				if(!running) return;
+
+				try {
+					wait(flushInterval);
+				} catch (InterruptedException e) {
+					return;
+				}
+
+				if(!running) return;
+			}
+
+			try {
+				flush();
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * @param listener the listener to set
+	 */
+	public void setListener(WriteBehindListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * A single change that waits to be written.
+	 */
+	private static class PendingWrite {
+
+		private final String field;
+		private final int id;
+		private final String table;
+		private final Object value;
+
+		PendingWrite(String table, String field, int id, Object value) {
+			this.table = table;
+			this.field = field;
+			this.id = id;
+			this.value = value;
+		}
+	}
+
+}
@@ -0,0 +1,274 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.model;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * The XlsxWriter writes rows to an Excel workbook with a single sheet.
+ * A workbook is a ZIP file of SpreadsheetML parts. All parts except the
+ * sheet are small and get written first, then the rows get streamed into
+ * the sheet as they come. Texts are written as inline strings instead of
+ * a shared strings table, because that table would have to be complete
+ * before the sheet could be written. The first row is frozen and bold, as
+ * it is expected to contain the column names.
+ *
+ * @author jdno
+ */
+public class XlsxWriter implements SpreadsheetWriter {
+	
+	/**
+	 * The namespace of the SpreadsheetML elements.
+	 */
+	private static final String MAIN_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+	
+	/**
+	 * The namespace of the relationships between the parts.
+	 */
+	private static final String PACKAGE_RELS_NS = "http://schemas.openxmlformats.org/package/2006/relationships";
+	
+	/**
+	 * The prefix of the types of the relationships.
+	 */
+	private static final String RELS_TYPE = "http://schemas.openxmlformats.org/officeDocument/2006/relationships/";
+	
+	/**
+	 * The number of rows that have been written.
+	 */
+	private int rows = 0;
+	
+	/**
+	 * The writer the sheet goes to.
+	 */
+	private Writer writer;
+	
+	/**
+	 * The ZIP file the parts get written to.
+	 */
+	private ZipOutputStream zip;
+	
+	/**
+	 * The XlsxWriter creates the file, or overwrites it if it exists.
+	 * @param file The file to write to.
+	 * @param sheetName The name of the sheet.
+	 * @throws IOException If the file cannot be created this gets thrown.
+	 */
+	public XlsxWriter(File file, String sheetName) throws IOException {
+		this(new FileOutputStream(file), sheetName);
+	}
+	
+	/**
+	 * The XlsxWriter can also write to any stream, which it closes at the end.
+	 * All parts except the sheet get written immediately.
+	 * @param out The stream to write to.
+	 * @param sheetName The name of the sheet.
+	 * @throws IOException If the parts cannot be written this gets thrown.
+	 */
+	public XlsxWriter(OutputStream out, String sheetName) throws IOException {
+		zip = new ZipOutputStream(new BufferedOutputStream(out, 65536));
+		zip.setLevel(Deflater.BEST_SPEED);
+		writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), 65536);
+		
+		try {
+			writePart("[Content_Types].xml",
+					"<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">" +
+					"<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>" +
+					"<Default Extension=\"xml\" ContentType=\"application/xml\"/>" +
+					"<Override PartName=\"/xl/workbook.xml\" " +
+					"ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>" +
+					"<Override PartName=\"/xl/worksheets/sheet1.xml\" " +
+					"ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>" +
+					"<Override PartName=\"/xl/styles.xml\" " +
+					"ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>" +
+					"</Types>");
+			writePart("_rels/.rels",
+					"<Relationships xmlns=\"" + PACKAGE_RELS_NS + "\">" +
+					"<Relationship Id=\"rId1\" Type=\"" + RELS_TYPE + "officeDocument\" Target=\"xl/workbook.xml\"/>" +
+					"</Relationships>");
+			writePart("xl/workbook.xml",
+					"<workbook xmlns=\"" + MAIN_NS + "\" " +
+					"xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">" +
+					"<sheets><sheet name=\"" + escape(sheetName) + "\" sheetId=\"1\" r:id=\"rId1\"/></sheets>" +
+					"</workbook>");
+			writePart("xl/_rels/workbook.xml.rels",
+					"<Relationships xmlns=\"" + PACKAGE_RELS_NS + "\">" +
+					"<Relationship Id=\"rId1\" Type=\"" + RELS_TYPE + "worksheet\" Target=\"worksheets/sheet1.xml\"/>" +
+					"<Relationship Id=\"rId2\" Type=\"" + RELS_TYPE + "styles\" Target=\"styles.xml\"/>" +
+					"</Relationships>");
+			writePart("xl/styles.xml",
+					"<styleSheet xmlns=\"" + MAIN_NS + "\">" +
+					"<fonts count=\"2\"><font><sz val=\"11\"/><name val=\"Calibri\"/></font>" +
+					"<font><b/><sz val=\"11\"/><name val=\"Calibri\"/></font></fonts>" +
+					"<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill>" +
+					"<fill><patternFill patternType=\"gray125\"/></fill></fills>" +
+					"<borders count=\"1\"><border/></borders>" +
+					"<cellStyleXfs count=\"1\"><xf/></cellStyleXfs>" +
+					"<cellXfs count=\"2\"><xf/><xf fontId=\"1\" applyFont=\"1\"/></cellXfs>" +
+					"</styleSheet>");
+			
+			zip.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+			writer.write("<worksheet xmlns=\"" + MAIN_NS + "\">");
+			writer.write("<sheetViews><sheetView workbookViewId=\"0\">" +
+					"<pane ySplit=\"1\" topLeftCell=\"A2\" activePane=\"bottomLeft\" state=\"frozen\"/>" +
+					"</sheetView></sheetViews>");
+			writer.write("<sheetData>");
+		} catch (IOException e) {
+			zip.close();
+			throw e;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see de.jandavid.asxcel.model.SpreadsheetWriter#writeRow(java.lang.Object[])
+	 */
+	@Override
+	public void writeRow(Object[] cells) throws IOException {
+		rows++;
+		
+		String row = Integer.toString(rows);
+		writer.write("<row r=\"");
+		writer.write(row);
+		writer.write("\">");
+		
+		for(int i = 0; i < cells.length; i++) {
+			Object cell = cells[i];
+			if(cell == null) continue;
+			
+			writer.write("<c r=\"");
+			writer.write(columnName(i));
+			writer.write(row);
+			writer.write(rows == 1 ? "\" s=\"1\"" : "\"");
+			
+			if(cell instanceof Boolean) {
+				writer.write(" t=\"b\"><v>");
+				writer.write((Boolean) cell ? '1' : '0');
+				writer.write("</v></c>");
+			} else if(cell instanceof Number) {
+				writer.write("><v>");
+				writer.write(cell.toString());
+				writer.write("</v></c>");
+			} else {
+				writer.write(" t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+				writer.write(escape(cell.toString()));
+				writer.write("</t></is></c>");
+			}
+		}
+		
+		writer.write("</row>");
+	}
+
+	/**
+	 * This method ends the sheet and the ZIP file, and closes the stream.
+	 * @throws IOException If the file cannot be finished this gets thrown.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(zip == null) return;
+		
+		try {
+			writer.write("</sheetData></worksheet>");
+			writer.flush();
+			zip.closeEntry();
+			zip.finish();
+		} finally {
+			zip.close();
+			zip = null;
+		}
+	}
+	
+	/**
+	 * This auxiliary method returns the name of a column, e.g. A for the
+	 * first, Z for the 26th and AA for the 27th.
+	 * @param column The index of the column, starting at 0.
+	 * @return The name of the column.
+	 */
+	static String columnName(int column) {
+		String name = "";
+		
+		for(int i = column + 1; i > 0; i = (i - 1) / 26) {
+			name = (char) ('A' + (i - 1) % 26) + name;
+		}
+		
+		return name;
+	}
+	
+	/**
+	 * This auxiliary method escapes the characters that have a meaning in
+	 * XML. Control characters are not allowed in XML and get dropped.
+	 * @param text The text to escape.
+	 * @return The escaped text.
+	 */
+	static String escape(String text) {
+		StringBuilder sb = null;
+		
+		for(int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			String replacement = null;
+			
+			switch(c) {
+			case '&': replacement = "&amp;"; break;
+			case '<': replacement = "&lt;"; break;
+			case '>': replacement = "&gt;"; break;
+			case '"': replacement = "&quot;"; break;
+			default:
+				if(c < 0x20 && c != '\t' && c != '\n' && c != '\r') replacement = "";
+			}
+			
+			if(replacement != null && sb == null) {
+				sb = new StringBuilder(text.length() + 16);
+				sb.append(text, 0, i);
+			}
+			
+			if(sb != null) {
+				if(replacement != null) {
+					sb.append(replacement);
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+		
+		return sb != null ? sb.toString() : text;
+	}
+	
+	/**
+	 * This auxiliary method writes a small part of the workbook as a whole.
+	 * @param name The path of the part in the ZIP file.
+	 * @param xml The content of the part without the XML declaration.
+	 * @throws IOException If the part cannot be written this gets thrown.
+	 */
+	private void writePart(String name, String xml) throws IOException {
+		zip.putNextEntry(new ZipEntry(name));
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+		writer.write(xml);
+		writer.flush();
+		zip.closeEntry();
+	}
+
+}
@@ -18,17 +18,30 @@ package de.jandavid.asxcel.tests;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.nio.file.Files;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import de.jandavid.asxcel.model.BackupManager;
 import de.jandavid.asxcel.model.Database;
+import de.jandavid.asxcel.model.DatabaseCursor;
 import de.jandavid.asxcel.model.DatabaseResult;
+import de.jandavid.asxcel.model.PerformanceProfile;
+import de.jandavid.asxcel.model.Transaction;
 
 /**
  * This test initializes a database, and test primitive read and write access by simply
@@ -43,9 +56,24 @@ public class DatabaseTest {
 	 */
 	private Database db;
 	
+	/**
+	 * The copy of the test database the tests work on.
+	 */
+	private File copy;
+	
 	@Before
-	public void initializeDatabase() throws ClassNotFoundException, SQLException {
-		db = new Database("resources" + File.separator + "testDb.sqlite");
+	public void initializeDatabase() throws Exception {
+		copy = TestDatabase.copy("database.sqlite");
+		db = new Database(copy.getPath());
+	}
+	
+	/**
+	 * This closes the copy of the test database and deletes it.
+	 */
+	@After
+	public void deleteDatabase() throws SQLException {
+		db.closeConnection();
+		TestDatabase.delete(copy);
 	}
 
 	/**
@@ -53,7 +81,7 @@ public class DatabaseTest {
 	 */
 	@Test
 	public void testInitialization() throws ClassNotFoundException, SQLException {
-		db = new Database("resources" + File.separator + "testDb.sqlite");
+		new Database(copy.getPath()).closeConnection();
 	}
 
 	/**
@@ -91,4 +119,329 @@ public class DatabaseTest {
 		assertFalse(dr.next());
 	}
 	
+	/**
+	 * This test executes the same query twice and checks that the second execution
+	 * reuses the cached statement.
+	 */
+	@Test
+	public void testStatementCache() throws SQLException {
+		String query = "SELECT `name` FROM `enterprises` WHERE `id` = ? LIMIT 1";
+		ArrayList<Object> params = new ArrayList<Object>(1);
+		params.add(1);
+		
+		long misses = db.getStatementCacheMisses();
+		DatabaseResult dr = db.executeQuery(query, params);
+		assertEquals(misses + 1, db.getStatementCacheMisses());
+		assertTrue(dr.next());
+		
+		long hits = db.getStatementCacheHits();
+		dr = db.executeQuery(query, params);
+		assertEquals(hits + 1, db.getStatementCacheHits());
+		assertTrue(dr.next());
+		assertEquals("TestEnterprise", dr.getString(0));
+	}
+	
+	/**
+	 * This test streams all airports through a cursor and checks that the cursor gets
+	 * released after the last row. A cursor opened inside a transaction sees its
+	 * uncommitted changes and can still be read after the transaction has ended.
+	 */
+	@Test
+	public void testCursor() throws SQLException {
+		DatabaseResult dr = db.executeQuery("SELECT COUNT(*) FROM `airports`");
+		assertTrue(dr.next());
+		int count = dr.getInt(0);
+		
+		DatabaseCursor cursor = db.openCursor("SELECT `id`, `name` FROM `airports`");
+		assertEquals(2, cursor.getColumnCount());
+		
+		int rows = 0;
+		while(cursor.next()) {
+			assertNotNull(cursor.getString("name"));
+			rows++;
+		}
+		
+		assertEquals(count, rows);
+		assertFalse(cursor.isOpen());
+		assertFalse(cursor.next());
+		
+		final DatabaseCursor[] inTransaction = new DatabaseCursor[1];
+		
+		db.inTransaction(new Transaction() {
+			@Override
+			public void execute(Database database) throws SQLException {
+				database.executeUpdate("INSERT INTO `countries` (`name`) VALUES ('TestCountryCursor')");
+				inTransaction[0] = database.openCursor("SELECT `name` FROM `countries` " +
+						"WHERE `name` = 'TestCountryCursor'");
+			}
+		});
+		
+		assertTrue(inTransaction[0].next());
+		assertEquals("TestCountryCursor", inTransaction[0].getString(0));
+		assertFalse(inTransaction[0].next());
+		assertFalse(inTransaction[0].isOpen());
+		
+		db.executeUpdate("DELETE FROM `countries` WHERE `name` = 'TestCountryCursor'");
+	}
+	
+	/**
+	 * This test reads integer, boolean and string columns from a DatabaseResult, by
+	 * index and by name.
+	 */
+	@Test
+	public void testTypedResult() throws SQLException {
+		String query = "SELECT `id`, `name`, `transfer`, `id` * 2 AS `double` FROM `airports` " +
+				"WHERE `id` = '1' LIMIT 1";
+		
+		DatabaseResult dr = db.executeQuery(query);
+		
+		assertTrue(dr.next());
+		assertEquals(1, dr.getInt(0));
+		assertEquals("1", dr.getString(0));
+		assertEquals(1L, dr.getLong(0));
+		assertEquals(2, dr.getInt("double"));
+		assertEquals(dr.getInt(2) != 0, dr.getBoolean(2));
+		assertFalse(dr.isNull(1));
+		assertEquals(dr.getString(1), dr.getString("name"));
+		assertEquals(null, dr.getString("unknown"));
+		
+		// Values of different types in one column must not be coerced.
+		query = "SELECT 1 AS `v` UNION ALL SELECT 5000000000 UNION ALL SELECT NULL " +
+				"UNION ALL SELECT 'abc' UNION ALL SELECT 2.5";
+		
+		dr = db.executeQuery(query);
+		
+		assertTrue(dr.next());
+		assertEquals(1, dr.getInt(0));
+		assertTrue(dr.next());
+		assertEquals(5000000000L, dr.getLong(0));
+		assertTrue(dr.next());
+		assertTrue(dr.isNull(0));
+		assertTrue(dr.next());
+		assertEquals("abc", dr.getString(0));
+		assertTrue(dr.next());
+		assertEquals("2.5", dr.getString(0));
+	}
+	
+	/**
+	 * This test writes several rows with one batch, and checks that a batch which
+	 * fails in the middle does not leave any rows behind.
+	 */
+	@Test
+	public void testBatch() throws SQLException {
+		ArrayList<ArrayList<Object>> rows = new ArrayList<ArrayList<Object>>();
+		for(int i = 1; i <= 3; i++) {
+			ArrayList<Object> row = new ArrayList<Object>(1);
+			row.add("TestCountryBatch" + i);
+			rows.add(row);
+		}
+		
+		int[] result = db.executeBatch("INSERT INTO `countries` (`name`) VALUES (?)", rows);
+		assertEquals(3, result.length);
+		
+		String query = "SELECT COUNT(*) FROM `countries` WHERE `name` LIKE 'TestCountryBatch%'";
+		DatabaseResult dr = db.executeQuery(query);
+		assertTrue(dr.next());
+		assertEquals(3, dr.getInt(0));
+		
+		ArrayList<Object> row = new ArrayList<Object>(1);
+		row.add("TestCountryBatch4");
+		rows.add(0, row);
+		
+		try {
+			db.executeBatch("INSERT INTO `countries` (`name`) VALUES (?)", rows);
+			fail("The batch should violate the unique constraint.");
+		} catch (SQLException e) {
+			// This is expected.
+		}
+		
+		dr = db.executeQuery("SELECT COUNT(*) FROM `countries` WHERE `name` = 'TestCountryBatch4'");
+		assertTrue(dr.next());
+		assertEquals(0, dr.getInt(0));
+		
+		db.executeUpdate("DELETE FROM `countries` WHERE `name` LIKE 'TestCountryBatch%'");
+	}
+	
+	/**
+	 * This test checks that a failing transaction gets rolled back completely.
+	 */
+	@Test
+	public void testTransactionRollback() throws SQLException {
+		try {
+			db.inTransaction(new Transaction() {
+				@Override
+				public void execute(Database database) throws SQLException {
+					database.executeUpdate("INSERT INTO `countries` (`name`) VALUES ('TestCountryTransaction')");
+					database.executeUpdate("INSERT INTO `countries` (`name`) VALUES ('TestCountryTransaction')");
+				}
+			});
+			fail("The transaction should violate the unique constraint.");
+		} catch (SQLException e) {
+			// This is expected.
+		}
+		
+		DatabaseResult dr = db.executeQuery("SELECT `id` FROM `countries` WHERE `name` = 'TestCountryTransaction'");
+		assertFalse(dr.next());
+		assertTrue(db.getConnection().getAutoCommit());
+	}
+	
+	/**
+	 * This tests that the default profile uses the write-ahead log, that a
+	 * task run with another profile restores the previous one, and that the
+	 * profile SAFE can be applied while the readers are open.
+	 */
+	@Test
+	public void testPerformanceProfile() throws SQLException {
+		assertEquals(PerformanceProfile.FAST_INTERACTIVE, db.getProfile());
+		assertEquals("wal", queryPragma("journal_mode"));
+		
+		db.runWithProfile(PerformanceProfile.BULK_IMPORT, new Transaction() {
+			@Override
+			public void execute(Database database) throws SQLException {
+				assertEquals(PerformanceProfile.BULK_IMPORT, database.getProfile());
+				assertEquals("0", queryPragma("synchronous"));
+			}
+		});
+		
+		assertEquals(PerformanceProfile.FAST_INTERACTIVE, db.getProfile());
+		assertEquals("1", queryPragma("synchronous"));
+		
+		db.runWithProfile(PerformanceProfile.SAFE, new Transaction() {
+			@Override
+			public void execute(Database database) throws SQLException {
+				assertEquals("wal", queryPragma("journal_mode"));
+				assertEquals("2", queryPragma("synchronous"));
+			}
+		});
+	}
+	
+	/**
+	 * This tests that a query of another thread gets served by a reader while a
+	 * transaction is running, and does not see its uncommitted changes.
+	 */
+	@Test
+	public void testReaderPool() throws Exception {
+		final String query = "SELECT COUNT(*) FROM `countries` WHERE `name` = 'TestCountryReader'";
+		final int[] counts = new int[2];
+		
+		try {
+			db.inTransaction(new Transaction() {
+				@Override
+				public void execute(final Database database) throws SQLException {
+					database.executeUpdate("INSERT INTO `countries` (`name`) VALUES ('TestCountryReader')");
+					
+					DatabaseResult dr = database.executeQuery(query);
+					assertTrue(dr.next());
+					counts[0] = dr.getInt(0);
+					
+					Thread reader = new Thread(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								DatabaseResult dr = database.executeQuery(query);
+								counts[1] = dr.next() ? dr.getInt(0) : -1;
+							} catch (SQLException e) {
+								counts[1] = -1;
+							}
+						}
+					});
+					reader.start();
+					
+					try {
+						reader.join(10000);
+					} catch (InterruptedException e) {
+						throw new SQLException(e);
+					}
+					
+					throw new SQLException("Roll back the test data.");
+				}
+			});
+		} catch (SQLException e) {
+			// This is expected.
+		}
+		
+		assertEquals(1, counts[0]);
+		assertEquals(0, counts[1]);
+	}
+	
+	/**
+	 * This tests that asynchronous updates run in order, that a query can be
+	 * chained to them, and that a cancelled update does not run.
+	 */
+	@Test
+	public void testAsync() throws Exception {
+		CompletableFuture<Integer> insert;
+		CompletableFuture<Integer> cancelled;
+		
+		synchronized(db) {
+			insert = db.updateAsync("INSERT INTO `countries` (`name`) VALUES ('TestCountryAsync')");
+			cancelled = db.updateAsync("INSERT INTO `countries` (`name`) VALUES ('TestCountryCancelled')");
+			assertTrue(cancelled.cancel(true));
+		}
+		
+		assertEquals(Integer.valueOf(1), insert.get(10, TimeUnit.SECONDS));
+		
+		CompletableFuture<Integer> count = db.updateAsync("DELETE FROM `countries` WHERE `name` = 'TestCountryAsync'")
+				.thenCompose(new Function<Integer, CompletableFuture<DatabaseResult>>() {
+					@Override
+					public CompletableFuture<DatabaseResult> apply(Integer deleted) {
+						return db.queryAsync("SELECT COUNT(*) FROM `countries` WHERE `name` IN ('TestCountryAsync', 'TestCountryCancelled')");
+					}
+				}).thenApply(new Function<DatabaseResult, Integer>() {
+					@Override
+					public Integer apply(DatabaseResult dr) {
+						return dr.next() ? dr.getInt(0) : -1;
+					}
+				});
+		
+		assertEquals(Integer.valueOf(0), count.get(10, TimeUnit.SECONDS));
+		assertTrue(cancelled.isCancelled());
+	}
+	
+	/**
+	 * This tests that backups get compressed with a valid checksum, and that only
+	 * the allowed number of them is kept.
+	 */
+	@Test
+	public void testBackup() throws Exception {
+		File directory = Files.createTempDirectory("asxcel").toFile();
+		BackupManager bm = new BackupManager(db, directory);
+		bm.setMaxBackups(2);
+		
+		File first = bm.backup();
+		Thread.sleep(5);
+		bm.backup();
+		Thread.sleep(5);
+		File last = bm.backupAsync().get(30, TimeUnit.SECONDS);
+		
+		ArrayList<File> backups = bm.getBackups();
+		assertEquals(2, backups.size());
+		assertEquals(last, backups.get(0));
+		assertFalse(first.exists());
+		assertTrue(bm.verify(last));
+		
+		GZIPInputStream in = new GZIPInputStream(new FileInputStream(last));
+		byte[] header = new byte[16];
+		assertEquals(16, in.read(header));
+		in.close();
+		assertEquals("SQLite format 3", new String(header, 0, 15, "US-ASCII"));
+		
+		for(File f: directory.listFiles()) {
+			f.delete();
+		}
+		directory.delete();
+	}
+	
+	/**
+	 * This auxiliary method reads the value of a pragma.
+	 * @param pragma The name of the pragma
+	 * @return The value as a String
+	 */
+	private String queryPragma(String pragma) throws SQLException {
+		DatabaseResult dr = db.executeQuery("PRAGMA " + pragma);
+		assertTrue(dr.next());
+		
+		return dr.getString(0);
+	}
+	
 }
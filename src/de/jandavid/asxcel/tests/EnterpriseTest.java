@@ -18,21 +18,46 @@ package de.jandavid.asxcel.tests;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Scanner;
+import java.util.zip.ZipFile;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import de.jandavid.asxcel.model.Airport;
+import de.jandavid.asxcel.model.CsvImporter;
 import de.jandavid.asxcel.model.Database;
+import de.jandavid.asxcel.model.DatabaseCursor;
 import de.jandavid.asxcel.model.DatabaseResult;
 import de.jandavid.asxcel.model.Enterprise;
 import de.jandavid.asxcel.model.Model;
+import de.jandavid.asxcel.model.ModelEvent;
+import de.jandavid.asxcel.model.ModelListener;
 import de.jandavid.asxcel.model.Route;
+import de.jandavid.asxcel.model.RouteExporter;
+import de.jandavid.asxcel.model.RouteFilter;
+import de.jandavid.asxcel.model.RouteOpportunityFinder;
+import de.jandavid.asxcel.model.RouteOpportunityFinder.Opportunity;
+import de.jandavid.asxcel.model.RoutePager;
+import de.jandavid.asxcel.model.SpreadsheetWriter;
 
 /**
  * This is a test for the most important methods of the class 'Enterprise'.
@@ -41,7 +66,7 @@ import de.jandavid.asxcel.model.Route;
  * @author jdno
  */
 public class EnterpriseTest {
-
+	
 	/**
 	 * This gets used by the tests.
 	 */
@@ -52,17 +77,32 @@ public class EnterpriseTest {
 	 */
 	private Model model;
 	
+	/**
+	 * The copy of the test database the tests work on.
+	 */
+	private File copy;
+	
 	/**
 	 * This initiates the private attributes before every test. 
 	 */
 	@Before
 	public void initializeModel() throws Exception {
-		model = new Model("resources" + File.separator + "testDb.sqlite");
+		copy = TestDatabase.copy("enterprise.sqlite");
+		model = new Model(copy.getPath());
 		model.initializeModel();
 		model.loadEnterprise("TestEnterprise");
 		db = model.getDatabase();
 	}
 	
+	/**
+	 * This closes the model and deletes the copy of the test database.
+	 */
+	@After
+	public void deleteDatabase() throws SQLException {
+		model.close();
+		TestDatabase.delete(copy);
+	}
+	
 	/**
 	 * This tests the initialization process.
 	 */
@@ -120,4 +160,519 @@ public class EnterpriseTest {
 		dr = db.executeQuery(query);
 		assertFalse(dr.next());
 	}
+	
+	/**
+	 * This tests that the routes are loaded with all their attributes.
+	 */
+	@Test
+	public void testLoadRoutes() throws SQLException {
+		model.getEnterprise().loadRoutes();
+		
+		for(Route r: model.getEnterprise().getRoutes()) {
+			String query = "SELECT `origin`, `destination`, `distance`, `loadFrom`, `loadTo`, `scheduled` " +
+					"FROM `routes` WHERE `id` = '" + r.getId() + "'";
+			DatabaseResult dr = db.executeQuery(query);
+			
+			assertTrue(dr.next());
+			assertEquals(dr.getInt(0), r.getOrigin().getId());
+			assertEquals(dr.getInt(1), r.getDestination().getId());
+			assertEquals(dr.getInt(2), r.getDistance());
+			assertEquals(dr.getInt(3), r.getLoadFrom());
+			assertEquals(dr.getInt(4), r.getLoadTo());
+			assertEquals(dr.getBoolean(5), r.isScheduled());
+		}
+	}
+	
+	/**
+	 * This tests that the route indexes follow the creation and deletion of a route.
+	 */
+	@Test
+	public void testRouteIndexes() throws SQLException {
+		Enterprise e = model.getEnterprise();
+		Airport origin = model.getAirport("TestAirport2");
+		Airport destination = model.getAirport("TestAirport3");
+		int routesOfDestination = e.getRoutesFor(destination).size();
+		
+		assertFalse(e.hasRoute(origin, destination));
+		
+		Route r = e.createRoute(origin, destination);
+		assertSame(r, e.createRoute(origin, destination));
+		assertTrue(e.hasRoute(origin, destination));
+		assertTrue(e.getDestinations(origin).contains(destination));
+		assertTrue(e.doRoutesExistFor(destination));
+		assertEquals(routesOfDestination + 1, e.getRoutesFor(destination).size());
+		
+		e.deleteRoute(e.getRoutes().indexOf(r));
+		assertFalse(e.hasRoute(origin, destination));
+		assertFalse(e.getDestinations(origin).contains(destination));
+		assertEquals(routesOfDestination, e.getRoutesFor(destination).size());
+	}
+	
+	/**
+	 * This tests that changes of routes and airports get published to the
+	 * listeners of the model.
+	 */
+	@Test
+	public void testModelEvents() throws SQLException {
+		final ArrayList<ModelEvent> events = new ArrayList<ModelEvent>();
+		ModelListener listener = new ModelListener() {
+			@Override
+			public void modelChanged(ModelEvent e) {
+				events.add(e);
+			}
+		};
+		model.addModelListener(listener);
+		
+		Enterprise e = model.getEnterprise();
+		Airport origin = model.getAirport("TestAirport2");
+		Airport destination = model.getAirport("TestAirport3");
+		
+		Route r = e.createRoute(origin, destination);
+		assertEquals(1, events.size());
+		assertEquals(ModelEvent.Type.ROUTE_ADDED, events.get(0).getType());
+		assertSame(r, events.get(0).getSource());
+		assertEquals(e.getRoutes().size() - 1, events.get(0).getIndex());
+		
+		r.setLoadTo(5);
+		assertEquals(ModelEvent.Type.FIELD_CHANGED, events.get(1).getType());
+		assertSame(r, events.get(1).getSource());
+		assertEquals("loadTo", events.get(1).getField());
+		
+		int passengers = destination.getPassengers();
+		destination.setPassengers(passengers);
+		assertSame(destination, events.get(2).getSource());
+		assertEquals("passengers", events.get(2).getField());
+		
+		int index = e.getRoutes().indexOf(r);
+		e.deleteRoute(index);
+		assertEquals(ModelEvent.Type.ROUTE_REMOVED, events.get(3).getType());
+		assertEquals(index, events.get(3).getIndex());
+		
+		model.removeModelListener(listener);
+		e.createRoute(origin, destination);
+		assertEquals(4, events.size());
+		e.deleteRoute(e.getRoutes().size() - 1);
+	}
+	
+	/**
+	 * This tests that the pages of the RoutePager contain every route once,
+	 * in order, and that a page read with an offset equals the page read
+	 * after its predecessor.
+	 */
+	@Test
+	public void testRoutePager() throws SQLException {
+		Enterprise e = model.getEnterprise();
+		RoutePager pager = new RoutePager(model, 3);
+		
+		assertEquals(e.getRoutes().size(), pager.count());
+		
+		ArrayList<Route> paged = new ArrayList<Route>();
+		for(int page = 0; page * 3 < pager.count(); page++) {
+			paged.addAll(pager.fetchPage(page));
+		}
+		
+		assertEquals(e.getRoutes().size(), paged.size());
+		for(int i = 0; i < paged.size(); i++) {
+			assertTrue(e.getRoutes().contains(paged.get(i)));
+			if(i > 0) {
+				assertTrue(paged.get(i - 1).getOrigin().getName().compareTo(paged.get(i).getOrigin().getName()) <= 0);
+			}
+		}
+		
+		RoutePager jumping = new RoutePager(model, 3);
+		assertEquals(paged.subList(6, paged.size()), jumping.fetchPage(2));
+		
+		pager.setOrder(RoutePager.SortKey.ORIGIN_NAME, false);
+		ArrayList<Route> first = pager.fetchPage(0);
+		assertSame(paged.get(paged.size() - 1).getOrigin(), first.get(0).getOrigin());
+	}
+	
+	/**
+	 * This tests that the RoutePager reads every route once if the key the
+	 * routes are ordered by is NULL for some of them, which come first in
+	 * ascending and last in descending order.
+	 */
+	@Test
+	public void testRoutePagerNullKeys() throws SQLException {
+		Enterprise e = model.getEnterprise();
+		Airport airport = e.getRoutes().get(0).getOrigin();
+		String iataCode = airport.getIataCode();
+		airport.setIataCode(null);
+		
+		try {
+			for(boolean ascending: new boolean[] {true, false}) {
+				RoutePager pager = new RoutePager(model, 3);
+				pager.setOrder(RoutePager.SortKey.ORIGIN_IATA, ascending);
+				
+				ArrayList<Route> paged = new ArrayList<Route>();
+				for(int page = 0; page * 3 < pager.count(); page++) {
+					paged.addAll(pager.fetchPage(page));
+				}
+				
+				assertEquals(e.getRoutes().size(), paged.size());
+				assertEquals(new HashSet<Route>(e.getRoutes()), new HashSet<Route>(paged));
+				assertNull(paged.get(ascending ? 0 : paged.size() - 1).getOrigin().getIataCode());
+			}
+		} finally {
+			airport.setIataCode(iataCode);
+		}
+	}
+	
+	/**
+	 * This tests that a paged enterprise only holds the keys of its routes,
+	 * that a route read twice is the same object, and that routes get
+	 * created and deleted by their keys.
+	 */
+	@Test
+	public void testPagedRoutes() throws SQLException {
+		Enterprise e = model.getEnterprise();
+		int count = e.getRoutes().size();
+		Airport origin = e.getRoutes().get(0).getOrigin();
+		Airport destination = e.getRoutes().get(0).getDestination();
+		
+		e.loadRouteKeys();
+		
+		assertTrue(e.isPaged());
+		assertTrue(e.getRoutes().isEmpty());
+		assertTrue(e.hasRoute(origin, destination));
+		assertTrue(e.doRoutesExistFor(origin));
+		assertTrue(e.getDestinations(origin).contains(destination));
+		
+		RoutePager pager = new RoutePager(model, 3);
+		ArrayList<Route> paged = new ArrayList<Route>();
+		for(int page = 0; page * 3 < pager.count(); page++) {
+			paged.addAll(pager.fetchPage(page));
+		}
+		
+		assertEquals(count, paged.size());
+		assertSame(paged.get(0), pager.fetchPage(0).get(0));
+		
+		Route r = e.getRoute(origin, destination);
+		assertTrue(paged.contains(r));
+		
+		e.deleteRoute(r);
+		assertFalse(e.hasRoute(origin, destination));
+		assertEquals(count - 1, pager.count());
+		
+		Route created = e.createRoute(origin, destination);
+		assertTrue(e.hasRoute(origin, destination));
+		assertSame(created, e.getRoute(origin, destination));
+		assertEquals(count, pager.count());
+	}
+	
+	/**
+	 * This tests that the RouteFilter combines its criteria and follows
+	 * the changes of the routes.
+	 */
+	@Test
+	public void testRouteFilter() throws SQLException {
+		Enterprise e = model.getEnterprise();
+		RouteFilter filter = new RouteFilter(e);
+		model.addModelListener(filter);
+		
+		assertFalse(filter.isActive());
+		assertEquals(e.getRoutes().size(), filter.count());
+		
+		Route first = e.getRoutes().get(0);
+		int fromOrigin = e.getDestinations(first.getOrigin()).size();
+		filter.addEquals(RouteFilter.Attribute.ORIGIN, first.getOrigin().getId(), "Origin");
+		assertTrue(filter.isActive());
+		assertEquals(fromOrigin, filter.count());
+		assertTrue(filter.matches(first));
+		
+		int distance = first.getDistance();
+		filter.addRange(RouteFilter.Range.DISTANCE, distance + 1000, Integer.MAX_VALUE, "Distance");
+		assertFalse(filter.matches(first));
+		
+		first.setDistance(distance + 1000);
+		assertTrue(filter.matches(first));
+		first.setDistance(distance);
+		assertFalse(filter.matches(first));
+		
+		filter.remove(1);
+		Airport destination = model.getAirport("TestAirport3");
+		boolean hadRoute = e.hasRoute(first.getOrigin(), destination);
+		Route r = e.createRoute(first.getOrigin(), destination);
+		assertTrue(filter.matches(r));
+		assertEquals(hadRoute ? fromOrigin : fromOrigin + 1, filter.count());
+		
+		if(!hadRoute) {
+			e.deleteRoute(e.getRoutes().indexOf(r));
+			assertFalse(filter.matches(r));
+			assertEquals(fromOrigin, filter.count());
+		}
+		
+		filter.clear();
+		assertEquals(e.getRoutes().size(), filter.count());
+		model.removeModelListener(filter);
+	}
+	
+	/**
+	 * This tests that the RouteFilter of a paged enterprise picks the routes
+	 * the pager shows, and that exactly these routes get exported.
+	 */
+	@Test
+	public void testPagedRouteFilter() throws Exception {
+		Enterprise e = model.getEnterprise();
+		Airport origin = e.getRoutes().get(0).getOrigin();
+		int fromOrigin = e.getDestinations(origin).size();
+		
+		e.loadRouteKeys();
+		RouteFilter filter = new RouteFilter(e);
+		filter.addEquals(RouteFilter.Attribute.ORIGIN, origin.getId(), "Origin");
+		assertEquals(fromOrigin, filter.count());
+		
+		RoutePager pager = new RoutePager(model, 2);
+		pager.setIds(filter.select(pager.readOrderAsync().get()));
+		assertEquals(fromOrigin, pager.count());
+		
+		for(int page = 0; page * 2 < pager.count(); page++) {
+			for(Route r: pager.fetchPage(page)) {
+				assertSame(origin, r.getOrigin());
+			}
+		}
+		
+		File csv = File.createTempFile("routes", ".csv");
+		
+		try {
+			SpreadsheetWriter writer = RouteExporter.createWriter(csv);
+			
+			try {
+				assertEquals(fromOrigin, new RouteExporter(model).exportRoutes(writer, pager.getIds()));
+			} finally {
+				writer.close();
+			}
+		} finally {
+			csv.delete();
+		}
+	}
+	
+	/**
+	 * This tests that an enterprise opened without its routes can be filled
+	 * batch by batch, and that every batch gets published to the listeners.
+	 * The airports of the model are only replaced once the enterprise has
+	 * been made the current one, but its routes refer to the same objects.
+	 */
+	@Test
+	public void testLoadRoutesInBatches() throws SQLException, Exception {
+		final ArrayList<ModelEvent> events = new ArrayList<ModelEvent>();
+		ModelListener listener = new ModelListener() {
+			@Override
+			public void modelChanged(ModelEvent e) {
+				events.add(e);
+			}
+		};
+		model.addModelListener(listener);
+		
+		ArrayList<Airport> airports = model.getAirports();
+		Enterprise e = model.openEnterprise("TestEnterprise");
+		assertSame(airports, model.getAirports());
+		assertEquals(0, e.getRoutes().size());
+		assertEquals(8, e.countRoutes());
+		
+		DatabaseCursor dr = e.openRouteCursor();
+		ArrayList<Route> batch = new ArrayList<Route>();
+		while(dr.next()) {
+			batch.add(e.readRoute(dr));
+			
+			if(batch.size() == 3) {
+				e.addLoadedRoutes(batch);
+				batch = new ArrayList<Route>();
+			}
+		}
+		e.addLoadedRoutes(batch);
+		
+		assertEquals(8, e.getRoutes().size());
+		assertEquals(3, events.size());
+		assertEquals(ModelEvent.Type.ROUTES_LOADED, events.get(0).getType());
+		assertEquals(0, events.get(0).getIndex());
+		assertEquals(3, events.get(0).getCount());
+		assertEquals(6, events.get(2).getIndex());
+		assertEquals(2, events.get(2).getCount());
+		assertTrue(e.hasRoute(e.getRoutes().get(7).getOrigin(), e.getRoutes().get(7).getDestination()));
+		
+		model.setEnterprise(e);
+		assertNotSame(airports, model.getAirports());
+		assertEquals(airports.size(), model.getAirports().size());
+		assertSame(e.getRoutes().get(0).getOrigin(), model.getAirportById(e.getRoutes().get(0).getOrigin().getId()));
+		
+		model.removeModelListener(listener);
+	}
+	
+	/**
+	 * This tests that the opportunities of an origin are unserved pairs,
+	 * sorted by their scores, and the same whether one or all origins get
+	 * scored.
+	 */
+	@Test
+	public void testRouteOpportunityFinder() throws SQLException {
+		Enterprise e = model.getEnterprise();
+		RouteOpportunityFinder finder = new RouteOpportunityFinder(e, model.getAirports(), 3);
+		HashMap<Airport, ArrayList<Opportunity>> all = finder.findAll();
+		
+		for(Airport origin: model.getAirports()) {
+			ArrayList<Opportunity> opportunities = finder.find(origin);
+			int candidates = 0;
+			
+			for(Airport a: model.getAirports()) {
+				if(a != origin && a != e.getMainHub() && !e.hasRoute(origin, a)) candidates++;
+			}
+			
+			assertEquals(Math.min(3, candidates), opportunities.size());
+			
+			for(int i = 0; i < opportunities.size(); i++) {
+				Opportunity o = opportunities.get(i);
+				
+				assertSame(origin, o.getOrigin());
+				assertFalse(e.hasRoute(origin, o.getDestination()));
+				assertFalse(o.getDestination() == origin || o.getDestination() == e.getMainHub());
+				assertTrue(i == 0 || opportunities.get(i - 1).getScore() >= o.getScore());
+				assertSame(o.getDestination(), all.get(origin).get(i).getDestination());
+			}
+		}
+	}
+	
+	/**
+	 * This tests that airports and routes get imported from CSV files, that
+	 * invalid rows and existing routes get skipped, that empty fields keep
+	 * the values of existing airports, that a backup gets taken, and that
+	 * the imported rows get loaded.
+	 */
+	@Test
+	public void testCsvImport() throws Exception {
+		File airports = File.createTempFile("airports", ".csv");
+		File routes = File.createTempFile("routes", ".csv");
+		airports.deleteOnExit();
+		routes.deleteOnExit();
+		
+		write(airports, "name,iata,country,passengers,cargo,size,transfer\n" +
+				"\"CsvAirport1, North\",CA1,CsvCountry,5,3,Large,yes\n" +
+				"CsvAirport2,CA2,CsvCountry,many,1,Small,no\n" +
+				"CsvAirport2,CA2,CsvCountry,2,1,Small,no\n" +
+				"\"CsvAirport1, North\",,CsvCountry,,,,\n");
+		write(routes, "origin;destination;distance;loadFrom;loadTo;scheduled\n" +
+				"CsvAirport1, North;CsvAirport2;1200;0;0;1\n" +
+				"CsvAirport1, North;Nowhere;100;0;0;0\n" +
+				"CsvAirport1, North;CsvAirport2;1200;0;0;1\n");
+		
+		int routeCount = model.getEnterprise().getRoutes().size();
+		ArrayList<File> backups = model.getBackupManager().getBackups();
+		CsvImporter importer = new CsvImporter(model);
+		
+		try {
+			importer.importFiles(airports, routes);
+			
+			assertEquals(backups.size() + 1, model.getBackupManager().getBackups().size());
+			assertEquals(3, importer.getAirportCount());
+			assertEquals(1, importer.getRouteCount());
+			assertEquals(3, importer.getSkippedRows());
+			assertTrue(importer.getProblems().get(0).startsWith("Airports, line 3"));
+			
+			model.loadEnterprise("TestEnterprise");
+			Enterprise e = model.getEnterprise();
+			Airport origin = model.getAirport("CsvAirport1, North");
+			Airport destination = model.getAirport("CsvAirport2");
+			
+			assertEquals(5, origin.getPassengers());
+			assertEquals("CA1", origin.getIataCode());
+			assertTrue(origin.isTransferPossible());
+			assertEquals("CsvCountry", origin.getCountry().getName());
+			assertFalse(destination.isTransferPossible());
+			assertEquals(routeCount + 1, e.getRoutes().size());
+			assertEquals(1200, e.getRoute(origin, destination).getDistance());
+		} finally {
+			db.executeUpdate("DELETE FROM `routes` WHERE `origin` IN (SELECT `id` FROM `airports` WHERE `name` LIKE 'CsvAirport%')");
+			db.executeUpdate("DELETE FROM `enterprise_has_airport` WHERE `airport` IN (SELECT `id` FROM `airports` WHERE `name` LIKE 'CsvAirport%')");
+			db.executeUpdate("DELETE FROM `airports` WHERE `name` LIKE 'CsvAirport%'");
+			db.executeUpdate("DELETE FROM `countries` WHERE `name` = 'CsvCountry'");
+		}
+	}
+	
+	/**
+	 * This tests that the routes get exported to CSV in the order of the
+	 * sort key, and to XLSX in the order of the list.
+	 */
+	@Test
+	public void testRouteExport() throws Exception {
+		Enterprise e = model.getEnterprise();
+		RouteExporter exporter = new RouteExporter(model);
+		File csv = File.createTempFile("routes", ".csv");
+		File xlsx = File.createTempFile("routes", ".xlsx");
+		
+		try {
+			SpreadsheetWriter writer = RouteExporter.createWriter(csv);
+			int count;
+			
+			try {
+				count = exporter.exportRoutes(writer, RoutePager.SortKey.DISTANCE, false);
+			} finally {
+				writer.close();
+			}
+			
+			assertEquals(e.countRoutes(), count);
+			
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(csv), "UTF-8"));
+			
+			try {
+				assertTrue(reader.readLine().startsWith("Origin,IATA,PAX,Cargo,Destination"));
+				
+				int lastDistance = Integer.MAX_VALUE;
+				String line;
+				
+				while((line = reader.readLine()) != null) {
+					String[] fields = line.split(",");
+					int distance = Integer.parseInt(fields[fields.length - 4]);
+					
+					assertTrue(distance <= lastDistance);
+					lastDistance = distance;
+					count--;
+				}
+			} finally {
+				reader.close();
+			}
+			
+			assertEquals(0, count);
+			
+			writer = RouteExporter.createWriter(xlsx);
+			
+			try {
+				count = exporter.exportRoutes(writer, e.getRoutes());
+			} finally {
+				writer.close();
+			}
+			
+			assertEquals(e.getRoutes().size(), count);
+			
+			ZipFile zip = new ZipFile(xlsx);
+			
+			try {
+				assertTrue(zip.getEntry("xl/workbook.xml") != null);
+				
+				Scanner scanner = new Scanner(zip.getInputStream(zip.getEntry("xl/worksheets/sheet1.xml")), "UTF-8");
+				String sheet = scanner.useDelimiter("\\A").next();
+				scanner.close();
+				
+				assertEquals(count + 1, sheet.split("<row ").length - 1);
+				assertTrue(sheet.contains("<c r=\"M1\" s=\"1\" t=\"inlineStr\"><is><t xml:space=\"preserve\">Scheduled</t>"));
+			} finally {
+				zip.close();
+			}
+		} finally {
+			csv.delete();
+			xlsx.delete();
+		}
+	}
+	
+	/**
+	 * This auxiliary method writes a text to a file.
+	 */
+	private void write(File file, String text) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		
+		try {
+			writer.write(text);
+		} finally {
+			writer.close();
+		}
+	}
 }
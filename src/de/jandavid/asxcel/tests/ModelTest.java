@@ -18,19 +18,28 @@ package de.jandavid.asxcel.tests;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.sql.SQLException;
 import java.util.ArrayList;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import de.jandavid.asxcel.model.Airport;
+import de.jandavid.asxcel.model.Country;
 import de.jandavid.asxcel.model.Database;
 import de.jandavid.asxcel.model.DatabaseResult;
+import de.jandavid.asxcel.model.Enterprise;
+import de.jandavid.asxcel.model.EnterpriseSnapshot;
 import de.jandavid.asxcel.model.Model;
+import de.jandavid.asxcel.model.Route;
+import de.jandavid.asxcel.model.SnapshotManager;
 
 /**
  * This test validates the correct behavior of the most important methods of
@@ -50,23 +59,38 @@ public class ModelTest {
 	 */
 	private Model model;
 	
+	/**
+	 * The copy of the test database the tests work on.
+	 */
+	private File copy;
+	
 	/**
 	 * This initiates the private attributes before every test. 
 	 */
 	@Before
 	public void initializeModel() throws Exception {
-		model = new Model("resources" + File.separator + "testDb.sqlite");
+		copy = TestDatabase.copy("model.sqlite");
+		model = new Model(copy.getPath());
 		db = model.getDatabase();
 		model.initializeModel();
 		model.loadEnterprise("TestEnterprise");
 	}
 	
+	/**
+	 * This closes the model and deletes the copy of the test database.
+	 */
+	@After
+	public void deleteDatabase() throws SQLException {
+		model.close();
+		TestDatabase.delete(copy);
+	}
+	
 	/**
 	 * This is a test for the initialization itself. 
 	 */
 	@Test
 	public void testInitialization() throws ClassNotFoundException, SQLException {
-		model = new Model("resources" + File.separator + "testDb.sqlite");
+		new Model(copy.getPath()).close();
 	}
 	
 	/**
@@ -117,5 +141,174 @@ public class ModelTest {
 			assertEquals(testName, model.getAirports().get(i-1).getName());
 		}
 	}
+	
+	/**
+	 * This tests the lookup of airports by ID and IATA code, and that the IATA index
+	 * follows changes of the code.
+	 */
+	@Test
+	public void testAirportIndexes() throws SQLException {
+		Airport airport = model.getAirport("TestAirport1");
+		String iataCode = airport.getIataCode();
+		
+		assertSame(airport, model.getAirportById(airport.getId()));
+		
+		airport.setIataCode("XTA");
+		assertSame(airport, model.getAirportByIata("xta"));
+		
+		airport.setIataCode(iataCode);
+		assertNull(model.getAirportByIata("XTA"));
+	}
+	
+	/**
+	 * This tests that a new airport gets inserted at its sorted position.
+	 */
+	@Test
+	public void testCreateAirportSorted() throws SQLException {
+		Airport airport = model.createAirport("TestAirport10");
+		
+		assertEquals(1, model.getAirports().indexOf(airport));
+		assertSame(airport, model.getAirport("TestAirport10"));
+		
+		model.deleteAirport("TestAirport10");
+		assertNull(model.getAirport("TestAirport10"));
+		assertEquals(-1, model.getAirports().indexOf(airport));
+	}
+	
+	/**
+	 * This tests that changes written behind get merged and reach the database
+	 * once the queue gets flushed, and that the changes of a deleted airport
+	 * get dropped.
+	 */
+	@Test
+	public void testWriteBehind() throws SQLException {
+		Airport airport = model.getAirport("TestAirport1");
+		int passengers = airport.getPassengers();
+		
+		model.enableWriteBehind(60000, null);
+		
+		try {
+			airport.setPassengers(passengers + 1);
+			airport.setPassengers(passengers + 2);
+			assertEquals(1, model.getWriteBehindQueue().getPendingCount());
+			
+			model.flush();
+			assertEquals(0, model.getWriteBehindQueue().getPendingCount());
+			
+			ArrayList<Object> params = new ArrayList<Object>(1);
+			params.add(airport.getId());
+			DatabaseResult dr = db.executeQuery("SELECT `passengers` FROM `airports` WHERE `id` = ?", params);
+			assertTrue(dr.next());
+			assertEquals(passengers + 2, dr.getInt(0));
+			
+			airport.setPassengers(passengers);
+			model.flush();
+			
+			Airport deleted = model.createAirport("TestAirportWriteBehind");
+			deleted.setPassengers(1);
+			assertEquals(1, model.getWriteBehindQueue().getPendingCount());
+			
+			model.deleteAirport("TestAirportWriteBehind");
+			assertEquals(0, model.getWriteBehindQueue().getPendingCount());
+		} finally {
+			model.disableWriteBehind();
+		}
+		
+		assertNull(model.getWriteBehindQueue());
+	}
+	
+	/**
+	 * This tests that every row is represented by exactly one object, even if
+	 * the enterprise gets loaded again.
+	 */
+	@Test
+	public void testIdentityMap() throws Exception {
+		Airport airport = model.getAirport("TestAirport1");
+		Country country = model.getCountryById(airport.getCountry().getId());
+		
+		assertSame(country, airport.getCountry());
+		assertSame(country, model.getAirport("TestAirport2").getCountry());
+		
+		model.loadEnterprise("TestEnterprise");
+		
+		assertSame(airport, model.getAirport("TestAirport1"));
+		assertSame(airport, model.createAirport("TestAirport1"));
+		assertSame(country, model.getAirport("TestAirport1").getCountry());
+		
+		model.loadCountries();
+		assertSame(country, model.getCountryById(country.getId()));
+	}
+	
+	/**
+	 * This tests that the search index finds airports by prefix, IATA code
+	 * and misspelled names, and follows the creation, renaming and deletion
+	 * of airports.
+	 */
+	@Test
+	public void testAirportSearchIndex() throws SQLException {
+		assertEquals(model.getAirports().size(), model.getAirportIndex().size());
+		
+		Airport airport = model.getAirport("TestAirport3");
+		assertSame(airport, model.getAirportIndex().search("testairport3", 5).get(0));
+		assertEquals(model.getAirports().size(), model.getAirportIndex().search("test", 20).size());
+		assertTrue(model.getAirportIndex().search("tset airport3", 5).contains(airport));
+		assertTrue(model.getAirportIndex().search("xyz", 5).isEmpty());
+		
+		String iataCode = airport.getIataCode();
+		airport.setIataCode("XTA");
+		assertSame(airport, model.getAirportIndex().search("xta", 5).get(0));
+		airport.setIataCode(iataCode);
+		assertFalse(model.getAirportIndex().search("xta", 5).contains(airport));
+		
+		Airport created = model.createAirport("Z\u00fcrich Kloten");
+		assertSame(created, model.getAirportIndex().search("zur klo", 5).get(0));
+		
+		model.deleteAirport("Z\u00fcrich Kloten");
+		assertTrue(model.getAirportIndex().search("zurich", 5).isEmpty());
+		assertEquals(model.getAirports().size(), model.getAirportIndex().size());
+	}
+
+	@Test
+	public void testEnterpriseSnapshot() throws Exception {
+		File snapshotCopy = TestDatabase.copy("snapshot.sqlite");
+		Model snapshotModel = new Model(snapshotCopy.getPath());
+		
+		try {
+			snapshotModel.initializeModel();
+			snapshotModel.enableSnapshots(new File(snapshotCopy.getParentFile(), "snapshots"));
+			snapshotModel.loadEnterprise("TestEnterprise");
+			
+			SnapshotManager sm = snapshotModel.getSnapshotManager();
+			Enterprise e = snapshotModel.getEnterprise();
+			Route first = e.getRoutes().get(0);
+			
+			assertTrue(sm.getChangeCounter() >= 0);
+			assertTrue(sm.rebuild(e.getId()));
+			assertEquals(0, sm.getChangeCounter() % 2);
+			
+			EnterpriseSnapshot snapshot = sm.open(e.getId());
+			assertNotNull(snapshot);
+			assertEquals(e.getRoutes().size(), snapshot.getRouteCount());
+			assertEquals(snapshotModel.getAirports().size(), snapshot.getAirportCount());
+			
+			Enterprise opened = snapshotModel.openEnterprise("TestEnterprise");
+			assertNotNull(opened.getSnapshot());
+			
+			opened.loadRoutes();
+			assertNull(opened.getSnapshot());
+			assertEquals(e.getRoutes().size(), opened.getRoutes().size());
+			assertSame(first.getOrigin(), opened.getRoutes().get(0).getOrigin());
+			assertEquals(first.getId(), opened.getRoutes().get(0).getId());
+			assertEquals(first.getDistance(), opened.getRoutes().get(0).getDistance());
+			
+			// A rebuild scheduled when the enterprise was loaded might run
+			// after the change, so the snapshot read before is compared.
+			first.setDistance(first.getDistance() + 1);
+			assertTrue(sm.getChangeCounter() != snapshot.getChangeCounter());
+		} finally {
+			snapshotModel.close();
+			TestDatabase.delete(snapshotCopy);
+		}
+	}
 
 }
@@ -0,0 +1,283 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.tests;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.jandavid.asxcel.model.Airport;
+import de.jandavid.asxcel.model.Country;
+import de.jandavid.asxcel.model.Database;
+import de.jandavid.asxcel.model.DatabaseResult;
+import de.jandavid.asxcel.model.Enterprise;
+import de.jandavid.asxcel.model.EnterpriseSnapshot;
+import de.jandavid.asxcel.model.Model;
+import de.jandavid.asxcel.model.Route;
+import de.jandavid.asxcel.model.RoutePager;
+import de.jandavid.asxcel.model.RoutePager.Range;
+import de.jandavid.asxcel.model.RoutePager.SortKey;
+
+/**
+ * This test asks SQLite how it executes the queries of the model, and fails if
+ * one of them has to scan a whole table. Queries that read all rows of a table
+ * on purpose, like the list of countries, are not checked. The queries are
+ * taken from the classes that execute them, so they cannot get out of date.
+ * 
+ * @author jdno
+ */
+public class QueryPlanTest {
+	
+	/**
+	 * This instance gets used by the tests.
+	 */
+	private Database db;
+	
+	/**
+	 * The copy of the test database.
+	 */
+	private File copy;
+	
+	/**
+	 * This copies the test database to a temporary directory, where all
+	 * updates get installed, so the indexes exist.
+	 */
+	@Before
+	public void initializeDatabase() throws Exception {
+		copy = TestDatabase.copy("queryPlan.sqlite");
+		db = new Database(copy.getPath());
+	}
+	
+	/**
+	 * This closes the copy of the test database and deletes it.
+	 */
+	@After
+	public void deleteDatabase() throws Exception {
+		db.closeConnection();
+		TestDatabase.delete(copy);
+	}
+	
+	/**
+	 * The queries of Airport.
+	 */
+	@Test
+	public void testAirportQueries() throws SQLException {
+		assertIndexed(Airport.SELECT_QUERY, "TestAirport1", 1);
+		assertIndexed(Airport.ADD_TO_ENTERPRISE_QUERY, 1, "TestAirport1");
+		assertIndexed("UPDATE `airports` SET `iata` = ? WHERE `id` = ?", "XXX", 1);
+	}
+	
+	/**
+	 * The queries of Country.
+	 */
+	@Test
+	public void testCountryQueries() throws SQLException {
+		assertIndexed(Country.SELECT_QUERY, "Germany");
+		assertIndexed(Model.COUNTRY_QUERY, 1);
+	}
+	
+	/**
+	 * The queries of Enterprise.
+	 */
+	@Test
+	public void testEnterpriseQueries() throws SQLException {
+		assertIndexed(Enterprise.SELECT_QUERY, "TestEnterprise");
+		assertIndexed(Enterprise.ROUTES_QUERY, 1);
+		assertIndexed(Enterprise.ROUTE_KEYS_QUERY, 1);
+		assertIndexed(Enterprise.COUNT_ROUTES_QUERY, 1, 1, 1);
+		assertIndexed(Enterprise.DELETE_ROUTE_QUERY, 1);
+	}
+	
+	/**
+	 * The queries of Model.
+	 */
+	@Test
+	public void testModelQueries() throws SQLException {
+		assertIndexed(Model.AIRPORTS_QUERY, 1);
+		assertIndexed(Model.CREATE_ENTERPRISE_QUERY, "TestEnterprise", "TestAirport1");
+		assertIndexed(Model.ADD_MAIN_HUB_QUERY, "TestEnterprise");
+		assertIndexed(Model.DELETE_AIRPORT_QUERY, 1);
+		assertIndexed(Model.ENTERPRISE_ID_QUERY, "TestEnterprise");
+		
+		for(String query: Model.DELETE_ENTERPRISE_QUERIES) {
+			assertIndexed(query, 1);
+		}
+	}
+	
+	/**
+	 * The queries of Route.
+	 */
+	@Test
+	public void testRouteQueries() throws SQLException {
+		assertIndexed(Route.SELECT_QUERY, 1, 1, 2);
+		assertIndexed("UPDATE `routes` SET `distance` = ? WHERE `id` = ?", 100, 1);
+	}
+	
+	/**
+	 * The queries of RoutePager, for every key the routes can be ordered by
+	 * and every range of a page. The keys that are columns of the routes
+	 * table have to be read from an index in order, except for the ranges
+	 * of NULL keys, which are empty since these columns contain no NULL.
+	 */
+	@Test
+	public void testRoutePagerQueries() throws SQLException {
+		for(SortKey key: SortKey.values()) {
+			for(Range range: Range.values()) {
+				for(boolean ascending: new boolean[] {true, false}) {
+					String query = RoutePager.getPageQuery(key, ascending, range);
+					Object[] parameters = getPageParameters(range);
+					
+					assertIndexed(query, parameters);
+					
+					if(key.compareTo(SortKey.DISTANCE) >= 0 && range != Range.AFTER_NULL_KEY
+							&& range != Range.NULL_KEYS) {
+						assertOrdered(query, parameters);
+					}
+				}
+			}
+			
+			assertIndexed(RoutePager.getRowQuery(key, true), 1, 1, 1);
+			assertIndexed(RoutePager.getOrderQuery(key, true), 1, 1, 1);
+		}
+	}
+	
+	/**
+	 * The queries that read routes by their IDs.
+	 */
+	@Test
+	public void testRouteIdQueries() throws SQLException {
+		assertIndexed(RoutePager.getRowQuery(2), 1, 2);
+		assertIndexed(RoutePager.getIdPageQuery(2), 1, 2);
+	}
+	
+	/**
+	 * The queries of EnterpriseSnapshot.
+	 */
+	@Test
+	public void testSnapshotQueries() throws SQLException {
+		assertIndexed(EnterpriseSnapshot.AIRPORTS_QUERY, 1);
+		assertIndexed(EnterpriseSnapshot.ROUTES_QUERY, 1, 1, 1);
+	}
+	
+	/**
+	 * This test makes sure the check itself recognizes a full table scan.
+	 */
+	@Test
+	public void testFullScanDetected() throws SQLException {
+		assertTrue(usesFullScan(explain("SELECT * FROM `routes` WHERE `distance` = ?", 100)));
+	}
+	
+	/**
+	 * This auxiliary method fails if the query scans a whole table.
+	 * @param query The query to check
+	 * @param parameters The parameters of the query
+	 */
+	private void assertIndexed(String query, Object... parameters) throws SQLException {
+		ArrayList<String> plan = explain(query, parameters);
+		
+		assertFalse("Full table scan in " + query + ": " + plan, usesFullScan(plan));
+	}
+	
+	/**
+	 * This auxiliary method fails if the rows of the query get sorted
+	 * instead of being read from an index in order. Older versions of SQLite
+	 * mark a table that is read in order with "ORDER BY", newer ones mention
+	 * the temporary B-tree they sort with.
+	 * @param query The query to check
+	 * @param parameters The parameters of the query
+	 */
+	private void assertOrdered(String query, Object... parameters) throws SQLException {
+		ArrayList<String> plan = explain(query, parameters);
+		boolean ordered = false;
+		
+		for(String detail: plan) {
+			assertFalse("Sort in " + query + ": " + plan, detail.contains("TEMP B-TREE"));
+			ordered |= !detail.startsWith("TABLE ") || detail.endsWith(" ORDER BY");
+		}
+		
+		assertTrue("Sort in " + query + ": " + plan, ordered);
+	}
+	
+	/**
+	 * This auxiliary method returns parameters for a page query of the
+	 * RoutePager: the enterprise, the last row for the ranges that start
+	 * after it, the size of the page and the offset.
+	 * @param range The range the query reads
+	 * @return The parameters
+	 */
+	private Object[] getPageParameters(Range range) {
+		switch(range) {
+		case OFFSET:
+			return new Object[] {1, 1, 1, 50, 100};
+		case AFTER_KEY:
+			return new Object[] {1, 1, 1, 0, 0, 0, 50};
+		case AFTER_NULL_KEY:
+			return new Object[] {1, 1, 1, 0, 50};
+		default:
+			return new Object[] {1, 1, 1, 50};
+		}
+	}
+	
+	/**
+	 * This auxiliary method returns the details of the query plan.
+	 * @param query The query to explain
+	 * @param parameters The parameters of the query
+	 * @return One detail per step of the plan
+	 */
+	private ArrayList<String> explain(String query, Object... parameters) throws SQLException {
+		DatabaseResult dr = db.executeQuery("EXPLAIN QUERY PLAN " + query,
+				new ArrayList<Object>(Arrays.asList(parameters)));
+		ArrayList<String> plan = new ArrayList<String>();
+		
+		while(dr.next()) {
+			plan.add(dr.getString(dr.getColumnCount() - 1));
+		}
+		
+		return plan;
+	}
+	
+	/**
+	 * This auxiliary method checks a query plan for a full table scan. Older
+	 * versions of SQLite describe a scan as "TABLE x" without an index, newer
+	 * ones as "SCAN x".
+	 * @param plan The details of the query plan
+	 * @return True if a table gets scanned, false otherwise
+	 */
+	private boolean usesFullScan(ArrayList<String> plan) {
+		for(String detail: plan) {
+			if(detail.startsWith("SCAN ")) {
+				return true;
+			}
+			
+			if(detail.startsWith("TABLE ") && !detail.contains(" WITH INDEX ")
+					&& !detail.contains(" USING ")) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+
+}
@@ -0,0 +1,92 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.SQLException;
+
+import de.jandavid.asxcel.model.Database;
+import de.jandavid.asxcel.model.UpdateManager;
+
+/**
+ * The tests work on copies of the test database in temporary directories,
+ * so they never change the files in resources. Every copy gets all updates
+ * installed, so the tests see the current schema.
+ * 
+ * @author jdno
+ */
+class TestDatabase {
+	
+	/**
+	 * The test database that gets copied.
+	 */
+	private static final String FIXTURE = "resources" + File.separator + "testDb.sqlite";
+	
+	/**
+	 * This method copies the test database to a new temporary directory and
+	 * installs all updates on the copy. The copy is closed afterwards.
+	 * @param name The name of the copy.
+	 * @return The copy of the test database.
+	 * @throws IOException If the copy cannot be written this gets thrown.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	static File copy(String name) throws ClassNotFoundException, IOException, SQLException {
+		File directory = Files.createTempDirectory("asxcel").toFile();
+		File copy = new File(directory, name);
+		Files.copy(new File(FIXTURE).toPath(), copy.toPath());
+		
+		Database db = new Database(copy.getPath());
+		
+		try {
+			UpdateManager um = new UpdateManager(db);
+			if(um.updateAvailable()) {
+				um.installUpdates();
+			}
+		} finally {
+			db.closeConnection();
+		}
+		
+		return copy;
+	}
+	
+	/**
+	 * This method deletes a copy together with its directory, which also
+	 * contains its journal and the backups taken by the updates.
+	 * @param copy The copy of the test database.
+	 */
+	static void delete(File copy) {
+		deleteFile(copy.getParentFile());
+	}
+	
+	/**
+	 * This auxiliary method deletes a file, or a directory with its content.
+	 */
+	private static void deleteFile(File file) {
+		File[] children = file.listFiles();
+		
+		if(children != null) {
+			for(File child: children) {
+				deleteFile(child);
+			}
+		}
+		
+		file.delete();
+	}
+
+}
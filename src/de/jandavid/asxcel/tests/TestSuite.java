@@ -13,7 +13,8 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({
 	DatabaseTest.class,
 	ModelTest.class,
-	EnterpriseTest.class
+	EnterpriseTest.class,
+	QueryPlanTest.class
 })
 public class TestSuite {
 	
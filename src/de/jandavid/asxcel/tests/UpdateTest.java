@@ -16,15 +16,21 @@
  */
 package de.jandavid.asxcel.tests;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.sql.SQLException;
 
 import org.junit.Test;
 
 import de.jandavid.asxcel.model.Database;
+import de.jandavid.asxcel.model.DatabaseResult;
+import de.jandavid.asxcel.model.Migration;
+import de.jandavid.asxcel.model.MigrationListener;
 import de.jandavid.asxcel.model.UpdateManager;
 
 /**
@@ -34,14 +40,56 @@ public class UpdateTest {
 	
 	private Database db;
 	
+	/**
+	 * This installs all updates on a copy of a database of version 1, so
+	 * neither the migrations nor the backup taken before them change the
+	 * files in resources.
+	 */
 	@Test
 	public void testUpdateTo2() throws SQLException, ClassNotFoundException, IOException {
-		db = new Database("resources" + File.separator + "testDb.1.sqlite");
+		File directory = Files.createTempDirectory("asxcel").toFile();
+		File copy = new File(directory, "update.sqlite");
+		Files.copy(new File("resources" + File.separator + "testDb.1.sqlite").toPath(), copy.toPath());
 		
-		UpdateManager um = new UpdateManager(db);
+		db = new Database(copy.getPath());
 		
-		assertTrue(um.updateAvailable());
-		um.installUpdates();
+		try {
+			UpdateManager um = new UpdateManager(db);
+			final int[] started = new int[1];
+			final int[] finished = new int[1];
+			
+			um.setListener(new MigrationListener() {
+				@Override
+				public void migrationStarted(Migration migration, int index, int count) {
+					started[0]++;
+				}
+				
+				@Override
+				public void migrationFinished(Migration migration, long duration) {
+					finished[0]++;
+				}
+			});
+			
+			assertTrue(um.updateAvailable());
+			um.installUpdates();
+			
+			assertFalse(um.updateAvailable());
+			assertEquals(um.getCurrentVersion(), um.getDetectedVersion());
+			assertEquals(um.getDurations().size(), started[0]);
+			assertEquals(started[0], finished[0]);
+			
+			DatabaseResult dr = db.executeQuery("SELECT (SELECT COUNT(*) FROM `enterprises`) * " +
+					"(SELECT COUNT(*) FROM `airports`), (SELECT COUNT(*) FROM `enterprise_has_airport`)");
+			assertTrue(dr.next());
+			assertEquals(dr.getInt(0), dr.getInt(1));
+		} finally {
+			db.closeConnection();
+			
+			for(File f: directory.listFiles()) {
+				f.delete();
+			}
+			directory.delete();
+		}
 	}
 
 }
@@ -0,0 +1,353 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.view;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.swing.AbstractAction;
+import javax.swing.BorderFactory;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.DefaultListModel;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.KeyStroke;
+import javax.swing.ListSelectionModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+import de.jandavid.asxcel.model.Airport;
+import de.jandavid.asxcel.model.Model;
+
+/**
+ * The AirportPicker lets the user choose an airport by typing a part of its
+ * name, its IATA code or its country. The list below the text field shows
+ * the best matches of the model's AirportSearchIndex and gets updated with
+ * every key stroke. The arrow keys move the selection, and the enter key or
+ * a double click choose the selected airport.
+ * 
+ * @author jdno
+ */
+public class AirportPicker extends JDialog {
+	
+	/**
+	 * For future use.
+	 */
+	private static final long serialVersionUID = 4127398306478121549L;
+	
+	/**
+	 * The maximum number of airports that are listed.
+	 */
+	private static final int LIMIT = 50;
+	
+	/**
+	 * The airports that can be chosen, or null for all.
+	 */
+	private Set<Airport> allowed;
+	
+	/**
+	 * The list of the matching airports.
+	 */
+	private JList<Airport> list;
+	
+	/**
+	 * The matching airports.
+	 */
+	private DefaultListModel<Airport> matches = new DefaultListModel<Airport>();
+	
+	/**
+	 * The model provides the airports and the index.
+	 */
+	private Model model;
+	
+	/**
+	 * The text field the user types in.
+	 */
+	private JTextField query = new JTextField();
+	
+	/**
+	 * The airport that has been chosen, or null.
+	 */
+	private Airport selection;
+	
+	/**
+	 * The airports that are listed first while the text field is empty.
+	 */
+	private ArrayList<Airport> suggestions = new ArrayList<Airport>();
+	
+	/**
+	 * The picker gets initialized as a modal dialog.
+	 * @param parent The window the dialog belongs to, or null.
+	 * @param title The title of the dialog.
+	 * @param message The text above the text field.
+	 * @param model The model provides the airports.
+	 * @param initial The airport to select while nothing has been typed, or null.
+	 * @param allowed The airports that can be chosen, or null for all.
+	 */
+	public AirportPicker(Window parent, String title, String message, Model model, Airport initial, Set<Airport> allowed) {
+		super(parent, title, ModalityType.APPLICATION_MODAL);
+		this.model = model;
+		this.allowed = allowed;
+		
+		if(initial != null) {
+			suggestions.add(initial);
+		}
+		
+		list = new JList<Airport>(matches);
+		list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		list.setCellRenderer(new DefaultListCellRenderer() {
+			private static final long serialVersionUID = -2186052870167284217L;
+
+			@Override
+			public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+					boolean isSelected, boolean cellHasFocus) {
+				return super.getListCellRendererComponent(list, describe((Airport) value), index, isSelected, cellHasFocus);
+			}
+		});
+		list.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				if(e.getClickCount() == 2) choose();
+			}
+		});
+		
+		query.getDocument().addDocumentListener(new DocumentListener() {
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				refresh();
+			}
+			
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				refresh();
+			}
+			
+			@Override
+			public void changedUpdate(DocumentEvent e) {
+				refresh();
+			}
+		});
+		
+		bindKeys();
+		
+		JButton ok = new JButton("OK");
+		ok.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				choose();
+			}
+		});
+		
+		JButton cancel = new JButton("Cancel");
+		cancel.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				dispose();
+			}
+		});
+		
+		JPanel top = new JPanel(new BorderLayout(0, 5));
+		top.add(new JLabel(message), BorderLayout.NORTH);
+		top.add(query, BorderLayout.CENTER);
+		
+		JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+		buttons.add(ok);
+		buttons.add(cancel);
+		
+		JScrollPane pane = new JScrollPane(list);
+		pane.setPreferredSize(new Dimension(400, 300));
+		
+		JPanel content = new JPanel(new BorderLayout(0, 5));
+		content.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+		content.add(top, BorderLayout.NORTH);
+		content.add(pane, BorderLayout.CENTER);
+		content.add(buttons, BorderLayout.SOUTH);
+		setContentPane(content);
+		getRootPane().setDefaultButton(ok);
+		
+		refresh();
+		pack();
+		setLocationRelativeTo(parent);
+	}
+	
+	/**
+	 * This method shows a picker and waits until the user has chosen an
+	 * airport or cancelled.
+	 * @param parent The window the dialog belongs to, or null.
+	 * @param title The title of the dialog.
+	 * @param message The text above the text field.
+	 * @param model The model provides the airports.
+	 * @param initial The airport to select while nothing has been typed, or null.
+	 * @param allowed The airports that can be chosen, or null for all.
+	 * @return The chosen airport, or null if the user cancelled.
+	 */
+	public static Airport pick(Window parent, String title, String message, Model model, Airport initial, Set<Airport> allowed) {
+		AirportPicker picker = new AirportPicker(parent, title, message, model, initial, allowed);
+		picker.setVisible(true);
+		
+		return picker.getSelection();
+	}
+	
+	/**
+	 * @return the airport that has been chosen, or null
+	 */
+	public Airport getSelection() {
+		return selection;
+	}
+	
+	/**
+	 * This method sets the airports that are listed first, in the given
+	 * order, while the text field is empty.
+	 * @param suggestions The airports to list first.
+	 */
+	public void setSuggestions(List<Airport> suggestions) {
+		this.suggestions = new ArrayList<Airport>(suggestions);
+		refresh();
+	}
+	
+	/**
+	 * This auxiliary method lets the arrow keys of the text field move the
+	 * selection of the list, and the escape key close the dialog.
+	 */
+	private void bindKeys() {
+		query.getInputMap(JComponent.WHEN_FOCUSED).put(KeyStroke.getKeyStroke(KeyEvent.VK_DOWN, 0), "next");
+		query.getInputMap(JComponent.WHEN_FOCUSED).put(KeyStroke.getKeyStroke(KeyEvent.VK_UP, 0), "previous");
+		query.getActionMap().put("next", new AbstractAction() {
+			private static final long serialVersionUID = 2970434937611962424L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				select(list.getSelectedIndex() + 1);
+			}
+		});
+		query.getActionMap().put("previous", new AbstractAction() {
+			private static final long serialVersionUID = -5473061640287398133L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				select(list.getSelectedIndex() - 1);
+			}
+		});
+		
+		getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "cancel");
+		getRootPane().getActionMap().put("cancel", new AbstractAction() {
+			private static final long serialVersionUID = 6814170237467231562L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				dispose();
+			}
+		});
+	}
+	
+	/**
+	 * This auxiliary method takes the selected airport and closes the dialog.
+	 * Nothing happens if no airport is selected.
+	 */
+	private void choose() {
+		selection = list.getSelectedValue();
+		
+		if(selection != null) {
+			dispose();
+		}
+	}
+	
+	/**
+	 * This auxiliary method creates the text an airport is listed with.
+	 * @param airport The airport to describe.
+	 * @return The name, followed by the IATA code and country if known.
+	 */
+	private static String describe(Airport airport) {
+		StringBuilder sb = new StringBuilder(airport.getName());
+		
+		if(airport.getIataCode() != null && !airport.getIataCode().equals("")) {
+			sb.append(" (").append(airport.getIataCode()).append(")");
+		}
+		
+		if(airport.getCountry() != null) {
+			sb.append(", ").append(airport.getCountry().getName());
+		}
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * This auxiliary method lists the airports that match the text field.
+	 * While the text field is empty, the suggestions are listed, followed by
+	 * the first airports by name.
+	 */
+	private void refresh() {
+		ArrayList<Airport> airports;
+		
+		if(query.getText().trim().equals("")) {
+			airports = new ArrayList<Airport>(LIMIT);
+			HashSet<Airport> listed = new HashSet<Airport>();
+			
+			for(Airport a: suggestions) {
+				if(airports.size() < LIMIT && (allowed == null || allowed.contains(a)) && listed.add(a)) {
+					airports.add(a);
+				}
+			}
+			
+			for(Airport a: model.getAirports()) {
+				if(airports.size() == LIMIT) break;
+				
+				if((allowed == null || allowed.contains(a)) && listed.add(a)) {
+					airports.add(a);
+				}
+			}
+		} else {
+			airports = model.getAirportIndex().search(query.getText(), LIMIT, allowed);
+		}
+		
+		matches.clear();
+		for(Airport a: airports) {
+			matches.addElement(a);
+		}
+		
+		select(0);
+	}
+	
+	/**
+	 * This auxiliary method selects an entry of the list, if it exists.
+	 * @param index The index of the entry.
+	 */
+	private void select(int index) {
+		if(index >= 0 && index < matches.size()) {
+			list.setSelectedIndex(index);
+			list.ensureIndexIsVisible(index);
+		}
+	}
+
+}
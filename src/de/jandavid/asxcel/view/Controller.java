@@ -18,25 +18,76 @@ package de.jandavid.asxcel.view;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
 import java.sql.SQLException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
 import de.jandavid.asxcel.model.Model;
+import de.jandavid.asxcel.model.WriteBehindListener;
+import de.jandavid.asxcel.view.Routes.Table;
 
 /**
  * This class acts as the ActionListener and handles the
- * interaction with the user.
+ * interaction with the user. It also reports changes that
+ * could not be written in the background.
  * 
  * @author jdno
  */
-public class Controller implements ActionListener {
+public class Controller implements ActionListener, WriteBehindListener {
+	
+	/**
+	 * The loader of the current enterprise, or null.
+	 */
+	private EnterpriseLoader enterpriseLoader;
+	
+	/**
+	 * The worker of the current import, or null.
+	 */
+	private ImportWorker importWorker;
+	
+	/**
+	 * The loaders and imports run one after another on this executor, so a
+	 * cancelled loader has stopped before the next one starts.
+	 */
+	private ExecutorService loaderExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "ASxcel enterprise loader");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
 	
 	/**
 	 * The model provides the data.
 	 */
 	private Model model;
 	
+	/**
+	 * This executor runs tasks on the event dispatch thread. It lets the
+	 * futures of the database update the GUI once they have completed.
+	 */
+	private Executor uiExecutor = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			if(SwingUtilities.isEventDispatchThread()) {
+				command.run();
+			} else {
+				SwingUtilities.invokeLater(command);
+			}
+		}
+	};
+	
 	/**
 	 * The view coordinates the GUI.
 	 */
@@ -57,13 +108,24 @@ public class Controller implements ActionListener {
 	 */
 	@Override
 	public void actionPerformed(ActionEvent e) {
+		if((isModification(e.getActionCommand()) || e.getActionCommand().equals("change_enterprise"))
+				&& waitForImport()) {
+			return;
+		}
+		
+		if(isLoading() && (isModification(e.getActionCommand()) || e.getActionCommand().equals("menu_export"))) {
+			JOptionPane.showMessageDialog(view.getWindow(), "Please wait until the enterprise has been loaded.",
+					"Info", JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+		
 		try {
 			if(e.getActionCommand().equals("change_enterprise")) {
 				initializeEnterprise();
 			} else if(e.getActionCommand().equals("create_airport")) {
 				view.createAirport();
 			} else if(e.getActionCommand().equals("create_filter")) {
-				// view.createFilter();
+				view.createFilter();
 			} else if(e.getActionCommand().equals("create_route")) {
 				view.createRoute();
 			} else if(e.getActionCommand().equals("delete_airport")) {
@@ -71,7 +133,13 @@ public class Controller implements ActionListener {
 			} else if(e.getActionCommand().equals("delete_enterprise")) {
 				view.deleteEnterprise();
 			} else if(e.getActionCommand().equals("delete_filter")) {
-				// view.deleteFilter();
+				view.deleteFilter();
+			} else if(e.getActionCommand().equals("menu_export")) {
+				view.exportRoutes();
+			} else if(e.getActionCommand().equals("menu_import")) {
+				importFiles();
+			} else if(e.getActionCommand().equals("menu_backup")) {
+				backupDatabase();
 			} else if(e.getActionCommand().equals("menu_about")) {
 				view.showAbout();
 			} else if(e.getActionCommand().equals("menu_help")) {
@@ -93,21 +161,32 @@ public class Controller implements ActionListener {
 				System.exit(0);
 			}
 		} catch (SQLException exception) {
-			JOptionPane.showMessageDialog(null, "During your last action an error occured.\n" +
-					"There seems to be a problem with the\n" +
-					"database. Please send a bug report with\n" +
-					"your last steps to:\n" +
-					"asxcel.support@jandavid.de", "Database error", JOptionPane.ERROR_MESSAGE);
+			showDatabaseError();
 			exception.printStackTrace();
 		} catch (Exception e1) {
 			e1.printStackTrace();
 		}
 	}
 
+	/**
+	 * This method creates a backup of the database in the background, and
+	 * tells the user where it has been written once it is done.
+	 */
+	public void backupDatabase() {
+		reportFailure(model.getBackupManager().backupAsync()).thenAcceptAsync(new Consumer<File>() {
+			@Override
+			public void accept(File backup) {
+				JOptionPane.showMessageDialog(null, "The database has been backed up to:\n" +
+						backup.getPath(), "Backup", JOptionPane.INFORMATION_MESSAGE);
+			}
+		}, uiExecutor);
+	}
+	
 	/**
 	 * This method handles the initialization (or the reloading) of an
 	 * enterprise. It ask the user for the name, triggers the creation
-	 * if the user wants a new one, and loads it from the model.
+	 * if the user wants a new one, and loads it in the background. An
+	 * enterprise that is still being loaded gets cancelled.
 	 * @throws Exception Thrown if the given enterprise cannot be found.
 	 */
 	public void initializeEnterprise() throws Exception {
@@ -117,7 +196,138 @@ public class Controller implements ActionListener {
 			enterprise = view.createEnterprise();
 		}
 		
-		model.loadEnterprise(enterprise);
-		view.showRoutes();
+		loadEnterprise(enterprise);
+	}
+	
+	/**
+	 * This method asks the user for CSV files and imports them into the
+	 * current enterprise in the background.
+	 */
+	public void importFiles() {
+		File[] files = view.chooseImportFiles();
+		if(files == null) return;
+		
+		Table table = view.getWindow() != null ? view.getWindow().getRoutesTable() : null;
+		if(table != null && table.isEditing()) {
+			table.getCellEditor().stopCellEditing();
+		}
+		
+		importWorker = new ImportWorker(this, view, files[0], files[1]);
+		loaderExecutor.execute(importWorker);
+	}
+	
+	/**
+	 * @return true while CSV files are being imported
+	 */
+	public boolean isImporting() {
+		return importWorker != null && !importWorker.isDone();
+	}
+	
+	/**
+	 * This method tells the user to wait if CSV files are being imported.
+	 * The import holds the database until it has finished, so a change
+	 * made in the meantime would block the GUI.
+	 * @return True if an import is running and the change has to wait.
+	 */
+	public boolean waitForImport() {
+		if(!isImporting()) return false;
+		
+		JOptionPane.showMessageDialog(view.getWindow(), "Please wait until the import has finished.",
+				"Info", JOptionPane.INFORMATION_MESSAGE);
+		return true;
+	}
+	
+	/**
+	 * @return true while an enterprise is being loaded
+	 */
+	public boolean isLoading() {
+		return enterpriseLoader != null && !enterpriseLoader.isDone();
+	}
+	
+	/**
+	 * This method loads the current enterprise again in the background,
+	 * e.g. after rows have been imported.
+	 */
+	public void reloadEnterprise() {
+		loadEnterprise(model.getEnterprise().getName());
+	}
+	
+	/**
+	 * This auxiliary method loads an enterprise in the background. An
+	 * enterprise that is still being loaded gets cancelled.
+	 * @param enterprise The name of the enterprise.
+	 */
+	private void loadEnterprise(String enterprise) {
+		if(enterpriseLoader != null) {
+			enterpriseLoader.cancel(false);
+		}
+		
+		enterpriseLoader = new EnterpriseLoader(view, enterprise);
+		loaderExecutor.execute(enterpriseLoader);
+	}
+	
+	/**
+	 * This auxiliary method checks if a command changes airports, routes
+	 * or enterprises, which is not possible while an enterprise is loaded.
+	 * @param command The command of the action.
+	 * @return True if the command changes the data, false otherwise.
+	 */
+	private boolean isModification(String command) {
+		return ((command.startsWith("create_") || command.startsWith("delete_")) && !command.endsWith("_filter"))
+				|| command.equals("menu_import");
+	}
+
+	/**
+	 * This method shows the database error dialog if an asynchronous action
+	 * fails. A cancelled action is not reported.
+	 * @param future The future of the action
+	 * @return The same future, so further steps can be chained
+	 */
+	public <T> CompletableFuture<T> reportFailure(CompletableFuture<T> future) {
+		future.whenCompleteAsync(new BiConsumer<T, Throwable>() {
+			@Override
+			public void accept(T result, Throwable error) {
+				if(error != null && !(error instanceof CancellationException)) {
+					error.printStackTrace();
+					showDatabaseError();
+				}
+			}
+		}, uiExecutor);
+		
+		return future;
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.jandavid.asxcel.model.WriteBehindListener#writeFailed(java.sql.SQLException)
+	 */
+	@Override
+	public void writeFailed(SQLException e) {
+		e.printStackTrace();
+		
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				showDatabaseError();
+			}
+		});
+	}
+	
+	/**
+	 * @return the executor that runs tasks on the event dispatch thread
+	 */
+	public Executor getUiExecutor() {
+		return uiExecutor;
+	}
+	
+	/**
+	 * This method tells the user that an action could not be saved
+	 * to the database.
+	 */
+	private void showDatabaseError() {
+		JOptionPane.showMessageDialog(null, "During your last action an error occured.\n" +
+				"There seems to be a problem with the\n" +
+				"database. Please send a bug report with\n" +
+				"your last steps to:\n" +
+				"asxcel.support@jandavid.de", "Database error", JOptionPane.ERROR_MESSAGE);
 	}
 }
@@ -0,0 +1,213 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.view;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
+
+import de.jandavid.asxcel.model.DatabaseCursor;
+import de.jandavid.asxcel.model.Enterprise;
+import de.jandavid.asxcel.model.EnterpriseSnapshot;
+import de.jandavid.asxcel.model.Model;
+import de.jandavid.asxcel.model.Route;
+
+/**
+ * The EnterpriseLoader loads an enterprise in the background, so the window
+ * stays responsive. As soon as the enterprise and its airports have been
+ * read, it becomes the current enterprise on the event dispatch thread, its
+ * airports replace those of the model, and its (empty) table gets shown.
+ * Its routes then get read with a cursor, or from the snapshot of the
+ * enterprise if it is up to date, and handed to the enterprise in batches,
+ * which makes them appear in the table while the rest is still loading. A
+ * progress bar shows how many routes have been loaded.
+ * 
+ * An enterprise with more routes than Enterprise.PAGING_THRESHOLD only
+ * loads the keys of its routes before it is shown. Its table reads the
+ * routes page by page, so no route gets handed to the enterprise.
+ * 
+ * A loader that gets cancelled stops after the current route, and none of
+ * its remaining batches reach the enterprise.
+ * 
+ * @author jdno
+ */
+public class EnterpriseLoader extends SwingWorker<Void, Object> {
+	
+	/**
+	 * The number of routes that get handed to the enterprise at once.
+	 */
+	private static final int BATCH_SIZE = 500;
+	
+	/**
+	 * The enterprise that is loaded, once it has been opened.
+	 */
+	private Enterprise enterprise;
+	
+	/**
+	 * The number of routes that have been handed to the enterprise.
+	 */
+	private int loaded = 0;
+	
+	/**
+	 * The name of the enterprise to load.
+	 */
+	private String name;
+	
+	/**
+	 * The number of routes the enterprise has.
+	 */
+	private volatile int total = 0;
+	
+	/**
+	 * The view that displays the enterprise.
+	 */
+	private View view;
+	
+	/**
+	 * The loader gets initialized with the view and the name of the
+	 * enterprise. It starts once execute() gets called.
+	 * @param view The view that displays the enterprise.
+	 * @param name The name of the enterprise to load.
+	 */
+	public EnterpriseLoader(View view, String name) {
+		this.view = view;
+		this.name = name;
+	}
+	
+	/* (non-Javadoc)
+	 * @see javax.swing.SwingWorker#doInBackground()
+	 */
+	@Override
+	protected Void doInBackground() throws Exception {
+		Model model = view.getModel();
+		Enterprise opened = model.openEnterprise(name);
+		EnterpriseSnapshot snapshot = opened.getSnapshot();
+		total = snapshot != null ? snapshot.getRouteCount() : opened.countRoutes();
+		
+		if(isCancelled()) return null;
+		
+		if(total > Enterprise.PAGING_THRESHOLD) {
+			opened.loadRouteKeys();
+			
+			if(!isCancelled()) publish(opened);
+			return null;
+		}
+		
+		publish(opened);
+		
+		ArrayList<Route> batch = new ArrayList<Route>(BATCH_SIZE);
+		
+		if(snapshot != null) {
+			for(int i = 0; i < snapshot.getRouteCount() && !isCancelled(); i++) {
+				batch = addToBatch(batch, opened.readRoute(snapshot, i));
+			}
+			
+			opened.releaseSnapshot();
+		} else {
+			DatabaseCursor dc = opened.openRouteCursor();
+			
+			try {
+				while(!isCancelled() && dc.next()) {
+					batch = addToBatch(batch, opened.readRoute(dc));
+				}
+			} finally {
+				dc.close();
+			}
+		}
+		
+		if(!batch.isEmpty() && !isCancelled()) {
+			publish(batch);
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * This auxiliary method adds a route to the batch. A full batch gets
+	 * published, and a new one is returned.
+	 * @param batch The current batch.
+	 * @param route The route to add, or null if it cannot be displayed.
+	 * @return The batch to add the next route to.
+	 */
+	private ArrayList<Route> addToBatch(ArrayList<Route> batch, Route route) {
+		if(route == null) return batch;
+		
+		batch.add(route);
+		
+		if(batch.size() < BATCH_SIZE) return batch;
+		
+		publish(batch);
+		return new ArrayList<Route>(BATCH_SIZE);
+	}
+	
+	/**
+	 * The enterprise gets shown once it has been opened, and the batches of
+	 * routes get added to it. Nothing happens after the loader has been
+	 * cancelled.
+	 * @param chunks The enterprise or batches of routes.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	protected void process(List<Object> chunks) {
+		if(isCancelled()) return;
+		
+		for(Object chunk: chunks) {
+			if(chunk instanceof Enterprise) {
+				enterprise = (Enterprise) chunk;
+				view.getModel().setEnterprise(enterprise);
+				view.getWindow().showRoutes();
+			} else {
+				ArrayList<Route> batch = (ArrayList<Route>) chunk;
+				
+				enterprise.addLoadedRoutes(batch);
+				loaded += batch.size();
+			}
+		}
+		
+		if(!enterprise.isPaged()) {
+			view.getWindow().showProgress("Loading routes", loaded, total);
+		}
+	}
+	
+	/**
+	 * Once the loader has finished the progress bar gets removed. If the
+	 * enterprise could not be loaded the user gets informed.
+	 */
+	@Override
+	protected void done() {
+		if(isCancelled()) return;
+		
+		view.getWindow().hideProgress();
+		
+		try {
+			get();
+		} catch (CancellationException e) {
+			// The next loader has taken over.
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			JOptionPane.showMessageDialog(view.getWindow(), "The enterprise could not be loaded.",
+					"Error", JOptionPane.ERROR_MESSAGE);
+		}
+	}
+
+}
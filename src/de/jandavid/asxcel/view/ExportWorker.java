@@ -0,0 +1,228 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.view;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.JOptionPane;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingWorker;
+
+import de.jandavid.asxcel.model.ExportListener;
+import de.jandavid.asxcel.model.Route;
+import de.jandavid.asxcel.model.RouteExporter;
+import de.jandavid.asxcel.model.RoutePager;
+import de.jandavid.asxcel.model.SpreadsheetWriter;
+
+/**
+ * The ExportWorker runs a RouteExporter in the background and shows its
+ * progress in a ProgressMonitor, whose cancel button stops the export.
+ * If the export fails or gets cancelled the incomplete file gets deleted.
+ * 
+ * @author jdno
+ */
+public class ExportWorker extends SwingWorker<Integer, Integer> implements ExportListener {
+	
+	/**
+	 * True if the routes get ordered ascending.
+	 */
+	private boolean ascending;
+	
+	/**
+	 * The exporter that does the work.
+	 */
+	private RouteExporter exporter;
+	
+	/**
+	 * The file the routes get written to.
+	 */
+	private File file;
+	
+	/**
+	 * The dialog that shows the progress.
+	 */
+	private ProgressMonitor monitor;
+	
+	/**
+	 * The IDs of the routes to read from the database, or null.
+	 */
+	private int[] ids;
+	
+	/**
+	 * The routes to write, or null if they get read from the database.
+	 */
+	private List<Route> routes;
+	
+	/**
+	 * The key the routes get ordered by if they get read from the database.
+	 */
+	private RoutePager.SortKey sortKey;
+	
+	/**
+	 * The view that displays the enterprise.
+	 */
+	private View view;
+	
+	/**
+	 * The worker gets initialized with the routes to export, in the order
+	 * they should be written.
+	 * @param view The view that displays the enterprise.
+	 * @param file The file to write to.
+	 * @param routes The routes to write.
+	 */
+	public ExportWorker(View view, File file, List<Route> routes) {
+		this(view, file, routes, null, true, routes.size());
+	}
+	
+	/**
+	 * The worker gets initialized to read all routes of the enterprise from
+	 * the database in the given order.
+	 * @param view The view that displays the enterprise.
+	 * @param file The file to write to.
+	 * @param sortKey The key to order the routes by.
+	 * @param ascending True to order ascending, false to order descending.
+	 * @param routeCount The number of routes that will be written.
+	 */
+	public ExportWorker(View view, File file, RoutePager.SortKey sortKey, boolean ascending, int routeCount) {
+		this(view, file, null, sortKey, ascending, routeCount);
+	}
+	
+	/**
+	 * The worker gets initialized to read the routes with the given IDs
+	 * from the database, in the order of the IDs.
+	 * @param view The view that displays the enterprise.
+	 * @param file The file to write to.
+	 * @param ids The IDs of the routes to write.
+	 */
+	public ExportWorker(View view, File file, int[] ids) {
+		this(view, file, null, null, true, ids.length);
+		this.ids = ids;
+	}
+	
+	/**
+	 * This constructor gets called by the public ones.
+	 */
+	private ExportWorker(View view, File file, List<Route> routes, RoutePager.SortKey sortKey,
+			boolean ascending, int routeCount) {
+		this.view = view;
+		this.file = file;
+		this.routes = routes;
+		this.sortKey = sortKey;
+		this.ascending = ascending;
+		
+		exporter = new RouteExporter(view.getModel());
+		exporter.setListener(this);
+		
+		monitor = new ProgressMonitor(view.getWindow(), "Exporting routes", "Writing...", 0, Math.max(1, routeCount));
+		monitor.setMillisToDecideToPopup(200);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.jandavid.asxcel.model.ExportListener#exportProgressed(int)
+	 */
+	@Override
+	public void exportProgressed(int rowsWritten) {
+		publish(rowsWritten);
+	}
+	
+	/* (non-Javadoc)
+	 * @see javax.swing.SwingWorker#doInBackground()
+	 */
+	@Override
+	protected Integer doInBackground() throws Exception {
+		SpreadsheetWriter writer = RouteExporter.createWriter(file);
+		
+		try {
+			if(routes != null) {
+				return exporter.exportRoutes(writer, routes);
+			} else if(ids != null) {
+				return exporter.exportRoutes(writer, ids);
+			} else {
+				return exporter.exportRoutes(writer, sortKey, ascending);
+			}
+		} finally {
+			writer.close();
+		}
+	}
+	
+	/**
+	 * The progress monitor shows the latest progress. If its cancel button
+	 * has been pressed the export gets cancelled.
+	 * @param chunks The numbers of rows written.
+	 */
+	@Override
+	protected void process(List<Integer> chunks) {
+		int rowsWritten = chunks.get(chunks.size() - 1);
+		
+		if(monitor.isCanceled()) {
+			exporter.cancel();
+			return;
+		}
+		
+		monitor.setNote(rowsWritten + " routes written");
+		monitor.setProgress(rowsWritten);
+	}
+	
+	/**
+	 * Once the export has finished the progress monitor gets closed, and the
+	 * user gets informed about the result.
+	 */
+	@Override
+	protected void done() {
+		monitor.close();
+		
+		int count;
+		
+		try {
+			count = get();
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+			return;
+		} catch (ExecutionException e) {
+			file.delete();
+			showFailure(e.getCause());
+			return;
+		}
+		
+		JOptionPane.showMessageDialog(view.getWindow(), count + " routes have been exported to:\n" +
+				file.getPath(), "Export", JOptionPane.INFORMATION_MESSAGE);
+	}
+	
+	/**
+	 * This auxiliary method tells the user why the routes have not been exported.
+	 * @param cause The exception the export failed with.
+	 */
+	private void showFailure(Throwable cause) {
+		String message;
+		
+		if(cause instanceof CancellationException) {
+			message = "The export has been cancelled.";
+		} else if(cause instanceof IOException) {
+			message = "The file could not be written:\n" + cause.getMessage();
+		} else {
+			cause.printStackTrace();
+			message = "The routes could not be read from the database.";
+		}
+		
+		JOptionPane.showMessageDialog(view.getWindow(), message, "Export", JOptionPane.ERROR_MESSAGE);
+	}
+
+}
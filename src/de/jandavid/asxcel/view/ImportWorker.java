@@ -0,0 +1,193 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.view;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.JOptionPane;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingWorker;
+
+import de.jandavid.asxcel.model.CsvImporter;
+import de.jandavid.asxcel.model.ImportListener;
+
+/**
+ * The ImportWorker runs a CsvImporter in the background and shows its
+ * progress in a ProgressMonitor, whose cancel button stops the import.
+ * Once the import has finished the user gets a summary, and the
+ * enterprise gets loaded again to show the imported rows.
+ * 
+ * @author jdno
+ */
+public class ImportWorker extends SwingWorker<Void, long[]> implements ImportListener {
+	
+	/**
+	 * The number of problems that are shown in the summary.
+	 */
+	private static final int SHOWN_PROBLEMS = 10;
+	
+	/**
+	 * The file with the airports, or null.
+	 */
+	private File airportFile;
+	
+	/**
+	 * The controller loads the enterprise again after the import.
+	 */
+	private Controller controller;
+	
+	/**
+	 * The importer that does the work.
+	 */
+	private CsvImporter importer;
+	
+	/**
+	 * The dialog that shows the progress.
+	 */
+	private ProgressMonitor monitor;
+	
+	/**
+	 * The file with the routes, or null.
+	 */
+	private File routeFile;
+	
+	/**
+	 * The view that displays the enterprise.
+	 */
+	private View view;
+	
+	/**
+	 * The worker gets initialized with the files to import. It starts
+	 * once it gets executed.
+	 * @param controller The controller that loads the enterprise again.
+	 * @param view The view that displays the enterprise.
+	 * @param airportFile The file with the airports, or null.
+	 * @param routeFile The file with the routes, or null.
+	 */
+	public ImportWorker(Controller controller, View view, File airportFile, File routeFile) {
+		this.controller = controller;
+		this.view = view;
+		this.airportFile = airportFile;
+		this.routeFile = routeFile;
+		
+		importer = new CsvImporter(view.getModel());
+		importer.setListener(this);
+		
+		monitor = new ProgressMonitor(view.getWindow(), "Importing CSV files", "Reading...", 0, 1000);
+		monitor.setMillisToDecideToPopup(200);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.jandavid.asxcel.model.ImportListener#importProgressed(long, long, int)
+	 */
+	@Override
+	public void importProgressed(long bytesRead, long bytesTotal, int rowsWritten) {
+		publish(new long[] {bytesRead, bytesTotal, rowsWritten});
+	}
+	
+	/* (non-Javadoc)
+	 * @see javax.swing.SwingWorker#doInBackground()
+	 */
+	@Override
+	protected Void doInBackground() throws Exception {
+		importer.importFiles(airportFile, routeFile);
+		return null;
+	}
+	
+	/**
+	 * The progress monitor shows the latest progress. If its cancel button
+	 * has been pressed the import gets cancelled.
+	 * @param chunks The bytes read, the bytes in total and the rows written.
+	 */
+	@Override
+	protected void process(List<long[]> chunks) {
+		long[] progress = chunks.get(chunks.size() - 1);
+		
+		if(monitor.isCanceled()) {
+			importer.cancel();
+			return;
+		}
+		
+		monitor.setNote(progress[2] + " rows imported");
+		monitor.setProgress(progress[1] > 0 ? (int) (progress[0] * 1000 / progress[1]) : 0);
+	}
+	
+	/**
+	 * Once the import has finished the progress monitor gets closed, and the
+	 * user gets informed about the result.
+	 */
+	@Override
+	protected void done() {
+		monitor.close();
+		
+		try {
+			get();
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+			return;
+		} catch (ExecutionException e) {
+			showFailure(e.getCause());
+			return;
+		}
+		
+		StringBuilder sb = new StringBuilder();
+		sb.append(importer.getAirportCount()).append(" airports and ");
+		sb.append(importer.getRouteCount()).append(" routes have been imported.");
+		
+		if(importer.getSkippedRows() > 0) {
+			sb.append("\n\n").append(importer.getSkippedRows()).append(" rows have been skipped:");
+			
+			ArrayList<String> problems = importer.getProblems();
+			for(int i = 0; i < Math.min(SHOWN_PROBLEMS, problems.size()); i++) {
+				sb.append("\n").append(problems.get(i));
+			}
+			
+			if(importer.getSkippedRows() > SHOWN_PROBLEMS) {
+				sb.append("\n...");
+			}
+		}
+		
+		JOptionPane.showMessageDialog(view.getWindow(), sb.toString(), "Import", JOptionPane.INFORMATION_MESSAGE);
+		controller.reloadEnterprise();
+	}
+	
+	/**
+	 * This auxiliary method tells the user why nothing has been imported.
+	 * @param cause The exception the import failed with.
+	 */
+	private void showFailure(Throwable cause) {
+		String message;
+		
+		if(cause instanceof CancellationException) {
+			message = "The import has been cancelled.";
+		} else if(cause instanceof IOException) {
+			message = "The file could not be read:\n" + cause.getMessage();
+		} else {
+			cause.printStackTrace();
+			message = "The rows could not be written to the database.";
+		}
+		
+		JOptionPane.showMessageDialog(view.getWindow(), message + "\nNothing has been imported.",
+				"Import", JOptionPane.ERROR_MESSAGE);
+	}
+
+}
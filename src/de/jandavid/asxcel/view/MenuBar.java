@@ -85,6 +85,13 @@ public class MenuBar extends JMenuBar {
 			    Toolkit.getDefaultToolkit().getMenuShortcutKeyMask()));
 		menuCreate.add(createRoute);
 		
+		JMenuItem createFilter = new JMenuItem("Filter");
+		createFilter.setActionCommand("create_filter");
+		createFilter.addActionListener(listener);
+		createFilter.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F,
+			    Toolkit.getDefaultToolkit().getMenuShortcutKeyMask()));
+		menuCreate.add(createFilter);
+		
 		JMenuItem deleteAirport = new JMenuItem("Airport");
 		deleteAirport.setActionCommand("delete_airport");
 		deleteAirport.addActionListener(listener);
@@ -95,12 +102,29 @@ public class MenuBar extends JMenuBar {
 		deleteEnterprise.addActionListener(listener);
 		menuDelete.add(deleteEnterprise);
 		
+		JMenuItem deleteFilter = new JMenuItem("Filter");
+		deleteFilter.setActionCommand("delete_filter");
+		deleteFilter.addActionListener(listener);
+		menuDelete.add(deleteFilter);
+		
 		JMenuItem changeEnterprise = new JMenuItem("Change enterprise...");
 		changeEnterprise.setActionCommand("change_enterprise");
 		changeEnterprise.addActionListener(listener);
 		ImageIcon changeIcon = new ImageIcon(this.getClass().getResource("sync.png"));
 		changeEnterprise.setIcon(changeIcon);
 		
+		JMenuItem importCsv = new JMenuItem("Import CSV...");
+		importCsv.setActionCommand("menu_import");
+		importCsv.addActionListener(listener);
+		
+		JMenuItem exportRoutes = new JMenuItem("Export routes...");
+		exportRoutes.setActionCommand("menu_export");
+		exportRoutes.addActionListener(listener);
+		
+		JMenuItem backup = new JMenuItem("Back up database");
+		backup.setActionCommand("menu_backup");
+		backup.addActionListener(listener);
+		
 		JMenuItem quit = new JMenuItem("Quit ASxcel");
 		quit.setActionCommand("menu_quit");
 		quit.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Q,
@@ -112,6 +136,9 @@ public class MenuBar extends JMenuBar {
 		menuFile.add(menuDelete);
 		menuFile.addSeparator();
 		menuFile.add(changeEnterprise);
+		menuFile.add(importCsv);
+		menuFile.add(exportRoutes);
+		menuFile.add(backup);
 		menuFile.addSeparator();
 		menuFile.add(quit);
 		
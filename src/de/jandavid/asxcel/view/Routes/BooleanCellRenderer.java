@@ -16,7 +16,6 @@
  */
 package de.jandavid.asxcel.view.Routes;
 
-import java.awt.Color;
 import java.awt.Component;
 
 import javax.swing.JCheckBox;
@@ -24,9 +23,6 @@ import javax.swing.JTable;
 import javax.swing.border.EmptyBorder;
 import javax.swing.table.TableCellRenderer;
 
-import de.jandavid.asxcel.model.Model;
-import de.jandavid.asxcel.model.Route;
-
 /**
  * 
  * 
@@ -35,29 +31,9 @@ import de.jandavid.asxcel.model.Route;
 public class BooleanCellRenderer extends JCheckBox implements TableCellRenderer {
 
 	/**
-	 * This is the color scheduled routes have when they are selected.
-	 */
-	private Color greenSelected = new Color(153, 255, 153);
-	
-	/**
-	 * This is the color scheduled routes have when they are unselected.
+	 * The cache that holds the values and colors of the rows.
 	 */
-	private Color greenUnselected = new Color(204, 255, 204);
-	
-	/**
-	 * The model that holds the data.
-	 */
-	private Model model;
-	
-	/**
-	 * This is the color unscheduled routes have when they are selected.
-	 */
-	private Color redSelected = new Color(255, 153, 153);
-	
-	/**
-	 * This is the color unscheduled routes have when they are unselected.
-	 */
-	private Color redUnselected = new Color(255, 204, 204);
+	private RowStyleCache styleCache;
 	
 	/**
 	 * For future use.
@@ -67,10 +43,10 @@ public class BooleanCellRenderer extends JCheckBox implements TableCellRenderer
 	/**
 	 * The BooleanCellRenderer sets the background color of routes depending
 	 * on whether they are scheduled or not.
-	 * @param model The model holding the data.
+	 * @param styleCache The cache holding the values and colors of the rows.
 	 */
-	public BooleanCellRenderer(Model model) {
-		this.model = model;
+	BooleanCellRenderer(RowStyleCache styleCache) {
+		this.styleCache = styleCache;
 		this.setOpaque(true);
 		this.setBorder(new EmptyBorder(2, 2, 2, 2));
 	}
@@ -82,23 +58,11 @@ public class BooleanCellRenderer extends JCheckBox implements TableCellRenderer
 	public Component getTableCellRendererComponent(JTable table, Object value,
 			boolean isSelected, boolean hasFocus, int row, int column) {
 
-		Route r = model.getEnterprise().getRoutes().get(table.convertRowIndexToModel(row));
-		this.setSelected((Boolean) value);
-		this.setHorizontalAlignment(JCheckBox.CENTER);
+		int modelRow = table.convertRowIndexToModel(row);
 		
-		if(r.isScheduled()) {
-			if(isSelected) {
-				setBackground(greenSelected);
-			} else {
-				setBackground(greenUnselected);
-			}
-		} else {
-			if(isSelected) {
-				setBackground(redSelected);
-			} else {
-				setBackground(redUnselected);
-			}
-		}
+		this.setSelected(Boolean.TRUE.equals(value));
+		this.setHorizontalAlignment(JCheckBox.CENTER);
+		this.setBackground(styleCache.getBackground(modelRow, isSelected));
 		
 		return this;
 	}
@@ -0,0 +1,473 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.view.Routes;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+import de.jandavid.asxcel.model.Airport;
+import de.jandavid.asxcel.model.Model;
+import de.jandavid.asxcel.model.ModelEvent;
+import de.jandavid.asxcel.model.Route;
+import de.jandavid.asxcel.model.RouteFilter;
+import de.jandavid.asxcel.model.RoutePager;
+
+/**
+ * This table model shows the routes of enterprises that have too many of
+ * them to be held by the table at once. It only keeps a few pages around
+ * the rows that are displayed, and reads the others from the database in
+ * the background while the user scrolls. The cache of the renderers holds
+ * no more rows than these pages. The number of rows comes from a
+ * COUNT query, so the table can be scrolled before any page has been read.
+ * 
+ * Because the rows are not in memory the table cannot sort or filter them
+ * itself. Instead sortBy() lets the database order the pages, and while a
+ * filter is active the IDs of all routes get read in that order, the
+ * filter picks the matching ones from its indexes, and the pages are read
+ * from this list.
+ * 
+ * @author jdno
+ */
+public class PagedRoutesModel extends RoutesModel {
+	
+	/**
+	 * For future use.
+	 */
+	private static final long serialVersionUID = -1622315906233862071L;
+	
+	/**
+	 * The number of pages that are kept at most.
+	 */
+	private static final int MAX_PAGES = 8;
+	
+	/**
+	 * This gets increased whenever the pages get dropped, so that pages
+	 * that have been requested before get ignored.
+	 */
+	private int generation = 0;
+	
+	/**
+	 * The IDs of all routes in the current order while a filter is active,
+	 * or null.
+	 */
+	private int[] order;
+	
+	/**
+	 * This gets increased whenever the order is read, so that orders that
+	 * have been requested before get ignored.
+	 */
+	private int orderGeneration = 0;
+	
+	/**
+	 * The pages that are currently being read.
+	 */
+	private HashSet<Integer> loading = new HashSet<Integer>();
+	
+	/**
+	 * The pages that have been read, ordered from least to most recently used.
+	 */
+	private LinkedHashMap<Integer, ArrayList<Route>> pages;
+	
+	/**
+	 * This reads the pages from the database.
+	 */
+	private RoutePager pager;
+	
+	/**
+	 * The number of routes.
+	 */
+	private int rowCount;
+	
+	/**
+	 * The pages that have been read get handed to the table by this executor.
+	 */
+	private Executor uiExecutor;
+	
+	/**
+	 * The PagedRoutesModel gets initialized with the model, and counts the
+	 * routes of its enterprise. No page gets read until it is displayed.
+	 * @param model The model to read the routes from.
+	 * @param uiExecutor The executor that runs tasks on the event dispatch thread.
+	 * @param pageSize The number of routes on each page.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public PagedRoutesModel(Model model, Executor uiExecutor, int pageSize) throws SQLException {
+		super(model);
+		this.uiExecutor = uiExecutor;
+		this.pager = new RoutePager(model, pageSize);
+		this.pages = new LinkedHashMap<Integer, ArrayList<Route>>(MAX_PAGES, 0.75f, true) {
+			
+			private static final long serialVersionUID = 7311582441328207934L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, ArrayList<Route>> eldest) {
+				return size() > MAX_PAGES;
+			}
+		};
+		this.rowCount = pager.count();
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.jandavid.asxcel.view.Routes.RoutesModel#getRowCount()
+	 */
+	@Override
+	public int getRowCount() {
+		return rowCount;
+	}
+	
+	/**
+	 * This method returns the rows of all loaded routes that start or end
+	 * at the given airport.
+	 * @param airport The airport to get the rows for.
+	 * @return The rows, which might be empty.
+	 */
+	@Override
+	public ArrayList<Integer> getRowsFor(Airport airport) {
+		ArrayList<Integer> rows = new ArrayList<Integer>();
+		
+		for(Map.Entry<Integer, ArrayList<Route>> page: pages.entrySet()) {
+			ArrayList<Route> routes = page.getValue();
+			
+			for(int i = 0; i < routes.size(); i++) {
+				Route r = routes.get(i);
+				
+				if(r.getOrigin() == airport || r.getDestination() == airport) {
+					rows.add(page.getKey() * pager.getPageSize() + i);
+				}
+			}
+		}
+		
+		return rows;
+	}
+	
+	/**
+	 * This method removes a row by deleting its route from the enterprise.
+	 * @param row The row to delete.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	@Override
+	public void removeRow(int row) throws SQLException {
+		Route r = getRouteAt(row);
+		
+		if(r != null) {
+			r.getModel().getEnterprise().deleteRoute(r);
+		}
+	}
+	
+	/**
+	 * This method shows only the routes that match the filter, or all routes
+	 * if it has no criteria. The IDs of the routes in the current order get
+	 * read in the background the first time, later only the filter picks
+	 * the matching ones again.
+	 */
+	public void applyRouteFilter() {
+		if(!isFiltered()) {
+			order = null;
+			orderGeneration++;
+			pager.setIds(null);
+			refreshCount();
+			reset();
+		} else if(order != null) {
+			select();
+		} else {
+			readOrder();
+		}
+	}
+	
+	/**
+	 * This method lets the database order the routes by a column of the
+	 * table. Ordering by the same column again reverses the order.
+	 * @param column The column to order by.
+	 */
+	public void sortBy(int column) {
+		RoutePager.SortKey key = RoutePager.SortKey.values()[column];
+		boolean ascending = key != pager.getSortKey() || !pager.isAscending();
+		
+		pager.setOrder(key, ascending);
+		
+		if(isFiltered()) {
+			readOrder();
+		} else {
+			reset();
+		}
+	}
+	
+	/**
+	 * @return the IDs of the routes that are shown in their order, or null
+	 * 		if all routes are shown
+	 */
+	public int[] getSelectedIds() {
+		return pager.getIds();
+	}
+	
+	/**
+	 * @return the key the routes are ordered by
+	 */
+	public RoutePager.SortKey getSortKey() {
+		return pager.getSortKey();
+	}
+	
+	/**
+	 * @return true if the routes are ordered ascending
+	 */
+	public boolean isAscending() {
+		return pager.isAscending();
+	}
+	
+	/**
+	 * This method returns the route of a row if its page has been read. If
+	 * not, the page gets requested and null is returned until it arrives.
+	 * Once the second half of a page is displayed the next page gets read
+	 * in advance.
+	 * @param rowIndex The row of the route.
+	 * @return The route, or null if it is not available yet.
+	 */
+	@Override
+	protected Route getRouteAt(int rowIndex) {
+		int page = rowIndex / pager.getPageSize();
+		int offset = rowIndex % pager.getPageSize();
+		ArrayList<Route> routes = pages.get(page);
+		
+		if(routes == null) {
+			requestPage(page);
+			return null;
+		}
+		
+		if(offset >= pager.getPageSize() / 2) {
+			requestPage(page + 1);
+		}
+		
+		return offset < routes.size() ? routes.get(offset) : null;
+	}
+	
+	/**
+	 * Added and removed routes shift the rows, so all pages get dropped
+	 * and the routes get counted again. Routes that are loaded by the
+	 * enterprise have been counted already. Changed fields only update the
+	 * loaded rows that show them. While a filter is active, an added route
+	 * makes the order get read again, a removed route gets removed from it,
+	 * and a changed field lets the filter pick the routes again.
+	 * @param e The event describing the change.
+	 */
+	@Override
+	protected void handleModelEvent(ModelEvent e) {
+		RouteFilter filter = getRouteFilter();
+		
+		if(filter != null) {
+			filter.modelChanged(e);
+		}
+		
+		switch(e.getType()) {
+		case ROUTE_ADDED:
+			if(isFiltered()) {
+				readOrder();
+			} else {
+				refreshCount();
+				reset();
+			}
+			break;
+		case ROUTE_REMOVED:
+			if(isFiltered() && order != null) {
+				removeFromOrder(((Route) e.getSource()).getId());
+				select();
+			} else if(!isFiltered()) {
+				refreshCount();
+				reset();
+			}
+			break;
+		case ROUTES_LOADED:
+			break;
+		case FIELD_CHANGED:
+			pager.invalidate();
+			
+			if(isFiltered() && order != null && !Arrays.equals(filter.select(order), pager.getIds())) {
+				select();
+				break;
+			}
+			
+			if(e.getSource() instanceof Airport) {
+				for(int row: getRowsFor((Airport) e.getSource())) {
+					fireTableRowsUpdated(row, row);
+				}
+			} else if(e.getSource() instanceof Route) {
+				int row = getRowOf((Route) e.getSource());
+				if(row != -1) fireTableRowsUpdated(row, row);
+			}
+			break;
+		default:
+			break;
+		}
+	}
+	
+	/**
+	 * The routes get counted again and all pages get dropped. While a filter
+	 * is active, it gets rebuilt and the order gets read again.
+	 */
+	@Override
+	protected void refresh() {
+		rebuildRouteFilter();
+		
+		if(isFiltered()) {
+			readOrder();
+		} else {
+			refreshCount();
+			reset();
+		}
+	}
+	
+	/**
+	 * This auxiliary method finds the row of a loaded route.
+	 * @param route The route to find.
+	 * @return The row, or -1 if the route is not loaded.
+	 */
+	private int getRowOf(Route route) {
+		for(Map.Entry<Integer, ArrayList<Route>> page: pages.entrySet()) {
+			int index = page.getValue().indexOf(route);
+			
+			if(index != -1) {
+				return page.getKey() * pager.getPageSize() + index;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * @return true if a filter with criteria is set
+	 */
+	private boolean isFiltered() {
+		return getRouteFilter() != null && getRouteFilter().isActive();
+	}
+	
+	/**
+	 * This auxiliary method reads the IDs of all routes in the current order
+	 * in the background, and lets the filter pick the routes to show once
+	 * they have arrived. Until then the rows stay as they are.
+	 */
+	private void readOrder() {
+		final int requested = ++orderGeneration;
+		order = null;
+		
+		pager.readOrderAsync().whenCompleteAsync(new BiConsumer<int[], Throwable>() {
+			@Override
+			public void accept(int[] ids, Throwable error) {
+				if(requested != orderGeneration) return;
+				
+				if(error != null) {
+					error.printStackTrace();
+					return;
+				}
+				
+				order = ids;
+				if(isFiltered()) select();
+			}
+		}, uiExecutor);
+	}
+	
+	/**
+	 * This auxiliary method counts the routes again.
+	 */
+	private void refreshCount() {
+		try {
+			rowCount = pager.count();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * This auxiliary method removes a route from the order.
+	 * @param id The ID of the route.
+	 */
+	private void removeFromOrder(int id) {
+		for(int i = 0; i < order.length; i++) {
+			if(order[i] == id) {
+				int[] shorter = new int[order.length - 1];
+				System.arraycopy(order, 0, shorter, 0, i);
+				System.arraycopy(order, i + 1, shorter, i, shorter.length - i);
+				order = shorter;
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * This auxiliary method lets the filter pick the routes to show from the
+	 * order, and drops all pages.
+	 */
+	private void select() {
+		int[] ids = getRouteFilter().select(order);
+		
+		pager.setIds(ids);
+		rowCount = ids.length;
+		reset();
+	}
+	
+	/**
+	 * This auxiliary method drops all pages, so they get read again when
+	 * they are displayed the next time.
+	 */
+	private void reset() {
+		generation++;
+		pages.clear();
+		loading.clear();
+		pager.invalidate();
+		
+		fireTableDataChanged();
+	}
+	
+	/**
+	 * This auxiliary method reads a page in the background unless it exists,
+	 * is being read, or lies behind the last row. Once it has arrived its
+	 * rows get updated on the event dispatch thread.
+	 * @param page The page to read.
+	 */
+	private void requestPage(final int page) {
+		if(page * pager.getPageSize() >= rowCount || pages.containsKey(page) || !loading.add(page)) {
+			return;
+		}
+		
+		final int requested = generation;
+		
+		pager.fetchPageAsync(page, uiExecutor).whenCompleteAsync(new BiConsumer<ArrayList<Route>, Throwable>() {
+			@Override
+			public void accept(ArrayList<Route> routes, Throwable error) {
+				if(requested != generation) return;
+				
+				loading.remove(page);
+				
+				if(error != null) {
+					error.printStackTrace();
+					return;
+				}
+				
+				pages.put(page, routes);
+				
+				int first = page * pager.getPageSize();
+				int last = Math.min(rowCount, first + pager.getPageSize()) - 1;
+				if(last >= first) fireTableRowsUpdated(first, last);
+			}
+		}, uiExecutor);
+	}
+
+}
@@ -17,11 +17,23 @@
 package de.jandavid.asxcel.view.Routes;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.AbstractTableModel;
 
+import de.jandavid.asxcel.model.Airport;
+import de.jandavid.asxcel.model.Enterprise;
 import de.jandavid.asxcel.model.Model;
+import de.jandavid.asxcel.model.ModelEvent;
+import de.jandavid.asxcel.model.ModelListener;
 import de.jandavid.asxcel.model.Route;
+import de.jandavid.asxcel.model.RouteExporter;
+import de.jandavid.asxcel.model.RouteFilter;
 
 /**
  * This is the model for the table, which contributes the actual
@@ -29,39 +41,159 @@ import de.jandavid.asxcel.model.Route;
  * and it writes changed directly back to the model, where they
  * get saved to the database.
  * 
+ * The table does not get refreshed completely after a change. The
+ * RoutesModel listens to the events of the model and only tells the
+ * table about the cells and rows that actually changed.
+ * 
  * @author jdno
  */
-public class RoutesModel extends AbstractTableModel {
-
+public class RoutesModel extends AbstractTableModel implements ModelListener {
+	
 	/**
 	 * For future use.
 	 */
 	private static final long serialVersionUID = 2048022952298622817L;
 	
+	/**
+	 * The column that shows whether a route is scheduled.
+	 */
+	static final int SCHEDULED_COLUMN = 12;
+	
 	/**
 	 * This array contains the column names.
 	 */
-	private String[] columnNames = {"Origin", "IATA", "PAX", "Cargo",
-			"Destination", "IATA", "PAX", "Cargo", "Transfer", "Distance", "Loads to", "Loads from", "Scheduled"};
+	private String[] columnNames = RouteExporter.COLUMN_NAMES;
 	
 	private Class<?>[] columnClasses = {String.class, String.class, Integer.class, Integer.class,
 			String.class, String.class, Integer.class, Integer.class, Boolean.class, Integer.class, Integer.class, 
 			Integer.class, Boolean.class};
 	
+	/**
+	 * The columns that show the fields of an origin, mapped by the names of the fields.
+	 */
+	private static final HashMap<String, Integer> originColumns = new HashMap<String, Integer>();
+	
+	/**
+	 * The columns that show the fields of a destination, mapped by the names of the fields.
+	 */
+	private static final HashMap<String, Integer> destinationColumns = new HashMap<String, Integer>();
+	
+	/**
+	 * The columns that show the fields of a route, mapped by the names of the fields.
+	 */
+	private static final HashMap<String, Integer> routeColumns = new HashMap<String, Integer>();
+	
+	static {
+		originColumns.put("name", 0);
+		originColumns.put("iata", 1);
+		originColumns.put("passengers", 2);
+		originColumns.put("cargo", 3);
+		destinationColumns.put("name", 4);
+		destinationColumns.put("iata", 5);
+		destinationColumns.put("passengers", 6);
+		destinationColumns.put("cargo", 7);
+		destinationColumns.put("transfer", 8);
+		routeColumns.put("distance", 9);
+		routeColumns.put("loadTo", 10);
+		routeColumns.put("loadFrom", 11);
+	}
+	
+	/**
+	 * The enterprise the indexes have been built for, or null if they
+	 * have to be rebuilt.
+	 */
+	private Enterprise indexedEnterprise;
+	
+	/**
+	 * The number of rows the indexes contain.
+	 */
+	private int indexedRowCount;
+	
+	/**
+	 * True while the table model listens to the changes of the model.
+	 */
+	private boolean listening;
+	
 	/**
 	 * This is needed to load and save the data.
 	 */
 	private Model model;
 	
+	/**
+	 * This maps the IDs of the airports to the rows of the routes that
+	 * start at the airport, in ascending order.
+	 */
+	private HashMap<Integer, ArrayList<Integer>> rowsByOrigin = new HashMap<Integer, ArrayList<Integer>>();
+	
+	/**
+	 * This maps the IDs of the airports to the rows of the routes that
+	 * end at the airport, in ascending order.
+	 */
+	private HashMap<Integer, ArrayList<Integer>> rowsByDestination = new HashMap<Integer, ArrayList<Integer>>();
+	
+	/**
+	 * The filter of the table, which gets informed about changes before the
+	 * table, or null.
+	 */
+	private RouteFilter routeFilter;
+	
+	/**
+	 * This maps the routes to their rows.
+	 */
+	private IdentityHashMap<Route, Integer> rowsByRoute = new IdentityHashMap<Route, Integer>();
+	
+	/**
+	 * This caches the values and styles of the rows for the renderers.
+	 */
+	private RowStyleCache styleCache;
+	
 	/**
 	 * The RoutesTableModel gets initialized with the model, because
 	 * it fetches the data to display and writes changes back to it.
+	 * It registers itself as a listener of the model until dispose()
+	 * gets called.
 	 * @param model
 	 */
 	public RoutesModel(Model model) {
 		this.model = model;
+		this.styleCache = new RowStyleCache(model, this);
+		model.addModelListener(this);
+		listening = true;
 	}
-
+	
+	/**
+	 * This method listens to the model again after dispose() has been
+	 * called. Changes that have been missed meanwhile are unknown, so all
+	 * rows get refreshed. If the model is listened to already nothing happens.
+	 */
+	public void attach() {
+		if(listening) return;
+		
+		model.addModelListener(this);
+		listening = true;
+		refresh();
+	}
+	
+	/**
+	 * This method stops listening to the model. It has to be called once the
+	 * table is not displayed anymore.
+	 */
+	public void dispose() {
+		model.removeModelListener(this);
+		listening = false;
+	}
+	
+	/**
+	 * This method invalidates the affected rows of the style cache before
+	 * the listeners get informed, so they never read outdated values.
+	 * @param e The event describing the change.
+	 */
+	@Override
+	public void fireTableChanged(TableModelEvent e) {
+		styleCache.tableChanged(e);
+		super.fireTableChanged(e);
+	}
+	
 	/* (non-Javadoc)
 	 * @see javax.swing.table.AbstractTableModel#getColumnClass(int)
 	 */
@@ -69,7 +201,7 @@ public class RoutesModel extends AbstractTableModel {
 	public Class<?> getColumnClass(int columnIndex) {
 		return columnClasses[columnIndex];
 	}
-
+	
 	/* (non-Javadoc)
 	 * @see javax.swing.table.TableModel#getColumnCount()
 	 */
@@ -82,7 +214,7 @@ public class RoutesModel extends AbstractTableModel {
 	public String getColumnName(int column) {
 		return columnNames[column];
 	}
-
+	
 	/* (non-Javadoc)
 	 * @see javax.swing.table.TableModel#getRowCount()
 	 */
@@ -90,13 +222,44 @@ public class RoutesModel extends AbstractTableModel {
 	public int getRowCount() {
 		return model.getEnterprise().getRoutes().size();
 	}
-
+	
 	/* (non-Javadoc)
 	 * @see javax.swing.table.TableModel#getValueAt(int, int)
 	 */
 	@Override
 	public Object getValueAt(int rowIndex, int columnIndex) {
-		Route r = model.getEnterprise().getRoutes().get(rowIndex);
+		return styleCache.getValue(rowIndex, columnIndex);
+	}
+	
+	/**
+	 * @return the cache of the values and styles of the rows
+	 */
+	RowStyleCache getStyleCache() {
+		return styleCache;
+	}
+	
+	/**
+	 * This method returns the route shown in a row.
+	 * @param rowIndex The row of the route.
+	 * @return The route, or null if it is not available yet.
+	 */
+	protected Route getRouteAt(int rowIndex) {
+		return model.getEnterprise().getRoutes().get(rowIndex);
+	}
+	
+	/**
+	 * This method reads the value of a cell directly from the routes of
+	 * the enterprise. It gets used to fill the style cache.
+	 * @param rowIndex The row of the cell.
+	 * @param columnIndex The column of the cell.
+	 * @return The value of the cell.
+	 */
+	Object readValueAt(int rowIndex, int columnIndex) {
+		Route r = getRouteAt(rowIndex);
+		
+		if(r == null) {
+			return null;
+		}
 		
 		switch(columnIndex) {
 		case 0: // origin airport
@@ -129,7 +292,7 @@ public class RoutesModel extends AbstractTableModel {
 			return "";
 		}
 	}
-
+	
 	/* (non-Javadoc)
 	 * @see javax.swing.table.AbstractTableModel#isCellEditable(int, int)
 	 */
@@ -143,28 +306,144 @@ public class RoutesModel extends AbstractTableModel {
 	}
 	
 	/**
-	 * This method removes a row by first removing it from the data model and
-	 * then from this table model.
+	 * This method translates a change of the model into the events of
+	 * the table. A change of an airport only updates the cells of the
+	 * rows that reference the airport. Events from other threads get
+	 * handled on the event dispatch thread.
+	 * @param e The event describing the change.
+	 */
+	@Override
+	public void modelChanged(final ModelEvent e) {
+		if(!SwingUtilities.isEventDispatchThread()) {
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					modelChanged(e);
+				}
+			});
+			return;
+		}
+		
+		handleModelEvent(e);
+	}
+	
+	/**
+	 * This method handles a change of the model on the event dispatch thread.
+	 * @param e The event describing the change.
+	 */
+	protected void handleModelEvent(ModelEvent e) {
+		if(routeFilter != null) {
+			routeFilter.modelChanged(e);
+		}
+		
+		switch(e.getType()) {
+		case ROUTE_ADDED:
+			routeAdded((Route) e.getSource(), e.getIndex());
+			fireTableRowsInserted(e.getIndex(), e.getIndex());
+			break;
+		case ROUTE_REMOVED:
+			routeRemoved((Route) e.getSource(), e.getIndex());
+			fireTableRowsDeleted(e.getIndex(), e.getIndex());
+			break;
+		case ROUTES_LOADED:
+			routesLoaded(e.getIndex(), e.getCount());
+			fireTableRowsInserted(e.getIndex(), e.getIndex() + e.getCount() - 1);
+			break;
+		case FIELD_CHANGED:
+			if(e.getSource() instanceof Route) {
+				routeChanged((Route) e.getSource(), e.getField());
+			} else if(e.getSource() instanceof Airport) {
+				airportChanged((Airport) e.getSource(), e.getField());
+			}
+			break;
+		default:
+			break;
+		}
+	}
+	
+	/**
+	 * This method returns the rows of all routes that start or end at the
+	 * given airport.
+	 * @param airport The airport to get the rows for.
+	 * @return The rows, which might be empty.
+	 */
+	public ArrayList<Integer> getRowsFor(Airport airport) {
+		updateIndexes();
+		
+		ArrayList<Integer> rows = new ArrayList<Integer>();
+		
+		if(rowsByOrigin.containsKey(airport.getId())) {
+			rows.addAll(rowsByOrigin.get(airport.getId()));
+		}
+		
+		if(rowsByDestination.containsKey(airport.getId())) {
+			rows.addAll(rowsByDestination.get(airport.getId()));
+		}
+		
+		return rows;
+	}
+	
+	/**
+	 * This method drops everything that has been derived from the routes
+	 * and tells the table that all rows have changed.
+	 */
+	protected void refresh() {
+		indexedEnterprise = null;
+		rebuildRouteFilter();
+		fireTableDataChanged();
+	}
+	
+	/**
+	 * @return the filter that gets informed about changes before the table, or null
+	 */
+	protected RouteFilter getRouteFilter() {
+		return routeFilter;
+	}
+	
+	/**
+	 * This method indexes the routes of the filter again, because changes
+	 * might have been missed.
+	 */
+	protected void rebuildRouteFilter() {
+		if(routeFilter == null) return;
+		
+		try {
+			routeFilter.rebuild();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * This method sets the filter that gets informed about changes before
+	 * the table, so its indexes are up to date when the rows get filtered.
+	 * @param routeFilter The filter, or null.
+	 */
+	public void setRouteFilter(RouteFilter routeFilter) {
+		this.routeFilter = routeFilter;
+	}
+	
+	/**
+	 * This method removes a row from the data model. The table gets
+	 * informed through the event of the model.
 	 * @param row The row to delete.
 	 * @throws SQLException If a SQL error occurs this gets thrown.
 	 */
 	public void removeRow(int row) throws SQLException {
 		model.getEnterprise().deleteRoute(row);
-		
-		fireTableDataChanged();
 	}
-
+	
 	/* (non-Javadoc)
 	 * @see javax.swing.table.AbstractTableModel#setValueAt(java.lang.Object, int, int)
 	 */
 	@Override
 	public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
-		Route r = model.getEnterprise().getRoutes().get(rowIndex);
+		Route r = getRouteAt(rowIndex);
 		
-		if(aValue == null) {
+		if(aValue == null || r == null) {
 			return;
 		}
-
+		
 		try {
 			switch(columnIndex) {
 			case 0: // origin airport
@@ -207,11 +486,237 @@ public class RoutesModel extends AbstractTableModel {
 			default:
 				break;
 			}
-			
-			fireTableDataChanged();
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
 	}
+	
+	/**
+	 * This auxiliary method updates the cells that show the changed field
+	 * of an airport, in all rows that reference the airport.
+	 * @param airport The airport that changed.
+	 * @param field The name of the field that changed.
+	 */
+	private void airportChanged(Airport airport, String field) {
+		updateIndexes();
+		
+		fireCellsUpdated(rowsByOrigin.get(airport.getId()), originColumns.get(field));
+		fireCellsUpdated(rowsByDestination.get(airport.getId()), destinationColumns.get(field));
+	}
+	
+	/**
+	 * This auxiliary method updates a column in the given rows. If no rows
+	 * or no column are given nothing happens.
+	 * @param rows The rows to update, or null.
+	 * @param column The column to update, or null.
+	 */
+	private void fireCellsUpdated(ArrayList<Integer> rows, Integer column) {
+		if(rows == null || column == null) return;
+		
+		for(int row: rows) {
+			fireTableCellUpdated(row, column);
+		}
+	}
+	
+	/**
+	 * This auxiliary method updates the cell that shows the changed field
+	 * of a route. Because the renderers color the whole row depending on
+	 * whether the route is scheduled, a change of that updates the whole row.
+	 * @param route The route that changed.
+	 * @param field The name of the field that changed.
+	 */
+	private void routeChanged(Route route, String field) {
+		updateIndexes();
+		
+		Integer row = rowsByRoute.get(route);
+		if(row == null) return;
+		
+		Integer column = routeColumns.get(field);
+		
+		if(column != null) {
+			fireTableCellUpdated(row, column);
+		} else {
+			fireTableRowsUpdated(row, row);
+		}
+	}
+	
+	/**
+	 * This auxiliary method adds a row to an index. The rows of an airport
+	 * stay in ascending order.
+	 * @param index The index to add the row to.
+	 * @param airport The airport the row references.
+	 * @param row The row.
+	 */
+	private void indexRow(HashMap<Integer, ArrayList<Integer>> index, Airport airport, int row) {
+		ArrayList<Integer> rows = index.get(airport.getId());
+		
+		if(rows == null) {
+			rows = new ArrayList<Integer>();
+			index.put(airport.getId(), rows);
+		}
+		
+		if(rows.isEmpty() || rows.get(rows.size() - 1) < row) {
+			rows.add(row);
+		} else {
+			rows.add(-(Collections.binarySearch(rows, row) + 1), row);
+		}
+	}
+	
+	/**
+	 * This auxiliary method checks if the indexes are up to date for the
+	 * given number of rows of the current enterprise.
+	 * @param rowCount The number of rows the indexes should contain.
+	 * @return True if the indexes can be changed incrementally.
+	 */
+	private boolean isIndexed(int rowCount) {
+		return indexedEnterprise == model.getEnterprise() && indexedRowCount == rowCount;
+	}
+	
+	/**
+	 * This auxiliary method changes the row of a route in the indexes. The
+	 * order of the rows of an airport does not change, because all rows
+	 * behind a position get moved by the same amount.
+	 * @param route The route to move.
+	 * @param from The row the route has been in.
+	 * @param to The row the route is in now.
+	 */
+	private void moveRow(Route route, int from, int to) {
+		rowsByRoute.put(route, to);
+		replaceRow(rowsByOrigin.get(route.getOrigin().getId()), from, to);
+		replaceRow(rowsByDestination.get(route.getDestination().getId()), from, to);
+	}
+	
+	/**
+	 * This auxiliary method replaces a row in the rows of an airport.
+	 * @param rows The rows of the airport, in ascending order.
+	 * @param from The row to replace.
+	 * @param to The row to replace it with.
+	 */
+	private void replaceRow(ArrayList<Integer> rows, int from, int to) {
+		int i = Collections.binarySearch(rows, from);
+		rows.set(i, to);
+	}
+	
+	/**
+	 * This auxiliary method removes a row from the rows of an airport.
+	 * @param index The index to remove the row from.
+	 * @param airport The airport the row references.
+	 * @param row The row.
+	 */
+	private void unindexRow(HashMap<Integer, ArrayList<Integer>> index, Airport airport, int row) {
+		ArrayList<Integer> rows = index.get(airport.getId());
+		rows.remove(Collections.binarySearch(rows, row));
+		
+		if(rows.isEmpty()) {
+			index.remove(airport.getId());
+		}
+	}
+	
+	/**
+	 * This auxiliary method adds a route to the indexes, and moves the rows
+	 * behind it down by one. Only those rows get touched, so adding a route
+	 * at the end does not depend on the number of routes. If the indexes
+	 * are not up to date they get rebuilt the next time they are used.
+	 * @param route The route that has been added.
+	 * @param index The row of the route.
+	 */
+	private void routeAdded(Route route, int index) {
+		ArrayList<Route> routes = model.getEnterprise().getRoutes();
+		
+		if(!isIndexed(routes.size() - 1) || routes.get(index) != route) {
+			indexedEnterprise = null;
+			return;
+		}
+		
+		for(int row = routes.size() - 1; row > index; row--) {
+			moveRow(routes.get(row), row - 1, row);
+		}
+		
+		rowsByRoute.put(route, index);
+		indexRow(rowsByOrigin, route.getOrigin(), index);
+		indexRow(rowsByDestination, route.getDestination(), index);
+		indexedRowCount++;
+	}
+	
+	/**
+	 * This auxiliary method removes a route from the indexes, and moves the
+	 * rows behind it up by one. If the indexes are not up to date they get
+	 * rebuilt the next time they are used.
+	 * @param route The route that has been removed.
+	 * @param index The row the route has been in.
+	 */
+	private void routeRemoved(Route route, int index) {
+		ArrayList<Route> routes = model.getEnterprise().getRoutes();
+		Integer indexed = rowsByRoute.get(route);
+		
+		if(!isIndexed(routes.size() + 1) || indexed == null || indexed != index) {
+			indexedEnterprise = null;
+			return;
+		}
+		
+		rowsByRoute.remove(route);
+		unindexRow(rowsByOrigin, route.getOrigin(), index);
+		unindexRow(rowsByDestination, route.getDestination(), index);
+		
+		for(int row = index; row < routes.size(); row++) {
+			moveRow(routes.get(row), row + 1, row);
+		}
+		
+		indexedRowCount--;
+	}
+	
+	/**
+	 * This auxiliary method adds a batch of routes that has been appended
+	 * to the indexes. If the indexes are not up to date they get rebuilt
+	 * the next time they are used.
+	 * @param index The row of the first route of the batch.
+	 * @param count The number of routes in the batch.
+	 */
+	private void routesLoaded(int index, int count) {
+		ArrayList<Route> routes = model.getEnterprise().getRoutes();
+		
+		if(!isIndexed(index) || routes.size() != index + count) {
+			indexedEnterprise = null;
+			return;
+		}
+		
+		for(int row = index; row < routes.size(); row++) {
+			Route r = routes.get(row);
+			
+			rowsByRoute.put(r, row);
+			indexRow(rowsByOrigin, r.getOrigin(), row);
+			indexRow(rowsByDestination, r.getDestination(), row);
+		}
+		
+		indexedRowCount = routes.size();
+	}
+	
+	/**
+	 * This auxiliary method rebuilds the indexes of the rows if routes have
+	 * been added or removed, or another enterprise has been loaded since
+	 * they have been built.
+	 */
+	private void updateIndexes() {
+		Enterprise enterprise = model.getEnterprise();
+		
+		if(indexedEnterprise == enterprise) return;
+		
+		rowsByOrigin.clear();
+		rowsByDestination.clear();
+		rowsByRoute.clear();
+		
+		ArrayList<Route> routes = enterprise.getRoutes();
+		
+		for(int row = 0; row < routes.size(); row++) {
+			Route r = routes.get(row);
+			
+			rowsByRoute.put(r, row);
+			indexRow(rowsByOrigin, r.getOrigin(), row);
+			indexRow(rowsByDestination, r.getDestination(), row);
+		}
+		
+		indexedEnterprise = enterprise;
+		indexedRowCount = routes.size();
+	}
 
 }
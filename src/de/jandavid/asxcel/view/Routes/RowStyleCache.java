@@ -0,0 +1,301 @@
+/**
+ * This file is part of ASxcel.
+ *
+ * ASxcel is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ASxcel is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with ASxcel.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.jandavid.asxcel.view.Routes;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+import javax.swing.JLabel;
+import javax.swing.event.TableModelEvent;
+
+import de.jandavid.asxcel.model.Enterprise;
+import de.jandavid.asxcel.model.Model;
+
+/**
+ * The RowStyleCache keeps everything the renderers need to paint a row of
+ * the routes table: the values of the cells, their text, and whether the
+ * route is scheduled, which decides the background color. A row gets read
+ * from the model the first time it is painted, and is kept until a change
+ * event of the table invalidates it or another row takes its slot.
+ * 
+ * The rows are kept in a fixed number of slots, and a row always goes to
+ * the slot of its index modulo that number. The rows on the screen follow
+ * each other, so they never share a slot, and a slot that gets taken over
+ * by another row reuses the arrays of the previous one. This way painting
+ * a cached row needs neither a lookup in the enterprise nor an allocation,
+ * while the cache stays as small as the part of the table that is looked
+ * at.
+ * 
+ * @author jdno
+ */
+class RowStyleCache {
+
+	/**
+	 * This is the color scheduled routes have when they are selected.
+	 */
+	private static final Color greenSelected = new Color(153, 255, 153);
+	
+	/**
+	 * This is the color scheduled routes have when they are unselected.
+	 */
+	private static final Color greenUnselected = new Color(204, 255, 204);
+	
+	/**
+	 * This is the color unscheduled routes have when they are selected.
+	 */
+	private static final Color redSelected = new Color(255, 153, 153);
+	
+	/**
+	 * This is the color unscheduled routes have when they are unselected.
+	 */
+	private static final Color redUnselected = new Color(255, 204, 204);
+	
+	/**
+	 * The number of slots, a power of two that is larger than any number of
+	 * rows that fits on a screen.
+	 */
+	private static final int SLOTS = 512;
+	
+	/**
+	 * The horizontal alignment of every column.
+	 */
+	private int[] alignments;
+	
+	/**
+	 * The enterprise the rows have been read from.
+	 */
+	private Enterprise cachedEnterprise;
+	
+	/**
+	 * The model the enterprise gets taken from.
+	 */
+	private Model model;
+	
+	/**
+	 * The cached rows, each in the slot of its index in the table model
+	 * modulo the number of slots. A slot that has not been used yet is null.
+	 */
+	private RowStyle[] rows = new RowStyle[SLOTS];
+	
+	/**
+	 * The table model the rows get read from.
+	 */
+	private RoutesModel tableModel;
+	
+	/**
+	 * The cache gets initialized with the table model it reads the rows from.
+	 * @param model The model holding the data.
+	 * @param tableModel The table model to read the rows from.
+	 */
+	RowStyleCache(Model model, RoutesModel tableModel) {
+		this.model = model;
+		this.tableModel = tableModel;
+		
+		alignments = new int[tableModel.getColumnCount()];
+		
+		for(int i = 0; i < alignments.length; i++) {
+			alignments[i] = tableModel.getColumnClass(i) == Integer.class ? JLabel.CENTER : JLabel.LEFT;
+		}
+	}
+	
+	/**
+	 * Get the horizontal alignment of a column.
+	 * @param column The column in the table model
+	 * @return The alignment as a constant of JLabel
+	 */
+	int getAlignment(int column) {
+		return alignments[column];
+	}
+	
+	/**
+	 * Get the background color of a row.
+	 * @param row The row in the table model
+	 * @param isSelected True if the row is selected
+	 * @return The background color
+	 */
+	Color getBackground(int row, boolean isSelected) {
+		if(getRow(row).scheduled) {
+			return isSelected ? greenSelected : greenUnselected;
+		} else {
+			return isSelected ? redSelected : redUnselected;
+		}
+	}
+	
+	/**
+	 * Get the text of a cell.
+	 * @param row The row in the table model
+	 * @param column The column in the table model
+	 * @return The text to display
+	 */
+	String getText(int row, int column) {
+		RowStyle style = getRow(row);
+		
+		if(style.texts[column] == null) {
+			Object value = style.values[column];
+			style.texts[column] = value == null ? "" : String.valueOf(value);
+		}
+		
+		return style.texts[column];
+	}
+	
+	/**
+	 * Get the value of a cell. A row that is not cached is not read as a
+	 * whole, because the sorter asks for one column of every row and would
+	 * push the rows on the screen out of the cache.
+	 * @param row The row in the table model
+	 * @param column The column in the table model
+	 * @return The value
+	 */
+	Object getValue(int row, int column) {
+		RowStyle style = cachedEnterprise == model.getEnterprise() ? rows[row & (SLOTS - 1)] : null;
+		
+		if(style != null && style.row == row) {
+			return style.values[column];
+		}
+		
+		return tableModel.readValueAt(row, column);
+	}
+	
+	/**
+	 * This method invalidates the rows a change of the table model affects.
+	 * Updated rows get read again, inserted and deleted rows shift the rows
+	 * behind them, and any other change empties the cache.
+	 * @param e The event of the table model
+	 */
+	void tableChanged(TableModelEvent e) {
+		int first = e.getFirstRow();
+		int last = e.getLastRow();
+		
+		if(first == TableModelEvent.HEADER_ROW || last == Integer.MAX_VALUE) {
+			invalidate(0, Integer.MAX_VALUE);
+			return;
+		}
+		
+		switch(e.getType()) {
+		case TableModelEvent.INSERT:
+			shiftRows(first, last - first + 1);
+			break;
+		case TableModelEvent.DELETE:
+			shiftRows(first, first - last - 1);
+			break;
+		default:
+			invalidate(first, last);
+			break;
+		}
+	}
+	
+	/**
+	 * This auxiliary method returns a row from the cache, and reads it from
+	 * the table model into its slot if it is not cached. If another
+	 * enterprise has been loaded in the meantime the cache gets emptied
+	 * first.
+	 * @param row The row in the table model
+	 * @return The cached row
+	 */
+	private RowStyle getRow(int row) {
+		if(cachedEnterprise != model.getEnterprise()) {
+			invalidate(0, Integer.MAX_VALUE);
+			cachedEnterprise = model.getEnterprise();
+		}
+		
+		int slot = row & (SLOTS - 1);
+		RowStyle style = rows[slot];
+		
+		if(style == null) {
+			style = new RowStyle(alignments.length);
+			rows[slot] = style;
+		} else if(style.row == row) {
+			return style;
+		}
+		
+		for(int i = 0; i < alignments.length; i++) {
+			style.values[i] = tableModel.readValueAt(row, i);
+		}
+		
+		Arrays.fill(style.texts, null);
+		style.scheduled = Boolean.TRUE.equals(style.values[RoutesModel.SCHEDULED_COLUMN]);
+		style.row = row;
+		
+		return style;
+	}
+	
+	/**
+	 * This auxiliary method invalidates the cached rows within a range. The
+	 * slots keep their arrays, so they can be used again.
+	 * @param first The first row to invalidate
+	 * @param last The last row to invalidate
+	 */
+	private void invalidate(int first, int last) {
+		if(last - first < SLOTS) {
+			for(int row = first; row <= last; row++) {
+				RowStyle style = rows[row & (SLOTS - 1)];
+				if(style != null && style.row == row) style.row = -1;
+			}
+		} else {
+			for(RowStyle style: rows) {
+				if(style != null && style.row >= first && style.row <= last) style.row = -1;
+			}
+		}
+	}
+	
+	/**
+	 * This auxiliary method moves the cached rows behind inserted or deleted
+	 * rows to the slots of their new indexes. Deleted rows get dropped, and
+	 * so does a row whose new slot is taken by a row in front of the change.
+	 * @param first The first inserted or deleted row
+	 * @param shift The number of inserted rows, or the negative number of
+	 * 		deleted rows
+	 */
+	private void shiftRows(int first, int shift) {
+		RowStyle[] shifted = new RowStyle[SLOTS];
+		
+		for(RowStyle style: rows) {
+			if(style != null && style.row >= 0 && style.row < first) {
+				shifted[style.row & (SLOTS - 1)] = style;
+			}
+		}
+		
+		for(RowStyle style: rows) {
+			if(style == null || style.row < first || style.row < first - shift) continue;
+			
+			style.row += shift;
+			
+			if(shifted[style.row & (SLOTS - 1)] == null) {
+				shifted[style.row & (SLOTS - 1)] = style;
+			}
+		}
+		
+		rows = shifted;
+	}
+	
+	/**
+	 * The cached values and texts of a single row.
+	 */
+	private static class RowStyle {
+		
+		private int row = -1;
+		private boolean scheduled;
+		private final String[] texts;
+		private final Object[] values;
+		
+		RowStyle(int columns) {
+			texts = new String[columns];
+			values = new Object[columns];
+		}
+	}
+
+}
@@ -16,7 +16,6 @@
  */
 package de.jandavid.asxcel.view.Routes;
 
-import java.awt.Color;
 import java.awt.Component;
 
 import javax.swing.JLabel;
@@ -24,9 +23,6 @@ import javax.swing.JTable;
 import javax.swing.border.EmptyBorder;
 import javax.swing.table.TableCellRenderer;
 
-import de.jandavid.asxcel.model.Model;
-import de.jandavid.asxcel.model.Route;
-
 /**
  * This custom renderer is responsible for highlighting the routes depending
  * on they being scheduled or not. Scheduled routes are displayed green, and
@@ -43,37 +39,17 @@ public class StandardCellRenderer extends JLabel implements TableCellRenderer {
 	private static final long serialVersionUID = 2054383280196261028L;
 
 	/**
-	 * This is the color scheduled routes have when they are selected.
-	 */
-	private Color greenSelected = new Color(153, 255, 153);
-	
-	/**
-	 * This is the color scheduled routes have when they are unselected.
+	 * The cache that holds the values and colors of the rows.
 	 */
-	private Color greenUnselected = new Color(204, 255, 204);
-	
-	/**
-	 * The model that holds the data.
-	 */
-	private Model model;
-	
-	/**
-	 * This is the color unscheduled routes have when they are selected.
-	 */
-	private Color redSelected = new Color(255, 153, 153);
-	
-	/**
-	 * This is the color unscheduled routes have when they are unselected.
-	 */
-	private Color redUnselected = new Color(255, 204, 204);
+	private RowStyleCache styleCache;
 
 	/**
 	 * The StandardCellRenderer sets the background color of routes depending
 	 * on whether they are scheduled or not.
-	 * @param model The model holding the data.
+	 * @param styleCache The cache holding the values and colors of the rows.
 	 */
-	public StandardCellRenderer(Model model) {
-		this.model = model;
+	StandardCellRenderer(RowStyleCache styleCache) {
+		this.styleCache = styleCache;
 		this.setOpaque(true);
 		this.setBorder(new EmptyBorder(2, 2, 2, 2));
 	}
@@ -85,30 +61,12 @@ public class StandardCellRenderer extends JLabel implements TableCellRenderer {
 	public Component getTableCellRendererComponent(JTable table, Object value,
 			boolean isSelected, boolean hasFocus, int row, int column) {
 		
-		Route r = model.getEnterprise().getRoutes().get(table.convertRowIndexToModel(row));
-		
-		if(value == null) value = "";
-		this.setText(String.valueOf(value));
-		
-		if(value instanceof Integer) {
-			this.setHorizontalAlignment(JLabel.CENTER);
-		} else {
-			this.setHorizontalAlignment(JLabel.LEFT);
-		}
+		int modelRow = table.convertRowIndexToModel(row);
+		int modelColumn = table.convertColumnIndexToModel(column);
 		
-		if(r.isScheduled()) {
-			if(isSelected) {
-				setBackground(greenSelected);
-			} else {
-				setBackground(greenUnselected);
-			}
-		} else {
-			if(isSelected) {
-				setBackground(redSelected);
-			} else {
-				setBackground(redUnselected);
-			}
-		}
+		this.setText(styleCache.getText(modelRow, modelColumn));
+		this.setHorizontalAlignment(styleCache.getAlignment(modelColumn));
+		this.setBackground(styleCache.getBackground(modelRow, isSelected));
 		
 		return this;
 	}
@@ -20,14 +20,22 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.sql.SQLException;
+import java.util.ArrayList;
 
 import javax.swing.JLabel;
 import javax.swing.JTable;
+import javax.swing.RowFilter;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.JTableHeader;
 import javax.swing.table.TableCellRenderer;
+import javax.swing.table.TableModel;
+import javax.swing.table.TableRowSorter;
 
+import de.jandavid.asxcel.model.Route;
+import de.jandavid.asxcel.model.RouteFilter;
 import de.jandavid.asxcel.view.View;
 
 /**
@@ -38,27 +46,57 @@ import de.jandavid.asxcel.view.View;
  * @author jdno
  */
 public class Table extends JTable implements KeyListener {
-
+	
 	/**
 	 * For future use.
 	 */
 	private static final long serialVersionUID = 8830972621903323239L;
 	
+	/**
+	 * The number of routes on each page if the routes get paged.
+	 */
+	private static final int PAGE_SIZE = 200;
+	
+	/**
+	 * The filter of the routes, or null if no filter has been created yet.
+	 */
+	private RouteFilter routeFilter;
+	
+	/**
+	 * The view with access to the model.
+	 */
+	private View view;
+	
 	/**
 	 * The table containing the routes gets initialized in this class,
 	 * but the data is contributed by RoutesTableModel.
 	 * @param view The view with access to the model.
 	 */
 	public Table(View view) {
-		this.setModel(new RoutesModel(view.getModel()));
-		this.setAutoCreateRowSorter(true);
+		this.view = view;
+		RoutesModel routesModel = createModel(view);
+		this.setModel(routesModel);
 		this.addKeyListener(this);
 		
-		StandardCellRenderer standardCellRenderer = new StandardCellRenderer(view.getModel());
+		if(routesModel instanceof PagedRoutesModel) {
+			final PagedRoutesModel pagedModel = (PagedRoutesModel) routesModel;
+			
+			this.getTableHeader().addMouseListener(new MouseAdapter() {
+				@Override
+				public void mouseClicked(MouseEvent e) {
+					int column = convertColumnIndexToModel(columnAtPoint(e.getPoint()));
+					if(column != -1) pagedModel.sortBy(column);
+				}
+			});
+		} else {
+			this.setAutoCreateRowSorter(true);
+		}
+		
+		StandardCellRenderer standardCellRenderer = new StandardCellRenderer(routesModel.getStyleCache());
 		this.setDefaultRenderer(String.class, standardCellRenderer);
 		this.setDefaultRenderer(Integer.class, standardCellRenderer);
-		this.setDefaultRenderer(Boolean.class, new BooleanCellRenderer(view.getModel()));
-
+		this.setDefaultRenderer(Boolean.class, new BooleanCellRenderer(routesModel.getStyleCache()));
+		
 		JTableHeader header = this.getTableHeader();
 		header.setDefaultRenderer(new HeaderRenderer(this));
 		header.setResizingAllowed(false);
@@ -70,6 +108,127 @@ public class Table extends JTable implements KeyListener {
 		setFocusable(true);
 	}
 	
+	/**
+	 * This method applies the criteria of the filter to the rows. It has to
+	 * be called after criteria have been added or removed. While a filter is
+	 * active, edited rows get filtered and sorted again on their own. The
+	 * rows of a table holding all routes are the slots of the filter, so
+	 * each row is only a lookup of a bit. A paged table lets the filter
+	 * pick the routes it reads.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	@SuppressWarnings("unchecked")
+	public void applyRouteFilter() throws SQLException {
+		final RouteFilter filter = getRouteFilter();
+		
+		if(getModel() instanceof PagedRoutesModel) {
+			((PagedRoutesModel) getModel()).applyRouteFilter();
+			return;
+		}
+		
+		TableRowSorter<TableModel> sorter = (TableRowSorter<TableModel>) getRowSorter();
+		
+		if(filter.isActive()) {
+			sorter.setSortsOnUpdates(true);
+			sorter.setRowFilter(new RowFilter<TableModel, Integer>() {
+				@Override
+				public boolean include(Entry<? extends TableModel, ? extends Integer> entry) {
+					return filter.matchesRow(entry.getIdentifier());
+				}
+			});
+		} else {
+			sorter.setSortsOnUpdates(false);
+			sorter.setRowFilter(null);
+		}
+	}
+	
+	/**
+	 * Cells cannot be edited while CSV files are imported, because the
+	 * import holds the database until it has finished.
+	 * @see javax.swing.JTable#isCellEditable(int, int)
+	 */
+	@Override
+	public boolean isCellEditable(int row, int column) {
+		return !view.getController().isImporting() && super.isCellEditable(row, column);
+	}
+	
+	/**
+	 * This method returns the filter of the routes, and creates it the first
+	 * time it is needed.
+	 * @return The filter.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public RouteFilter getRouteFilter() throws SQLException {
+		if(routeFilter == null) {
+			routeFilter = new RouteFilter(view.getModel().getEnterprise());
+			((RoutesModel) getModel()).setRouteFilter(routeFilter);
+		}
+		
+		return routeFilter;
+	}
+	
+	/**
+	 * This method returns the routes the table shows, in the order it shows
+	 * them. This is only possible if all routes are held by the table,
+	 * otherwise PagedRoutesModel.getSelectedIds() tells which routes are shown.
+	 * @return The routes of the visible rows.
+	 */
+	public ArrayList<Route> getVisibleRoutes() {
+		RoutesModel routesModel = (RoutesModel) getModel();
+		ArrayList<Route> routes = new ArrayList<Route>(getRowCount());
+		
+		for(int i = 0; i < getRowCount(); i++) {
+			Route r = routesModel.getRouteAt(convertRowIndexToModel(i));
+			
+			if(r != null) {
+				routes.add(r);
+			}
+		}
+		
+		return routes;
+	}
+	
+	/**
+	 * This auxiliary method creates the table model. Paged enterprises, which
+	 * only hold the keys of their routes, get a model that reads the routes
+	 * page by page.
+	 * @param view The view with access to the model.
+	 * @return The table model.
+	 */
+	private RoutesModel createModel(View view) {
+		if(view.getModel().getEnterprise().isPaged()) {
+			try {
+				return new PagedRoutesModel(view.getModel(), view.getController().getUiExecutor(), PAGE_SIZE);
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+		}
+		
+		return new RoutesModel(view.getModel());
+	}
+	
+	/**
+	 * Once the table gets added to a window again its model listens to the
+	 * changes of the data model again.
+	 */
+	@Override
+	public void addNotify() {
+		super.addNotify();
+		
+		((RoutesModel) getModel()).attach();
+	}
+	
+	/**
+	 * Once the table gets removed from the window its model stops listening
+	 * to the changes of the data model.
+	 */
+	@Override
+	public void removeNotify() {
+		super.removeNotify();
+		
+		((RoutesModel) getModel()).dispose();
+	}
+	
 	/**
 	 * This auxiliary method sets the width of the columns to custom
 	 * values. This is done because many columns only hold one to
@@ -99,21 +258,21 @@ public class Table extends JTable implements KeyListener {
 	 * @author http://stackoverflow.com/users/230513/trashgod
 	 */
 	private class HeaderRenderer implements TableCellRenderer {
-
+	
 	    DefaultTableCellRenderer renderer;
-
+	
 	    public HeaderRenderer(JTable table) {
 	        renderer = (DefaultTableCellRenderer) table.getTableHeader().getDefaultRenderer();
 	        renderer.setHorizontalAlignment(JLabel.CENTER);
 	    }
-
+	
 	    @Override
 	    public Component getTableCellRendererComponent(
 	        JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int col) {
 	        return renderer.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, col);
 	    }
 	}
-
+	
 	/* (non-Javadoc)
 	 * @see java.awt.event.KeyListener#keyTyped(java.awt.event.KeyEvent)
 	 */
@@ -121,7 +280,7 @@ public class Table extends JTable implements KeyListener {
 	public void keyTyped(KeyEvent e) {
 		// Do nothing.
 	}
-
+	
 	/* (non-Javadoc)
 	 * @see java.awt.event.KeyListener#keyPressed(java.awt.event.KeyEvent)
 	 */
@@ -129,7 +288,7 @@ public class Table extends JTable implements KeyListener {
 	public void keyPressed(KeyEvent e) {
 		// Do nothing.
 	}
-
+	
 	/* (non-Javadoc)
 	 * @see java.awt.event.KeyListener#keyReleased(java.awt.event.KeyEvent)
 	 */
@@ -137,7 +296,7 @@ public class Table extends JTable implements KeyListener {
 	public void keyReleased(KeyEvent e) {
 		try {
 			if(e.getKeyCode() == KeyEvent.VK_DELETE) {
-				if(this.getSelectedColumn() != -1) {
+				if(this.getSelectedColumn() != -1 && !view.getController().waitForImport()) {
 					if(this.getEditingRow() != -1) {
 						this.getCellEditor().cancelCellEditing();
 					}
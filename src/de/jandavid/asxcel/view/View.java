@@ -21,19 +21,30 @@ import java.awt.Dimension;
 import java.awt.GridLayout;
 import java.awt.Image;
 import java.awt.Toolkit;
+import java.io.File;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 
 import javax.swing.ImageIcon;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.border.EmptyBorder;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
 import de.jandavid.asxcel.model.Airport;
+import de.jandavid.asxcel.model.Country;
 import de.jandavid.asxcel.model.DatabaseResult;
 import de.jandavid.asxcel.model.Model;
+import de.jandavid.asxcel.model.RouteFilter;
+import de.jandavid.asxcel.model.RouteOpportunityFinder;
+import de.jandavid.asxcel.model.RouteOpportunityFinder.Opportunity;
+import de.jandavid.asxcel.view.Routes.PagedRoutesModel;
+import de.jandavid.asxcel.view.Routes.Table;
 
 /**
  * The View coordinates the graphical user interface and
@@ -43,6 +54,19 @@ import de.jandavid.asxcel.model.Model;
  */
 public class View {
 	
+	/**
+	 * This array contains the criteria a user can filter the routes by. The
+	 * first five compare attributes, the others ranges.
+	 */
+	private static final String[] filterCriteria = {"Origin", "Destination", "Country", "Scheduled",
+			"Transfer possible", "Origin PAX", "Origin cargo", "Destination PAX", "Destination cargo",
+			"Distance", "Loads to", "Loads from"};
+	
+	/**
+	 * The number of destinations suggested when a route gets created.
+	 */
+	private static final int SUGGESTIONS = 10;
+	
 	/**
 	 * The ActionListener of this application.
 	 */
@@ -111,48 +135,98 @@ public class View {
 	/**
 	 * This method creates a filter for the table. It ask the user by
 	 * what parameter he wants to filter and changes the table accordingly.
+	 * The new filter gets combined with the filters created before.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
 	 */
-	public void createFilter() {
-		// TODO implement filter mechanism for route table
+	public void createFilter() throws SQLException {
+		Table table = window != null ? window.getRoutesTable() : null;
+		if(table == null) return;
+		
+		String criterion = (String)JOptionPane.showInputDialog(
+				window,
+				"Filter by:",
+				"Create new filter",
+				JOptionPane.PLAIN_MESSAGE,
+				null,
+				filterCriteria,
+				filterCriteria[0]);
+		if(criterion == null || criterion.equals("")) return;
+		
+		int index = Arrays.asList(filterCriteria).indexOf(criterion);
+		RouteFilter filter = table.getRouteFilter();
+		
+		if(index < 2) {
+			Airport airport = AirportPicker.pick(window, "Create new filter", criterion + ":", model, null, null);
+			if(airport == null) return;
+			
+			filter.addEquals(index == 0 ? RouteFilter.Attribute.ORIGIN : RouteFilter.Attribute.DESTINATION,
+					airport.getId(), criterion + " is " + airport.getName());
+		} else if(index == 2) {
+			if(model.getCountries().isEmpty()) {
+				JOptionPane.showMessageDialog(window, "There are no countries yet.", "Info", JOptionPane.INFORMATION_MESSAGE);
+				return;
+			}
+			
+			Object[] countries = new Object[model.getCountries().size()];
+			
+			for(int i = 0; i < countries.length; i++) {
+				countries[i] = model.getCountries().get(i).getName();
+			}
+			
+			String country = (String)JOptionPane.showInputDialog(window, "Country:", "Create new filter",
+					JOptionPane.PLAIN_MESSAGE, null, countries, countries[0]);
+			if(country == null || country.equals("")) return;
+			
+			Country c = model.getCountry(country);
+			filter.addEquals(RouteFilter.Attribute.COUNTRY, c.getId(), "Country is " + country);
+		} else if(index < 5) {
+			int answer = JOptionPane.showConfirmDialog(window, criterion + "?", "Create new filter",
+					JOptionPane.YES_NO_CANCEL_OPTION);
+			if(answer == JOptionPane.CANCEL_OPTION || answer == JOptionPane.CLOSED_OPTION) return;
+			
+			boolean yes = answer == JOptionPane.YES_OPTION;
+			filter.addEquals(index == 3 ? RouteFilter.Attribute.SCHEDULED : RouteFilter.Attribute.TRANSFER,
+					yes ? 1 : 0, criterion + (yes ? "" : ": no"));
+		} else {
+			String min = JOptionPane.showInputDialog(window, criterion + " at least (empty for no limit):",
+					"Create new filter", JOptionPane.PLAIN_MESSAGE);
+			if(min == null) return;
+			
+			String max = JOptionPane.showInputDialog(window, criterion + " at most (empty for no limit):",
+					"Create new filter", JOptionPane.PLAIN_MESSAGE);
+			if(max == null) return;
+			
+			try {
+				int from = min.trim().equals("") ? Integer.MIN_VALUE : Integer.parseInt(min.trim());
+				int to = max.trim().equals("") ? Integer.MAX_VALUE : Integer.parseInt(max.trim());
+				
+				filter.addRange(RouteFilter.Range.values()[index - 5], from, to,
+						criterion + " from " + (min.trim().equals("") ? "-" : from) + " to " + (max.trim().equals("") ? "-" : to));
+			} catch (NumberFormatException e) {
+				JOptionPane.showMessageDialog(window, "Please enter whole numbers.", "Error", JOptionPane.ERROR_MESSAGE);
+				return;
+			}
+		}
+		
+		table.applyRouteFilter();
 	}
 	
 	/**
 	 * This method creates a route by asking the user for the origin
-	 * and destination airport. After the user's input these values
+	 * and destination airport. The destinations that score best as new
+	 * routes are suggested first. After the user's input these values
 	 * are passed to the model where the route gets created.
 	 * @throws SQLException If a SQL error occurs this gets thrown.
 	 */
 	public void createRoute() throws SQLException {
-		String origin = "";
-		String destination = "";
-		
 		if(model.getAirports().size() < 2) {
 			JOptionPane.showMessageDialog(window, "You have to create two airports first.", "Info", JOptionPane.INFORMATION_MESSAGE);
 			return;
 		}
 		
-		Object[] airportsOrigin = new Object[model.getAirports().size()];
-		
-		int mainHubInt = 0;
-		Airport mainHub = model.getEnterprise().getMainHub();
-		
-		for(int i = 0; i < model.getAirports().size(); i++) {
-			Airport currentAirport = model.getAirports().get(i);
-			
-			if(mainHub.equals(currentAirport)) mainHubInt = i;
-			
-			airportsOrigin[i] = model.getAirports().get(i).getName();
-		}
-		
-		origin = (String)JOptionPane.showInputDialog(
-			window,
-			"Origin:",
-			"Create new route",
-			JOptionPane.PLAIN_MESSAGE,
-			null,
-			airportsOrigin,
-			airportsOrigin[mainHubInt]);
-		if(origin == null || origin.equals("")) return;
+		Airport origin = AirportPicker.pick(window, "Create new route", "Origin:", model,
+				model.getEnterprise().getMainHub(), null);
+		if(origin == null) return;
 		
 		ArrayList<Airport> destinations = filterAirports(origin);
 		
@@ -161,33 +235,22 @@ public class View {
 			return;
 		}
 		
-		Object[] airportsDestination = new Object[destinations.size()];
+		RouteOpportunityFinder finder = new RouteOpportunityFinder(model.getEnterprise(), model.getAirports(), SUGGESTIONS);
+		ArrayList<Airport> suggestions = new ArrayList<Airport>();
 		
-		for(int i = 0; i < destinations.size(); i++) {
-			airportsDestination[i] = destinations.get(i).getName();
+		for(Opportunity o: finder.find(origin)) {
+			suggestions.add(o.getDestination());
 		}
 		
-		destination = (String)JOptionPane.showInputDialog(
-			window,
-			"Destination:",
-			"Create new route",
-			JOptionPane.PLAIN_MESSAGE,
-			null,
-			airportsDestination,
-			airportsDestination[0]);
-		if(destination == null || destination.equals("")) return;
-		
-		if(origin.equals(destination)) {
-			JOptionPane.showMessageDialog(window, "Origin and destination must not be the same.", "Error", JOptionPane.ERROR_MESSAGE);
-			createRoute();
-		} else {
-			Airport start = model.getAirport(origin);
-			Airport end = model.getAirport(destination);
-			
-			model.createRoute(start, end);
-		}
+		AirportPicker picker = new AirportPicker(window, "Create new route",
+				"Destination (the best opportunities come first):", model, null, new HashSet<Airport>(destinations));
+		picker.setSuggestions(suggestions);
+		picker.setVisible(true);
+		
+		Airport destination = picker.getSelection();
+		if(destination == null) return;
 		
-		showRoutes();
+		model.createRoute(origin, destination);
 	}
 	
 	/**
@@ -226,29 +289,37 @@ public class View {
 		return name;
 	}
 	
+	/**
+	 * This method asks the user for the CSV files to import. The airports
+	 * and the routes come from separate files, and either can be skipped.
+	 * @return The file with the airports and the file with the routes, each
+	 * 		of which may be null, or null if the user has chosen neither.
+	 */
+	public File[] chooseImportFiles() {
+		JFileChooser chooser = new JFileChooser();
+		chooser.setFileFilter(new FileNameExtensionFilter("CSV files", "csv"));
+		
+		chooser.setDialogTitle("Import airports (name, IATA, country, PAX, cargo, size, transfer) - cancel to skip");
+		File airports = chooser.showOpenDialog(window) == JFileChooser.APPROVE_OPTION ? chooser.getSelectedFile() : null;
+		
+		chooser.setDialogTitle("Import routes (origin, destination, distance, loads from, loads to, scheduled) - cancel to skip");
+		File routes = chooser.showOpenDialog(window) == JFileChooser.APPROVE_OPTION ? chooser.getSelectedFile() : null;
+		
+		if(airports == null && routes == null) return null;
+		
+		return new File[] {airports, routes};
+	}
+	
 	/**
 	 * This method initiates the deletion of an airport by asking
 	 * the user which airports he wants to have removed. 
 	 * @throws SQLException If a SQL error occurs this gets thrown.
 	 */
 	public void deleteAirport() throws SQLException {
-		String airportName = "";
-		
-		String[] airports = new String[model.getAirports().size()];
+		Airport airport = AirportPicker.pick(window, "Delete airport", "Airport:", model, null, null);
+		if(airport == null) return;
 		
-		for(int i = 0; i < airports.length; i++) {
-			airports[i] = model.getAirports().get(i).getName();
-		}
-		
-		airportName = (String)JOptionPane.showInputDialog(
-			window,
-			"Airport:",
-			"Delete airport",
-			JOptionPane.PLAIN_MESSAGE,
-			null,
-			airports,
-			airports[0]);
-		if(airportName == null || airportName.equals("")) return;
+		String airportName = airport.getName();
 		
 		int confirm = JOptionPane.showConfirmDialog(null, "Please confirm that you want to\n" +
 				"delete the following airport:\n\n" + airportName,
@@ -270,6 +341,47 @@ public class View {
 		model.deleteAirport(airportName);
 	}
 	
+	/**
+	 * This method deletes a filter of the table by asking the user which
+	 * of the active filters to remove.
+	 * @throws SQLException If a SQL error occurs this gets thrown.
+	 */
+	public void deleteFilter() throws SQLException {
+		Table table = window != null ? window.getRoutesTable() : null;
+		if(table == null) return;
+		
+		RouteFilter filter = table.getRouteFilter();
+		
+		if(!filter.isActive()) {
+			JOptionPane.showMessageDialog(window, "No filter is active.", "Info", JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+		
+		ArrayList<String> descriptions = filter.getDescriptions();
+		descriptions.add("All filters");
+		Object[] filters = descriptions.toArray();
+		
+		String selected = (String)JOptionPane.showInputDialog(
+				window,
+				"Filter:",
+				"Delete filter",
+				JOptionPane.PLAIN_MESSAGE,
+				null,
+				filters,
+				filters[0]);
+		if(selected == null || selected.equals("")) return;
+		
+		int index = descriptions.indexOf(selected);
+		
+		if(index == descriptions.size() - 1) {
+			filter.clear();
+		} else {
+			filter.remove(index);
+		}
+		
+		table.applyRouteFilter();
+	}
+	
 	/**
 	 * This method initiates the deletion of an enterprise by asking the user
 	 * for the enterprise's name and a confirmation.
@@ -304,20 +416,72 @@ public class View {
 		model.deleteEnterprise(enterprise);
 	}
 	
+	/**
+	 * This method asks the user for a file and exports the routes the table
+	 * shows to it in the background, as a workbook if the file ends with
+	 * .xlsx and as CSV otherwise. If the table holds all routes, the rows
+	 * get written as they are filtered and sorted. If it shows them page
+	 * by page, they get streamed from the database in the table's order,
+	 * and only the routes the filter has picked if it is active.
+	 */
+	public void exportRoutes() {
+		Table table = window != null ? window.getRoutesTable() : null;
+		if(table == null) return;
+		
+		JFileChooser chooser = new JFileChooser();
+		FileNameExtensionFilter xlsx = new FileNameExtensionFilter("Excel workbooks", "xlsx");
+		chooser.addChoosableFileFilter(xlsx);
+		chooser.addChoosableFileFilter(new FileNameExtensionFilter("CSV files", "csv"));
+		chooser.setAcceptAllFileFilterUsed(false);
+		chooser.setFileFilter(xlsx);
+		chooser.setDialogTitle("Export routes");
+		
+		if(chooser.showSaveDialog(window) != JFileChooser.APPROVE_OPTION) return;
+		
+		File file = chooser.getSelectedFile();
+		String extension = ((FileNameExtensionFilter) chooser.getFileFilter()).getExtensions()[0];
+		
+		if(!file.getName().toLowerCase().endsWith("." + extension)) {
+			file = new File(file.getPath() + "." + extension);
+		}
+		
+		if(file.exists()) {
+			int confirm = JOptionPane.showConfirmDialog(window, file.getName() + " exists already.\n" +
+					"Do you want to replace it?", "Confirm", JOptionPane.YES_NO_OPTION);
+			
+			if(confirm != JOptionPane.YES_OPTION) return;
+		}
+		
+		ExportWorker worker;
+		
+		if(!(table.getModel() instanceof PagedRoutesModel)) {
+			worker = new ExportWorker(this, file, table.getVisibleRoutes());
+		} else {
+			PagedRoutesModel routesModel = (PagedRoutesModel) table.getModel();
+			
+			if(routesModel.getSelectedIds() != null) {
+				worker = new ExportWorker(this, file, routesModel.getSelectedIds());
+			} else {
+				worker = new ExportWorker(this, file, routesModel.getSortKey(), routesModel.isAscending(),
+						routesModel.getRowCount());
+			}
+		}
+		
+		worker.execute();
+	}
+	
 	/**
 	 * This auxiliary method filters the list of airports provided by the
 	 * model by removing all airports to which a route already exists.
-	 * @param originName The name of the airport to start from.
+	 * @param origin The airport to start from.
 	 * @return A list of all airports without a route to the origin.
 	 */
-	private ArrayList<Airport> filterAirports(String originName) {
+	private ArrayList<Airport> filterAirports(Airport origin) {
 		ArrayList<Airport> airports = new ArrayList<Airport>();
-		Airport origin = model.getAirport(originName);
-		ArrayList<Airport> destinations = model.getEnterprise().getDestinations(origin);
 		
 		for(Airport a: model.getAirports()) {
 			if(a.compareTo(origin) != 0) {
-				if(!destinations.contains(a) && a.compareTo(model.getEnterprise().getMainHub()) != 0) {
+				if(!model.getEnterprise().hasRoute(origin, a) && a.compareTo(model.getEnterprise().getMainHub()) != 0) {
 					airports.add(a);
 				}
 			}
@@ -396,28 +560,28 @@ public class View {
 	public void showWindow() {
 		this.window = new Window(this);
 	}
-
+	
 	/**
 	 * @return the controller
 	 */
 	public Controller getController() {
 		return controller;
 	}
-
+	
 	/**
 	 * @param controller the controller to set
 	 */
 	public void setController(Controller controller) {
 		this.controller = controller;
 	}
-
+	
 	/**
 	 * @return the model
 	 */
 	public Model getModel() {
 		return model;
 	}
-
+	
 	/**
 	 * @return the window
 	 */
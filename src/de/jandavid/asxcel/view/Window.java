@@ -21,6 +21,7 @@ import java.awt.Dimension;
 import java.awt.Toolkit;
 
 import javax.swing.JFrame;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.ScrollPaneConstants;
 
@@ -38,6 +39,16 @@ public class Window extends JFrame {
 	 */
 	private static final long serialVersionUID = -3116025408041446105L;
 	
+	/**
+	 * This shows the progress while an enterprise is loaded.
+	 */
+	private JProgressBar progressBar = new JProgressBar();
+	
+	/**
+	 * The table that displays the routes, or null.
+	 */
+	private Table routesTable;
+	
 	/**
 	 * The view coordinates the GUI.
 	 */
@@ -71,14 +82,51 @@ public class Window extends JFrame {
 	 */
 	public void showRoutes() {
 		getContentPane().removeAll();
-		Table routes = new Table(view);
-		JScrollPane pane = new JScrollPane(routes);
+		routesTable = new Table(view);
+		JScrollPane pane = new JScrollPane(routesTable);
 		pane.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
 		getContentPane().add(pane, BorderLayout.CENTER);
 		pack();
 		repaint();
 	}
 	
+	/**
+	 * This method shows the progress bar at the bottom of the window, or
+	 * updates it if it is shown already.
+	 * @param text The text describing what is in progress.
+	 * @param value The work that has been done.
+	 * @param maximum The work that has to be done.
+	 */
+	public void showProgress(String text, int value, int maximum) {
+		progressBar.setStringPainted(true);
+		progressBar.setString(text + " (" + value + "/" + maximum + ")");
+		progressBar.setMaximum(maximum);
+		progressBar.setValue(value);
+		
+		if(progressBar.getParent() == null) {
+			getContentPane().add(progressBar, BorderLayout.SOUTH);
+			validate();
+		}
+	}
+	
+	/**
+	 * This method removes the progress bar from the window.
+	 */
+	public void hideProgress() {
+		if(progressBar.getParent() != null) {
+			getContentPane().remove(progressBar);
+			validate();
+			repaint();
+		}
+	}
+	
+	/**
+	 * @return the table that displays the routes, or null
+	 */
+	public Table getRoutesTable() {
+		return routesTable;
+	}
+	
 	/**
 	 * This auxiliary method sets the size of the window and
 	 * centers it in the middle of the screen.